@@ -0,0 +1,28 @@
+package com.yelp.search.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of benchmarks.jar. Takes the usual JMH command line options and always adds the gc profiler
+ * so every benchmark reports allocation (gc.alloc.rate.norm is bytes allocated per call) next to time.
+ *
+ * 	java -jar benchmarks/target/benchmarks.jar CYlpSearchUtilBenchmark.proximitySearch -p docLength=10000
+ *
+ */
+public class CYlpBenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,170 @@
+package com.yelp.search.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.analysis.CYlpAnalyzer;
+import com.yelp.search.document.CYlpTokenStream;
+import com.yelp.search.document.CYlpTokenizedDocument;
+import com.yelp.search.highlight.CYlpHighlightEngine;
+import com.yelp.search.highlight.CYlpHighlightResultCache;
+import com.yelp.search.keyword.CYlpProximitySearchKeyword;
+import com.yelp.search.match.CYlpKeywordOccurrences;
+import com.yelp.search.match.CYlpLiteralMatcher;
+import com.yelp.search.metrics.CYlpHighlightStatsAggregator;
+import com.yelp.search.query.CYlpCompiledQuery;
+import com.yelp.search.util.CYlpSearchUtil;
+import com.yelp.search.util.CYlpStopwordSet;
+
+/**
+ * Benchmark input shared by the highlight benchmarks. A document of docLength characters is generated from a
+ * fixed seed so every run measures the same text; hitDensity is the fraction of its words that are keywords
+ * of the query, and the query has keywordCount keywords plus a few non qualitative terms.
+ *
+ * The output of every stage is prepared here so each benchmark measures one stage only.
+ *
+ */
+@State(Scope.Benchmark)
+public class CYlpBenchmarkState {
+
+	static final long SEED = 42L;
+
+	static final String[] KEYWORDS = { "deep", "dish", "pizza", "crust", "cheese", "sauce", "oven",
+			"slice" };
+	private static final String[] FILLER_WORDS = { "the", "we", "tried", "and", "once", "again", "it", "was",
+			"amazingly", "good", "hubby", "movies", "home", "bread", "tasty", "little", "buttery", "taste",
+			"store", "sample", "calzone", "great", "magnet", "refrigerator", "menu", "wait", "love", "table" };
+
+	@Param({ "1000", "10000", "100000" })
+	public int docLength;
+
+	@Param({ "2", "4", "8" })
+	public int keywordCount;
+
+	@Param({ "0.01", "0.05", "0.2" })
+	public double hitDensity;
+
+	public int snippetLength = CYlpHighlightEngine.DEFAULT_SNIPPET_LENGTH;
+	public String padBefore = CYlpHighlightEngine.DEFAULT_PAD_BEFORE;
+	public String padAfter = CYlpHighlightEngine.DEFAULT_PAD_AFTER;
+
+	public String document;
+	public String query;
+
+	// output of each stage, used as input of the next stage
+	public List<String> keywordList;
+	public Map keywordCombinationTable;
+	public Map<String, List> keywordIndexTable;
+	public CYlpProximitySearchKeyword bestProximityKeyword;
+	public int roundOffStartIndex;
+	public int roundOffEndIndex;
+
+	public CYlpCompiledQuery compiledQuery;
+	public CYlpHighlightEngine highlightEngine;
+
+	// same engine with its stages timed in to highlightStats
+	public CYlpHighlightEngine tracedHighlightEngine;
+	public CYlpHighlightStatsAggregator highlightStats;
+
+	// same engine with a result cache
+	public CYlpHighlightEngine cachedHighlightEngine;
+
+	// keyword occurrences and token stream of the document, and the bounds of the best snippet in it
+	public CYlpKeywordOccurrences occurrences;
+	public CYlpTokenStream tokenStream;
+	public int snippetStartIndex;
+	public int snippetEndIndex;
+
+	// query compiled with the standard analyzer, words of the document are analyzed before they are looked up
+	public CYlpCompiledQuery analyzedQuery;
+
+	// longest keyword combination as a case insensitive regex and as a literal matcher
+	public Pattern combinationPattern;
+	public CYlpLiteralMatcher combinationMatcher;
+
+	@Setup(Level.Trial)
+	public void setUp() throws CYlpNullArgumentException {
+
+		if (keywordCount > KEYWORDS.length) {
+			throw new IllegalArgumentException("keywordCount should be at most " + KEYWORDS.length);
+		}
+
+		Random random = new Random(SEED);
+		document = generateDocument(random, docLength, keywordCount, hitDensity);
+
+		StringBuilder queryBuilder = new StringBuilder("the best");
+		for (int i = 0; i < keywordCount; i++) {
+			queryBuilder.append(' ').append(KEYWORDS[i]);
+		}
+		query = queryBuilder.toString();
+
+		CYlpSearchUtil searchUtil = new CYlpSearchUtil();
+		keywordList = searchUtil.removeNonQualitativeTermsInSearch(query);
+		keywordCombinationTable = searchUtil.getCombinations(keywordList);
+		keywordIndexTable = searchUtil.getFirstMatchingKeyword(document, keywordCombinationTable);
+		bestProximityKeyword = searchUtil.proximitySearch(document, query, keywordIndexTable, snippetLength);
+
+		// round off a window in the middle of the document
+		roundOffStartIndex = document.length() / 2;
+		roundOffEndIndex = Math.min(document.length(), roundOffStartIndex + snippetLength);
+
+		compiledQuery = new CYlpCompiledQuery(query);
+		highlightEngine = CYlpHighlightEngine.builder().snippetLength(snippetLength).padBefore(padBefore)
+				.padAfter(padAfter).build();
+		highlightStats = new CYlpHighlightStatsAggregator();
+		tracedHighlightEngine = highlightEngine.toBuilder().highlightListener(highlightStats).build();
+		cachedHighlightEngine = highlightEngine.toBuilder().resultCache(new CYlpHighlightResultCache()).build();
+
+		occurrences = compiledQuery.getKeywordAutomaton().findOccurrences(document);
+		tokenStream = new CYlpTokenStream(new CYlpTokenizedDocument(document), compiledQuery.getTermDictionary());
+		snippetStartIndex = Math.max(0, document.indexOf(bestProximityKeyword.getDocumentSnippet()));
+		snippetEndIndex = snippetStartIndex + bestProximityKeyword.getDocumentSnippet().length();
+
+		analyzedQuery = new CYlpCompiledQuery(query, CYlpStopwordSet.getDefault(), CYlpAnalyzer.getStandard());
+
+		String combination = String.join(" ", keywordList);
+		combinationPattern = Pattern.compile("(?i)" + Pattern.quote(combination));
+		combinationMatcher = new CYlpLiteralMatcher(combination);
+	}
+
+	/**
+	 * Generates a document of docLength characters in which hitDensity of the words are one of the first
+	 * keywordCount keywords
+	 */
+	static String generateDocument(Random random, int docLength, int keywordCount, double hitDensity) {
+
+		StringBuilder docBuilder = new StringBuilder(docLength + 16);
+		int wordsInSentence = 0;
+		while (docBuilder.length() < docLength) {
+			if (docBuilder.length() > 0) {
+				docBuilder.append(' ');
+			}
+			String word;
+			if (random.nextDouble() < hitDensity) {
+				word = KEYWORDS[random.nextInt(keywordCount)];
+			} else {
+				word = FILLER_WORDS[random.nextInt(FILLER_WORDS.length)];
+			}
+			// start of a sentence is capitalized, keywords should match ignoring case
+			if (wordsInSentence == 0) {
+				word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+			}
+			docBuilder.append(word);
+			if (++wordsInSentence > 8 + random.nextInt(8)) {
+				docBuilder.append('.');
+				wordsInSentence = 0;
+			}
+		}
+		docBuilder.setLength(docLength);
+		return docBuilder.toString();
+	}
+}
@@ -0,0 +1,109 @@
+package com.yelp.search.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.match.CYlpCandidateScanner;
+import com.yelp.search.match.CYlpKeywordAutomaton;
+import com.yelp.search.match.CYlpKeywordOccurrences;
+
+/**
+ * Compares the scalar and the Vector API candidate scanners on 1KB, 10KB and 1MB documents, on their own
+ * (countCandidates) and inside the keyword automaton (findOccurrences). Every fork adds jdk.incubator.vector,
+ * the scalar forks turn the vector scanner off with the yelp.search.vectorScanner property.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CYlpCandidateScanBenchmark {
+
+	private static final String VECTOR_MODULE = "--add-modules=jdk.incubator.vector";
+	private static final String SCALAR_ONLY = "-D" + CYlpCandidateScanner.VECTOR_SCANNER_PROPERTY + "=false";
+
+	@Param({ "1000", "10000", "1000000" })
+	public int docLength;
+
+	@Param({ "4" })
+	public int keywordCount;
+
+	@Param({ "0.01", "0.2" })
+	public double hitDensity;
+
+	private String document;
+	private char[] documentChars;
+	private CYlpKeywordAutomaton keywordAutomaton;
+	private CYlpCandidateScanner scalarScanner;
+	private CYlpCandidateScanner scanner;
+
+	@Setup(Level.Trial)
+	public void setUp() throws CYlpNullArgumentException {
+
+		document = CYlpBenchmarkState.generateDocument(new Random(CYlpBenchmarkState.SEED), docLength, keywordCount,
+				hitDensity);
+		documentChars = document.toCharArray();
+
+		List<String> keywordList = Arrays.asList(CYlpBenchmarkState.KEYWORDS).subList(0, keywordCount);
+		keywordAutomaton = new CYlpKeywordAutomaton(keywordList);
+		scalarScanner = CYlpCandidateScanner.createScalar(keywordList);
+		scanner = CYlpCandidateScanner.create(keywordList);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = VECTOR_MODULE)
+	public int countCandidatesScalar() {
+		return countCandidates(scalarScanner);
+	}
+
+	/**
+	 * Same as countCandidatesScalar with the vector scanner
+	 */
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = VECTOR_MODULE)
+	public int countCandidatesVector() {
+		if (!scanner.isVectorized()) {
+			throw new IllegalStateException("vector scanner is not available in this JVM");
+		}
+		return countCandidates(scanner);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { VECTOR_MODULE, SCALAR_ONLY })
+	public CYlpKeywordOccurrences findOccurrencesScalar() throws CYlpNullArgumentException {
+		return keywordAutomaton.findOccurrences(document);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = VECTOR_MODULE)
+	public CYlpKeywordOccurrences findOccurrencesVector() throws CYlpNullArgumentException {
+		return keywordAutomaton.findOccurrences(document);
+	}
+
+	private int countCandidates(CYlpCandidateScanner candidateScanner) {
+		int count = 0;
+		int index = candidateScanner.nextCandidate(documentChars, 0, documentChars.length);
+		while (index < documentChars.length) {
+			count++;
+			index = candidateScanner.nextCandidate(documentChars, index + 1, documentChars.length);
+		}
+		return count;
+	}
+}
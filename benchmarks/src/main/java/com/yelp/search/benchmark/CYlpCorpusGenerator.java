@@ -0,0 +1,272 @@
+package com.yelp.search.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic Yelp-like reviews and of a query log over them. The same seed and
+ * configuration always give the same corpus, so benchmark runs can be compared.
+ *
+ * Review lengths follow a log-normal distribution (many short reviews, a long tail up to maxDocLength) and
+ * words are drawn from a vocabulary with Zipf frequencies, the most frequent words being the stopwords of
+ * real reviews. Query terms are drawn with their own Zipf skew from the content words of the vocabulary.
+ *
+ * 	CYlpCorpusGenerator generator = CYlpCorpusGenerator.builder().seed(7).medianDocLength(400).build();
+ * 	List<String> reviews = generator.generateDocuments(10000);
+ *
+ */
+public class CYlpCorpusGenerator {
+
+	// most frequent words of reviews, in rank order, followed by content words
+	private static final String[] STOPWORDS = { "the", "and", "i", "a", "to", "was", "it", "of", "is", "for",
+			"in", "we", "my", "but", "that", "with", "they", "you", "this", "on", "had", "so", "were", "are",
+			"at", "be", "have", "not", "our", "just" };
+	private static final String[] CONTENT_WORDS = { "food", "good", "place", "great", "service", "pizza",
+			"time", "order", "chicken", "menu", "delicious", "friendly", "staff", "restaurant", "best",
+			"lunch", "dinner", "deep", "dish", "crust", "cheese", "sauce", "burger", "fries", "coffee",
+			"salad", "table", "wait", "price", "fresh", "spicy", "sushi", "taco", "bar", "beer", "wine",
+			"dessert", "bread", "soup", "noodles", "rice", "steak", "breakfast", "brunch", "patio",
+			"parking", "location", "amazing", "tasty", "slow", "busy", "cozy", "authentic", "portion" };
+	private static final String[] SYLLABLES = { "ba", "ko", "ri", "ta", "me", "lu", "sa", "po", "ni", "de",
+			"ga", "zu", "fe", "mo", "ti", "ra" };
+
+	private final long seed;
+	private final int medianDocLength;
+	private final double docLengthSigma;
+	private final int maxDocLength;
+	private final double termSkew;
+	private final double queryTermSkew;
+	private final int minQueryTerms;
+	private final int maxQueryTerms;
+
+	private final String[] vocabulary;
+	// cumulative Zipf probabilities of the vocabulary for documents and of content words for queries
+	private final double[] termCumulative;
+	private final double[] queryTermCumulative;
+
+	private CYlpCorpusGenerator(Builder builder) {
+		seed = builder.seed;
+		medianDocLength = builder.medianDocLength;
+		docLengthSigma = builder.docLengthSigma;
+		maxDocLength = builder.maxDocLength;
+		termSkew = builder.termSkew;
+		queryTermSkew = builder.queryTermSkew;
+		minQueryTerms = builder.minQueryTerms;
+		maxQueryTerms = builder.maxQueryTerms;
+
+		vocabulary = buildVocabulary(builder.vocabularySize);
+		termCumulative = zipfCumulative(vocabulary.length, termSkew);
+		queryTermCumulative = zipfCumulative(vocabulary.length - STOPWORDS.length, queryTermSkew);
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Generates count reviews, same seed gives same reviews
+	 * @param count
+	 * @return list of reviews
+	 */
+	public List<String> generateDocuments(int count) {
+
+		Random random = new Random(seed);
+		List<String> documents = new ArrayList<String>(count);
+		StringBuilder docBuilder = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			// log-normal length around the median, at least one word
+			int docLength = (int) Math.round(medianDocLength * Math.exp(docLengthSigma * random.nextGaussian()));
+			docLength = Math.max(1, Math.min(maxDocLength, docLength));
+
+			docBuilder.setLength(0);
+			boolean sentenceStart = true;
+			while (docBuilder.length() < docLength) {
+				String word = vocabulary[sample(termCumulative, random)];
+				if (sentenceStart) {
+					word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+					sentenceStart = false;
+				}
+				docBuilder.append(word);
+				int punctuation = random.nextInt(20);
+				if (punctuation == 0) {
+					docBuilder.append('.');
+					sentenceStart = true;
+				} else if (punctuation == 1) {
+					docBuilder.append(',');
+				} else if (punctuation == 2 && docBuilder.length() < docLength) {
+					docBuilder.append('!');
+					sentenceStart = true;
+				}
+				docBuilder.append(' ');
+			}
+			documents.add(docBuilder.substring(0, Math.min(docLength, docBuilder.length())).trim());
+		}
+		return documents;
+	}
+
+	/**
+	 * Generates count queries, each with minQueryTerms to maxQueryTerms content words and sometimes a
+	 * stopword, same seed gives same queries
+	 * @param count
+	 * @return list of queries
+	 */
+	public List<String> generateQueries(int count) {
+
+		// different stream from the documents so changing the number of documents keeps the queries
+		Random random = new Random(~seed);
+		List<String> queries = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			int termCount = minQueryTerms + random.nextInt(maxQueryTerms - minQueryTerms + 1);
+			StringBuilder queryBuilder = new StringBuilder();
+			for (int t = 0; t < termCount; t++) {
+				if (t > 0) {
+					queryBuilder.append(' ');
+				}
+				if (t > 0 && random.nextInt(4) == 0) {
+					queryBuilder.append(STOPWORDS[random.nextInt(STOPWORDS.length)]).append(' ');
+				}
+				queryBuilder.append(vocabulary[STOPWORDS.length + sample(queryTermCumulative, random)]);
+			}
+			queries.add(queryBuilder.toString());
+		}
+		return queries;
+	}
+
+	public String[] getVocabulary() {
+		return vocabulary.clone();
+	}
+
+	/**
+	 * vocabulary is the stopwords, the content words and then made up words built from syllables
+	 */
+	private static String[] buildVocabulary(int vocabularySize) {
+
+		int size = Math.max(vocabularySize, STOPWORDS.length + CONTENT_WORDS.length);
+		String[] words = Arrays.copyOf(STOPWORDS, size);
+		System.arraycopy(CONTENT_WORDS, 0, words, STOPWORDS.length, CONTENT_WORDS.length);
+		for (int i = STOPWORDS.length + CONTENT_WORDS.length, n = 0; i < size; i++, n++) {
+			StringBuilder word = new StringBuilder();
+			int value = n + SYLLABLES.length;
+			while (value > 0) {
+				word.append(SYLLABLES[value % SYLLABLES.length]);
+				value /= SYLLABLES.length;
+			}
+			words[i] = word.toString();
+		}
+		return words;
+	}
+
+	/**
+	 * cumulative probabilities of ranks 1..n with probability proportional to 1 / rank^skew
+	 */
+	private static double[] zipfCumulative(int n, double skew) {
+
+		double[] cumulative = new double[n];
+		double total = 0;
+		for (int rank = 1; rank <= n; rank++) {
+			total += 1.0 / Math.pow(rank, skew);
+			cumulative[rank - 1] = total;
+		}
+		for (int i = 0; i < n; i++) {
+			cumulative[i] /= total;
+		}
+		return cumulative;
+	}
+
+	private static int sample(double[] cumulative, Random random) {
+
+		int index = Arrays.binarySearch(cumulative, random.nextDouble());
+		index = index >= 0 ? index : -index - 1;
+		return Math.min(index, cumulative.length - 1);
+	}
+
+	/**
+	 * Builder for CYlpCorpusGenerator, defaults give mostly short reviews with a tail up to 10KB
+	 *
+	 */
+	public static final class Builder {
+
+		private long seed = 42L;
+		private int vocabularySize = 5000;
+		private int medianDocLength = 600;
+		private double docLengthSigma = 1.0;
+		private int maxDocLength = 10 * 1024;
+		private double termSkew = 1.0;
+		private double queryTermSkew = 1.2;
+		private int minQueryTerms = 1;
+		private int maxQueryTerms = 4;
+
+		private Builder() {
+		}
+
+		public Builder seed(long corpusSeed) {
+			seed = corpusSeed;
+			return this;
+		}
+
+		public Builder vocabularySize(int size) {
+			vocabularySize = size;
+			return this;
+		}
+
+		/**
+		 * @param length median review length in characters
+		 * @return this builder
+		 */
+		public Builder medianDocLength(int length) {
+			medianDocLength = length;
+			return this;
+		}
+
+		/**
+		 * @param sigma spread of the log-normal review length, larger gives a longer tail
+		 * @return this builder
+		 */
+		public Builder docLengthSigma(double sigma) {
+			docLengthSigma = sigma;
+			return this;
+		}
+
+		public Builder maxDocLength(int length) {
+			maxDocLength = length;
+			return this;
+		}
+
+		/**
+		 * @param skew Zipf exponent of word frequencies in reviews
+		 * @return this builder
+		 */
+		public Builder termSkew(double skew) {
+			termSkew = skew;
+			return this;
+		}
+
+		/**
+		 * @param skew Zipf exponent of term frequencies in queries
+		 * @return this builder
+		 */
+		public Builder queryTermSkew(double skew) {
+			queryTermSkew = skew;
+			return this;
+		}
+
+		public Builder queryTerms(int minTerms, int maxTerms) {
+			minQueryTerms = minTerms;
+			maxQueryTerms = maxTerms;
+			return this;
+		}
+
+		public CYlpCorpusGenerator build() {
+
+			if (medianDocLength <= 0 || maxDocLength <= 0 || docLengthSigma < 0) {
+				throw new IllegalArgumentException("document length settings should be greater than 0 ");
+			}
+			if (minQueryTerms <= 0 || maxQueryTerms < minQueryTerms) {
+				throw new IllegalArgumentException("query terms should be 0 < minQueryTerms <= maxQueryTerms ");
+			}
+			return new CYlpCorpusGenerator(this);
+		}
+	}
+}
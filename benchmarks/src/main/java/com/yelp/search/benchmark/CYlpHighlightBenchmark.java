@@ -0,0 +1,86 @@
+package com.yelp.search.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * End to end benchmark of getHighlightDoc(), with the query looked up in the compiled query cache as it is
+ * for a request
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CYlpHighlightBenchmark {
+
+	@Benchmark
+	public String getHighlightDoc(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return state.highlightEngine.getHighlightDoc(state.document, state.query);
+	}
+
+	/**
+	 * Same as getHighlightDoc() with the stages timed and aggregated, the difference is the cost of the
+	 * instrumentation
+	 */
+	@Benchmark
+	public String getHighlightDocWithStats(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return state.tracedHighlightEngine.getHighlightDoc(state.document, state.query);
+	}
+
+	/**
+	 * Same as getHighlightDoc() with the snippet found in the result cache, the cost left is hashing the
+	 * document and the lookup
+	 */
+	@Benchmark
+	public String getHighlightDocCached(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return state.cachedHighlightEngine.getHighlightDoc(state.document, state.query);
+	}
+
+	/**
+	 * Same as getHighlightDoc() with one engine shared by 1, 2, 4 and 8 threads, the throughput is the sum
+	 * over the threads so it shows how highlighting scales with the thread count
+	 */
+	@Benchmark
+	@Threads(1)
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public String getHighlightDocThreads1(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return state.highlightEngine.getHighlightDoc(state.document, state.query);
+	}
+
+	@Benchmark
+	@Threads(2)
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public String getHighlightDocThreads2(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return state.highlightEngine.getHighlightDoc(state.document, state.query);
+	}
+
+	@Benchmark
+	@Threads(4)
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public String getHighlightDocThreads4(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return state.highlightEngine.getHighlightDoc(state.document, state.query);
+	}
+
+	@Benchmark
+	@Threads(8)
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public String getHighlightDocThreads8(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return state.highlightEngine.getHighlightDoc(state.document, state.query);
+	}
+}
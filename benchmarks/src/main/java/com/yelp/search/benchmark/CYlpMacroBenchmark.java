@@ -0,0 +1,111 @@
+package com.yelp.search.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.highlight.CYlpDocumentHighlight;
+
+/**
+ * Replays a synthetic query log over a synthetic review corpus (see CYlpCorpusGenerator) through
+ * CYlpDocumentHighlight. Throughput mode reports requests per second and sample time mode reports the
+ * latency distribution (p0.50, p0.99, p0.999).
+ *
+ * 	java -jar benchmarks/target/benchmarks.jar CYlpMacroBenchmark -t 4
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CYlpMacroBenchmark {
+
+	/**
+	 * Corpus and query log, generated once and shared by all benchmark threads
+	 */
+	@State(Scope.Benchmark)
+	public static class CYlpReplayLog {
+
+		@Param({ "42" })
+		public long seed;
+
+		@Param({ "10000" })
+		public int docCount;
+
+		@Param({ "2000" })
+		public int queryCount;
+
+		@Param({ "600" })
+		public int medianDocLength;
+
+		// number of requests in the log, each request is one (document, query) pair
+		private static final int REQUEST_COUNT = 1 << 16;
+
+		String[] documents;
+		String[] queries;
+		int[] requestDocIds;
+		int[] requestQueryIds;
+
+		CYlpDocumentHighlight docHighlight;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+
+			CYlpCorpusGenerator generator = CYlpCorpusGenerator.builder().seed(seed)
+					.medianDocLength(medianDocLength).build();
+			List<String> documentList = generator.generateDocuments(docCount);
+			List<String> queryList = generator.generateQueries(queryCount);
+			documents = documentList.toArray(new String[0]);
+			queries = queryList.toArray(new String[0]);
+
+			// query log keeps the skew of the generated queries, a request picks a random review
+			Random random = new Random(seed);
+			requestDocIds = new int[REQUEST_COUNT];
+			requestQueryIds = new int[REQUEST_COUNT];
+			for (int i = 0; i < REQUEST_COUNT; i++) {
+				requestDocIds[i] = random.nextInt(documents.length);
+				requestQueryIds[i] = random.nextInt(queries.length);
+			}
+
+			docHighlight = new CYlpDocumentHighlight();
+		}
+	}
+
+	/**
+	 * position of a benchmark thread in the query log, threads start at different positions
+	 */
+	@State(Scope.Thread)
+	public static class CYlpReplayCursor {
+
+		int position;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			position = (int) (Thread.currentThread().getId() * 7919);
+		}
+	}
+
+	@Benchmark
+	public String getHighlightDoc(CYlpReplayLog replayLog, CYlpReplayCursor cursor)
+			throws CYlpNullArgumentException {
+
+		int request = (cursor.position++) & (CYlpReplayLog.REQUEST_COUNT - 1);
+		return replayLog.docHighlight.getHighlightDoc(replayLog.documents[replayLog.requestDocIds[request]],
+				replayLog.queries[replayLog.requestQueryIds[request]]);
+	}
+}
@@ -0,0 +1,154 @@
+package com.yelp.search.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.document.CYlpTokenStream;
+import com.yelp.search.keyword.CYlpProximitySearchKeyword;
+import com.yelp.search.util.CYlpSearchUtil;
+
+/**
+ * One benchmark per stage of the highlight pipeline in CYlpSearchUtil, each stage gets the output of the
+ * previous stage from CYlpBenchmarkState
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CYlpSearchUtilBenchmark {
+
+	private final CYlpSearchUtil searchUtil = new CYlpSearchUtil();
+
+	// reused by appendThePaddedSnippet, so only the rendering itself is measured
+	private final StringBuilder highlightedSnippet = new StringBuilder(1024);
+
+	@Benchmark
+	public List<String> removeNonQualitativeTermsInSearch(CYlpBenchmarkState state)
+			throws CYlpNullArgumentException {
+		return searchUtil.removeNonQualitativeTermsInSearch(state.query);
+	}
+
+	@Benchmark
+	public Map getCombinations(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return searchUtil.getCombinations(state.keywordList);
+	}
+
+	@Benchmark
+	public Map getFirstMatchingKeyword(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return searchUtil.getFirstMatchingKeyword(state.document, state.keywordCombinationTable);
+	}
+
+	@Benchmark
+	public Map<String, List> getFirstMatchingKeywordWithAutomaton(CYlpBenchmarkState state)
+			throws CYlpNullArgumentException {
+		return searchUtil.getFirstMatchingKeyword(state.document, state.compiledQuery.getKeywordAutomaton());
+	}
+
+	/**
+	 * Counts the longest keyword combination with a precompiled case insensitive regex, which is how
+	 * getFirstMatchingKeyword(String, Map) found combinations before CYlpLiteralMatcher
+	 */
+	@Benchmark
+	public int countCombinationWithRegex(CYlpBenchmarkState state) {
+		int count = 0;
+		Matcher matcher = state.combinationPattern.matcher(state.document);
+		while (matcher.find()) {
+			count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int countCombinationWithLiteralMatcher(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return state.combinationMatcher.count(state.document);
+	}
+
+	@Benchmark
+	public CYlpProximitySearchKeyword proximitySearch(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return searchUtil.proximitySearch(state.document, state.query, state.keywordIndexTable,
+				state.snippetLength);
+	}
+
+	@Benchmark
+	public CYlpProximitySearchKeyword proximitySearchWithOccurrences(CYlpBenchmarkState state)
+			throws CYlpNullArgumentException {
+		return searchUtil.proximitySearch(state.tokenStream.getTokenizedDocument(), state.occurrences,
+				state.keywordIndexTable, state.snippetLength);
+	}
+
+	/**
+	 * Same windows as proximitySearchWithOccurrences scored in segments on the common fork-join pool,
+	 * documents shorter than two segments are searched on the calling thread
+	 */
+	@Benchmark
+	public CYlpProximitySearchKeyword proximitySearchParallel(CYlpBenchmarkState state)
+			throws CYlpNullArgumentException {
+		return searchUtil.proximitySearch(state.tokenStream.getTokenizedDocument(), state.occurrences,
+				state.keywordIndexTable, state.snippetLength, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Same pass as proximitySearchWithOccurrences but keeps the 3 best windows that do not overlap
+	 */
+	@Benchmark
+	public List<CYlpProximitySearchKeyword> proximitySearchTopWindows(CYlpBenchmarkState state)
+			throws CYlpNullArgumentException {
+		return searchUtil.proximitySearch(state.tokenStream.getTokenizedDocument(), state.occurrences,
+				state.keywordIndexTable, state.snippetLength, 3);
+	}
+
+	@Benchmark
+	public String getRoundedOffDocSubString(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return searchUtil.getRoundedOffDocSubString(state.document, state.roundOffStartIndex,
+				state.roundOffEndIndex);
+	}
+
+	@Benchmark
+	public String getThePaddedSnippet(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return searchUtil.getThePaddedSnippet(state.bestProximityKeyword.getDocumentSnippet(), state.query,
+				state.padBefore, state.padAfter);
+	}
+
+	@Benchmark
+	public String getThePaddedSnippetFromTokenStream(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return searchUtil.getThePaddedSnippet(state.tokenStream, state.snippetStartIndex, state.snippetEndIndex,
+				state.padBefore, state.padAfter);
+	}
+
+	/**
+	 * Renders the snippet in to a reused builder, gc.alloc.rate.norm of the GC profiler should be close to 0
+	 */
+	@Benchmark
+	public StringBuilder appendThePaddedSnippet(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		highlightedSnippet.setLength(0);
+		return searchUtil.appendThePaddedSnippet(state.tokenStream, state.snippetStartIndex, state.snippetEndIndex,
+				state.padBefore, state.padAfter, highlightedSnippet);
+	}
+
+	@Benchmark
+	public CYlpTokenStream getTokenStream(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return new CYlpTokenStream(state.tokenStream.getTokenizedDocument(), state.compiledQuery.getTermDictionary());
+	}
+
+	@Benchmark
+	public CYlpTokenStream getAnalyzedTokenStream(CYlpBenchmarkState state) throws CYlpNullArgumentException {
+		return new CYlpTokenStream(state.tokenStream.getTokenizedDocument(), state.analyzedQuery.getTermDictionary());
+	}
+}
@@ -0,0 +1,76 @@
+package com.yelp.search.match;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Candidate scanner that loads a vector of characters at a time (32 with AVX-512) together with the vector of
+ * the characters that follow them, and compares both with the keys of getVectorKeys() at once. Characters are
+ * or-ed with 0x20 before the compare so that upper and lower case of a letter match the same key, characters
+ * outside ASCII are found with one test of their high bits. The characters after the last full vector are
+ * scanned with the tables of the scalar scanner.
+ *
+ * This class needs jdk.incubator.vector, it is compiled by the JDK 17 build only and created through
+ * CYlpCandidateScanner.create() which falls back to the scalar scanner when it can not be loaded.
+ *
+ */
+final class CYlpVectorCandidateScanner extends CYlpCandidateScanner {
+
+	private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+	// bits that are set only in characters outside ASCII
+	private static final short NON_ASCII_BITS = (short) 0xFF80;
+
+	private static final short CASE_BIT = 0x20;
+
+	// rows of a first key followed by the keys of the next character, see getVectorKeys()
+	private final short[][] keys;
+
+	// scans the characters after the last full vector
+	private final ScalarScanner tailScanner;
+
+	CYlpVectorCandidateScanner(boolean[] prefixTable) {
+		this.keys = getVectorKeys(prefixTable);
+		this.tailScanner = new ScalarScanner(prefixTable);
+	}
+
+	@Override
+	public int nextCandidate(char[] chars, int fromIndex, int toIndex) {
+
+		int i = fromIndex;
+		int vectorLength = SPECIES.length();
+		// the vector of next characters starts at i + 1 and has to end before toIndex
+		for (; i < toIndex - vectorLength; i += vectorLength) {
+			ShortVector vector = ShortVector.fromCharArray(SPECIES, chars, i);
+			ShortVector nextVector = ShortVector.fromCharArray(SPECIES, chars, i + 1);
+			VectorMask<Short> candidates = vector.and(NON_ASCII_BITS).compare(VectorOperators.NE, (short) 0);
+			VectorMask<Short> nextNonAscii = nextVector.and(NON_ASCII_BITS).compare(VectorOperators.NE, (short) 0);
+			ShortVector foldedVector = vector.or(CASE_BIT);
+			ShortVector foldedNextVector = nextVector.or(CASE_BIT);
+			for (int row = 0; row < keys.length; row++) {
+				short[] rowKeys = keys[row];
+				VectorMask<Short> prefixes = foldedVector.compare(VectorOperators.EQ, rowKeys[0]);
+				if (rowKeys.length > 1) {
+					VectorMask<Short> nextMatches = nextNonAscii;
+					for (int k = 1; k < rowKeys.length; k++) {
+						nextMatches = nextMatches.or(foldedNextVector.compare(VectorOperators.EQ, rowKeys[k]));
+					}
+					prefixes = prefixes.and(nextMatches);
+				}
+				candidates = candidates.or(prefixes);
+			}
+			if (candidates.anyTrue()) {
+				return i + candidates.firstTrue();
+			}
+		}
+
+		return tailScanner.nextCandidate(chars, i, toIndex);
+	}
+
+	@Override
+	public boolean isVectorized() {
+		return true;
+	}
+}
@@ -0,0 +1,24 @@
+package com.yelp.enums;
+
+/**
+ * The enumeration has the stages of CYlpHighlightEngine.getHighlightDoc() that are timed for a
+ * CYlpHighlightListener, in the order they run
+ *
+ */
+public enum EylpHighlightStage {
+	//
+	//QUERY_COMPILATION removes the non qualitative terms and builds the keyword automaton, it is only a cache
+	//lookup when the query was already compiled
+	//KEYWORD_OCCURRENCES breaks the document in to words, looks up their term IDs and finds all keyword
+	//occurences
+	//KEYWORD_INDEX_TABLE generates the keyword combinations found in the document and their first match
+	//(or the keyword coverage windows)
+	//PROXIMITY_SEARCH scores the scan windows around the first matches and selects the best snippet
+	//PADDING finds the keyword groups of the snippet and pads them (only finds them for a CYlpHighlightResult)
+	//
+	QUERY_COMPILATION,
+	KEYWORD_OCCURRENCES,
+	KEYWORD_INDEX_TABLE,
+	PROXIMITY_SEARCH,
+	PADDING,
+}
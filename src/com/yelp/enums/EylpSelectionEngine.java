@@ -0,0 +1,17 @@
+package com.yelp.enums;
+
+/**
+ * The enumeration has the approaches for selecting the keyword occurences around which proximity search
+ * is done
+ *
+ */
+public enum EylpSelectionEngine {
+	//
+	//LONGEST_COMBINATION looks for the combination of keywords with most keywords that occurs in the
+	//document (for example "deep dish pizza" before "deep dish")
+	//KEYWORD_COVERAGE slides a window of MAXLENGTH over the keyword occurences and selects the smallest
+	//windows covering most distinct keywords, its cost does not depend on number of combinations
+	//
+	LONGEST_COMBINATION,
+	KEYWORD_COVERAGE,
+}
@@ -0,0 +1,70 @@
+package com.yelp.search.analysis;
+
+import java.text.Normalizer;
+
+/**
+ * Replaces accented Latin letters by the letter without accent, for example "caf\u00E9" becomes "cafe".
+ * Letters that would become two letters (\u00E6, \u00DF) are kept since a filter can not grow the term.
+ *
+ * The folded letter of every character of the Latin-1 Supplement and Latin Extended-A/B blocks is computed
+ * once from its canonical decomposition, folding a term is one table lookup per character.
+ *
+ */
+public final class CYlpAccentFoldingFilter implements CYlpTokenFilter {
+
+	//first and last character of the folding table
+	private static final char FIRST_FOLDED = '\u00C0';
+	private static final char LAST_FOLDED = '\u024F';
+
+	//folded letter of each character from FIRST_FOLDED to LAST_FOLDED, the character itself when it has none
+	private static final char[] FOLDING_TABLE = buildFoldingTable();
+
+	public int filter(char[] termBuffer, int length) {
+
+		for (int i = 0; i < length; i++) {
+			char c = termBuffer[i];
+			if (c >= FIRST_FOLDED && c <= LAST_FOLDED) {
+				termBuffer[i] = FOLDING_TABLE[c - FIRST_FOLDED];
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * @param c
+	 * @return c without accent, c when it has no accent
+	 */
+	public static char foldAccent(char c) {
+		return c >= FIRST_FOLDED && c <= LAST_FOLDED ? FOLDING_TABLE[c - FIRST_FOLDED] : c;
+	}
+
+	private static char[] buildFoldingTable() {
+
+		char[] foldingTable = new char[LAST_FOLDED - FIRST_FOLDED + 1];
+		for (char c = FIRST_FOLDED; c <= LAST_FOLDED; c++) {
+			foldingTable[c - FIRST_FOLDED] = c;
+
+			//a letter with accent decomposes in to an ascii letter followed by combining marks
+			String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+			char baseLetter = decomposed.charAt(0);
+			if (decomposed.length() < 2 || baseLetter >= 128 || !Character.isLetter(baseLetter)) {
+				continue;
+			}
+			boolean onlyMarks = true;
+			for (int i = 1; i < decomposed.length(); i++) {
+				onlyMarks &= Character.getType(decomposed.charAt(i)) == Character.NON_SPACING_MARK;
+			}
+			if (onlyMarks) {
+				foldingTable[c - FIRST_FOLDED] = baseLetter;
+			}
+		}
+
+		//letters with a stroke have no decomposition
+		String[] strokeLetters = { "\u00D8O", "\u00F8o", "\u0110D", "\u0111d", "\u0141L", "\u0142l", "\u0131i",
+				"\u0126H", "\u0127h", "\u0166T", "\u0167t", "\u0180b", "\u01B6z", "\u01B5Z" };
+		for (String strokeLetter : strokeLetters) {
+			foldingTable[strokeLetter.charAt(0) - FIRST_FOLDED] = strokeLetter.charAt(1);
+		}
+		return foldingTable;
+	}
+}
@@ -0,0 +1,184 @@
+package com.yelp.search.analysis;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Chain of CYlpTokenFilter that normalizes a word before it is compared with the keywords, the same analyzer
+ * has to be used for the words of the query and the words of the document so "Pizzas", "pizza" and "PIZZA"
+ * are the same term. getStandard() lower cases, removes accents and removes plural endings.
+ *
+ * Words of a document repeat a lot so analyzed words are kept in a bounded cache, a word found in the cache
+ * is not filtered again. The cache is a fixed array of slots indexed by the hash of the word, a word replaces
+ * the word that was in its slot, so it never grows and needs no lock. Each thread analyzes in to its own
+ * CYlpTermBuffer, analyzing a word that is in the cache does not create any object.
+ *
+ * Instances are immutable apart from the cache and can be shared between threads.
+ *
+ */
+public final class CYlpAnalyzer {
+
+	// number of slots of the cache when none is given
+	public static final int DEFAULT_CACHE_SIZE = 4096;
+
+	// longer words are analyzed every time, they are rare and would push out common words
+	public static final int MAX_CACHED_TERM_LENGTH = 32;
+
+	private static final CYlpAnalyzer STANDARD = createStandard();
+
+	private final CYlpTokenFilter[] tokenFilters;
+
+	// analyzed words, slot is hash & cacheMask
+	private final AtomicReferenceArray<CYlpCacheEntry> termCache;
+	private final int cacheMask;
+
+	private final ThreadLocal<CYlpTermBuffer> termBuffers = new ThreadLocal<CYlpTermBuffer>() {
+		@Override
+		protected CYlpTermBuffer initialValue() {
+			return new CYlpTermBuffer(MAX_CACHED_TERM_LENGTH);
+		}
+	};
+
+	/**
+	 * Creates an analyzer that applies the filters in the order they are passed
+	 * @param tokenFilters
+	 * @param cacheSize: number of words kept analyzed, rounded up to a power of two, 0 for no cache
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpAnalyzer(CYlpTokenFilter[] tokenFilters, int cacheSize) throws CYlpNullArgumentException {
+
+		if (tokenFilters == null || Arrays.asList(tokenFilters).contains(null)) {
+			throw new CYlpNullArgumentException(
+					"Either token filters or one of the filters is null ");
+		}
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("cache size must not be negative, was " + cacheSize);
+		}
+
+		this.tokenFilters = tokenFilters.clone();
+		int slots = cacheSize == 0 ? 0 : Integer.highestOneBit(Math.max(1, cacheSize - 1)) << 1;
+		termCache = new AtomicReferenceArray<CYlpCacheEntry>(slots);
+		cacheMask = slots - 1;
+	}
+
+	private static CYlpAnalyzer createStandard() {
+
+		try {
+			return new CYlpAnalyzer(new CYlpTokenFilter[] { new CYlpLowerCaseFilter(), new CYlpAccentFoldingFilter(),
+					new CYlpLightStemFilter() }, DEFAULT_CACHE_SIZE);
+		} catch (CYlpNullArgumentException nullArgEx) {
+			//the standard filters are never null
+			throw new IllegalStateException(nullArgEx);
+		}
+	}
+
+	/**
+	 * @return shared analyzer that lower cases, removes accents and removes plural endings
+	 */
+	public static CYlpAnalyzer getStandard() {
+		return STANDARD;
+	}
+
+	/**
+	 * Analyzes text[start, end), the result is in the buffer of the calling thread and is overwritten by the
+	 * next call of the same thread
+	 * @param text
+	 * @param start
+	 * @param end
+	 * @return analyzed word, may be empty
+	 */
+	public CYlpTermBuffer analyze(CharSequence text, int start, int end) {
+
+		CYlpTermBuffer termBuffer = termBuffers.get();
+		int length = end - start;
+		if (length > MAX_CACHED_TERM_LENGTH || cacheMask < 0) {
+			termBuffer.setTerm(text, start, end);
+			filter(termBuffer);
+			return termBuffer;
+		}
+
+		int hash = hash(text, start, end);
+		int slot = hash & cacheMask;
+		CYlpCacheEntry cacheEntry = termCache.get(slot);
+		if (cacheEntry != null && cacheEntry.hash == hash && cacheEntry.isTerm(text, start, end)) {
+			termBuffer.setTerm(cacheEntry.analyzedTerm);
+			return termBuffer;
+		}
+
+		// not in the cache, keep the word before filtering it in place
+		char[] term = new char[length];
+		for (int i = 0; i < length; i++) {
+			term[i] = text.charAt(start + i);
+		}
+		termBuffer.setTerm(term);
+		filter(termBuffer);
+		termCache.set(slot, new CYlpCacheEntry(term, hash,
+				Arrays.copyOf(termBuffer.getTermChars(), termBuffer.length())));
+		return termBuffer;
+	}
+
+	/**
+	 * @param word
+	 * @throws CYlpNullArgumentException
+	 * @return analyzed word as a String, may be empty
+	 */
+	public String analyze(CharSequence word) throws CYlpNullArgumentException {
+
+		if (word == null) {
+			throw new CYlpNullArgumentException(
+					"word to analyze is null ");
+		}
+
+		return analyze(word, 0, word.length()).toString();
+	}
+
+	private void filter(CYlpTermBuffer termBuffer) {
+
+		int length = termBuffer.length();
+		for (CYlpTokenFilter tokenFilter : tokenFilters) {
+			length = tokenFilter.filter(termBuffer.getTermChars(), length);
+		}
+		termBuffer.setLength(length);
+	}
+
+	private static int hash(CharSequence text, int start, int end) {
+
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		// spread the high bits to the slot bits
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Word of the cache and its analyzed form, immutable so it can be published through the array
+	 */
+	private static final class CYlpCacheEntry {
+
+		final char[] term;
+		final int hash;
+		final char[] analyzedTerm;
+
+		CYlpCacheEntry(char[] term, int hash, char[] analyzedTerm) {
+			this.term = term;
+			this.hash = hash;
+			this.analyzedTerm = analyzedTerm;
+		}
+
+		boolean isTerm(CharSequence text, int start, int end) {
+
+			if (term.length != end - start) {
+				return false;
+			}
+			for (int i = 0; i < term.length; i++) {
+				if (term[i] != text.charAt(start + i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
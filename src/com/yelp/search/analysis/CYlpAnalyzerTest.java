@@ -0,0 +1,118 @@
+package com.yelp.search.analysis;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * unit test class that tests CYlpAnalyzer and the filters of the standard analyzer
+ *
+ */
+public class CYlpAnalyzerTest {
+
+	private static final String[][] ANALYZED_WORDS = { { "Pizzas", "pizza" }, { "DISHES", "dish" },
+			{ "glass", "glass" }, { "glasses", "glass" }, { "berries", "berry" }, { "pies", "pie" },
+			{ "boxes", "box" }, { "cases", "case" }, { "menus", "menus" }, { "star's", "star's" },
+			{ "Caf\u00E9", "cafe" }, { "JALAPE\u00D1OS", "jalapeno" }, { "sm\u00F8rrebr\u00F8d", "smorrebrod" },
+			{ "is", "is" }, { "", "" } };
+
+	@Test
+	public void testStandardAnalyzer() throws CYlpNullArgumentException {
+
+		CYlpAnalyzer analyzer = CYlpAnalyzer.getStandard();
+		for (String[] analyzedWord : ANALYZED_WORDS) {
+			assertEquals("Expecting analyzed word of " + analyzedWord[0], analyzedWord[1],
+					analyzer.analyze(analyzedWord[0]));
+			assertEquals("Expecting analyzing twice to give the same word", analyzedWord[1],
+					analyzer.analyze(analyzedWord[1]));
+		}
+
+		try {
+			analyzer.analyze(null);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
+	/**
+	 * Tests analyzing words of a document in to the buffer of the thread, cached and not cached words
+	 * should give the same result
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testAnalyzeInToBuffer() throws CYlpNullArgumentException {
+
+		CYlpAnalyzer analyzer = CYlpAnalyzer.getStandard();
+		String review = "Their Pizzas were great";
+
+		CYlpTermBuffer termBuffer = analyzer.analyze(review, 6, 12);
+		assertTrue("Expecting analyzed word in the buffer", termBuffer.contentEquals("pizza"));
+		assertSame("Expecting the buffer of the thread to be reused", termBuffer, analyzer.analyze(review, 6, 12));
+		assertEquals("Expecting same word from the cache", "pizza", termBuffer.toString());
+
+		CYlpAnalyzer uncachedAnalyzer = new CYlpAnalyzer(new CYlpTokenFilter[] { new CYlpLowerCaseFilter() }, 0);
+		assertEquals("Expecting lower cased word without cache", "pizzas", uncachedAnalyzer.analyze("Pizzas"));
+
+		StringBuilder longWord = new StringBuilder();
+		for (int i = 0; i < CYlpAnalyzer.MAX_CACHED_TERM_LENGTH; i++) {
+			longWord.append("AB");
+		}
+		longWord.append("ES");
+		assertEquals("Expecting word longer than the cached words to be analyzed",
+				longWord.toString().toLowerCase().substring(0, longWord.length() - 1), analyzer.analyze(longWord));
+
+		try {
+			new CYlpAnalyzer(new CYlpTokenFilter[] { null }, 16);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
+	/**
+	 * Shares one analyzer with a small cache between threads, words replace each other in the cache and
+	 * every thread should still get the analyzed word
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentAnalyze() throws Exception {
+
+		final CYlpAnalyzer analyzer = new CYlpAnalyzer(new CYlpTokenFilter[] { new CYlpLowerCaseFilter(),
+				new CYlpAccentFoldingFilter(), new CYlpLightStemFilter() }, 4);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> threadResults = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < 4; t++) {
+				threadResults.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() throws Exception {
+						for (int round = 0; round < 2000; round++) {
+							String[] analyzedWord = ANALYZED_WORDS[round % ANALYZED_WORDS.length];
+							CYlpTermBuffer termBuffer = analyzer.analyze(analyzedWord[0], 0, analyzedWord[0].length());
+							if (!termBuffer.contentEquals(analyzedWord[1])) {
+								return false;
+							}
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> threadResult : threadResults) {
+				assertTrue("Expecting analyzed words in every thread", threadResult.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.yelp.search.analysis;
+
+/**
+ * Light English stemmer that only removes plural endings, so "pizzas" and "pizza" or "dishes" and "dish"
+ * become the same term. It expects lower case terms, put it after CYlpLowerCaseFilter:
+ *
+ * 	"ies" becomes "y" (berries, but pies only loses the "s")
+ * 	"es" is removed after ss, x, zz, ch and sh (glasses, boxes, lunches, dishes)
+ * 	"s" is removed unless the word ends with ss, us, is or 's (pizzas, sizes, but not glass or menus)
+ *
+ * Words of three letters or less are kept. A stemmed word is not stemmed again, so stemming a keyword twice
+ * gives the same term.
+ *
+ */
+public final class CYlpLightStemFilter implements CYlpTokenFilter {
+
+	public int filter(char[] termBuffer, int length) {
+
+		if (length <= 3 || termBuffer[length - 1] != 's') {
+			return length;
+		}
+
+		char beforeS = termBuffer[length - 2];
+		if (beforeS == 's' || beforeS == 'u' || beforeS == 'i' || beforeS == '\'') {
+			return length;
+		}
+
+		if (beforeS == 'e') {
+			char beforeEs = termBuffer[length - 3];
+			char beforeIes = termBuffer[length - 4];
+			// "ies" but not "eies" or "aies", short words like "pies" only lose the "s"
+			if (beforeEs == 'i' && length > 4) {
+				if (beforeIes == 'e' || beforeIes == 'a') {
+					return length;
+				}
+				termBuffer[length - 3] = 'y';
+				return length - 2;
+			}
+			if (beforeEs == 'x' || (beforeEs == 's' && beforeIes == 's') || (beforeEs == 'z' && beforeIes == 'z')
+					|| (beforeEs == 'h' && (beforeIes == 'c' || beforeIes == 's'))) {
+				return length - 2;
+			}
+		}
+		return length - 1;
+	}
+}
@@ -0,0 +1,25 @@
+package com.yelp.search.analysis;
+
+/**
+ * Lower cases every character of the term, characters are folded like CYlpKeywordAutomaton.foldCase() so
+ * upper and lower case letters compare equal
+ *
+ */
+public final class CYlpLowerCaseFilter implements CYlpTokenFilter {
+
+	public int filter(char[] termBuffer, int length) {
+
+		for (int i = 0; i < length; i++) {
+			char c = termBuffer[i];
+			//fast path for ascii letters
+			if (c < 128) {
+				if (c >= 'A' && c <= 'Z') {
+					termBuffer[i] = (char) (c | 0x20);
+				}
+			} else {
+				termBuffer[i] = Character.toLowerCase(Character.toUpperCase(c));
+			}
+		}
+		return length;
+	}
+}
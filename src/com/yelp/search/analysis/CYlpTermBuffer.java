@@ -0,0 +1,94 @@
+package com.yelp.search.analysis;
+
+/**
+ * Mutable term reused by CYlpAnalyzer for every word analyzed by a thread, so analyzing a document does not
+ * create a String per word. The content is only valid until the next analyze() call of the same thread, use
+ * toString() to keep it.
+ *
+ */
+public final class CYlpTermBuffer implements CharSequence {
+
+	private char[] termChars;
+	private int termLength;
+
+	CYlpTermBuffer(int initialCapacity) {
+		termChars = new char[initialCapacity];
+	}
+
+	/**
+	 * Copies text[start, end) in to the buffer, the buffer grows when the term does not fit
+	 */
+	void setTerm(CharSequence text, int start, int end) {
+
+		int length = end - start;
+		if (length > termChars.length) {
+			termChars = new char[Math.max(length, termChars.length * 2)];
+		}
+		for (int i = 0; i < length; i++) {
+			termChars[i] = text.charAt(start + i);
+		}
+		termLength = length;
+	}
+
+	void setTerm(char[] chars) {
+
+		if (chars.length > termChars.length) {
+			termChars = new char[Math.max(chars.length, termChars.length * 2)];
+		}
+		System.arraycopy(chars, 0, termChars, 0, chars.length);
+		termLength = chars.length;
+	}
+
+	/**
+	 * @return characters of the term, only the first length() are valid
+	 */
+	public char[] getTermChars() {
+		return termChars;
+	}
+
+	void setLength(int length) {
+		termLength = length;
+	}
+
+	public int length() {
+		return termLength;
+	}
+
+	public char charAt(int index) {
+
+		if (index < 0 || index >= termLength) {
+			throw new IndexOutOfBoundsException("index " + index + " length " + termLength);
+		}
+		return termChars[index];
+	}
+
+	public CharSequence subSequence(int start, int end) {
+
+		if (start < 0 || end > termLength || start > end) {
+			throw new IndexOutOfBoundsException("start " + start + " end " + end + " length " + termLength);
+		}
+		return new String(termChars, start, end - start);
+	}
+
+	/**
+	 * @param term
+	 * @return true when the buffer holds the same characters as term
+	 */
+	public boolean contentEquals(CharSequence term) {
+
+		if (term == null || term.length() != termLength) {
+			return false;
+		}
+		for (int i = 0; i < termLength; i++) {
+			if (termChars[i] != term.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return new String(termChars, 0, termLength);
+	}
+}
@@ -0,0 +1,21 @@
+package com.yelp.search.analysis;
+
+/**
+ * One step of a CYlpAnalyzer, it changes the characters of a term in place so that analyzing a word of a
+ * document does not create objects. A filter may only keep or shorten the term.
+ *
+ * Filters are shared by all threads using the analyzer, so they should not keep state between calls.
+ * Keywords are analyzed when the query is compiled and again when they are looked up, so filtering a term
+ * that was already filtered should not change it.
+ *
+ */
+public interface CYlpTokenFilter {
+
+	/**
+	 * Filters the term held in the first length characters of termBuffer
+	 * @param termBuffer
+	 * @param length: length of the term
+	 * @return length of the filtered term, at most length
+	 */
+	int filter(char[] termBuffer, int length);
+}
@@ -0,0 +1,62 @@
+package com.yelp.search.corpus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CharSequence view of single byte characters (ASCII) in a ByteBuffer, each byte is one char. Nothing is
+ * copied, so a record of a memory-mapped file can be highlighted without creating a String; only
+ * toString() copies the characters.
+ *
+ */
+public final class CYlpByteCharSequence implements CharSequence {
+
+	private final ByteBuffer bytes;
+	private final int offset;
+	private final int length;
+
+	/**
+	 * @param bytes: buffer with the characters, read with absolute gets so its position is not used
+	 * @param offset: index of the first character in the buffer
+	 * @param length: number of characters
+	 */
+	public CYlpByteCharSequence(ByteBuffer bytes, int offset, int length) {
+
+		if (offset < 0 || length < 0 || offset + length > bytes.limit()) {
+			throw new IndexOutOfBoundsException("view " + offset + " + " + length
+					+ " is outside the buffer of limit " + bytes.limit());
+		}
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int index) {
+
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index " + index + " length " + length);
+		}
+		return (char) (bytes.get(offset + index) & 0xFF);
+	}
+
+	public CharSequence subSequence(int start, int end) {
+
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("sub sequence " + start + " to " + end + " length " + length);
+		}
+		return new CYlpByteCharSequence(bytes, offset + start, end - start);
+	}
+
+	public String toString() {
+
+		byte[] characters = new byte[length];
+		for (int i = 0; i < length; i++) {
+			characters[i] = bytes.get(offset + i);
+		}
+		return new String(characters, StandardCharsets.ISO_8859_1);
+	}
+}
@@ -0,0 +1,214 @@
+package com.yelp.search.corpus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Reads a corpus file with one UTF-8 review per line through FileChannel.map, so the reviews are not
+ * loaded in to the heap. The file is mapped in windows of mappingSize bytes (a mapping is limited to 2GB),
+ * a window is moved when the next record does not fit in it.
+ *
+ * getRecord() returns a CharSequence view of the current record in the mapped file, it can be passed
+ * directly to CYlpHighlightEngine.getHighlightDoc(CharSequence, CYlpCompiledQuery):
+ *
+ * 	CYlpMappedCorpusReader corpusReader = new CYlpMappedCorpusReader(corpusFile);
+ * 	while (corpusReader.next()) {
+ * 		String snippet = highlightEngine.getHighlightDoc(corpusReader.getRecord(), compiledQuery);
+ * 	}
+ *
+ * Records with only ASCII characters are returned without copying; a record with other characters is
+ * decoded in to a String since its bytes are not one char each. Record numbers start at 0 and count every
+ * line, same as the document ids given by CYlpIndexer for the same file.
+ *
+ * Views are valid until the reader is closed. The reader is not thread safe.
+ *
+ */
+public class CYlpMappedCorpusReader implements Closeable {
+
+	//default size of a mapped window of the file
+	public static final int DEFAULT_MAPPING_SIZE = 256 * 1024 * 1024;
+
+	private final FileChannel corpusChannel;
+	private final long corpusSize;
+	private final int mappingSize;
+
+	//mapped window of the file and its start in the file
+	private MappedByteBuffer mapping;
+	private long mappingStart;
+
+	//current record
+	private long recordNumber = -1;
+	private long recordOffset;
+	private int recordStart;
+	private int recordLength;
+	private boolean asciiRecord;
+	private CharSequence record;
+
+	//start of the next record in the file
+	private long nextRecordOffset;
+
+	public CYlpMappedCorpusReader(Path corpusFile) throws IOException, CYlpNullArgumentException {
+		this(corpusFile, DEFAULT_MAPPING_SIZE);
+	}
+
+	/**
+	 * @param corpusFile
+	 * @param mappingSize: bytes mapped at a time, a record can not be longer than this
+	 * @throws IOException
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpMappedCorpusReader(Path corpusFile, int mappingSize) throws IOException, CYlpNullArgumentException {
+
+		if (corpusFile == null) {
+			throw new CYlpNullArgumentException(
+					"corpus file is null ");
+		}
+		if (mappingSize <= 0) {
+			throw new IllegalArgumentException("mapping size should be greater than 0 ");
+		}
+
+		this.mappingSize = mappingSize;
+		corpusChannel = FileChannel.open(corpusFile, StandardOpenOption.READ);
+		corpusSize = corpusChannel.size();
+	}
+
+	/**
+	 * Moves to the next record
+	 * @throws IOException
+	 * @return false when there are no more records
+	 */
+	public boolean next() throws IOException {
+
+		if (nextRecordOffset >= corpusSize) {
+			record = null;
+			return false;
+		}
+
+		if (mapping == null || nextRecordOffset >= mappingStart + mapping.limit()) {
+			map(nextRecordOffset);
+		}
+
+		//find end of the record, remap once from the record start when it goes past the window
+		int recordEnd = findRecordEnd((int) (nextRecordOffset - mappingStart));
+		if (recordEnd < 0) {
+			map(nextRecordOffset);
+			recordEnd = findRecordEnd(0);
+			if (recordEnd < 0) {
+				throw new IOException("record at " + nextRecordOffset + " is longer than the mapping size "
+						+ mappingSize);
+			}
+		}
+
+		recordNumber++;
+		recordOffset = nextRecordOffset;
+		recordStart = (int) (recordOffset - mappingStart);
+		nextRecordOffset = mappingStart + recordEnd + 1;
+
+		//line ends with \n or \r\n, last line may have no line end
+		recordLength = Math.min(recordEnd, mapping.limit()) - recordStart;
+		if (recordLength > 0 && mapping.get(recordStart + recordLength - 1) == '\r') {
+			recordLength--;
+		}
+
+		if (asciiRecord) {
+			record = new CYlpByteCharSequence(mapping, recordStart, recordLength);
+		} else {
+			record = StandardCharsets.UTF_8.decode(getRecordBytes()).toString();
+		}
+		return true;
+	}
+
+	/**
+	 * @return text of the current record, a view of the mapped file for ASCII records
+	 */
+	public CharSequence getRecord() {
+		checkRecord();
+		return record;
+	}
+
+	/**
+	 * @return UTF-8 bytes of the current record, a read only view of the mapped file
+	 */
+	public ByteBuffer getRecordBytes() {
+
+		checkRecord();
+		ByteBuffer recordBytes = mapping.asReadOnlyBuffer();
+		recordBytes.limit(recordStart + recordLength);
+		recordBytes.position(recordStart);
+		return recordBytes.slice();
+	}
+
+	/**
+	 * @return true when the current record has only ASCII characters and is not copied
+	 */
+	public boolean isAsciiRecord() {
+		checkRecord();
+		return asciiRecord;
+	}
+
+	/**
+	 * @return number of the current record, starting at 0
+	 */
+	public long getRecordNumber() {
+		checkRecord();
+		return recordNumber;
+	}
+
+	/**
+	 * @return offset of the current record in the file
+	 */
+	public long getRecordOffset() {
+		checkRecord();
+		return recordOffset;
+	}
+
+	public void close() throws IOException {
+		mapping = null;
+		record = null;
+		corpusChannel.close();
+	}
+
+	private void map(long start) throws IOException {
+
+		long size = Math.min(mappingSize, corpusSize - start);
+		mapping = corpusChannel.map(FileChannel.MapMode.READ_ONLY, start, size);
+		mappingStart = start;
+	}
+
+	/**
+	 * Scans from start for the line end and records if the line is ASCII. Returns the index of the line end
+	 * in the mapping (the limit when the file ends without one) or -1 when the line goes past the mapping
+	 */
+	private int findRecordEnd(int start) {
+
+		boolean ascii = true;
+		int limit = mapping.limit();
+		for (int i = start; i < limit; i++) {
+			byte b = mapping.get(i);
+			if (b == '\n') {
+				asciiRecord = ascii;
+				return i;
+			}
+			ascii &= b >= 0;
+		}
+		if (mappingStart + limit == corpusSize) {
+			asciiRecord = ascii;
+			return limit;
+		}
+		return -1;
+	}
+
+	private void checkRecord() {
+		if (record == null) {
+			throw new IllegalStateException("no current record, call next() first");
+		}
+	}
+}
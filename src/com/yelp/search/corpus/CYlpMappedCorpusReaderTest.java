@@ -0,0 +1,101 @@
+package com.yelp.search.corpus;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.highlight.CYlpHighlightEngine;
+import com.yelp.search.query.CYlpCompiledQuery;
+
+/**
+ * unit test class that tests CYlpMappedCorpusReader, records read from the mapped file should highlight
+ * same as the reviews as Strings
+ *
+ */
+public class CYlpMappedCorpusReaderTest {
+
+	private static final String[] REVIEWS = { "Little star's deep dish pizza sure is fantastic",
+			"We tried the deep dish pepperoni pizza and once again it was amazingly good! The dish was hot.",
+			"Caf\u00e9 with deep dish pizza, na\u00efve but good",
+			"",
+			"that is, a sentence-break iterator returns breaks",
+			"The pizza was cold but the dish was good, deep down I still love their deep dish pizza" };
+
+	Path corpusFile;
+
+	@Before
+	public void setUp() throws IOException {
+
+		//windows line ends for one record and no line end after the last one
+		StringBuilder corpus = new StringBuilder();
+		for (int i = 0; i < REVIEWS.length; i++) {
+			corpus.append(REVIEWS[i]);
+			if (i == 1) {
+				corpus.append("\r\n");
+			} else if (i < REVIEWS.length - 1) {
+				corpus.append('\n');
+			}
+		}
+		corpusFile = Files.createTempFile("corpus", ".txt");
+		Files.write(corpusFile, corpus.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testReadRecords() throws IOException, CYlpNullArgumentException {
+
+		CYlpHighlightEngine testEngine = CYlpHighlightEngine.builder().snippetLength(60).build();
+		CYlpCompiledQuery compiledQuery = new CYlpCompiledQuery("deep dish pizza");
+
+		//a small mapping size moves the mapped window several times
+		for (int mappingSize : new int[] { CYlpMappedCorpusReader.DEFAULT_MAPPING_SIZE, 100 }) {
+			CYlpMappedCorpusReader corpusReader = new CYlpMappedCorpusReader(corpusFile, mappingSize);
+			try {
+				int recordCount = 0;
+				while (corpusReader.next()) {
+					String review = REVIEWS[recordCount];
+					assertEquals("Expecting records in file order", recordCount, corpusReader.getRecordNumber());
+					assertEquals("Expecting record text", review, corpusReader.getRecord().toString());
+					assertEquals("Expecting record bytes", review.getBytes(StandardCharsets.UTF_8).length,
+							corpusReader.getRecordBytes().remaining());
+					assertEquals("Expecting only ASCII records to be views", review.equals(
+							new String(review.getBytes(StandardCharsets.US_ASCII), StandardCharsets.US_ASCII)),
+							corpusReader.isAsciiRecord());
+					if (!review.isEmpty()) {
+						assertEquals("Expecting same snippet as the review string",
+								testEngine.getHighlightDoc(review, compiledQuery),
+								testEngine.getHighlightDoc(corpusReader.getRecord(), compiledQuery));
+					}
+					recordCount++;
+				}
+				assertEquals("Expecting every review to be read", REVIEWS.length, recordCount);
+			} finally {
+				corpusReader.close();
+			}
+		}
+
+		//record longer than the mapping size
+		CYlpMappedCorpusReader corpusReader = new CYlpMappedCorpusReader(corpusFile, 10);
+		try {
+			corpusReader.next();
+			fail("Should not get here, expecting it to throw exception");
+		} catch (IOException ioEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		} finally {
+			corpusReader.close();
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(corpusFile);
+	}
+}
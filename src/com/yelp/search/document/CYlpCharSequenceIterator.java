@@ -0,0 +1,73 @@
+package com.yelp.search.document;
+
+import java.text.CharacterIterator;
+
+/**
+ * CharacterIterator over a CharSequence, lets a BreakIterator walk text that is not a String (for example
+ * a view of a memory-mapped file) without copying it
+ *
+ */
+class CYlpCharSequenceIterator implements CharacterIterator {
+
+	private final CharSequence text;
+	private int index;
+
+	CYlpCharSequenceIterator(CharSequence text) {
+		this.text = text;
+	}
+
+	public char first() {
+		index = 0;
+		return current();
+	}
+
+	public char last() {
+		index = Math.max(0, text.length() - 1);
+		return current();
+	}
+
+	public char current() {
+		return index < text.length() ? text.charAt(index) : DONE;
+	}
+
+	public char next() {
+		if (index < text.length()) {
+			index++;
+		}
+		return current();
+	}
+
+	public char previous() {
+		if (index == 0) {
+			return DONE;
+		}
+		index--;
+		return current();
+	}
+
+	public char setIndex(int position) {
+		if (position < 0 || position > text.length()) {
+			throw new IllegalArgumentException("Invalid index " + position);
+		}
+		index = position;
+		return current();
+	}
+
+	public int getBeginIndex() {
+		return 0;
+	}
+
+	public int getEndIndex() {
+		return text.length();
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public Object clone() {
+		CYlpCharSequenceIterator copy = new CYlpCharSequenceIterator(text);
+		copy.index = index;
+		return copy;
+	}
+}
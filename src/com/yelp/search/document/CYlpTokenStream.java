@@ -0,0 +1,145 @@
+package com.yelp.search.document;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.match.CYlpTermDictionary;
+
+/**
+ * Words of a tokenized document turned in to term IDs of a query's CYlpTermDictionary, computed once so the
+ * highlight stages compare ints instead of matching every word with a regex. Term ID of word i is
+ * getTermId(i): the dictionary ID when the word is a keyword, BLANK when the word is only blanks and
+ * NO_TERM otherwise. Instances are immutable and can be shared between threads.
+ *
+ */
+public final class CYlpTokenStream {
+
+	//word is not a keyword
+	public static final int NO_TERM = CYlpTermDictionary.NO_TERM;
+
+	//word is made of blanks (characters matched by \s)
+	public static final int BLANK = -2;
+
+	private final CYlpTokenizedDocument tokenizedDoc;
+	private final CYlpTermDictionary termDictionary;
+	private final int[] termIds;
+
+	/**
+	 * Looks up every word of the document in the dictionary
+	 * @param tokenizedDoc
+	 * @param termDictionary
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpTokenStream(CYlpTokenizedDocument tokenizedDoc, CYlpTermDictionary termDictionary)
+			throws CYlpNullArgumentException {
+
+		if (tokenizedDoc == null || termDictionary == null) {
+			throw new CYlpNullArgumentException(
+					"Either tokenized document or term dictionary is null ");
+		}
+
+		this.tokenizedDoc = tokenizedDoc;
+		this.termDictionary = termDictionary;
+
+		CharSequence text = tokenizedDoc.getText();
+		termIds = new int[tokenizedDoc.getWordCount()];
+		for (int i = 0; i < termIds.length; i++) {
+			termIds[i] = getTermId(termDictionary, text, tokenizedDoc.getWordStart(i), tokenizedDoc.getWordEnd(i));
+		}
+	}
+
+	/**
+	 * Creates the token stream from term IDs that were computed before, for example from an index
+	 * @param tokenizedDoc
+	 * @param termDictionary
+	 * @param wordTermIds: term ID of each word of the document
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpTokenStream(CYlpTokenizedDocument tokenizedDoc, CYlpTermDictionary termDictionary,
+			int[] wordTermIds) throws CYlpNullArgumentException {
+
+		if (tokenizedDoc == null || termDictionary == null || wordTermIds == null) {
+			throw new CYlpNullArgumentException(
+					"Either tokenized document or term dictionary or term IDs is null ");
+		}
+		if (wordTermIds.length != tokenizedDoc.getWordCount()) {
+			throw new IllegalArgumentException("expecting one term ID per word of the document");
+		}
+
+		this.tokenizedDoc = tokenizedDoc;
+		this.termDictionary = termDictionary;
+		termIds = wordTermIds.clone();
+	}
+
+	public CYlpTokenizedDocument getTokenizedDocument() {
+		return tokenizedDoc;
+	}
+
+	public CYlpTermDictionary getTermDictionary() {
+		return termDictionary;
+	}
+
+	public int size() {
+		return termIds.length;
+	}
+
+	public int getTermId(int wordIndex) {
+		return termIds[wordIndex];
+	}
+
+	/**
+	 * Returns term IDs of the words of the section from startIndex to endIndex, in the order of the
+	 * boundaries returned by CYlpTokenizedDocument.getBoundaries(startIndex, endIndex). Words cut by the
+	 * section bounds are looked up again
+	 * @param startIndex
+	 * @param endIndex
+	 * @return term IDs of the words of the section
+	 */
+	public int[] getTermIds(int startIndex, int endIndex) {
+
+		int[] sectionBoundaries = tokenizedDoc.getBoundaries(startIndex, endIndex);
+		int[] sectionTermIds = new int[sectionBoundaries.length - 1];
+		CharSequence text = tokenizedDoc.getText();
+		for (int i = 0; i < sectionTermIds.length; i++) {
+			int wordStart = startIndex + sectionBoundaries[i];
+			int wordEnd = startIndex + sectionBoundaries[i + 1];
+			int wordIndex = tokenizedDoc.getWordIndex(wordStart);
+			if (tokenizedDoc.getWordStart(wordIndex) == wordStart && tokenizedDoc.getWordEnd(wordIndex) == wordEnd) {
+				sectionTermIds[i] = termIds[wordIndex];
+			} else {
+				sectionTermIds[i] = getTermId(termDictionary, text, wordStart, wordEnd);
+			}
+		}
+		return sectionTermIds;
+	}
+
+	/**
+	 * Returns term ID of the word between startIndex and endIndex of text, BLANK when it is only blanks
+	 * @param termDictionary
+	 * @param text
+	 * @param startIndex
+	 * @param endIndex
+	 * @return term ID, BLANK or NO_TERM
+	 */
+	public static int getTermId(CYlpTermDictionary termDictionary, CharSequence text, int startIndex,
+			int endIndex) {
+
+		return isBlank(text, startIndex, endIndex) ? BLANK
+				: termDictionary.getTermId(text, startIndex, endIndex);
+	}
+
+	/**
+	 * @return true when the section is not empty and all its characters are matched by \s
+	 */
+	public static boolean isBlank(CharSequence text, int startIndex, int endIndex) {
+
+		if (startIndex >= endIndex) {
+			return false;
+		}
+		for (int i = startIndex; i < endIndex; i++) {
+			char c = text.charAt(i);
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\u000B' && c != '\f' && c != '\r') {
+				return false;
+			}
+		}
+		return true;
+	}
+}
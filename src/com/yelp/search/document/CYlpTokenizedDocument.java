@@ -0,0 +1,211 @@
+package com.yelp.search.document;
+
+import java.text.BreakIterator;
+import java.util.Arrays;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Document with its word boundaries computed once. The text is walked with a word BreakIterator a single
+ * time and the boundaries are kept in a primitive int[], word i spans from getWordStart(i) (inclusive) to
+ * getWordEnd(i) (exclusive). Like BreakIterator, blanks and punctuation between words are "words" too, so
+ * the words cover the whole text.
+ *
+ * preceding() and following() answer the same as BreakIterator.preceding() and BreakIterator.following()
+ * with a binary search, so rounding off a window and padding a snippet no longer create or walk an
+ * iterator. The text can be any CharSequence, for example a view of a memory-mapped file, it is not
+ * copied. Instances are immutable and can be shared between threads.
+ *
+ */
+public final class CYlpTokenizedDocument {
+
+	//returned by preceding() and following() when there is no boundary, same as BreakIterator.DONE
+	public static final int DONE = BreakIterator.DONE;
+
+	//word iterator of each thread, getWordInstance() clones the rules every time it is called
+	private static final ThreadLocal<BreakIterator> WORD_ITERATOR = new ThreadLocal<BreakIterator>() {
+		protected BreakIterator initialValue() {
+			return BreakIterator.getWordInstance();
+		}
+	};
+
+	private final CharSequence text;
+
+	//sorted word boundaries, the first is 0 and the last is the length of the text
+	private final int[] boundaries;
+
+	/**
+	 * Tokenizes the text passed as argument
+	 * @param text
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpTokenizedDocument(CharSequence text) throws CYlpNullArgumentException {
+
+		if (text == null) {
+			throw new CYlpNullArgumentException(
+					"text to tokenize is null ");
+		}
+
+		this.text = text;
+
+		BreakIterator bIterator = WORD_ITERATOR.get();
+		if (text instanceof String) {
+			bIterator.setText((String) text);
+		} else {
+			bIterator.setText(new CYlpCharSequenceIterator(text));
+		}
+
+		//words are 5 characters on average, grow the array when the text has shorter words
+		int[] wordBoundaries = new int[Math.max(8, text.length() / 4)];
+		int boundaryCount = 0;
+		for (int boundary = bIterator.first(); boundary != BreakIterator.DONE; boundary = bIterator.next()) {
+			if (boundaryCount == wordBoundaries.length) {
+				wordBoundaries = Arrays.copyOf(wordBoundaries, boundaryCount * 2);
+			}
+			wordBoundaries[boundaryCount++] = boundary;
+		}
+		boundaries = Arrays.copyOf(wordBoundaries, boundaryCount);
+
+		//do not keep the text reachable from the thread local
+		bIterator.setText("");
+	}
+
+	/**
+	 * Creates the tokenized document from word boundaries that were computed before, for example by an index
+	 * @param text
+	 * @param wordBoundaries: sorted boundaries, the first is 0 and the last is the length of the text
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpTokenizedDocument(CharSequence text, int[] wordBoundaries) throws CYlpNullArgumentException {
+
+		if (text == null || wordBoundaries == null) {
+			throw new CYlpNullArgumentException(
+					"Either text or word boundaries is null ");
+		}
+		if (wordBoundaries.length == 0 || wordBoundaries[0] != 0
+				|| wordBoundaries[wordBoundaries.length - 1] != text.length()) {
+			throw new IllegalArgumentException("word boundaries should start at 0 and end at the text length");
+		}
+		for (int i = 1; i < wordBoundaries.length; i++) {
+			if (wordBoundaries[i] <= wordBoundaries[i - 1]) {
+				throw new IllegalArgumentException("word boundaries should be increasing");
+			}
+		}
+
+		this.text = text;
+		boundaries = wordBoundaries.clone();
+	}
+
+	public CharSequence getText() {
+		return text;
+	}
+
+	public int length() {
+		return text.length();
+	}
+
+	/**
+	 * @return number of words, including blanks and punctuation between words
+	 */
+	public int getWordCount() {
+		return boundaries.length - 1;
+	}
+
+	public int getWordStart(int wordIndex) {
+		return boundaries[wordIndex];
+	}
+
+	public int getWordEnd(int wordIndex) {
+		return boundaries[wordIndex + 1];
+	}
+
+	/**
+	 * Returns index of the word that contains the character at offset
+	 * @param offset
+	 * @return word index, -1 when offset is outside the text
+	 */
+	public int getWordIndex(int offset) {
+
+		if (offset < 0 || offset >= text.length()) {
+			return -1;
+		}
+		int index = Arrays.binarySearch(boundaries, offset);
+		return index >= 0 ? index : -index - 2;
+	}
+
+	/**
+	 * Returns the last boundary before offset, same as BreakIterator.preceding()
+	 * @param offset
+	 * @return boundary before offset or DONE when offset is the first boundary
+	 */
+	public int preceding(int offset) {
+
+		checkOffset(offset);
+		int index = Arrays.binarySearch(boundaries, offset);
+		//index of first boundary >= offset
+		int ceilingIndex = index >= 0 ? index : -index - 1;
+		return ceilingIndex > 0 ? boundaries[ceilingIndex - 1] : DONE;
+	}
+
+	/**
+	 * Returns the first boundary after offset, same as BreakIterator.following()
+	 * @param offset
+	 * @return boundary after offset or DONE when offset is the last boundary
+	 */
+	public int following(int offset) {
+
+		checkOffset(offset);
+		int followingIndex = getFollowingBoundaryIndex(boundaries, offset);
+		return followingIndex < boundaries.length ? boundaries[followingIndex] : DONE;
+	}
+
+	/**
+	 * Returns boundaries of the section from startIndex to endIndex, relative to startIndex. The first is 0
+	 * and the last is endIndex - startIndex, so they can be walked like the boundaries of the sub string
+	 * @param startIndex
+	 * @param endIndex
+	 * @return boundaries of the section
+	 */
+	public int[] getBoundaries(int startIndex, int endIndex) {
+
+		if (startIndex < 0 || endIndex > text.length() || startIndex > endIndex) {
+			throw new IndexOutOfBoundsException("section " + startIndex + " to " + endIndex
+					+ " is outside the text of length " + text.length());
+		}
+
+		int fromIndex = getFollowingBoundaryIndex(boundaries, startIndex);
+		int toIndex = fromIndex;
+		while (toIndex < boundaries.length && boundaries[toIndex] < endIndex) {
+			toIndex++;
+		}
+
+		int[] sectionBoundaries = new int[toIndex - fromIndex + (startIndex == endIndex ? 1 : 2)];
+		sectionBoundaries[0] = 0;
+		for (int i = fromIndex; i < toIndex; i++) {
+			sectionBoundaries[i - fromIndex + 1] = boundaries[i] - startIndex;
+		}
+		sectionBoundaries[sectionBoundaries.length - 1] = endIndex - startIndex;
+		return sectionBoundaries;
+	}
+
+	/**
+	 * Returns index of the first boundary greater than offset in the sorted boundaries, boundaries.length
+	 * when there is none
+	 * @param sortedBoundaries
+	 * @param offset
+	 * @return index of the following boundary
+	 */
+	public static int getFollowingBoundaryIndex(int[] sortedBoundaries, int offset) {
+
+		int index = Arrays.binarySearch(sortedBoundaries, offset);
+		return index >= 0 ? index + 1 : -index - 1;
+	}
+
+	private void checkOffset(int offset) {
+
+		//same check as BreakIterator
+		if (offset < 0 || offset > text.length()) {
+			throw new IllegalArgumentException("offset out of bounds");
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.yelp.search.document;
+
+import static org.junit.Assert.*;
+
+import java.text.BreakIterator;
+
+import org.junit.Test;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * unit test class that tests the methods of CYlpTokenizedDocument
+ *
+ */
+public class CYlpTokenizedDocumentTest {
+
+	/**
+	 * preceding() and following() should give same boundaries as BreakIterator for every offset
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testBoundariesMatchBreakIterator() throws CYlpNullArgumentException {
+
+		String documentToScan = "Little star's deep-dish pizza, sure is fantastic!  It's $3.50 (U.S.)\tcaf\u00e9 au lait.";
+		CYlpTokenizedDocument tokenizedDoc = new CYlpTokenizedDocument(documentToScan);
+
+		BreakIterator bIterator = BreakIterator.getWordInstance();
+		bIterator.setText(documentToScan);
+		for (int offset = 0; offset <= documentToScan.length(); offset++) {
+			assertEquals("Expecting same preceding boundary as BreakIterator at " + offset,
+					bIterator.preceding(offset), tokenizedDoc.preceding(offset));
+			assertEquals("Expecting same following boundary as BreakIterator at " + offset,
+					bIterator.following(offset), tokenizedDoc.following(offset));
+		}
+
+		assertEquals("Expecting first word", "Little",
+				documentToScan.substring(tokenizedDoc.getWordStart(0), tokenizedDoc.getWordEnd(0)));
+		assertEquals("Expecting word that contains offset", 2, tokenizedDoc.getWordIndex(9));
+		assertEquals("Expecting -1 outside the text", -1, tokenizedDoc.getWordIndex(documentToScan.length()));
+	}
+
+	@Test
+	public void testGetBoundaries() throws CYlpNullArgumentException {
+
+		CYlpTokenizedDocument tokenizedDoc = new CYlpTokenizedDocument("deep dish pizza");
+
+		assertArrayEquals("Expecting boundaries relative to the section", new int[] { 0, 4, 5, 9 },
+				tokenizedDoc.getBoundaries(5, 14));
+		assertArrayEquals("Expecting boundaries of whole text", new int[] { 0, 4, 5, 9, 10, 15 },
+				tokenizedDoc.getBoundaries(0, 15));
+		assertArrayEquals("Expecting one boundary for empty section", new int[] { 0 },
+				tokenizedDoc.getBoundaries(4, 4));
+	}
+
+	@Test
+	public void testNullText() {
+
+		try {
+			new CYlpTokenizedDocument(null);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+}
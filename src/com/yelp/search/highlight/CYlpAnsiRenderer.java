@@ -0,0 +1,68 @@
+package com.yelp.search.highlight;
+
+import java.io.IOException;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Renders the snippet for a terminal: every keyword group is put between an ANSI escape sequence that
+ * selects a style (bold yellow by default) and the sequence that resets it. Escape characters of the
+ * document are dropped so a review can not change the style of the terminal.
+ *
+ */
+public final class CYlpAnsiRenderer extends CYlpHighlightRenderer {
+
+	public static final String DEFAULT_START_SEQUENCE = "\u001B[1;33m";
+	public static final String RESET_SEQUENCE = "\u001B[0m";
+
+	private static final char ESCAPE = '\u001B';
+
+	private final String startSequence;
+
+	public CYlpAnsiRenderer() {
+		this.startSequence = DEFAULT_START_SEQUENCE;
+	}
+
+	/**
+	 * @param startSequence: escape sequence appended before every keyword group, for example ESC [7m for
+	 * reverse video
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpAnsiRenderer(String startSequence) throws CYlpNullArgumentException {
+
+		if (startSequence == null) {
+			throw new CYlpNullArgumentException(
+					"startSequence is null ");
+		}
+		this.startSequence = startSequence;
+	}
+
+	public String getStartSequence() {
+		return startSequence;
+	}
+
+	@Override
+	protected void appendText(Appendable out, CharSequence text, int start, int end) throws IOException {
+		appendWithoutEscapes(out, text, start, end);
+	}
+
+	@Override
+	protected void appendHighlight(Appendable out, CharSequence text, int start, int end) throws IOException {
+		out.append(startSequence);
+		appendWithoutEscapes(out, text, start, end);
+		out.append(RESET_SEQUENCE);
+	}
+
+	private static void appendWithoutEscapes(Appendable out, CharSequence text, int start, int end)
+			throws IOException {
+
+		int appendedIndex = start;
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == ESCAPE) {
+				out.append(text, appendedIndex, i);
+				appendedIndex = i + 1;
+			}
+		}
+		out.append(text, appendedIndex, end);
+	}
+}
@@ -1,15 +1,25 @@
 package com.yelp.search.highlight;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
 
+import com.yelp.enums.EylpSelectionEngine;
 import com.yelp.exception.CYlpNullArgumentException;
-import com.yelp.search.keyword.CYlpProximitySearchKeyword;
-import com.yelp.search.util.CYlpSearchUtil;
+import com.yelp.search.index.CYlpDocumentIndex;
+import com.yelp.search.query.CYlpCompiledQuery;
+import com.yelp.search.query.CYlpCompiledQueryCache;
 
 /**
  * This class has methods to select most relevant document snippet (within a larger document) to display
  * and pad the snippet with user specified padding characters
+ * 
+ * The settings of this class are mutable, each call builds a CYlpHighlightEngine from the current settings.
+ * To share one highlighter between request threads build a CYlpHighlightEngine directly
  * @author saireddy
  *
  */
@@ -19,18 +29,27 @@ public class CYlpDocumentHighlight {
 	public String padBefore;
 	public String padAfter;
 	
+	//engine used to select the keyword occurences for proximity search
+	private EylpSelectionEngine selectionEngine = EylpSelectionEngine.LONGEST_COMBINATION;
+	
+	//compiled queries reused across calls to getHighlightDoc(String, String)
+	private CYlpCompiledQueryCache compiledQueryCache = new CYlpCompiledQueryCache();
+	
+	//highlighted snippets reused across calls, null when snippets are not cached
+	private CYlpHighlightResultCache resultCache;
+	
 	
 	public CYlpDocumentHighlight()
 	{
 		//if user did not pass snippet length fix it to 100
-		MAX_SNIPPET_LENGTH = 100;
-		padBefore = "[[HIGHLIGHT]]";
-		padAfter = "[[ENDHIGHLIGHT]]";
+		this(CYlpHighlightEngine.DEFAULT_SNIPPET_LENGTH);
 	}
 	
 	public CYlpDocumentHighlight(int snippetLength)
 	{
 		MAX_SNIPPET_LENGTH = snippetLength;
+		padBefore = CYlpHighlightEngine.DEFAULT_PAD_BEFORE;
+		padAfter = CYlpHighlightEngine.DEFAULT_PAD_AFTER;
 	}
 	
 	
@@ -38,6 +57,57 @@ public class CYlpDocumentHighlight {
 	{
 		return MAX_SNIPPET_LENGTH;
 	}
+	
+	public void setSelectionEngine(EylpSelectionEngine engine)
+	{
+		selectionEngine = engine;
+	}
+	
+	public EylpSelectionEngine getSelectionEngine()
+	{
+		return selectionEngine;
+	}
+	
+	/**
+	 * Sets the cache used to look up compiled queries, the same cache can be shared by many instances
+	 * @param queryCache
+	 */
+	public void setCompiledQueryCache(CYlpCompiledQueryCache queryCache)
+	{
+		compiledQueryCache = queryCache;
+	}
+	
+	public CYlpCompiledQueryCache getCompiledQueryCache()
+	{
+		return compiledQueryCache;
+	}
+	
+	/**
+	 * Sets the cache of highlighted snippets, null to not cache snippets (the default), the same cache can be
+	 * shared by many instances
+	 * @param snippetCache
+	 */
+	public void setResultCache(CYlpHighlightResultCache snippetCache)
+	{
+		resultCache = snippetCache;
+	}
+	
+	public CYlpHighlightResultCache getResultCache()
+	{
+		return resultCache;
+	}
+	
+	/**
+	 * Builds an immutable engine with the current settings of this object
+	 * @throws CYlpNullArgumentException when one of the pads is null
+	 * @return highlight engine
+	 */
+	public CYlpHighlightEngine toHighlightEngine() throws CYlpNullArgumentException
+	{
+		return CYlpHighlightEngine.builder().snippetLength(MAX_SNIPPET_LENGTH).padBefore(padBefore)
+				.padAfter(padAfter).selectionEngine(selectionEngine).compiledQueryCache(compiledQueryCache)
+				.resultCache(resultCache).build();
+	}
 
 	
 /**
@@ -54,27 +124,117 @@ public class CYlpDocumentHighlight {
 					"Operation Not allowed: Either search string or document is null ");
 		}    	
     	
-    	CYlpSearchUtil searchUtil = new CYlpSearchUtil();
-    
-    	//1 call the removeNonQualitativeTermsInSearch() which returns list of keywords
-    	List<String> keywordList = searchUtil.removeNonQualitativeTermsInSearch(query);
-             	
+    	return toHighlightEngine().getHighlightDoc(doc, query);
+    }
+
+/**
+ * Same as getHighlightDoc(String, String) for a document that has an ID, see
+ * CYlpHighlightEngine.getHighlightDoc(String, CharSequence, String)
+ * @param documentId: ID of the document, for example the ID of the review
+ * @param doc: String that is a document to be highlighted
+ * @param query: String that contains the search query
+ * @return: The the most relevant snippet with the query terms highlighted.
+ */
+    public String getHighlightDoc(String documentId, String doc, String query) throws CYlpNullArgumentException{
+    	
+    	return toHighlightEngine().getHighlightDoc(documentId, doc, query);
+    }
+
+/**
+ * Same as getHighlightDoc(String, String) for a query that was already compiled, use it to highlight the
+ * same query in many documents
+ * @param doc: String that is a document to be highlighted
+ * @param compiledQuery: compiled search query
+ * @return: The the most relevant snippet with the query terms highlighted.
+ */
+    public String getHighlightDoc(CharSequence doc, CYlpCompiledQuery compiledQuery) throws CYlpNullArgumentException{
+    	
+    	return toHighlightEngine().getHighlightDoc(doc, compiledQuery);
+    }
+
+/**
+ * Same as getHighlightDoc(String, String) for a document that was indexed, see
+ * CYlpHighlightEngine.getHighlightDoc(String, CYlpDocumentIndex, String)
+ * @param doc: String that is a document to be highlighted
+ * @param documentIndex: index of the document
+ * @param query: String that contains the search query
+ * @return: The the most relevant snippet with the query terms highlighted.
+ */
+    public String getHighlightDoc(CharSequence doc, CYlpDocumentIndex documentIndex, String query) throws CYlpNullArgumentException{
+    	
+    	return toHighlightEngine().getHighlightDoc(doc, documentIndex, query);
+    }
+
+/**
+ * Same as getHighlightDoc(String, String) for a document too large to be held in memory, it is read from the
+ * reader in chunks, see CYlpHighlightEngine.getHighlightDoc(Reader, String)
+ * @param docReader: reader of the document to be highlighted
+ * @param query: String that contains the search query
+ * @return: The the most relevant snippet with the query terms highlighted.
+ */
+    public String getHighlightDoc(Reader docReader, String query) throws IOException, CYlpNullArgumentException{
+
+    	return toHighlightEngine().getHighlightDoc(docReader, query);
+    }
+
+/**
+ * Same as getHighlightDoc(Reader, String) for a document read from a channel
+ * @param docChannel: channel of the document to be highlighted
+ * @param charset: encoding of the document
+ * @param query: String that contains the search query
+ * @return: The the most relevant snippet with the query terms highlighted.
+ */
+    public String getHighlightDoc(ReadableByteChannel docChannel, Charset charset, String query) throws IOException, CYlpNullArgumentException{
+
+    	return toHighlightEngine().getHighlightDoc(docChannel, charset, query);
+    }
+
+/**
+ * Same as getHighlightDoc(String, String) but returns up to maxSnippets snippets that do not overlap, see
+ * CYlpHighlightEngine.getHighlightSnippets(CharSequence, String, int)
+ * @param doc: String that is a document to be highlighted
+ * @param query: String that contains the search query
+ * @param maxSnippets: maximum number of snippets to return
+ * @return: The most relevant snippets with the query terms highlighted, most relevant first.
+ */
+    public List<String> getHighlightSnippets(String doc, String query, int maxSnippets) throws CYlpNullArgumentException{
+
+    	return toHighlightEngine().getHighlightSnippets(doc, query, maxSnippets);
+    }
+
+/**
+ * Highlights one query in many documents using the common fork-join pool, the query is compiled once.
+ * Snippets are returned in the order of the documents
+ * @param docs: documents to be highlighted
+ * @param query: String that contains the search query
+ * @return: list with most relevant snippet of each document
+ */
+    public List<String> getHighlightDocs(List<String> docs, String query) throws CYlpNullArgumentException{
+    	
+    	return toHighlightEngine().getHighlightDocs(docs, query);
+    }
+
+/**
+ * Same as getHighlightDocs(List, String) for a stream of documents
+ * @param docs: documents to be highlighted
+ * @param query: String that contains the search query
+ * @return: list with most relevant snippet of each document
+ */
+    public List<String> getHighlightDocs(Stream<String> docs, String query) throws CYlpNullArgumentException{
+    	
+    	return toHighlightEngine().getHighlightDocs(docs, query);
+    }
+
+/**
+ * Highlights one query in many documents using the executor passed as argument, see
+ * CYlpHighlightEngine.getHighlightDocs(List, String, ExecutorService)
+ * @param docs: documents to be highlighted
+ * @param query: String that contains the search query
+ * @param executor: executor that runs the highlighting
+ * @return: list with most relevant snippet of each document
+ */
+    public List<String> getHighlightDocs(List<String> docs, String query, ExecutorService executor) throws CYlpNullArgumentException{
     	
-    	//2 get combination of keywords; organized with length of keyword as key and list of combinations as values 
-        Map<Integer,List> combinationTable =     searchUtil.getCombinations(keywordList);
-              
-        
-        //3 get hash map with keyword as key and list with start index of first best matched keyword groups in the search string 
-        Map<String,List> KeywordIndexTable =     searchUtil.getFirstMatchingKeyword(doc,combinationTable);
-               
-        
-        //4 From the keywords in the map get the best possible snippet that has maximum keywords occurences in proximity of MAX_SNIPPET_LENGTH 
-        CYlpProximitySearchKeyword bestProximityKeyword = searchUtil.proximitySearch(doc,query, KeywordIndexTable , MAX_SNIPPET_LENGTH);
-        
-     
-        //5 Replace the keyword with [[HIGHLIGHT]]keyword[[ENDHIGHLIGHT]]
-        String mostReleventSnippet = searchUtil.getThePaddedSnippet(bestProximityKeyword.getDocumentSnippet(),query, padBefore,padAfter);
-   
-        return mostReleventSnippet;
+    	return toHighlightEngine().getHighlightDocs(docs, query, executor);
     }
-}
\ No newline at end of file
+}
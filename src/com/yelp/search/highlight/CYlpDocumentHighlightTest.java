@@ -2,11 +2,18 @@ package com.yelp.search.highlight;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.yelp.enums.EylpSelectionEngine;
 import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.query.CYlpCompiledQuery;
 import com.yelp.search.util.CYlpSearchUtil;
 
 /**
@@ -166,6 +173,99 @@ public class CYlpDocumentHighlightTest {
 		
 	}
 
+	/**
+	 * Tests getHighlightDoc() with the KEYWORD_COVERAGE selection engine, a query with twenty keywords
+	 * should not need to generate the keyword combinations
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testGetHighlightDocWithCoverageEngine() throws CYlpNullArgumentException {
+
+		testDocHighlight.setSelectionEngine(EylpSelectionEngine.KEYWORD_COVERAGE);
+
+		String documentToScan = "Little star's deep dish pizza sure is fantastic";
+		String expectedOutputFromFunction = "Little star's [[HIGHLIGHT]]deep dish pizza [[ENDHIGHLIGHT]]sure is fantastic";
+		assertEquals("Expecting keywords to be padded using coverage engine",
+				expectedOutputFromFunction, testDocHighlight.getHighlightDoc(documentToScan, "deep dish pizza"));
+
+		String longQuery = "one two three four five six seven eight nine ten eleven twelve thirteen "
+				+ "fourteen fifteen sixteen seventeen eighteen nineteen pizza";
+		expectedOutputFromFunction = "Little star's deep dish [[HIGHLIGHT]]pizza [[ENDHIGHLIGHT]]sure is fantastic";
+		assertEquals("Expecting long query to be highlighted using coverage engine",
+				expectedOutputFromFunction, testDocHighlight.getHighlightDoc(documentToScan, longQuery));
+	}
+
+	/**
+	 * Tests getHighlightDoc() with a compiled query reused for several documents, output should be same as
+	 * when passing the query string
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testGetHighlightDocWithCompiledQuery() throws CYlpNullArgumentException {
+
+		CYlpCompiledQuery compiledQuery = new CYlpCompiledQuery("deep dish pizza");
+		String[] documentsToScan = { "Little star's deep dish pizza sure is fantastic",
+				"We tried the deep dish pepperoni pizza and once again it was amazingly good!",
+				"that is, a sentence-break iterator returns breaks" };
+
+		for (String documentToScan : documentsToScan) {
+			assertEquals("Expecting same snippet with compiled query",
+					testDocHighlight.getHighlightDoc(documentToScan, "deep dish pizza"),
+					testDocHighlight.getHighlightDoc(documentToScan, compiledQuery));
+		}
+
+		// query string is compiled once and then found in the cache
+		assertEquals("Expecting one miss in the query cache", 1,
+				testDocHighlight.getCompiledQueryCache().getMissCount());
+		assertEquals("Expecting hits in the query cache", documentsToScan.length - 1,
+				testDocHighlight.getCompiledQueryCache().getHitCount());
+	}
+
+	/**
+	 * Tests getHighlightDocs() with fork-join pool, with an executor and with a stream of documents, the
+	 * snippets should be in input order and same as highlighting the documents one by one
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testGetHighlightDocs() throws CYlpNullArgumentException {
+
+		String[] reviews = { "Little star's deep dish pizza sure is fantastic",
+				"We tried the deep dish pepperoni pizza and once again it was amazingly good!",
+				"that is, a sentence-break iterator returns breaks",
+				"The pizza was cold but the dish was good",
+				"deep" };
+		List<String> documentsToScan = new ArrayList<String>();
+		List<String> expectedSnippets = new ArrayList<String>();
+		for (int i = 0; i < 50; i++) {
+			String documentToScan = reviews[i % reviews.length] + " review " + i;
+			documentsToScan.add(documentToScan);
+			expectedSnippets.add(testDocHighlight.getHighlightDoc(documentToScan, "deep dish pizza"));
+		}
+
+		assertEquals("Expecting snippets in input order using fork-join pool", expectedSnippets,
+				testDocHighlight.getHighlightDocs(documentsToScan, "deep dish pizza"));
+		assertEquals("Expecting snippets in input order using stream", expectedSnippets,
+				testDocHighlight.getHighlightDocs(documentsToScan.stream(), "deep dish pizza"));
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			assertEquals("Expecting snippets in input order using executor", expectedSnippets,
+					testDocHighlight.getHighlightDocs(documentsToScan, "deep dish pizza", executor));
+		} finally {
+			executor.shutdown();
+		}
+
+		// null document in the batch
+		documentsToScan.set(10, null);
+		try {
+			testDocHighlight.getHighlightDocs(documentsToScan, "deep dish pizza");
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
 	@After
 	public void tearDown() {
 		testDocHighlight = null;
@@ -0,0 +1,66 @@
+package com.yelp.search.highlight;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.query.CYlpCompiledQuery;
+
+/**
+ * Fork-join task that highlights a range of documents with one compiled query. The range is split in two
+ * until it has at most BATCH_THRESHOLD documents, each snippet is written to the index of its document so
+ * the results keep the input order
+ *
+ */
+class CYlpHighlightBatchTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	//number of documents highlighted by one task without splitting further
+	static final int BATCH_THRESHOLD = 4;
+
+	private final CYlpHighlightEngine highlightEngine;
+	private final List<String> documents;
+	private final CYlpCompiledQuery compiledQuery;
+	private final String[] snippets;
+	private final int startIndex;
+	private final int endIndex;
+
+	CYlpHighlightBatchTask(CYlpHighlightEngine highlightEngine, List<String> documents,
+			CYlpCompiledQuery compiledQuery, String[] snippets, int startIndex, int endIndex) {
+		this.highlightEngine = highlightEngine;
+		this.documents = documents;
+		this.compiledQuery = compiledQuery;
+		this.snippets = snippets;
+		this.startIndex = startIndex;
+		this.endIndex = endIndex;
+	}
+
+	@Override
+	protected void compute() {
+
+		if (endIndex - startIndex <= BATCH_THRESHOLD) {
+			highlightRange(highlightEngine, documents, compiledQuery, snippets, startIndex, endIndex);
+			return;
+		}
+
+		int midIndex = (startIndex + endIndex) >>> 1;
+		invokeAll(new CYlpHighlightBatchTask(highlightEngine, documents, compiledQuery, snippets, startIndex, midIndex),
+				new CYlpHighlightBatchTask(highlightEngine, documents, compiledQuery, snippets, midIndex, endIndex));
+	}
+
+	/**
+	 * Highlights documents from startIndex (inclusive) to endIndex (exclusive) on the calling thread
+	 */
+	static void highlightRange(CYlpHighlightEngine highlightEngine, List<String> documents,
+			CYlpCompiledQuery compiledQuery, String[] snippets, int startIndex, int endIndex) {
+		for (int i = startIndex; i < endIndex; i++) {
+			try {
+				snippets[i] = highlightEngine.getHighlightDoc(documents.get(i), compiledQuery);
+			} catch (CYlpNullArgumentException nullArgEx) {
+				//documents are checked for null before the batch starts
+				throw new IllegalStateException("document " + i + " could not be highlighted", nullArgEx);
+			}
+		}
+	}
+}
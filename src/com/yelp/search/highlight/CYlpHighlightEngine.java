@@ -0,0 +1,1110 @@
+package com.yelp.search.highlight;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.yelp.enums.EylpHighlightStage;
+import com.yelp.enums.EylpSelectionEngine;
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.analysis.CYlpAnalyzer;
+import com.yelp.search.document.CYlpTokenStream;
+import com.yelp.search.document.CYlpTokenizedDocument;
+import com.yelp.search.index.CYlpDocumentIndex;
+import com.yelp.search.keyword.CYlpProximitySearchKeyword;
+import com.yelp.search.match.CYlpKeywordOccurrences;
+import com.yelp.search.query.CYlpCompiledQuery;
+import com.yelp.search.query.CYlpCompiledQueryCache;
+import com.yelp.search.util.CYlpSearchUtil;
+import com.yelp.search.util.CYlpStreamingSearch;
+import com.yelp.search.util.CYlpWorkBudget;
+
+/**
+ * Immutable highlighter that selects the most relevant document snippet and pads the query terms in it.
+ * It is configured once with a Builder:
+ *
+ * 	CYlpHighlightEngine engine = CYlpHighlightEngine.builder().snippetLength(150).build();
+ *
+ * THREAD SAFETY: all fields are final and are never modified after build(), every call works on its own
+ * local state (a new CYlpSearchUtil, keyword occurrences of the document) and the compiled query cache is
+ * synchronized. One instance is meant to be shared by all request threads as a singleton.
+ *
+ * By default keywords are found anywhere in the text ignoring case. An engine built with an analyzer, for
+ * example analyzer(CYlpAnalyzer.getStandard()), matches words that are equal after analysis instead, so the
+ * query "pizzas" highlights "Pizza" and "cafe" highlights "Caf\u00E9".
+ *
+ * A CYlpHighlightListener set with highlightListener() gets the timing of every stage of each document
+ * highlighted in memory (the streaming Reader path is not timed), see EylpHighlightStage. The same timings
+ * are recorded as a CYlpHighlightEvent when a flight recording enables it, for calls slower than its
+ * threshold. Without a listener or a recording the stages are not timed.
+ *
+ * The work of each document highlighted in memory can be bounded with timeBudget(), maxCombinations() and
+ * maxWindowsScored(), or per call with getHighlightDoc(CharSequence, String, CYlpWorkBudget). When the budget
+ * runs out the best snippet found so far is returned, see CYlpWorkBudget. Such degraded snippets are not put
+ * in the result cache.
+ *
+ * An engine built with parallelSearchThreshold() scores the windows of the documents that are at least that
+ * long in segments on a fork-join pool (see CYlpSearchUtil.proximitySearch(CYlpTokenizedDocument,
+ * CYlpKeywordOccurrences, Map, int, ForkJoinPool)), the snippet is the same as with one thread.
+ *
+ * getHighlightResult() returns the snippet as a CYlpHighlightResult, offsets of the snippet in the document and
+ * spans of the keyword groups, for clients that render it in their own format (see CYlpHighlightRenderer)
+ * instead of parsing the pads out of the String. getHighlightDoc() renders the same result with
+ * CYlpMarkerRenderer and the pads of the engine.
+ *
+ */
+public final class CYlpHighlightEngine {
+
+	//defaults used when the builder is not given a value
+	public static final int DEFAULT_SNIPPET_LENGTH = 100;
+	public static final String DEFAULT_PAD_BEFORE = "[[HIGHLIGHT]]";
+	public static final String DEFAULT_PAD_AFTER = "[[ENDHIGHLIGHT]]";
+
+	//parallelSearchThreshold() of an engine that always searches on the calling thread
+	public static final int NO_PARALLEL_SEARCH = Integer.MAX_VALUE;
+
+	private final int maxSnippetLength;
+	private final String padBefore;
+	private final String padAfter;
+
+	//renders the snippets of getHighlightDoc() with padBefore and padAfter
+	private final CYlpMarkerRenderer markerRenderer;
+
+	//engine used to select the keyword occurences for proximity search
+	private final EylpSelectionEngine selectionEngine;
+
+	//compiled queries reused across calls to getHighlightDoc(String, String)
+	private final CYlpCompiledQueryCache compiledQueryCache;
+
+	//listener of the stage timings, CYlpHighlightListener.NO_OP when stages are not timed
+	private final CYlpHighlightListener highlightListener;
+
+	//snippets already highlighted, null when every call highlights the document
+	private final CYlpHighlightResultCache resultCache;
+
+	//limits of the CYlpWorkBudget of each call, CYlpWorkBudget.UNLIMITED(_NANOS) when not set
+	private final long timeBudgetNanos;
+	private final int maxCombinations;
+	private final int maxWindowsScored;
+
+	//documents at least this long are scored in segments on parallelSearchPool, NO_PARALLEL_SEARCH when never
+	private final int parallelSearchThreshold;
+	private final ForkJoinPool parallelSearchPool;
+
+	private CYlpHighlightEngine(Builder builder) throws CYlpNullArgumentException {
+		maxSnippetLength = builder.maxSnippetLength;
+		padBefore = builder.padBefore;
+		padAfter = builder.padAfter;
+		markerRenderer = new CYlpMarkerRenderer(padBefore, padAfter);
+		selectionEngine = builder.selectionEngine;
+		highlightListener = builder.highlightListener;
+		resultCache = builder.resultCache;
+		timeBudgetNanos = builder.timeBudgetNanos;
+		maxCombinations = builder.maxCombinations;
+		maxWindowsScored = builder.maxWindowsScored;
+		parallelSearchThreshold = builder.parallelSearchThreshold;
+		parallelSearchPool = builder.parallelSearchPool;
+		if (builder.compiledQueryCache != null) {
+			compiledQueryCache = builder.compiledQueryCache;
+		} else if (builder.analyzer != null) {
+			compiledQueryCache = new CYlpCompiledQueryCache(CYlpCompiledQueryCache.DEFAULT_MAX_SIZE, builder.analyzer);
+		} else {
+			compiledQueryCache = new CYlpCompiledQueryCache();
+		}
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns a builder with the configuration of this engine, to build a slightly different engine
+	 * @return builder initialized from this engine
+	 */
+	public Builder toBuilder() {
+		return new Builder().snippetLength(maxSnippetLength).padBefore(padBefore).padAfter(padAfter)
+				.selectionEngine(selectionEngine).analyzer(getAnalyzer()).compiledQueryCache(compiledQueryCache)
+				.highlightListener(highlightListener).resultCache(resultCache)
+				.timeBudget(timeBudgetNanos, TimeUnit.NANOSECONDS).maxCombinations(maxCombinations)
+				.maxWindowsScored(maxWindowsScored).parallelSearchThreshold(parallelSearchThreshold)
+				.parallelSearchPool(parallelSearchPool);
+	}
+
+	public int getSnippetLength() {
+		return maxSnippetLength;
+	}
+
+	public String getPadBefore() {
+		return padBefore;
+	}
+
+	public String getPadAfter() {
+		return padAfter;
+	}
+
+	public EylpSelectionEngine getSelectionEngine() {
+		return selectionEngine;
+	}
+
+	public CYlpCompiledQueryCache getCompiledQueryCache() {
+		return compiledQueryCache;
+	}
+
+	/**
+	 * @return analyzer of the queries and documents, null when keywords are matched as they are
+	 */
+	public CYlpAnalyzer getAnalyzer() {
+		return compiledQueryCache.getAnalyzer();
+	}
+
+	public CYlpHighlightListener getHighlightListener() {
+		return highlightListener;
+	}
+
+	/**
+	 * @return cache of highlighted snippets, null when snippets are not cached
+	 */
+	public CYlpHighlightResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * @return nanoseconds each call may take, CYlpWorkBudget.UNLIMITED_NANOS when calls have no deadline
+	 */
+	public long getTimeBudgetNanos() {
+		return timeBudgetNanos;
+	}
+
+	public int getMaxCombinations() {
+		return maxCombinations;
+	}
+
+	public int getMaxWindowsScored() {
+		return maxWindowsScored;
+	}
+
+	public int getParallelSearchThreshold() {
+		return parallelSearchThreshold;
+	}
+
+	public ForkJoinPool getParallelSearchPool() {
+		return parallelSearchPool;
+	}
+
+	/**
+	 * Returns a new budget with the limits of the engine for one call
+	 * @return budget of the call, null when the engine has no limit
+	 */
+	private CYlpWorkBudget newWorkBudget() {
+		if (timeBudgetNanos == CYlpWorkBudget.UNLIMITED_NANOS && maxCombinations == CYlpWorkBudget.UNLIMITED
+				&& maxWindowsScored == CYlpWorkBudget.UNLIMITED) {
+			return null;
+		}
+		return new CYlpWorkBudget(timeBudgetNanos, maxCombinations, maxWindowsScored);
+	}
+
+	/**
+	 * This method takes search query as input, searches the document passed as argument and
+	 * returns most relevant code snippet with words in search query padded with padBefore and padAfter
+	 * @param doc: document to be highlighted, any CharSequence (for example a record of CYlpMappedCorpusReader)
+	 * @param query: String that contains the search query
+	 * @throws CYlpNullArgumentException
+	 * @return The the most relevant snippet with the query terms highlighted.
+	 */
+	public String getHighlightDoc(CharSequence doc, String query) throws CYlpNullArgumentException {
+
+		if (doc == null || query == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either search string or document is null ");
+		}
+
+		CYlpWorkBudget budget = newWorkBudget();
+		if (resultCache != null) {
+			return getCachedHighlightDoc(null, doc, query, budget);
+		}
+		return highlightDoc(doc, query, budget);
+	}
+
+	/**
+	 * Same as getHighlightDoc(CharSequence, String) with the budget passed as argument instead of the limits
+	 * of the engine, for example a budget with the deadline of the request. When the budget runs out the best
+	 * snippet found so far is returned and budget.isDegraded() is true
+	 * @param doc: document to be highlighted
+	 * @param query: String that contains the search query
+	 * @param budget: work budget of the call
+	 * @throws CYlpNullArgumentException
+	 * @return The the most relevant snippet with the query terms highlighted.
+	 */
+	public String getHighlightDoc(CharSequence doc, String query, CYlpWorkBudget budget)
+			throws CYlpNullArgumentException {
+
+		if (doc == null || query == null || budget == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either search string or document or budget is null ");
+		}
+
+		if (resultCache != null) {
+			return getCachedHighlightDoc(null, doc, query, budget);
+		}
+		return highlightDoc(doc, query, budget);
+	}
+
+	/**
+	 * Same as getHighlightDoc(CharSequence, String) for a document that has an ID, for example the ID of the
+	 * review. When the engine has a result cache the snippet is cached under the ID instead of the hash of
+	 * the content, and CYlpHighlightResultCache.invalidate(documentId) removes it when the document is edited
+	 * @param documentId: ID of the document
+	 * @param doc: document to be highlighted
+	 * @param query: String that contains the search query
+	 * @throws CYlpNullArgumentException
+	 * @return The the most relevant snippet with the query terms highlighted.
+	 */
+	public String getHighlightDoc(String documentId, CharSequence doc, String query)
+			throws CYlpNullArgumentException {
+
+		if (documentId == null || doc == null || query == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either search string or document or document id is null ");
+		}
+
+		CYlpWorkBudget budget = newWorkBudget();
+		if (resultCache != null) {
+			return getCachedHighlightDoc(documentId, doc, query, budget);
+		}
+		return highlightDoc(doc, query, budget);
+	}
+
+	/**
+	 * Returns the snippet from the result cache, highlighting the document when it is not in the cache. Two
+	 * threads missing on the same key at the same time both highlight the document (both results are equal).
+	 * A snippet degraded by the budget is not cached, a later call with more time may find a better one. The
+	 * generation of the cache is read before the document is highlighted, so a snippet of a document that was
+	 * invalidated meanwhile (it may be the snippet of the text before the edit) is not cached
+	 */
+	private String getCachedHighlightDoc(String documentId, CharSequence doc, String query, CYlpWorkBudget budget)
+			throws CYlpNullArgumentException {
+
+		CYlpHighlightResultCache.CYlpResultKey resultKey = new CYlpHighlightResultCache.CYlpResultKey(documentId,
+				documentId == null ? CYlpHighlightResultCache.hashContent(doc) : 0L, documentId == null ? doc.length() : 0,
+				CYlpCompiledQuery.normalizeQuery(query), maxSnippetLength, padBefore, padAfter, selectionEngine,
+				getAnalyzer());
+		long generation = resultCache.getGeneration(resultKey);
+		String snippet = resultCache.getSnippet(resultKey);
+		if (snippet == null) {
+			snippet = highlightDoc(doc, query, budget);
+			if (budget == null || !budget.isDegraded()) {
+				resultCache.putSnippet(resultKey, snippet, generation);
+			}
+		}
+		return snippet;
+	}
+
+	/**
+	 * Steps 1 to 5 of getHighlightDoc(CharSequence, String), without the result cache. Budget is null when the
+	 * work is not limited
+	 */
+	private String highlightDoc(CharSequence doc, String query, CYlpWorkBudget budget)
+			throws CYlpNullArgumentException {
+
+		//1 get the compiled query from the cache, compiling it removes the non qualitative terms and builds the
+		//keyword automaton which finds all keyword occurences in one pass (instead of running a regex for every
+		//combination of keywords)
+		CYlpHighlightTrace trace = startTrace();
+		long stageStart = startStage(trace);
+		CYlpCompiledQuery compiledQuery = compiledQueryCache.getCompiledQuery(query);
+		stageStart = endStage(trace, EylpHighlightStage.QUERY_COMPILATION, stageStart);
+
+		StringBuilder highlightedSnippet = newSnippetBuilder();
+		getHighlightResult(doc, compiledQuery, budget, trace, stageStart, highlightedSnippet);
+		return highlightedSnippet.toString();
+	}
+
+	/**
+	 * Same as getHighlightDoc(String, String) for a query that was already compiled, use it to highlight the
+	 * same query in many documents
+	 * @param doc: document to be highlighted
+	 * @param compiledQuery: compiled search query
+	 * @throws CYlpNullArgumentException
+	 * @return The the most relevant snippet with the query terms highlighted.
+	 */
+	public String getHighlightDoc(CharSequence doc, CYlpCompiledQuery compiledQuery) throws CYlpNullArgumentException {
+
+		if (doc == null || compiledQuery == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either compiled query or document is null ");
+		}
+
+		CYlpHighlightTrace trace = startTrace();
+		StringBuilder highlightedSnippet = newSnippetBuilder();
+		getHighlightResult(doc, compiledQuery, newWorkBudget(), trace, startStage(trace), highlightedSnippet);
+		return highlightedSnippet.toString();
+	}
+
+	/**
+	 * Same as getHighlightDoc(CharSequence, String) but returns the snippet as offsets in the document and
+	 * spans of the keyword groups, render it with a CYlpHighlightRenderer. The result cache of the engine is
+	 * not used
+	 * @param doc: document to be highlighted
+	 * @param query: String that contains the search query
+	 * @throws CYlpNullArgumentException
+	 * @return the most relevant snippet and its keyword groups
+	 */
+	public CYlpHighlightResult getHighlightResult(CharSequence doc, String query) throws CYlpNullArgumentException {
+
+		if (doc == null || query == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either search string or document is null ");
+		}
+
+		CYlpHighlightTrace trace = startTrace();
+		long stageStart = startStage(trace);
+		CYlpCompiledQuery compiledQuery = compiledQueryCache.getCompiledQuery(query);
+		stageStart = endStage(trace, EylpHighlightStage.QUERY_COMPILATION, stageStart);
+
+		return getHighlightResult(doc, compiledQuery, newWorkBudget(), trace, stageStart, null);
+	}
+
+	/**
+	 * Same as getHighlightResult(CharSequence, String) for a query that was already compiled
+	 * @param doc: document to be highlighted
+	 * @param compiledQuery: compiled search query
+	 * @throws CYlpNullArgumentException
+	 * @return the most relevant snippet and its keyword groups
+	 */
+	public CYlpHighlightResult getHighlightResult(CharSequence doc, CYlpCompiledQuery compiledQuery)
+			throws CYlpNullArgumentException {
+
+		if (doc == null || compiledQuery == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either compiled query or document is null ");
+		}
+
+		CYlpHighlightTrace trace = startTrace();
+		return getHighlightResult(doc, compiledQuery, newWorkBudget(), trace, startStage(trace), null);
+	}
+
+	/**
+	 * Runs steps 2 to 5 of getHighlightDoc() on a document, trace is null when stages are not timed and budget
+	 * is null when the work is not limited. The snippet is rendered with the pads in to highlightedSnippet
+	 * unless it is null
+	 */
+	private CYlpHighlightResult getHighlightResult(CharSequence doc, CYlpCompiledQuery compiledQuery,
+			CYlpWorkBudget budget, CYlpHighlightTrace trace, long stageStart, StringBuilder highlightedSnippet)
+			throws CYlpNullArgumentException {
+
+		CYlpSearchUtil searchUtil = new CYlpSearchUtil();
+
+		//2 find word boundaries, term IDs of the words and all keyword occurences once, they are used by all
+		//the following steps
+		CYlpTokenizedDocument tokenizedDoc = new CYlpTokenizedDocument(doc);
+		CYlpTokenStream tokenStream = new CYlpTokenStream(tokenizedDoc, compiledQuery.getTermDictionary());
+		CYlpKeywordOccurrences occurrences = compiledQuery.findOccurrences(tokenStream);
+		stageStart = endStage(trace, EylpHighlightStage.KEYWORD_OCCURRENCES, stageStart);
+
+		return getHighlightResult(compiledQuery, searchUtil, occurrences, tokenStream, budget, trace, stageStart,
+				highlightedSnippet);
+	}
+
+	/**
+	 * Same as getHighlightDoc(String, String) for a document that was indexed with CYlpDocumentIndex, keyword
+	 * occurrences, word boundaries and term IDs are read from the index instead of scanning the text
+	 * @param doc: document to be highlighted
+	 * @param documentIndex: index of the document
+	 * @param query: String that contains the search query
+	 * @throws CYlpNullArgumentException
+	 * @return The the most relevant snippet with the query terms highlighted.
+	 */
+	public String getHighlightDoc(CharSequence doc, CYlpDocumentIndex documentIndex, String query)
+			throws CYlpNullArgumentException {
+
+		if (doc == null || documentIndex == null || query == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either search string or document or document index is null ");
+		}
+
+		CYlpWorkBudget budget = newWorkBudget();
+		CYlpHighlightTrace trace = startTrace();
+		long stageStart = startStage(trace);
+		CYlpCompiledQuery compiledQuery = compiledQueryCache.getCompiledQuery(query);
+		stageStart = endStage(trace, EylpHighlightStage.QUERY_COMPILATION, stageStart);
+		CYlpSearchUtil searchUtil = new CYlpSearchUtil();
+
+		CYlpTokenizedDocument tokenizedDoc = documentIndex.getTokenizedDocument(doc);
+		CYlpTokenStream tokenStream = documentIndex.getTokenStream(tokenizedDoc, compiledQuery.getTermDictionary());
+		//the index keeps the words as they are, analyzed keywords are matched with the term IDs of the words
+		CYlpKeywordOccurrences occurrences = compiledQuery.getAnalyzer() != null
+				? compiledQuery.findOccurrences(tokenStream)
+				: searchUtil.getKeywordOccurrences(doc, documentIndex, compiledQuery.getKeywordAutomaton());
+		stageStart = endStage(trace, EylpHighlightStage.KEYWORD_OCCURRENCES, stageStart);
+
+		StringBuilder highlightedSnippet = newSnippetBuilder();
+		getHighlightResult(compiledQuery, searchUtil, occurrences, tokenStream, budget, trace, stageStart,
+				highlightedSnippet);
+		return highlightedSnippet.toString();
+	}
+
+	/**
+	 * Same as getHighlightDoc(String, String) for a document read from a Reader, for documents too large to
+	 * be held in memory. The document is read in chunks and only the text around the snippets still being
+	 * compared is kept, the snippet is the same one the in-memory path selects. The reader is read to the end
+	 * and is not closed. A query compiled with an analyzer matches whole words, the document is then read in
+	 * to memory and highlighted like a String
+	 * @param docReader: reader of the document to be highlighted
+	 * @param query: String that contains the search query
+	 * @throws IOException
+	 * @throws CYlpNullArgumentException
+	 * @return The the most relevant snippet with the query terms highlighted.
+	 */
+	public String getHighlightDoc(Reader docReader, String query) throws IOException, CYlpNullArgumentException {
+
+		if (docReader == null || query == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either search string or document reader is null ");
+		}
+
+		return getHighlightDoc(docReader, compiledQueryCache.getCompiledQuery(query));
+	}
+
+	/**
+	 * Same as getHighlightDoc(Reader, String) for a query that was already compiled
+	 * @param docReader: reader of the document to be highlighted
+	 * @param compiledQuery: compiled search query
+	 * @throws IOException
+	 * @throws CYlpNullArgumentException
+	 * @return The the most relevant snippet with the query terms highlighted.
+	 */
+	public String getHighlightDoc(Reader docReader, CYlpCompiledQuery compiledQuery)
+			throws IOException, CYlpNullArgumentException {
+
+		if (docReader == null || compiledQuery == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either compiled query or document reader is null ");
+		}
+
+		if (compiledQuery.getAnalyzer() != null) {
+			StringBuilder doc = new StringBuilder();
+			char[] readBuffer = new char[8192];
+			for (int charsRead = docReader.read(readBuffer); charsRead >= 0; charsRead = docReader.read(readBuffer)) {
+				doc.append(readBuffer, 0, charsRead);
+			}
+			return getHighlightDoc(doc, compiledQuery);
+		}
+
+		CYlpStreamingSearch streamingSearch = new CYlpStreamingSearch(compiledQuery, selectionEngine,
+				maxSnippetLength);
+		return streamingSearch.getThePaddedSnippet(docReader, padBefore, padAfter);
+	}
+
+	/**
+	 * Same as getHighlightDoc(Reader, String) for a document read from a channel, for example a FileChannel
+	 * or a socket. The channel is read to the end and is not closed
+	 * @param docChannel: channel of the document to be highlighted
+	 * @param charset: encoding of the document
+	 * @param query: String that contains the search query
+	 * @throws IOException
+	 * @throws CYlpNullArgumentException
+	 * @return The the most relevant snippet with the query terms highlighted.
+	 */
+	public String getHighlightDoc(ReadableByteChannel docChannel, Charset charset, String query)
+			throws IOException, CYlpNullArgumentException {
+
+		if (docChannel == null || charset == null || query == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either search string or document channel or charset is null ");
+		}
+
+		//closing the reader would close the channel of the caller, so it is left open
+		return getHighlightDoc(Channels.newReader(docChannel, charset), query);
+	}
+
+	/**
+	 * Same as getHighlightDoc(String, String) but returns up to maxSnippets snippets that do not overlap,
+	 * most keyword occurences first, for example to show a few snippets of one review. All snippets are
+	 * selected in the same proximity pass, from the scan windows around the keyword occurences chosen by the
+	 * selection engine, and the first one is the snippet returned by getHighlightDoc()
+	 * @param doc: document to be highlighted
+	 * @param query: String that contains the search query
+	 * @param maxSnippets: maximum number of snippets to return
+	 * @throws CYlpNullArgumentException
+	 * @return the most relevant snippets with the query terms highlighted
+	 */
+	public List<String> getHighlightSnippets(CharSequence doc, String query, int maxSnippets)
+			throws CYlpNullArgumentException {
+
+		if (doc == null || query == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either search string or document is null ");
+		}
+
+		CYlpWorkBudget budget = newWorkBudget();
+		CYlpHighlightTrace trace = startTrace();
+		long stageStart = startStage(trace);
+		CYlpCompiledQuery compiledQuery = compiledQueryCache.getCompiledQuery(query);
+		stageStart = endStage(trace, EylpHighlightStage.QUERY_COMPILATION, stageStart);
+
+		return renderSnippets(getHighlightResults(doc, compiledQuery, maxSnippets, budget, trace, stageStart));
+	}
+
+	/**
+	 * Same as getHighlightSnippets(CharSequence, String, int) for a query that was already compiled
+	 * @param doc: document to be highlighted
+	 * @param compiledQuery: compiled search query
+	 * @param maxSnippets: maximum number of snippets to return
+	 * @throws CYlpNullArgumentException
+	 * @return the most relevant snippets with the query terms highlighted
+	 */
+	public List<String> getHighlightSnippets(CharSequence doc, CYlpCompiledQuery compiledQuery, int maxSnippets)
+			throws CYlpNullArgumentException {
+
+		if (doc == null || compiledQuery == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either compiled query or document is null ");
+		}
+
+		CYlpHighlightTrace trace = startTrace();
+		return renderSnippets(getHighlightResults(doc, compiledQuery, maxSnippets, newWorkBudget(), trace,
+				startStage(trace)));
+	}
+
+	/**
+	 * Same as getHighlightSnippets(CharSequence, String, int) but returns the snippets as CYlpHighlightResult,
+	 * see getHighlightResult(CharSequence, String)
+	 * @param doc: document to be highlighted
+	 * @param query: String that contains the search query
+	 * @param maxSnippets: maximum number of snippets to return
+	 * @throws CYlpNullArgumentException
+	 * @return the most relevant snippets and their keyword groups
+	 */
+	public List<CYlpHighlightResult> getHighlightResults(CharSequence doc, String query, int maxSnippets)
+			throws CYlpNullArgumentException {
+
+		if (doc == null || query == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either search string or document is null ");
+		}
+
+		CYlpHighlightTrace trace = startTrace();
+		long stageStart = startStage(trace);
+		CYlpCompiledQuery compiledQuery = compiledQueryCache.getCompiledQuery(query);
+		stageStart = endStage(trace, EylpHighlightStage.QUERY_COMPILATION, stageStart);
+
+		return getHighlightResults(doc, compiledQuery, maxSnippets, newWorkBudget(), trace, stageStart);
+	}
+
+	/**
+	 * Returns a builder with room for a snippet and a few padded keyword groups
+	 */
+	private StringBuilder newSnippetBuilder() {
+		return new StringBuilder(maxSnippetLength + 4 * (padBefore.length() + padAfter.length()));
+	}
+
+	/**
+	 * Renders the results with the pads of the engine
+	 */
+	private List<String> renderSnippets(List<CYlpHighlightResult> highlightResults)
+			throws CYlpNullArgumentException {
+
+		List<String> snippets = new ArrayList<String>(highlightResults.size());
+		for (CYlpHighlightResult highlightResult : highlightResults) {
+			snippets.add(markerRenderer.render(highlightResult));
+		}
+		return snippets;
+	}
+
+	private List<CYlpHighlightResult> getHighlightResults(CharSequence doc, CYlpCompiledQuery compiledQuery,
+			int maxSnippets, CYlpWorkBudget budget, CYlpHighlightTrace trace, long stageStart)
+			throws CYlpNullArgumentException {
+
+		CYlpSearchUtil searchUtil = new CYlpSearchUtil();
+		CYlpTokenStream tokenStream = new CYlpTokenStream(new CYlpTokenizedDocument(doc),
+				compiledQuery.getTermDictionary());
+		CYlpKeywordOccurrences occurrences = compiledQuery.findOccurrences(tokenStream);
+		stageStart = endStage(trace, EylpHighlightStage.KEYWORD_OCCURRENCES, stageStart);
+
+		CYlpWorkBudget workBudget = getCountingBudget(budget, trace);
+		Map<String, List> KeywordIndexTable = getKeywordIndexTable(searchUtil, occurrences, doc, workBudget);
+		stageStart = endStage(trace, EylpHighlightStage.KEYWORD_INDEX_TABLE, stageStart);
+
+		List<CYlpProximitySearchKeyword> bestProximityKeywords = workBudget == null
+				? searchUtil.proximitySearch(tokenStream.getTokenizedDocument(), occurrences, KeywordIndexTable,
+						maxSnippetLength, maxSnippets)
+				: searchUtil.proximitySearch(tokenStream.getTokenizedDocument(), occurrences, KeywordIndexTable,
+						maxSnippetLength, maxSnippets, workBudget);
+		stageStart = endStage(trace, EylpHighlightStage.PROXIMITY_SEARCH, stageStart);
+
+		List<CYlpHighlightResult> highlightResults = new ArrayList<CYlpHighlightResult>(
+				bestProximityKeywords.size());
+		for (CYlpProximitySearchKeyword bestProximityKeyword : bestProximityKeywords) {
+			highlightResults.add(getHighlightResult(searchUtil, tokenStream, occurrences, bestProximityKeyword));
+		}
+		endStage(trace, EylpHighlightStage.PADDING, stageStart);
+
+		finishTrace(trace, compiledQuery, doc, workBudget,
+				bestProximityKeywords.isEmpty() ? null : bestProximityKeywords.get(0));
+		return highlightResults;
+	}
+
+	/**
+	 * Runs steps 3 to 5 of getHighlightDoc() on a document whose keyword occurrences and token stream were
+	 * already found, the snippet is rendered with the pads in to highlightedSnippet unless it is null
+	 */
+	private CYlpHighlightResult getHighlightResult(CYlpCompiledQuery compiledQuery, CYlpSearchUtil searchUtil,
+			CYlpKeywordOccurrences occurrences, CYlpTokenStream tokenStream, CYlpWorkBudget budget,
+			CYlpHighlightTrace trace, long stageStart, StringBuilder highlightedSnippet)
+			throws CYlpNullArgumentException {
+
+		CYlpTokenizedDocument tokenizedDoc = tokenStream.getTokenizedDocument();
+		CYlpWorkBudget workBudget = getCountingBudget(budget, trace);
+
+		//3 get hash map with keyword as key and list with start index of first best matched keyword groups in the search string
+		//(or of the windows covering most distinct keywords when KEYWORD_COVERAGE engine is selected)
+		Map<String, List> KeywordIndexTable = getKeywordIndexTable(searchUtil, occurrences, tokenizedDoc.getText(),
+				workBudget);
+		stageStart = endStage(trace, EylpHighlightStage.KEYWORD_INDEX_TABLE, stageStart);
+
+		//4 From the keywords in the map get the best possible snippet that has maximum keywords occurences in proximity of maxSnippetLength
+		//(the best one scored before the budget ran out when the work is limited, the budget counts windows in
+		//scan order so a limited search is not split in to segments)
+		CYlpProximitySearchKeyword bestProximityKeyword;
+		if (budget == null && tokenizedDoc.length() >= parallelSearchThreshold) {
+			bestProximityKeyword = workBudget == null
+					? searchUtil.proximitySearch(tokenizedDoc, occurrences, KeywordIndexTable, maxSnippetLength,
+							parallelSearchPool)
+					: searchUtil.proximitySearch(tokenizedDoc, occurrences, KeywordIndexTable, maxSnippetLength,
+							parallelSearchPool, workBudget);
+		} else if (workBudget != null) {
+			bestProximityKeyword = searchUtil.proximitySearch(tokenizedDoc, occurrences, KeywordIndexTable,
+					maxSnippetLength, workBudget);
+		} else {
+			bestProximityKeyword = searchUtil.proximitySearch(tokenizedDoc, occurrences, KeywordIndexTable,
+					maxSnippetLength);
+		}
+		stageStart = endStage(trace, EylpHighlightStage.PROXIMITY_SEARCH, stageStart);
+
+		//5 find the keyword groups of the snippet and replace them with padBefore keyword padAfter
+		CYlpHighlightResult highlightResult = getHighlightResult(searchUtil, tokenStream, occurrences,
+				bestProximityKeyword);
+		if (highlightedSnippet != null) {
+			try {
+				markerRenderer.render(highlightResult, highlightedSnippet);
+			} catch (IOException ioEx) {
+				//StringBuilder never throws IOException
+				throw new UncheckedIOException(ioEx);
+			}
+		}
+		endStage(trace, EylpHighlightStage.PADDING, stageStart);
+
+		finishTrace(trace, compiledQuery, tokenizedDoc.getText(), workBudget, bestProximityKeyword);
+		return highlightResult;
+	}
+
+	/**
+	 * Returns a trace for the call when a listener is set or a flight recording enables CYlpHighlightEvent,
+	 * null otherwise. The event is begun here so its duration is the whole call
+	 */
+	private CYlpHighlightTrace startTrace() {
+
+		CYlpHighlightEvent highlightEvent = new CYlpHighlightEvent();
+		if (!highlightEvent.isEnabled()) {
+			if (highlightListener == CYlpHighlightListener.NO_OP) {
+				return null;
+			}
+			highlightEvent = null;
+		}
+		CYlpHighlightTrace trace = new CYlpHighlightTrace(highlightEvent);
+		if (highlightEvent != null) {
+			highlightEvent.begin();
+		}
+		return trace;
+	}
+
+	private static long startStage(CYlpHighlightTrace trace) {
+		return trace != null ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Adds the time since stageStart to the stage of the trace
+	 * @return start of the next stage
+	 */
+	private static long endStage(CYlpHighlightTrace trace, EylpHighlightStage stage, long stageStart) {
+
+		if (trace == null) {
+			return 0L;
+		}
+		long stageEnd = System.nanoTime();
+		trace.addStageNanos(stage, stageEnd - stageStart);
+		return stageEnd;
+	}
+
+	/**
+	 * Returns the budget that limits and counts the work of a call, a traced call without a budget gets an
+	 * unlimited one so the trace reports the combinations enumerated and the windows scored
+	 * @return budget of the call, null when the work is neither limited nor traced
+	 */
+	private static CYlpWorkBudget getCountingBudget(CYlpWorkBudget budget, CYlpHighlightTrace trace) {
+		return budget == null && trace != null ? CYlpWorkBudget.unlimited() : budget;
+	}
+
+	/**
+	 * Sets the query and sizes of the trace, commits its flight recorder event when the call took at least
+	 * the threshold of the event and passes the trace to the listener
+	 */
+	private void finishTrace(CYlpHighlightTrace trace, CYlpCompiledQuery compiledQuery, CharSequence doc,
+			CYlpWorkBudget workBudget, CYlpProximitySearchKeyword bestProximityKeyword) {
+
+		if (trace == null) {
+			return;
+		}
+		trace.setQuery(compiledQuery.getQuery());
+		trace.setKeywordCount(compiledQuery.getKeywordList().size());
+		trace.setDocumentLength(doc.length());
+		trace.setCombinationCount(workBudget.getCombinations());
+		trace.setWindowsScored(workBudget.getWindowsScored());
+		if (bestProximityKeyword != null) {
+			trace.setScanMethod(bestProximityKeyword.getScanMethodForMaxOccurances());
+			trace.setDegraded(bestProximityKeyword.isDegraded());
+		}
+
+		CYlpHighlightEvent highlightEvent = trace.getHighlightEvent();
+		if (highlightEvent != null) {
+			highlightEvent.end();
+			if (highlightEvent.shouldCommit()) {
+				highlightEvent.query = trace.getQuery();
+				highlightEvent.documentLength = trace.getDocumentLength();
+				highlightEvent.keywordCount = trace.getKeywordCount();
+				highlightEvent.combinationCount = trace.getCombinationCount();
+				highlightEvent.windowsScored = trace.getWindowsScored();
+				highlightEvent.scanMethod = trace.getScanMethod() != null ? trace.getScanMethod().name() : null;
+				highlightEvent.degraded = trace.isDegraded();
+				highlightEvent.queryCompilation = trace.getStageNanos(EylpHighlightStage.QUERY_COMPILATION);
+				highlightEvent.keywordOccurrences = trace.getStageNanos(EylpHighlightStage.KEYWORD_OCCURRENCES);
+				highlightEvent.keywordIndexTable = trace.getStageNanos(EylpHighlightStage.KEYWORD_INDEX_TABLE);
+				highlightEvent.proximitySearch = trace.getStageNanos(EylpHighlightStage.PROXIMITY_SEARCH);
+				highlightEvent.padding = trace.getStageNanos(EylpHighlightStage.PADDING);
+				highlightEvent.commit();
+			}
+		}
+
+		if (highlightListener != CYlpHighlightListener.NO_OP) {
+			highlightListener.onHighlight(trace);
+		}
+	}
+
+	/**
+	 * Step 3 of getHighlightDoc(), keyword index table of the selection engine. The coverage windows are
+	 * found in one pass so only the enumeration of combinations is limited by the budget
+	 */
+	private Map<String, List> getKeywordIndexTable(CYlpSearchUtil searchUtil, CYlpKeywordOccurrences occurrences,
+			CharSequence doc, CYlpWorkBudget budget) throws CYlpNullArgumentException {
+
+		if (selectionEngine == EylpSelectionEngine.KEYWORD_COVERAGE) {
+			return searchUtil.getKeywordCoverageWindows(doc, occurrences, maxSnippetLength);
+		}
+		return budget == null ? searchUtil.getFirstMatchingKeyword(doc, occurrences)
+				: searchUtil.getFirstMatchingKeyword(doc, occurrences, budget);
+	}
+
+	/**
+	 * Step 5 of getHighlightDoc(), keyword groups of the snippet of the proximity keyword. The occurrences
+	 * add the keywords that cover several words (such as "c++") to the groups found from the term IDs
+	 */
+	private CYlpHighlightResult getHighlightResult(CYlpSearchUtil searchUtil, CYlpTokenStream tokenStream,
+			CYlpKeywordOccurrences occurrences, CYlpProximitySearchKeyword bestProximityKeyword)
+			throws CYlpNullArgumentException {
+
+		String docSnippet = bestProximityKeyword.getDocumentSnippet();
+		int snippetStartIndex = bestProximityKeyword.getStartIndexWithMaxKeywordOccurences();
+		int snippetEndIndex = snippetStartIndex + docSnippet.length();
+		return new CYlpHighlightResult(tokenStream.getTokenizedDocument().getText(), snippetStartIndex,
+				snippetEndIndex, searchUtil.getHighlightSpans(tokenStream, occurrences, snippetStartIndex,
+						snippetEndIndex),
+				bestProximityKeyword.isDegraded());
+	}
+
+	/**
+	 * Highlights one query in many documents using the common fork-join pool, the query is compiled once.
+	 * Snippets are returned in the order of the documents
+	 * @param docs: documents to be highlighted
+	 * @param query: String that contains the search query
+	 * @throws CYlpNullArgumentException
+	 * @return list with most relevant snippet of each document
+	 */
+	public List<String> getHighlightDocs(List<String> docs, String query) throws CYlpNullArgumentException {
+
+		return getHighlightDocs(docs, query, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Same as getHighlightDocs(List, String) for a stream of documents
+	 * @param docs: documents to be highlighted
+	 * @param query: String that contains the search query
+	 * @throws CYlpNullArgumentException
+	 * @return list with most relevant snippet of each document
+	 */
+	public List<String> getHighlightDocs(Stream<String> docs, String query) throws CYlpNullArgumentException {
+
+		if (docs == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: document stream is null ");
+		}
+
+		return getHighlightDocs(docs.collect(Collectors.<String>toList()), query);
+	}
+
+	/**
+	 * Highlights one query in many documents using the executor passed as argument. When the executor is a
+	 * ForkJoinPool the documents are split recursively, otherwise they are split in to one chunk per available
+	 * processor and each chunk is submitted to the executor. Snippets are returned in the order of the documents
+	 * @param docs: documents to be highlighted
+	 * @param query: String that contains the search query
+	 * @param executor: executor that runs the highlighting
+	 * @throws CYlpNullArgumentException
+	 * @return list with most relevant snippet of each document
+	 */
+	public List<String> getHighlightDocs(List<String> docs, String query, ExecutorService executor)
+			throws CYlpNullArgumentException {
+
+		if (docs == null || query == null || executor == null) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: Either documents or search string or executor is null ");
+		}
+		if (docs.contains(null)) {
+			throw new CYlpNullArgumentException(
+					"Operation Not allowed: one of the documents is null ");
+		}
+
+		//compile query once for all the documents
+		final CYlpCompiledQuery compiledQuery = compiledQueryCache.getCompiledQuery(query);
+		final List<String> documents = docs;
+		final String[] snippets = new String[docs.size()];
+
+		if (executor instanceof ForkJoinPool) {
+			((ForkJoinPool) executor).invoke(new CYlpHighlightBatchTask(this, documents, compiledQuery,
+					snippets, 0, snippets.length));
+			return Arrays.asList(snippets);
+		}
+
+		int numberOfChunks = Math.max(1, Runtime.getRuntime().availableProcessors());
+		int chunkSize = Math.max(CYlpHighlightBatchTask.BATCH_THRESHOLD,
+				(snippets.length + numberOfChunks - 1) / numberOfChunks);
+		List<Future<?>> chunkResults = new ArrayList<Future<?>>();
+		for (int chunkStart = 0; chunkStart < snippets.length; chunkStart += chunkSize) {
+			final int startIndex = chunkStart;
+			final int endIndex = Math.min(snippets.length, chunkStart + chunkSize);
+			chunkResults.add(executor.submit(new Runnable() {
+				public void run() {
+					CYlpHighlightBatchTask.highlightRange(CYlpHighlightEngine.this, documents, compiledQuery,
+							snippets, startIndex, endIndex);
+				}
+			}));
+		}
+
+		//wait for all chunks, errors of a chunk are thrown to the caller
+		try {
+			for (Future<?> chunkResult : chunkResults) {
+				chunkResult.get();
+			}
+		} catch (InterruptedException interruptedEx) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while highlighting documents", interruptedEx);
+		} catch (ExecutionException executionEx) {
+			Throwable cause = executionEx.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException("highlighting documents failed", cause);
+		}
+
+		return Arrays.asList(snippets);
+	}
+
+	/**
+	 * Builder for CYlpHighlightEngine. The builder is not thread safe, the engine it builds is
+	 *
+	 */
+	public static final class Builder {
+
+		private int maxSnippetLength = DEFAULT_SNIPPET_LENGTH;
+		private String padBefore = DEFAULT_PAD_BEFORE;
+		private String padAfter = DEFAULT_PAD_AFTER;
+		private EylpSelectionEngine selectionEngine = EylpSelectionEngine.LONGEST_COMBINATION;
+		private CYlpCompiledQueryCache compiledQueryCache;
+		private CYlpAnalyzer analyzer;
+		private CYlpHighlightListener highlightListener = CYlpHighlightListener.NO_OP;
+		private CYlpHighlightResultCache resultCache;
+		private long timeBudgetNanos = CYlpWorkBudget.UNLIMITED_NANOS;
+		private int maxCombinations = CYlpWorkBudget.UNLIMITED;
+		private int maxWindowsScored = CYlpWorkBudget.UNLIMITED;
+		private int parallelSearchThreshold = NO_PARALLEL_SEARCH;
+		private ForkJoinPool parallelSearchPool = ForkJoinPool.commonPool();
+
+		private Builder() {
+		}
+
+		public Builder snippetLength(int snippetLength) {
+			maxSnippetLength = snippetLength;
+			return this;
+		}
+
+		public Builder padBefore(String pad) {
+			padBefore = pad;
+			return this;
+		}
+
+		public Builder padAfter(String pad) {
+			padAfter = pad;
+			return this;
+		}
+
+		public Builder selectionEngine(EylpSelectionEngine engine) {
+			selectionEngine = engine;
+			return this;
+		}
+
+		/**
+		 * Sets the cache used to look up compiled queries, the same cache can be shared by many engines.
+		 * When it is not set every engine gets its own cache
+		 * @param queryCache
+		 * @return this builder
+		 */
+		public Builder compiledQueryCache(CYlpCompiledQueryCache queryCache) {
+			compiledQueryCache = queryCache;
+			return this;
+		}
+
+		/**
+		 * Sets the analyzer of the queries and the documents, for example CYlpAnalyzer.getStandard(). When a
+		 * compiled query cache is also set it has to be created with the same analyzer
+		 * @param queryAnalyzer: analyzer, null to match keywords as they are
+		 * @return this builder
+		 */
+		public Builder analyzer(CYlpAnalyzer queryAnalyzer) {
+			analyzer = queryAnalyzer;
+			return this;
+		}
+
+		/**
+		 * Sets the listener called with the stage timings of every highlighted document, for example a
+		 * CYlpHighlightStatsAggregator
+		 * @param listener: listener, CYlpHighlightListener.NO_OP to not time the stages
+		 * @return this builder
+		 */
+		public Builder highlightListener(CYlpHighlightListener listener) {
+			highlightListener = listener;
+			return this;
+		}
+
+		/**
+		 * Sets the cache of highlighted snippets used by getHighlightDoc(CharSequence, String) and
+		 * getHighlightDoc(String, CharSequence, String), the same cache can be shared by many engines since
+		 * snippets are keyed by the settings of the engine. When it is not set snippets are not cached
+		 * @param snippetCache: cache, null to not cache snippets
+		 * @return this builder
+		 */
+		public Builder resultCache(CYlpHighlightResultCache snippetCache) {
+			resultCache = snippetCache;
+			return this;
+		}
+
+		/**
+		 * Sets the time each document highlighted in memory may take, after it the best snippet found so far
+		 * is returned. CYlpWorkBudget.UNLIMITED_NANOS nanoseconds (the default) for no deadline
+		 * @param timeout
+		 * @param unit
+		 * @return this builder
+		 */
+		public Builder timeBudget(long timeout, TimeUnit unit) {
+			timeBudgetNanos = unit.toNanos(timeout);
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of keyword combinations enumerated for each document, CYlpWorkBudget.UNLIMITED
+		 * (the default) for no limit
+		 * @param combinations
+		 * @return this builder
+		 */
+		public Builder maxCombinations(int combinations) {
+			maxCombinations = combinations;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of scan windows scored by the proximity search of each document,
+		 * CYlpWorkBudget.UNLIMITED (the default) for no limit
+		 * @param windowsScored
+		 * @return this builder
+		 */
+		public Builder maxWindowsScored(int windowsScored) {
+			maxWindowsScored = windowsScored;
+			return this;
+		}
+
+		/**
+		 * Sets the length from which the proximity search of one document is split in to segments scored in
+		 * parallel on the parallel search pool, for multi megabyte documents such as menu dumps. The snippet
+		 * is the one of the sequential search. Calls with a work budget and getHighlightSnippets() are always
+		 * searched on the calling thread. NO_PARALLEL_SEARCH (the default) to never split a document
+		 * @param documentLength: length in characters
+		 * @return this builder
+		 */
+		public Builder parallelSearchThreshold(int documentLength) {
+			parallelSearchThreshold = documentLength;
+			return this;
+		}
+
+		/**
+		 * Sets the fork-join pool that scores the segments of long documents, ForkJoinPool.commonPool() by
+		 * default
+		 * @param pool
+		 * @return this builder
+		 */
+		public Builder parallelSearchPool(ForkJoinPool pool) {
+			parallelSearchPool = pool;
+			return this;
+		}
+
+		/**
+		 * Builds the engine after checking the configuration
+		 * @throws CYlpNullArgumentException when a pad, the selection engine, the listener or the parallel
+		 *         search pool is null
+		 * @return immutable highlight engine
+		 */
+		public CYlpHighlightEngine build() throws CYlpNullArgumentException {
+
+			if (padBefore == null || padAfter == null || selectionEngine == null || highlightListener == null
+					|| parallelSearchPool == null) {
+				throw new CYlpNullArgumentException(
+						"Either padBefore or padAfter or selectionEngine or highlightListener or parallelSearchPool is null ");
+			}
+			if (maxSnippetLength <= 0) {
+				throw new IllegalArgumentException("snippet length should be greater than 0 ");
+			}
+			if (timeBudgetNanos < 0 || maxCombinations < 0 || maxWindowsScored < 0) {
+				throw new IllegalArgumentException("budget limits should not be negative ");
+			}
+			if (parallelSearchThreshold < 0) {
+				throw new IllegalArgumentException("parallel search threshold should not be negative ");
+			}
+			if (compiledQueryCache != null && compiledQueryCache.getAnalyzer() != analyzer) {
+				throw new IllegalArgumentException("compiled query cache does not use the analyzer of the engine ");
+			}
+
+			return new CYlpHighlightEngine(this);
+		}
+	}
+}
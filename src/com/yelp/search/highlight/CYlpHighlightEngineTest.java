@@ -0,0 +1,451 @@
+package com.yelp.search.highlight;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.yelp.enums.EylpSelectionEngine;
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.analysis.CYlpAnalyzer;
+import com.yelp.search.query.CYlpCompiledQueryCache;
+import com.yelp.search.util.CYlpSearchUtil;
+import com.yelp.search.util.CYlpWorkBudget;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * unit test class that tests CYlpHighlightEngine, including a stress test that shares one engine
+ * between many threads
+ *
+ */
+public class CYlpHighlightEngineTest {
+
+	private static final String[] REVIEWS = { "Little star's deep dish pizza sure is fantastic",
+			"We tried the deep dish pepperoni pizza and once again it was amazingly good! The dish was hot.",
+			"that is, a sentence-break iterator returns breaks",
+			"The pizza was cold but the dish was good, deep down I still love their deep dish pizza",
+			"deep" };
+	private static final String[] QUERIES = { "deep dish pizza", "pizza", "dish was good", "the" };
+
+	CYlpHighlightEngine testEngine;
+
+	List<String> documentsToScan;
+	List<String> expectedSnippets;
+
+	@Before
+	public void setUp() throws CYlpNullArgumentException {
+		testEngine = CYlpHighlightEngine.builder().snippetLength(60).build();
+
+		// expected snippets are computed sequentially by a separate highlighter
+		CYlpDocumentHighlight sequentialHighlight = new CYlpDocumentHighlight(60);
+		documentsToScan = new ArrayList<String>();
+		expectedSnippets = new ArrayList<String>();
+		for (int i = 0; i < 40; i++) {
+			String documentToScan = REVIEWS[i % REVIEWS.length] + " review " + i;
+			documentsToScan.add(documentToScan);
+			expectedSnippets.add(sequentialHighlight.getHighlightDoc(documentToScan, QUERIES[i % QUERIES.length]));
+		}
+	}
+
+	@Test
+	public void testBuilder() throws CYlpNullArgumentException {
+
+		CYlpHighlightEngine defaultEngine = CYlpHighlightEngine.builder().build();
+		assertEquals("Expecting default snippet length", 100, defaultEngine.getSnippetLength());
+		assertEquals("Expecting default pad", "[[HIGHLIGHT]]", defaultEngine.getPadBefore());
+		assertEquals("Expecting same output as CYlpDocumentHighlight",
+				new CYlpDocumentHighlight().getHighlightDoc(REVIEWS[1], "deep dish pizza"),
+				defaultEngine.getHighlightDoc(REVIEWS[1], "deep dish pizza"));
+
+		CYlpHighlightEngine markerEngine = defaultEngine.toBuilder().padBefore("<b>").padAfter("</b>").build();
+		assertEquals("Expecting custom pads", "Little star's <b>deep dish pizza </b>sure is fantastic",
+				markerEngine.getHighlightDoc(REVIEWS[0], "deep dish pizza"));
+
+		try {
+			CYlpHighlightEngine.builder().padBefore(null).build();
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
+	/**
+	 * Tests highlighting a few snippets of one document, the first snippet should be same as
+	 * getHighlightDoc() and the snippets should not overlap
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testGetHighlightSnippets() throws CYlpNullArgumentException {
+
+		CYlpHighlightEngine markerEngine = CYlpHighlightEngine.builder().snippetLength(20).padBefore("<b>")
+				.padAfter("</b>").build();
+		String review = "Their deep dish pizza was great. We waited an hour for a table on Friday night. The deep "
+				+ "dish pizza came hot, deep dish pizza and more pizza. Parking is hard to find. Best deep dish pizza";
+
+		List<String> snippets = markerEngine.getHighlightSnippets(review, "deep dish pizza", 3);
+		assertEquals("Expecting three snippets", 3, snippets.size());
+		assertEquals("Expecting first snippet to be the highlighted doc",
+				markerEngine.getHighlightDoc(review, "deep dish pizza"), snippets.get(0));
+		assertEquals("Expecting snippets in the order of the occurences when they have same keyword count",
+				Arrays.asList("Their <b>deep dish pizza</b>", "night. The <b>deep dish pizza</b>",
+						" came hot, <b>deep dish pizza</b>"), snippets);
+
+		assertEquals("Expecting only the best snippet", Arrays.asList(snippets.get(0)),
+				markerEngine.getHighlightSnippets(review, "deep dish pizza", 1));
+	}
+
+	/**
+	 * Tests that an engine searching long documents in parallel segments returns the snippets of the
+	 * sequential engine, the densest keyword group is put near the end of the document
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testParallelSearch() throws CYlpNullArgumentException {
+
+		StringBuilder longReview = new StringBuilder();
+		for (int i = 0; longReview.length() < 20 * CYlpSearchUtil.MIN_SEGMENT_LENGTH; i++) {
+			longReview.append(REVIEWS[i % REVIEWS.length]).append(" review ").append(i).append(". ");
+		}
+		longReview.append("The deep dish pizza, deep dish pizza and deep dish pizza was good. ").append(REVIEWS[3]);
+
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			for (EylpSelectionEngine selectionEngine : EylpSelectionEngine.values()) {
+				CYlpHighlightEngine sequentialEngine = testEngine.toBuilder().selectionEngine(selectionEngine).build();
+				CYlpHighlightEngine parallelEngine = sequentialEngine.toBuilder().parallelSearchThreshold(0)
+						.parallelSearchPool(pool).build();
+				assertEquals("Expecting threshold to be kept", 0, parallelEngine.toBuilder().build()
+						.getParallelSearchThreshold());
+				for (String query : QUERIES) {
+					assertEquals("Expecting same snippet as sequential search for " + query,
+							sequentialEngine.getHighlightDoc(longReview, query),
+							parallelEngine.getHighlightDoc(longReview, query));
+					assertEquals("Expecting windows scored by the segments to be counted for " + query,
+							getTrace(sequentialEngine, longReview, query).getWindowsScored(),
+							getTrace(parallelEngine, longReview, query).getWindowsScored());
+					assertEquals("Expecting same snippet for a short document",
+							sequentialEngine.getHighlightDoc(REVIEWS[1], query),
+							parallelEngine.getHighlightDoc(REVIEWS[1], query));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals("Expecting parallel search to be off by default", CYlpHighlightEngine.NO_PARALLEL_SEARCH,
+				testEngine.getParallelSearchThreshold());
+
+		try {
+			CYlpHighlightEngine.builder().parallelSearchThreshold(-1).build();
+			fail("Should not get here, expecting it to throw exception");
+		} catch (IllegalArgumentException illegalArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
+	/**
+	 * Tests highlighting keywords that the word splitter breaks in to several words, they have no term ID
+	 * and are highlighted from their literal matches in every path of the engine
+	 * @throws Exception
+	 */
+	@Test
+	public void testMultiWordKeywords() throws Exception {
+
+		String review = "I love c++ a lot, (bar) rocks and c++ (bar) too";
+		String expectedSnippet = "I love [[HIGHLIGHT]]c++[[ENDHIGHLIGHT]] a lot, [[HIGHLIGHT]](bar)[[ENDHIGHLIGHT]]"
+				+ " rocks and [[HIGHLIGHT]]c++ (bar)[[ENDHIGHLIGHT]] too";
+
+		assertEquals("Expecting c++ and (bar) highlighted", expectedSnippet,
+				testEngine.getHighlightDoc(review, "c++ (bar)"));
+		assertEquals("Expecting same snippet from CYlpDocumentHighlight", expectedSnippet,
+				new CYlpDocumentHighlight(60).getHighlightDoc(review, "c++ (bar)"));
+		assertEquals("Expecting same snippet when streaming", expectedSnippet,
+				testEngine.getHighlightDoc(new StringReader(review), "c++ (bar)"));
+		assertEquals("Expecting c++ highlighted", "I love [[HIGHLIGHT]]c++[[ENDHIGHLIGHT]] a lot, "
+				+ "[[HIGHLIGHT]]c++[[ENDHIGHLIGHT]] rocks", new CYlpDocumentHighlight().getHighlightDoc(
+						"I love c++ a lot, c++ rocks", "c++"));
+
+		CYlpHighlightResult result = testEngine.getHighlightResult(review, "c++ (bar)");
+		assertArrayEquals("Expecting spans of the literal matches", new int[] { 7, 10, 18, 23, 34, 43 },
+				result.getSpans());
+		assertEquals("Expecting escaped HTML", "I love <em>c++</em> a lot, <em>(bar)</em> rocks and "
+				+ "<em>c++ (bar)</em> too", new CYlpHtmlRenderer().render(result));
+
+		// a keyword inside a longer word is not highlighted
+		assertEquals("Expecting only whole matches highlighted", "abc++ and [[HIGHLIGHT]]c++[[ENDHIGHLIGHT]] here",
+				testEngine.getHighlightDoc("abc++ and c++ here", "c++"));
+	}
+
+	/**
+	 * Tests highlighting with the standard analyzer, words are matched after removing plural endings and
+	 * accents
+	 * @throws Exception
+	 */
+	@Test
+	public void testAnalyzer() throws Exception {
+
+		CYlpHighlightEngine analyzedEngine = CYlpHighlightEngine.builder().padBefore("<b>").padAfter("</b>")
+				.analyzer(CYlpAnalyzer.getStandard()).build();
+		String review = "Best Caf\u00E9 in town, their Pizzas and side dishes are great";
+
+		assertEquals("Expecting plural and accented words to be highlighted",
+				"Best <b>Caf\u00E9 </b>in town, their <b>Pizzas </b>and side <b>dishes </b>are great",
+				analyzedEngine.getHighlightDoc(review, "cafe pizza dish"));
+		assertEquals("Expecting same snippet from reader", analyzedEngine.getHighlightDoc(review, "cafe pizza dish"),
+				analyzedEngine.getHighlightDoc(new StringReader(review), "cafe pizza dish"));
+		assertEquals("Expecting keyword inside a longer word not to be highlighted",
+				"a <b>pizza, </b>not a pizzeria",
+				analyzedEngine.getHighlightDoc("a pizza, not a pizzeria", "pizzas"));
+		assertSame("Expecting analyzer to be kept by toBuilder()", CYlpAnalyzer.getStandard(),
+				analyzedEngine.toBuilder().build().getAnalyzer());
+
+		try {
+			CYlpHighlightEngine.builder().analyzer(CYlpAnalyzer.getStandard())
+					.compiledQueryCache(new CYlpCompiledQueryCache()).build();
+			fail("Should not get here, expecting it to throw exception");
+		} catch (IllegalArgumentException illegalArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
+	/**
+	 * Highlights the query with a listener on the engine and returns the trace of the call
+	 */
+	private static CYlpHighlightTrace getTrace(CYlpHighlightEngine engine, CharSequence doc, String query)
+			throws CYlpNullArgumentException {
+
+		final List<CYlpHighlightTrace> traces = new ArrayList<CYlpHighlightTrace>();
+		engine.toBuilder().highlightListener(new CYlpHighlightListener() {
+			public void onHighlight(CYlpHighlightTrace trace) {
+				traces.add(trace);
+			}
+		}).build().getHighlightDoc(doc, query);
+		return traces.get(0);
+	}
+
+	/**
+	 * Tests that the listener gets the trace of each document, with a time for every stage
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testHighlightListener() throws CYlpNullArgumentException {
+
+		final List<CYlpHighlightTrace> traces = new ArrayList<CYlpHighlightTrace>();
+		CYlpHighlightEngine tracedEngine = testEngine.toBuilder().highlightListener(new CYlpHighlightListener() {
+			public void onHighlight(CYlpHighlightTrace trace) {
+				traces.add(trace);
+			}
+		}).build();
+
+		assertEquals("Expecting same snippet with a listener", testEngine.getHighlightDoc(REVIEWS[3], QUERIES[0]),
+				tracedEngine.getHighlightDoc(REVIEWS[3], "  deep dish   pizza"));
+		assertEquals("Expecting one trace", 1, traces.size());
+		CYlpHighlightTrace trace = traces.get(0);
+		assertEquals("Expecting normalized query", "deep dish pizza", trace.getQuery());
+		assertEquals("Expecting document length", REVIEWS[3].length(), trace.getDocumentLength());
+		assertEquals("Expecting keyword count", 3, trace.getKeywordCount());
+		assertEquals("Expecting one combination enumerated", 1, trace.getCombinationCount());
+		assertEquals("Expecting the windows of its start index", 3, trace.getWindowsScored());
+		assertTrue("Expecting total time of the stages", trace.getTotalNanos() > 0);
+
+		tracedEngine.getHighlightSnippets(REVIEWS[3], QUERIES[0], 2);
+		assertEquals("Expecting trace of the snippets", 2, traces.size());
+		assertSame("Expecting NO_OP listener by default", CYlpHighlightListener.NO_OP,
+				testEngine.getHighlightListener());
+	}
+
+	/**
+	 * Tests that a query repeating one keyword returns quickly with the limits of the engine, and that a
+	 * budget passed to a call returns the best snippet found so far without caching it
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testWorkBudget() throws CYlpNullArgumentException {
+
+		StringBuilder repeatedQuery = new StringBuilder();
+		for (int i = 0; i < 25; i++) {
+			repeatedQuery.append("pizza ");
+		}
+		String review = "Best pizza pizza pizza pizza pizza pizza pizza pizza pizza pizza pizza pizza in town";
+
+		final List<CYlpHighlightTrace> traces = new ArrayList<CYlpHighlightTrace>();
+		CYlpHighlightEngine budgetEngine = testEngine.toBuilder().timeBudget(1, TimeUnit.SECONDS)
+				.maxCombinations(1000).maxWindowsScored(100).highlightListener(new CYlpHighlightListener() {
+					public void onHighlight(CYlpHighlightTrace trace) {
+						traces.add(trace);
+					}
+				}).build();
+		assertEquals("Expecting combination limit", 1000, budgetEngine.getMaxCombinations());
+		assertEquals("Expecting limits to be copied by toBuilder()", TimeUnit.SECONDS.toNanos(1),
+				budgetEngine.toBuilder().build().getTimeBudgetNanos());
+
+		String snippet = budgetEngine.getHighlightDoc(review, repeatedQuery.toString());
+		assertTrue("Expecting snippet with the keyword", snippet.contains("pizza"));
+		assertTrue("Expecting trace to be degraded", traces.get(0).isDegraded());
+		assertTrue("Expecting combinations within the limit", traces.get(0).getCombinationCount() <= 1000);
+		assertEquals("Expecting no limit by default", CYlpWorkBudget.UNLIMITED_NANOS, testEngine.getTimeBudgetNanos());
+
+		// the trace of a degraded call has the windows scored before the budget ran out
+		StringBuilder longReview = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			longReview.append(REVIEWS[i % REVIEWS.length]).append(". ");
+		}
+		traces.clear();
+		budgetEngine.toBuilder().maxWindowsScored(6).build().getHighlightDoc(longReview, "pizza");
+		assertTrue("Expecting trace to be degraded", traces.get(0).isDegraded());
+		assertTrue("Expecting windows scored within the limit", traces.get(0).getWindowsScored() <= 6);
+
+		// pizza occurs twice, the windows around the second one are not scored
+		CYlpHighlightEngine cachedEngine = testEngine.toBuilder().resultCache(new CYlpHighlightResultCache()).build();
+		CYlpWorkBudget budget = CYlpWorkBudget.ofMaxWindowsScored(3);
+		cachedEngine.getHighlightDoc(REVIEWS[3], QUERIES[1], budget);
+		assertTrue("Expecting budget to be degraded", budget.isDegraded());
+		assertEquals("Expecting degraded snippet not to be cached", 0, cachedEngine.getResultCache().size());
+
+		budget = CYlpWorkBudget.ofTimeout(1, TimeUnit.MINUTES);
+		assertEquals("Expecting same snippet as without budget", testEngine.getHighlightDoc(REVIEWS[3], QUERIES[1]),
+				cachedEngine.getHighlightDoc(REVIEWS[3], QUERIES[1], budget));
+		assertFalse("Expecting budget not to be degraded", budget.isDegraded());
+		assertEquals("Expecting snippet to be cached", 1, cachedEngine.getResultCache().size());
+
+		try {
+			testEngine.toBuilder().maxWindowsScored(-1).build();
+			fail("Should not get here, expecting it to throw exception");
+		} catch (IllegalArgumentException illegalArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
+	/**
+	 * Tests that a flight recording gets one event per highlighted document with the stage timings, and no
+	 * event for calls faster than the threshold
+	 * @throws Exception
+	 */
+	@Test
+	public void testHighlightEvent() throws Exception {
+
+		Path recordingFile = Files.createTempFile("highlight", ".jfr");
+		try {
+			try (Recording recording = new Recording()) {
+				recording.enable(CYlpHighlightEvent.class).withThreshold(Duration.ZERO);
+				recording.start();
+				testEngine.getHighlightDoc(REVIEWS[1], "deep dish pizza");
+				recording.stop();
+				recording.dump(recordingFile);
+			}
+			List<RecordedEvent> highlightEvents = new ArrayList<RecordedEvent>();
+			for (RecordedEvent recordedEvent : RecordingFile.readAllEvents(recordingFile)) {
+				if (CYlpHighlightEvent.EVENT_NAME.equals(recordedEvent.getEventType().getName())) {
+					highlightEvents.add(recordedEvent);
+				}
+			}
+			assertEquals("Expecting one event", 1, highlightEvents.size());
+			RecordedEvent highlightEvent = highlightEvents.get(0);
+			assertEquals("Expecting query", "deep dish pizza", highlightEvent.getString("query"));
+			assertEquals("Expecting document length", REVIEWS[1].length(), highlightEvent.getInt("documentLength"));
+			assertNotNull("Expecting scan method", highlightEvent.getString("scanMethod"));
+			assertTrue("Expecting stage time within the event", highlightEvent.getDuration().toNanos()
+					>= highlightEvent.getDuration("proximitySearch").toNanos());
+
+			try (Recording recording = new Recording()) {
+				recording.enable(CYlpHighlightEvent.class).withThreshold(Duration.ofHours(1));
+				recording.start();
+				testEngine.getHighlightDoc(REVIEWS[1], "deep dish pizza");
+				recording.stop();
+				recording.dump(recordingFile);
+			}
+			for (RecordedEvent recordedEvent : RecordingFile.readAllEvents(recordingFile)) {
+				assertNotEquals("Expecting no event below the threshold", CYlpHighlightEvent.EVENT_NAME,
+						recordedEvent.getEventType().getName());
+			}
+		} finally {
+			Files.deleteIfExists(recordingFile);
+		}
+	}
+
+	/**
+	 * Tests highlighting a document read from a reader and from a channel, snippets should be same as
+	 * highlighting the String
+	 * @throws Exception
+	 */
+	@Test
+	public void testStreamingHighlight() throws Exception {
+
+		for (int i = 0; i < documentsToScan.size(); i++) {
+			String documentToScan = documentsToScan.get(i);
+			String query = QUERIES[i % QUERIES.length];
+			assertEquals("Expecting same snippet from reader", expectedSnippets.get(i),
+					testEngine.getHighlightDoc(new StringReader(documentToScan), query));
+			assertEquals("Expecting same snippet from channel", expectedSnippets.get(i),
+					testEngine.getHighlightDoc(Channels.newChannel(new ByteArrayInputStream(
+							documentToScan.getBytes(StandardCharsets.UTF_8))), StandardCharsets.UTF_8, query));
+		}
+	}
+
+	/**
+	 * Shares one engine between several threads, every thread highlights all documents and its results must be
+	 * same as the sequential results. Scaling with the thread count is measured by
+	 * CYlpHighlightBenchmark.getHighlightDocThreads*
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentHighlighting() throws Exception {
+
+		int threadCount = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+		final int rounds = 25;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		List<Future<Boolean>> threadResults = new ArrayList<Future<Boolean>>();
+		try {
+			for (int t = 0; t < threadCount; t++) {
+				threadResults.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() throws Exception {
+						startLatch.await();
+						for (int round = 0; round < rounds; round++) {
+							for (int i = 0; i < documentsToScan.size(); i++) {
+								String snippet = testEngine.getHighlightDoc(documentsToScan.get(i),
+										QUERIES[i % QUERIES.length]);
+								if (!expectedSnippets.get(i).equals(snippet)) {
+									return false;
+								}
+							}
+						}
+						return true;
+					}
+				}));
+			}
+
+			startLatch.countDown();
+			for (Future<Boolean> threadResult : threadResults) {
+				assertTrue("Expecting same snippets as sequential highlighting", threadResult.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.yelp.search.highlight;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event committed by CYlpHighlightEngine (and so by CYlpDocumentHighlight) for every
+ * document highlighted in memory that took at least the threshold of the event, DEFAULT_THRESHOLD unless the
+ * recording sets another one:
+ *
+ * 	recording.enable(CYlpHighlightEvent.class).withThreshold(Duration.ofMillis(5));
+ *
+ * or in a .jfc file / -XX:StartFlightRecording settings with the name EVENT_NAME. The duration of the event
+ * is the whole call, so slow highlights can be put next to the GC and allocation events of the same
+ * recording. When no recording enables the event the engine only checks isEnabled() per call.
+ *
+ */
+@Name(CYlpHighlightEvent.EVENT_NAME)
+@Label("Highlight Document")
+@Category({ "Yelp", "Search" })
+@Description("Document highlighted by CYlpHighlightEngine, with the timing of each stage")
+@Threshold(CYlpHighlightEvent.DEFAULT_THRESHOLD)
+@StackTrace(false)
+public final class CYlpHighlightEvent extends Event {
+
+	// name of the event in recordings and settings
+	public static final String EVENT_NAME = "com.yelp.search.HighlightDocument";
+
+	// calls faster than this are not recorded unless the recording sets a lower threshold
+	public static final String DEFAULT_THRESHOLD = "20 ms";
+
+	@Label("Query")
+	@Description("Normalized search query")
+	String query;
+
+	@Label("Document Length")
+	int documentLength;
+
+	@Label("Keyword Count")
+	@Description("Qualitative keywords of the query")
+	int keywordCount;
+
+	@Label("Combination Count")
+	@Description("Keyword combinations enumerated to build the keyword index table")
+	int combinationCount;
+
+	@Label("Windows Scored")
+	@Description("Scan windows counted by the proximity search")
+	int windowsScored;
+
+	@Label("Scan Method")
+	@Description("EylpScanMethod of the selected snippet")
+	String scanMethod;
+
+	@Label("Degraded")
+	@Description("Work budget ran out and the best snippet found before it was returned")
+	boolean degraded;
+
+	@Label("Query Compilation")
+	@Timespan(Timespan.NANOSECONDS)
+	long queryCompilation;
+
+	@Label("Keyword Occurrences")
+	@Timespan(Timespan.NANOSECONDS)
+	long keywordOccurrences;
+
+	@Label("Keyword Index Table")
+	@Timespan(Timespan.NANOSECONDS)
+	long keywordIndexTable;
+
+	@Label("Proximity Search")
+	@Timespan(Timespan.NANOSECONDS)
+	long proximitySearch;
+
+	@Label("Padding")
+	@Timespan(Timespan.NANOSECONDS)
+	long padding;
+}
@@ -0,0 +1,27 @@
+package com.yelp.search.highlight;
+
+/**
+ * Listener that CYlpHighlightEngine calls after every highlighted document with the timings of the stages
+ * and the sizes that drive them, to find which stage dominates slow requests. It is set with
+ * CYlpHighlightEngine.Builder.highlightListener(), see CYlpHighlightStatsAggregator for a listener that
+ * aggregates the traces in histograms.
+ *
+ * The listener is called on the thread that highlighted the document, from all the threads sharing the
+ * engine, so it has to be thread safe and should return quickly. With NO_OP (the default) the engine does
+ * not read the clock nor create a trace, unless a flight recording enables CYlpHighlightEvent.
+ *
+ */
+public interface CYlpHighlightListener {
+
+	// listener that ignores all traces, the engine skips the instrumentation when it is set
+	CYlpHighlightListener NO_OP = new CYlpHighlightListener() {
+		public void onHighlight(CYlpHighlightTrace trace) {
+		}
+	};
+
+	/**
+	 * Called after a document was highlighted
+	 * @param trace: timings and sizes of the call, it is not used by the engine after this returns
+	 */
+	void onHighlight(CYlpHighlightTrace trace);
+}
@@ -0,0 +1,94 @@
+package com.yelp.search.highlight;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Turns a CYlpHighlightResult in to text for one output format. The snippet is rendered in one pass over the
+ * spans of the result: the text between two keyword groups goes through appendText() and each group through
+ * appendHighlight(), both read the characters from the text of the document so no sub string is created.
+ *
+ * Renderers of this package: CYlpMarkerRenderer (pads around the groups, the format of getHighlightDoc()),
+ * CYlpHtmlRenderer (escaped HTML with a tag around the groups) and CYlpAnsiRenderer (escape sequences for a
+ * terminal). Renderers keep no state between calls and can be shared between threads.
+ *
+ */
+public abstract class CYlpHighlightRenderer {
+
+	/**
+	 * Renders the result in to a new String
+	 * @param result
+	 * @throws CYlpNullArgumentException
+	 * @return the snippet of the result with its keyword groups highlighted
+	 */
+	public String render(CYlpHighlightResult result) throws CYlpNullArgumentException {
+
+		if (result == null) {
+			throw new CYlpNullArgumentException(
+					"result is null ");
+		}
+
+		//room for the snippet and a few highlighted keyword groups
+		StringBuilder renderedSnippet = new StringBuilder(result.getSnippetEndIndex()
+				- result.getSnippetStartIndex() + 64);
+		try {
+			render(result, renderedSnippet);
+		} catch (IOException ioEx) {
+			//StringBuilder never throws IOException
+			throw new UncheckedIOException(ioEx);
+		}
+		return renderedSnippet.toString();
+	}
+
+	/**
+	 * Appends the rendered result to out, for example the Writer of a response
+	 * @param result
+	 * @param out: appendable the snippet is appended to
+	 * @throws CYlpNullArgumentException
+	 * @throws IOException when appending fails
+	 * @return out
+	 */
+	public Appendable render(CYlpHighlightResult result, Appendable out) throws CYlpNullArgumentException,
+			IOException {
+
+		if (result == null || out == null) {
+			throw new CYlpNullArgumentException(
+					"Either result or out is null ");
+		}
+
+		CharSequence text = result.getText();
+		int renderedIndex = result.getSnippetStartIndex();
+		for (int span = 0; span < result.getSpanCount(); span++) {
+			int spanStart = result.getSpanStart(span);
+			int spanEnd = result.getSpanEnd(span);
+			appendText(out, text, renderedIndex, spanStart);
+			appendHighlight(out, text, spanStart, spanEnd);
+			renderedIndex = spanEnd;
+		}
+		appendText(out, text, renderedIndex, result.getSnippetEndIndex());
+		return out;
+	}
+
+	/**
+	 * Appends text that is not highlighted
+	 * @param out
+	 * @param text: text of the document
+	 * @param start: offset of the first character to append
+	 * @param end: offset after the last character to append
+	 * @throws IOException
+	 */
+	protected abstract void appendText(Appendable out, CharSequence text, int start, int end) throws IOException;
+
+	/**
+	 * Appends one highlighted keyword group
+	 * @param out
+	 * @param text: text of the document
+	 * @param start: offset of the first character of the group
+	 * @param end: offset after the last character of the group
+	 * @throws IOException
+	 */
+	protected abstract void appendHighlight(Appendable out, CharSequence text, int start, int end)
+			throws IOException;
+}
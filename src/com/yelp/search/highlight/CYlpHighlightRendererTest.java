@@ -0,0 +1,132 @@
+package com.yelp.search.highlight;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * unit test class that tests CYlpHighlightResult and the renderers built on it, the marker renderer should
+ * give the same snippets as getHighlightDoc()
+ *
+ */
+public class CYlpHighlightRendererTest {
+
+	private static final String[] REVIEWS = { "Little star's deep dish pizza sure is fantastic",
+			"We tried the deep dish pepperoni pizza and once again it was amazingly good! The dish was hot.",
+			"that is, a sentence-break iterator returns breaks",
+			"The pizza was cold but the dish was good, deep down I still love their deep dish pizza", "deep" };
+	private static final String[] QUERIES = { "deep dish pizza", "pizza", "dish was good", "the" };
+
+	// "deep dish" and "pizza" are highlighted
+	private static final String HTML_DOC = "I said \"deep dish\" & <pizza> too";
+
+	/**
+	 * Tests the offsets and spans of a result, and that rendering it with markers gives the snippet of
+	 * getHighlightDoc() for every review and query
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testGetHighlightResult() throws CYlpNullArgumentException {
+
+		CYlpHighlightEngine engine = CYlpHighlightEngine.builder().snippetLength(60).build();
+		CYlpHighlightResult result = engine.getHighlightResult(REVIEWS[0], "deep dish pizza");
+		assertEquals("Expecting snippet start", 0, result.getSnippetStartIndex());
+		assertEquals("Expecting snippet end", REVIEWS[0].length(), result.getSnippetEndIndex());
+		assertEquals("Expecting one keyword group", 1, result.getSpanCount());
+		assertArrayEquals("Expecting group with the blank after it", new int[] { 14, 30 }, result.getSpans());
+		assertEquals("Expecting group text", "deep dish pizza ",
+				REVIEWS[0].substring(result.getSpanStart(0), result.getSpanEnd(0)));
+		assertFalse("Expecting result not degraded", result.isDegraded());
+
+		CYlpMarkerRenderer markerRenderer = new CYlpMarkerRenderer();
+		for (String review : REVIEWS) {
+			for (String query : QUERIES) {
+				assertEquals("Expecting same snippet as getHighlightDoc for " + query,
+						engine.getHighlightDoc(review, query),
+						markerRenderer.render(engine.getHighlightResult(review, query)));
+			}
+		}
+
+		CYlpHighlightEngine markerEngine = engine.toBuilder().padBefore("<b>").padAfter("</b>").build();
+		String review = "Their deep dish pizza was great. We waited an hour. The deep dish pizza came hot, deep "
+				+ "dish pizza and more pizza.";
+		List<CYlpHighlightResult> results = markerEngine.getHighlightResults(review, "deep dish pizza", 3);
+		List<String> snippets = markerEngine.getHighlightSnippets(review, "deep dish pizza", 3);
+		assertEquals("Expecting same number of snippets", snippets.size(), results.size());
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals("Expecting same snippet as getHighlightSnippets", snippets.get(i),
+					new CYlpMarkerRenderer("<b>", "</b>").render(results.get(i)));
+		}
+	}
+
+	/**
+	 * Tests the three renderers on a result with two keyword groups
+	 * @throws Exception
+	 */
+	@Test
+	public void testRenderers() throws Exception {
+
+		CYlpHighlightResult result = new CYlpHighlightResult(HTML_DOC, 2, HTML_DOC.length(),
+				new int[] { 8, 17, 22, 27 }, false);
+		assertEquals("Expecting snippet", "said \"deep dish\" & <pizza> too", result.getSnippet());
+
+		assertEquals("Expecting default markers",
+				"said \"[[HIGHLIGHT]]deep dish[[ENDHIGHLIGHT]]\" & <[[HIGHLIGHT]]pizza[[ENDHIGHLIGHT]]> too",
+				new CYlpMarkerRenderer().render(result));
+		assertEquals("Expecting escaped HTML",
+				"said &quot;<em>deep dish</em>&quot; &amp; &lt;<em>pizza</em>&gt; too",
+				new CYlpHtmlRenderer().render(result));
+		StringWriter htmlWriter = new StringWriter();
+		new CYlpHtmlRenderer("<mark>", "</mark>").render(result, htmlWriter);
+		assertEquals("Expecting custom tags written to the writer",
+				"said &quot;<mark>deep dish</mark>&quot; &amp; &lt;<mark>pizza</mark>&gt; too", htmlWriter.toString());
+
+		// escape characters of the document are dropped
+		String ansiDoc = "\u001B[31mred pizza";
+		CYlpHighlightResult ansiResult = new CYlpHighlightResult(ansiDoc, 0, ansiDoc.length(), new int[] { 9, 14 },
+				false);
+		assertEquals("Expecting ANSI sequences", "[31mred \u001B[1;33mpizza\u001B[0m",
+				new CYlpAnsiRenderer().render(ansiResult));
+
+		CYlpHighlightResult noSpanResult = new CYlpHighlightResult(HTML_DOC, 0, 6, new int[0], false);
+		assertEquals("Expecting text only", "I said", new CYlpHtmlRenderer().render(noSpanResult));
+	}
+
+	@Test
+	public void testInvalidResult() throws CYlpNullArgumentException {
+
+		try {
+			new CYlpHighlightResult(null, 0, 0, new int[0], false);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+		try {
+			new CYlpHighlightResult(HTML_DOC, 0, 10, new int[] { 8 }, false);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (IllegalArgumentException illegalArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+		try {
+			new CYlpHighlightResult(HTML_DOC, 0, 10, new int[] { 8, 17 }, false);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (IllegalArgumentException illegalArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+		try {
+			new CYlpHtmlRenderer().render(null);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package com.yelp.search.highlight;
+
+import java.util.Arrays;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Snippet selected by CYlpHighlightEngine.getHighlightResult() as offsets in the document, with the keyword
+ * groups to highlight as spans of document offsets, instead of a String with the pads already in it. A
+ * CYlpHighlightRenderer turns the result in to the text a client shows (markers, HTML, ANSI), so a front end
+ * gets the spans without parsing pads out of the snippet.
+ *
+ * The result keeps a reference to the text of the document, it does not copy the snippet; getSnippet() and
+ * the renderers read the text when they are called. Results are immutable as long as the text is.
+ *
+ */
+public final class CYlpHighlightResult {
+
+	private final CharSequence text;
+	private final int snippetStartIndex;
+	private final int snippetEndIndex;
+
+	//start and end of every keyword group, the group i is spans[2 * i] to spans[2 * i + 1]
+	private final int[] spans;
+
+	//true when the work budget ran out before the best snippet was found
+	private final boolean degraded;
+
+	/**
+	 * @param text: text of the document
+	 * @param snippetStartIndex: offset of the first character of the snippet in the text
+	 * @param snippetEndIndex: offset after the last character of the snippet in the text
+	 * @param spans: start and end offsets of the keyword groups in increasing order, inside the snippet. The
+	 * array is kept, it should not be modified after this
+	 * @param degraded
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpHighlightResult(CharSequence text, int snippetStartIndex, int snippetEndIndex, int[] spans,
+			boolean degraded) throws CYlpNullArgumentException {
+
+		if (text == null || spans == null) {
+			throw new CYlpNullArgumentException(
+					"Either text or spans is null ");
+		}
+		if (snippetStartIndex < 0 || snippetEndIndex > text.length() || snippetStartIndex > snippetEndIndex) {
+			throw new IndexOutOfBoundsException("snippet " + snippetStartIndex + " to " + snippetEndIndex
+					+ " is outside the text of length " + text.length());
+		}
+		if (spans.length % 2 != 0) {
+			throw new IllegalArgumentException("spans should have a start and an end for every group ");
+		}
+		int previousEnd = snippetStartIndex;
+		for (int i = 0; i < spans.length; i += 2) {
+			if (spans[i] < previousEnd || spans[i] > spans[i + 1] || spans[i + 1] > snippetEndIndex) {
+				throw new IllegalArgumentException("span " + spans[i] + " to " + spans[i + 1]
+						+ " is not in increasing order inside the snippet ");
+			}
+			previousEnd = spans[i + 1];
+		}
+
+		this.text = text;
+		this.snippetStartIndex = snippetStartIndex;
+		this.snippetEndIndex = snippetEndIndex;
+		this.spans = spans;
+		this.degraded = degraded;
+	}
+
+	/**
+	 * @return text of the document the offsets refer to
+	 */
+	public CharSequence getText() {
+		return text;
+	}
+
+	public int getSnippetStartIndex() {
+		return snippetStartIndex;
+	}
+
+	public int getSnippetEndIndex() {
+		return snippetEndIndex;
+	}
+
+	/**
+	 * @return snippet without highlighting, copied from the text
+	 */
+	public String getSnippet() {
+		return text.subSequence(snippetStartIndex, snippetEndIndex).toString();
+	}
+
+	/**
+	 * @return number of keyword groups to highlight
+	 */
+	public int getSpanCount() {
+		return spans.length / 2;
+	}
+
+	/**
+	 * @param span: index of the keyword group
+	 * @return offset of the first character of the group in the text
+	 */
+	public int getSpanStart(int span) {
+		return spans[2 * span];
+	}
+
+	/**
+	 * @param span: index of the keyword group
+	 * @return offset after the last character of the group in the text
+	 */
+	public int getSpanEnd(int span) {
+		return spans[2 * span + 1];
+	}
+
+	/**
+	 * @return copy of the spans, start and end offset in the text of every keyword group
+	 */
+	public int[] getSpans() {
+		return spans.clone();
+	}
+
+	/**
+	 * @return true when the work budget ran out, the snippet is the best one found before it stopped
+	 */
+	public boolean isDegraded() {
+		return degraded;
+	}
+
+	@Override
+	public String toString() {
+		return "CYlpHighlightResult [snippet=" + snippetStartIndex + "-" + snippetEndIndex + ", spans="
+				+ Arrays.toString(spans) + ", degraded=" + degraded + "]";
+	}
+}
@@ -0,0 +1,414 @@
+package com.yelp.search.highlight;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.yelp.enums.EylpSelectionEngine;
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.analysis.CYlpAnalyzer;
+
+/**
+ * Bounded cache of highlighted snippets, so the same query on the same review (popular businesses get the
+ * same searches over and over) is highlighted once. It is set on an engine with
+ * CYlpHighlightEngine.Builder.resultCache() or on CYlpDocumentHighlight.setResultCache(). A snippet is keyed by
+ * the document, the normalized query and the settings of the engine that highlighted it (snippet length,
+ * pads, selection engine and analyzer), so engines with different settings can share one cache.
+ *
+ * Documents are identified by an ID given by the caller, getHighlightDoc(String, CharSequence, String), or by
+ * a 64 bit hash of their content. When a document with an ID is edited invalidate(documentId) removes its
+ * snippets, a document identified by content gets a new key when it changes. All snippets of a document
+ * with an ID are in one segment, which indexes their keys by the ID, so invalidating a document only locks
+ * that segment and only touches the snippets of the document.
+ *
+ * A snippet whose highlighting started before its document was invalidated is not put in the cache when it
+ * ends: each segment counts its invalidations (its generation) and keeps the generation of the last
+ * invalidation of each document, the engine reads the generation before it highlights the document and the
+ * snippet is dropped when its document was invalidated in between. Snippets of other documents are still
+ * cached.
+ *
+ * EVICTION: the cache is split in to segments by the hash of the key (of the ID for a document that has
+ * one), each with its own lock, so threads highlighting different documents seldom wait for each other. Each
+ * segment is a segmented LRU: new snippets go to a probation part and are moved to a protected part (80% of
+ * the segment) when they are used again, snippets that are used once (a scan of all reviews of a business)
+ * only push out other snippets used once.
+ *
+ */
+public final class CYlpHighlightResultCache {
+
+	// default number of snippets kept in the cache
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	// most segments of a cache, fewer when the cache is small
+	private static final int MAX_SEGMENTS = 16;
+
+	private final int maxSize;
+	private final CYlpCacheSegment[] segments;
+	private final int segmentMask;
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	public CYlpHighlightResultCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public CYlpHighlightResultCache(int cacheSize) {
+
+		if (cacheSize <= 0) {
+			throw new IllegalArgumentException("cache size should be greater than 0 ");
+		}
+
+		maxSize = cacheSize;
+		int segmentCount = Integer.highestOneBit(Math.min(MAX_SEGMENTS, Math.max(1, cacheSize / MAX_SEGMENTS)));
+		segments = new CYlpCacheSegment[segmentCount];
+		segmentMask = segmentCount - 1;
+		for (int i = 0; i < segmentCount; i++) {
+			// the first segments take the remainder so the capacities add up to cacheSize
+			segments[i] = new CYlpCacheSegment(cacheSize / segmentCount + (i < cacheSize % segmentCount ? 1 : 0));
+		}
+	}
+
+	/**
+	 * Returns the 64 bit hash used as key of a document that has no ID (FNV-1a of the characters)
+	 * @param doc
+	 * @throws CYlpNullArgumentException
+	 * @return hash of the content of the document
+	 */
+	public static long hashContent(CharSequence doc) throws CYlpNullArgumentException {
+
+		if (doc == null) {
+			throw new CYlpNullArgumentException(
+					"document is null ");
+		}
+
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < doc.length(); i++) {
+			hash = (hash ^ doc.charAt(i)) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * @return snippet of the key, null when it is not in the cache
+	 */
+	String getSnippet(CYlpResultKey resultKey) {
+
+		String snippet = getSegment(resultKey).get(resultKey);
+		if (snippet != null) {
+			hitCount.increment();
+		} else {
+			missCount.increment();
+		}
+		return snippet;
+	}
+
+	/**
+	 * @return generation of the segment of the key, to be passed to putSnippet()
+	 */
+	long getGeneration(CYlpResultKey resultKey) {
+		return getSegment(resultKey).getGeneration();
+	}
+
+	/**
+	 * Puts the snippet in the cache unless the document of the key was invalidated after generation was read
+	 * @param resultKey
+	 * @param snippet
+	 * @param generation: generation read with getGeneration() before the document was highlighted
+	 */
+	void putSnippet(CYlpResultKey resultKey, String snippet, long generation) {
+		evictionCount.add(getSegment(resultKey).put(resultKey, snippet, generation));
+	}
+
+	private CYlpCacheSegment getSegment(CYlpResultKey resultKey) {
+		String documentId = resultKey.getDocumentId();
+		return getSegment(documentId != null ? documentId.hashCode() : resultKey.hashCode());
+	}
+
+	private CYlpCacheSegment getSegment(int hash) {
+		return segments[(hash ^ (hash >>> 16)) & segmentMask];
+	}
+
+	/**
+	 * Removes the snippets of the document, for example when the review was edited
+	 * @param documentId: ID given to getHighlightDoc(String, CharSequence, String)
+	 * @throws CYlpNullArgumentException
+	 * @return number of snippets removed
+	 */
+	public int invalidate(String documentId) throws CYlpNullArgumentException {
+
+		if (documentId == null) {
+			throw new CYlpNullArgumentException(
+					"document id is null ");
+		}
+
+		return getSegment(documentId.hashCode()).removeDocument(documentId);
+	}
+
+	/**
+	 * Removes all snippets, counters are not reset
+	 */
+	public void invalidateAll() {
+		for (CYlpCacheSegment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int size() {
+		int size = 0;
+		for (CYlpCacheSegment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * @return number of snippets removed to make room for new ones
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	/**
+	 * Returns hits divided by number of lookups, 0 when there was no lookup
+	 * @return hit rate of the cache
+	 */
+	public double getHitRate() {
+		long hits = hitCount.sum();
+		long lookups = hits + missCount.sum();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Key of a snippet, the document is its ID or, when it has none, the hash and length of its content
+	 */
+	static final class CYlpResultKey {
+
+		private final String documentId;
+		private final long contentHash;
+		private final int documentLength;
+		private final String normalizedQuery;
+		private final int snippetLength;
+		private final String padBefore;
+		private final String padAfter;
+		private final EylpSelectionEngine selectionEngine;
+		private final CYlpAnalyzer analyzer;
+		private final int hash;
+
+		CYlpResultKey(String documentId, long contentHash, int documentLength, String normalizedQuery,
+				int snippetLength, String padBefore, String padAfter, EylpSelectionEngine selectionEngine,
+				CYlpAnalyzer analyzer) {
+			this.documentId = documentId;
+			this.contentHash = contentHash;
+			this.documentLength = documentLength;
+			this.normalizedQuery = normalizedQuery;
+			this.snippetLength = snippetLength;
+			this.padBefore = padBefore;
+			this.padAfter = padAfter;
+			this.selectionEngine = selectionEngine;
+			this.analyzer = analyzer;
+
+			int keyHash = documentId != null ? documentId.hashCode() : Long.hashCode(contentHash);
+			keyHash = 31 * keyHash + normalizedQuery.hashCode();
+			keyHash = 31 * keyHash + snippetLength;
+			keyHash = 31 * keyHash + padBefore.hashCode();
+			keyHash = 31 * keyHash + padAfter.hashCode();
+			hash = 31 * keyHash + selectionEngine.ordinal();
+		}
+
+		/**
+		 * @return ID of the document, null when the document is identified by its content
+		 */
+		String getDocumentId() {
+			return documentId;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof CYlpResultKey)) {
+				return false;
+			}
+			CYlpResultKey otherKey = (CYlpResultKey) other;
+			return hash == otherKey.hash && contentHash == otherKey.contentHash
+					&& documentLength == otherKey.documentLength && snippetLength == otherKey.snippetLength
+					&& selectionEngine == otherKey.selectionEngine && analyzer == otherKey.analyzer
+					&& (documentId == null ? otherKey.documentId == null : documentId.equals(otherKey.documentId))
+					&& normalizedQuery.equals(otherKey.normalizedQuery) && padBefore.equals(otherKey.padBefore)
+					&& padAfter.equals(otherKey.padAfter);
+		}
+	}
+
+	/**
+	 * Segmented LRU of one segment of the cache, guarded by this. The generation is incremented by every
+	 * invalidation of a document of this segment, also when it removed no snippet, and by clear()
+	 */
+	private static final class CYlpCacheSegment {
+
+		private final int capacity;
+		private final int protectedCapacity;
+
+		// snippets used once in insertion order, and snippets used again in access order
+		private final LinkedHashMap<CYlpResultKey, String> probationSnippets = new LinkedHashMap<CYlpResultKey, String>();
+		private final LinkedHashMap<CYlpResultKey, String> protectedSnippets = new LinkedHashMap<CYlpResultKey, String>(
+				16, 0.75f, true);
+
+		// keys of the snippets of each document that has an ID
+		private final Map<String, List<CYlpResultKey>> documentKeys = new HashMap<String, List<CYlpResultKey>>();
+
+		// generation of the last invalidation of each document, the oldest are forgotten past capacity
+		private final LinkedHashMap<String, Long> invalidations = new LinkedHashMap<String, Long>();
+
+		private long generation;
+
+		// snippets highlighted before this generation are dropped, set by clear() and by forgotten invalidations
+		private long droppedGeneration;
+
+		CYlpCacheSegment(int capacity) {
+			this.capacity = capacity;
+			protectedCapacity = capacity * 4 / 5;
+		}
+
+		synchronized String get(CYlpResultKey resultKey) {
+
+			String snippet = protectedSnippets.get(resultKey);
+			if (snippet != null) {
+				return snippet;
+			}
+			snippet = probationSnippets.remove(resultKey);
+			if (snippet == null) {
+				return null;
+			}
+
+			// used again, the least recently used protected snippet goes back to probation
+			protectedSnippets.put(resultKey, snippet);
+			while (protectedSnippets.size() > protectedCapacity) {
+				Iterator<Map.Entry<CYlpResultKey, String>> eldest = protectedSnippets.entrySet().iterator();
+				Map.Entry<CYlpResultKey, String> demoted = eldest.next();
+				eldest.remove();
+				probationSnippets.put(demoted.getKey(), demoted.getValue());
+			}
+			return snippet;
+		}
+
+		synchronized long getGeneration() {
+			return generation;
+		}
+
+		/**
+		 * @return number of snippets evicted
+		 */
+		synchronized int put(CYlpResultKey resultKey, String snippet, long snippetGeneration) {
+
+			// invalidated while the snippet was highlighted, it may be the snippet of the old document
+			if (snippetGeneration < droppedGeneration) {
+				return 0;
+			}
+			String documentId = resultKey.getDocumentId();
+			if (documentId != null) {
+				Long invalidation = invalidations.get(documentId);
+				if (invalidation != null && invalidation > snippetGeneration) {
+					return 0;
+				}
+			}
+			if (protectedSnippets.containsKey(resultKey)) {
+				protectedSnippets.put(resultKey, snippet);
+				return 0;
+			}
+			if (probationSnippets.put(resultKey, snippet) == null && documentId != null) {
+				List<CYlpResultKey> keys = documentKeys.get(documentId);
+				if (keys == null) {
+					keys = new ArrayList<CYlpResultKey>(2);
+					documentKeys.put(documentId, keys);
+				}
+				keys.add(resultKey);
+			}
+
+			int evictedCount = 0;
+			while (probationSnippets.size() + protectedSnippets.size() > capacity) {
+				Map<CYlpResultKey, String> evictedFrom = probationSnippets.isEmpty() ? protectedSnippets
+						: probationSnippets;
+				Iterator<CYlpResultKey> eldest = evictedFrom.keySet().iterator();
+				removeDocumentKey(eldest.next());
+				eldest.remove();
+				evictedCount++;
+			}
+			return evictedCount;
+		}
+
+		synchronized int removeDocument(String documentId) {
+
+			generation++;
+			invalidations.remove(documentId);
+			invalidations.put(documentId, generation);
+			if (invalidations.size() > capacity) {
+				// snippets that started before the forgotten invalidation are dropped, whatever their document
+				Iterator<Long> eldest = invalidations.values().iterator();
+				droppedGeneration = Math.max(droppedGeneration, eldest.next());
+				eldest.remove();
+			}
+
+			List<CYlpResultKey> keys = documentKeys.remove(documentId);
+			if (keys == null) {
+				return 0;
+			}
+			for (CYlpResultKey resultKey : keys) {
+				if (probationSnippets.remove(resultKey) == null) {
+					protectedSnippets.remove(resultKey);
+				}
+			}
+			return keys.size();
+		}
+
+		private void removeDocumentKey(CYlpResultKey resultKey) {
+
+			String documentId = resultKey.getDocumentId();
+			if (documentId == null) {
+				return;
+			}
+			List<CYlpResultKey> keys = documentKeys.get(documentId);
+			keys.remove(resultKey);
+			if (keys.isEmpty()) {
+				documentKeys.remove(documentId);
+			}
+		}
+
+		synchronized void clear() {
+			generation++;
+			droppedGeneration = generation;
+			probationSnippets.clear();
+			protectedSnippets.clear();
+			documentKeys.clear();
+			invalidations.clear();
+		}
+
+		synchronized int size() {
+			return probationSnippets.size() + protectedSnippets.size();
+		}
+	}
+}
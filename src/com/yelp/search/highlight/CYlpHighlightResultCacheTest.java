@@ -0,0 +1,174 @@
+package com.yelp.search.highlight;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.yelp.enums.EylpSelectionEngine;
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * unit test class that tests CYlpHighlightResultCache used by CYlpHighlightEngine and CYlpDocumentHighlight
+ *
+ */
+public class CYlpHighlightResultCacheTest {
+
+	private static final String REVIEW = "We tried the deep dish pepperoni pizza and once again it was amazingly good!";
+	private static final String EDITED_REVIEW = "We tried the thin crust pizza, the deep dish was better";
+
+	@Test
+	public void testCachedSnippets() throws CYlpNullArgumentException {
+
+		CYlpHighlightResultCache resultCache = new CYlpHighlightResultCache(100);
+		CYlpHighlightEngine cachedEngine = CYlpHighlightEngine.builder().snippetLength(40).resultCache(resultCache)
+				.build();
+		String expectedSnippet = new CYlpDocumentHighlight(40).getHighlightDoc(REVIEW, "deep dish pizza");
+
+		assertEquals("Expecting snippet of the document", expectedSnippet,
+				cachedEngine.getHighlightDoc(REVIEW, "deep dish pizza"));
+		assertEquals("Expecting snippet from the cache for the normalized query", expectedSnippet,
+				cachedEngine.getHighlightDoc(new StringBuilder(REVIEW), " deep  dish pizza "));
+		assertEquals("Expecting one miss", 1, resultCache.getMissCount());
+		assertEquals("Expecting one hit", 1, resultCache.getHitCount());
+		assertEquals("Expecting hit rate", 0.5, resultCache.getHitRate(), 0.0001);
+
+		// other settings are other keys of the same cache
+		CYlpHighlightEngine markerEngine = cachedEngine.toBuilder().padBefore("<b>").padAfter("</b>")
+				.selectionEngine(EylpSelectionEngine.KEYWORD_COVERAGE).build();
+		assertTrue("Expecting snippet with the pads of the engine",
+				markerEngine.getHighlightDoc(REVIEW, "deep dish pizza").contains("<b>"));
+		assertEquals("Expecting a snippet per engine", 2, resultCache.size());
+
+		resultCache.invalidateAll();
+		assertEquals("Expecting empty cache", 0, resultCache.size());
+	}
+
+	/**
+	 * Tests that a document with an ID is cached under the ID, and that invalidating the ID removes its
+	 * snippets for all queries
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testInvalidateDocument() throws CYlpNullArgumentException {
+
+		CYlpHighlightResultCache resultCache = new CYlpHighlightResultCache();
+		CYlpDocumentHighlight documentHighlight = new CYlpDocumentHighlight(40);
+		documentHighlight.setResultCache(resultCache);
+
+		String snippet = documentHighlight.getHighlightDoc("review-1", REVIEW, "deep dish pizza");
+		documentHighlight.getHighlightDoc("review-1", REVIEW, "pizza");
+		documentHighlight.getHighlightDoc("review-2", REVIEW, "pizza");
+		assertEquals("Expecting cached snippet of the ID even when the text is not read", snippet,
+				documentHighlight.getHighlightDoc("review-1", EDITED_REVIEW, "deep dish pizza"));
+
+		assertEquals("Expecting snippets of both queries removed", 2, resultCache.invalidate("review-1"));
+		assertEquals("Expecting snippet of the edited review",
+				new CYlpDocumentHighlight(40).getHighlightDoc(EDITED_REVIEW, "deep dish pizza"),
+				documentHighlight.getHighlightDoc("review-1", EDITED_REVIEW, "deep dish pizza"));
+		assertEquals("Expecting snippet of the other review to be kept", 2, resultCache.size());
+
+		try {
+			resultCache.invalidate(null);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
+	/**
+	 * Tests that a snippet highlighted while its document is invalidated on another thread is not cached, and
+	 * that invalidating another document meanwhile does not drop it. The listener of the engine runs before
+	 * the snippet would be put in the cache
+	 * @throws Exception
+	 */
+	@Test
+	public void testInvalidateWhileHighlighting() throws Exception {
+
+		CYlpHighlightResultCache resultCache = new CYlpHighlightResultCache();
+		AtomicBoolean edited = new AtomicBoolean();
+		CYlpHighlightEngine cachedEngine = getEditingEngine(resultCache, "review-1", edited);
+
+		assertEquals("Expecting snippet of the old text",
+				new CYlpDocumentHighlight(40).getHighlightDoc(REVIEW, "deep dish pizza"),
+				cachedEngine.getHighlightDoc("review-1", REVIEW, "deep dish pizza"));
+		assertTrue("Expecting the review to be edited during the highlight", edited.get());
+		assertEquals("Expecting snippet of the old text not to be cached", 0, resultCache.size());
+		assertEquals("Expecting snippet of the edited review",
+				new CYlpDocumentHighlight(40).getHighlightDoc(EDITED_REVIEW, "deep dish pizza"),
+				cachedEngine.getHighlightDoc("review-1", EDITED_REVIEW, "deep dish pizza"));
+		assertEquals("Expecting snippet of the edited review to be cached", 1, resultCache.size());
+
+		// another review is edited while review-1 is highlighted
+		resultCache = new CYlpHighlightResultCache();
+		edited.set(false);
+		getEditingEngine(resultCache, "review-2", edited).getHighlightDoc("review-1", REVIEW, "deep dish pizza");
+		assertTrue("Expecting the other review to be edited during the highlight", edited.get());
+		assertEquals("Expecting snippet to be cached", 1, resultCache.size());
+	}
+
+	/**
+	 * Returns an engine whose first highlight invalidates the document on another thread, and waits for it
+	 */
+	private static CYlpHighlightEngine getEditingEngine(final CYlpHighlightResultCache resultCache,
+			final String editedDocumentId, final AtomicBoolean edited) throws CYlpNullArgumentException {
+
+		return CYlpHighlightEngine.builder().snippetLength(40).resultCache(resultCache)
+				.highlightListener(new CYlpHighlightListener() {
+					public void onHighlight(CYlpHighlightTrace trace) {
+						if (edited.compareAndSet(false, true)) {
+							// the review is edited while a review is highlighted
+							Thread editThread = new Thread(new Runnable() {
+								public void run() {
+									try {
+										resultCache.invalidate(editedDocumentId);
+									} catch (CYlpNullArgumentException nullArgEx) {
+										throw new IllegalStateException(nullArgEx);
+									}
+								}
+							});
+							editThread.start();
+							try {
+								editThread.join();
+							} catch (InterruptedException interruptedEx) {
+								Thread.currentThread().interrupt();
+							}
+						}
+					}
+				}).build();
+	}
+
+	/**
+	 * Tests that snippets used more than once are kept while many snippets used once go through the cache
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testEviction() throws CYlpNullArgumentException {
+
+		CYlpHighlightResultCache resultCache = new CYlpHighlightResultCache(10);
+		CYlpHighlightEngine cachedEngine = CYlpHighlightEngine.builder().snippetLength(40).resultCache(resultCache)
+				.build();
+
+		for (int i = 0; i < 5; i++) {
+			cachedEngine.getHighlightDoc("popular-" + i, REVIEW, "deep dish pizza");
+			cachedEngine.getHighlightDoc("popular-" + i, REVIEW, "deep dish pizza");
+		}
+		for (int i = 0; i < 100; i++) {
+			cachedEngine.getHighlightDoc("scanned-" + i, REVIEW, "deep dish pizza");
+		}
+		assertEquals("Expecting cache to stay bounded", 10, resultCache.size());
+		assertEquals("Expecting snippets evicted", 95, resultCache.getEvictionCount());
+
+		long hitsBefore = resultCache.getHitCount();
+		for (int i = 0; i < 5; i++) {
+			cachedEngine.getHighlightDoc("popular-" + i, REVIEW, "deep dish pizza");
+		}
+		assertEquals("Expecting snippets used twice to survive the scan", hitsBefore + 5, resultCache.getHitCount());
+
+		assertEquals("Expecting evicted snippet not to be removed", 0, resultCache.invalidate("scanned-0"));
+		assertEquals("Expecting snippet of the popular review removed", 1, resultCache.invalidate("popular-0"));
+		assertEquals("Expecting one snippet less", 9, resultCache.size());
+	}
+}
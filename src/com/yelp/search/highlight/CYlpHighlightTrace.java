@@ -0,0 +1,146 @@
+package com.yelp.search.highlight;
+
+import com.yelp.enums.EylpHighlightStage;
+import com.yelp.enums.EylpScanMethod;
+
+/**
+ * Timings and sizes of one call of CYlpHighlightEngine, passed to CYlpHighlightListener. Stage timings are in
+ * nanoseconds from System.nanoTime(), a stage that did not run (for example QUERY_COMPILATION when the query
+ * was compiled by the caller) takes 0.
+ *
+ */
+public final class CYlpHighlightTrace {
+
+	private final long[] stageNanos = new long[EylpHighlightStage.values().length];
+
+	private String query;
+	private int documentLength;
+	private int keywordCount;
+	private int combinationCount;
+	private int windowsScored;
+	private EylpScanMethod scanMethod;
+	private boolean degraded;
+
+	//flight recorder event of the call, null when no recording enables it
+	private final CYlpHighlightEvent highlightEvent;
+
+	CYlpHighlightTrace(CYlpHighlightEvent highlightEvent) {
+		this.highlightEvent = highlightEvent;
+	}
+
+	CYlpHighlightEvent getHighlightEvent() {
+		return highlightEvent;
+	}
+
+	void setQuery(String normalizedQuery) {
+		query = normalizedQuery;
+	}
+
+	void addStageNanos(EylpHighlightStage stage, long elapsedNanos) {
+		stageNanos[stage.ordinal()] += elapsedNanos;
+	}
+
+	void setDocumentLength(int length) {
+		documentLength = length;
+	}
+
+	void setKeywordCount(int count) {
+		keywordCount = count;
+	}
+
+	void setCombinationCount(int count) {
+		combinationCount = count;
+	}
+
+	void setWindowsScored(int count) {
+		windowsScored = count;
+	}
+
+	void setScanMethod(EylpScanMethod method) {
+		scanMethod = method;
+	}
+
+	void setDegraded(boolean isDegraded) {
+		degraded = isDegraded;
+	}
+
+	/**
+	 * @return normalized query, see CYlpCompiledQuery.normalizeQuery()
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * @param stage
+	 * @return nanoseconds spent in the stage
+	 */
+	public long getStageNanos(EylpHighlightStage stage) {
+		return stageNanos[stage.ordinal()];
+	}
+
+	/**
+	 * @return nanoseconds spent in all stages
+	 */
+	public long getTotalNanos() {
+		long totalNanos = 0;
+		for (long nanos : stageNanos) {
+			totalNanos += nanos;
+		}
+		return totalNanos;
+	}
+
+	public int getDocumentLength() {
+		return documentLength;
+	}
+
+	/**
+	 * @return number of qualitative keywords of the query
+	 */
+	public int getKeywordCount() {
+		return keywordCount;
+	}
+
+	/**
+	 * @return number of keyword combinations enumerated while the keyword index table was built, 0 for the
+	 *         KEYWORD_COVERAGE selection engine which does not enumerate them
+	 */
+	public int getCombinationCount() {
+		return combinationCount;
+	}
+
+	/**
+	 * @return number of scan windows whose keyword occurences were counted by the proximity search, fewer than
+	 *         the windows around the start indexes when the work budget ran out
+	 */
+	public int getWindowsScored() {
+		return windowsScored;
+	}
+
+	/**
+	 * @return scan method of the selected snippet, null when the document has no keyword
+	 */
+	public EylpScanMethod getScanMethod() {
+		return scanMethod;
+	}
+
+	/**
+	 * @return true when the work budget ran out and the snippet is the best one found before it
+	 */
+	public boolean isDegraded() {
+		return degraded;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder traceString = new StringBuilder("CYlpHighlightTrace[query=").append(query)
+				.append(", documentLength=").append(documentLength).append(", keywordCount=").append(keywordCount)
+				.append(", combinationCount=").append(combinationCount).append(", windowsScored=")
+				.append(windowsScored).append(", scanMethod=").append(scanMethod)
+				.append(", degraded=").append(degraded);
+		for (EylpHighlightStage stage : EylpHighlightStage.values()) {
+			traceString.append(", ").append(stage).append('=').append(stageNanos[stage.ordinal()]).append("ns");
+		}
+		return traceString.append(']').toString();
+	}
+}
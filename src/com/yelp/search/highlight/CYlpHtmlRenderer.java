@@ -0,0 +1,94 @@
+package com.yelp.search.highlight;
+
+import java.io.IOException;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Renders the snippet as HTML: the characters &amp;, &lt;, &gt;, " and ' of the document are escaped and every
+ * keyword group is put between a start and an end tag, by default &lt;em&gt; and &lt;/em&gt;. The tags are
+ * appended as they are.
+ *
+ */
+public final class CYlpHtmlRenderer extends CYlpHighlightRenderer {
+
+	public static final String DEFAULT_START_TAG = "<em>";
+	public static final String DEFAULT_END_TAG = "</em>";
+
+	private final String startTag;
+	private final String endTag;
+
+	public CYlpHtmlRenderer() {
+		this.startTag = DEFAULT_START_TAG;
+		this.endTag = DEFAULT_END_TAG;
+	}
+
+	/**
+	 * @param startTag: appended before every keyword group, for example &lt;mark class="hl"&gt;
+	 * @param endTag: appended after every keyword group
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpHtmlRenderer(String startTag, String endTag) throws CYlpNullArgumentException {
+
+		if (startTag == null || endTag == null) {
+			throw new CYlpNullArgumentException(
+					"Either startTag or endTag is null ");
+		}
+		this.startTag = startTag;
+		this.endTag = endTag;
+	}
+
+	public String getStartTag() {
+		return startTag;
+	}
+
+	public String getEndTag() {
+		return endTag;
+	}
+
+	@Override
+	protected void appendText(Appendable out, CharSequence text, int start, int end) throws IOException {
+		appendEscaped(out, text, start, end);
+	}
+
+	@Override
+	protected void appendHighlight(Appendable out, CharSequence text, int start, int end) throws IOException {
+		out.append(startTag);
+		appendEscaped(out, text, start, end);
+		out.append(endTag);
+	}
+
+	/**
+	 * Appends the text escaping the characters that have a meaning in HTML, runs of other characters are
+	 * appended at once
+	 */
+	private static void appendEscaped(Appendable out, CharSequence text, int start, int end) throws IOException {
+
+		int appendedIndex = start;
+		for (int i = start; i < end; i++) {
+			String entity;
+			switch (text.charAt(i)) {
+			case '&':
+				entity = "&amp;";
+				break;
+			case '<':
+				entity = "&lt;";
+				break;
+			case '>':
+				entity = "&gt;";
+				break;
+			case '"':
+				entity = "&quot;";
+				break;
+			case '\'':
+				entity = "&#39;";
+				break;
+			default:
+				continue;
+			}
+			out.append(text, appendedIndex, i).append(entity);
+			appendedIndex = i + 1;
+		}
+		out.append(text, appendedIndex, end);
+	}
+}
@@ -0,0 +1,54 @@
+package com.yelp.search.highlight;
+
+import java.io.IOException;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Renders keyword groups between two pads, by default [[HIGHLIGHT]] and [[ENDHIGHLIGHT]]. The text is not
+ * escaped, the output is the same as the snippet of CYlpHighlightEngine.getHighlightDoc() with the same pads.
+ *
+ */
+public final class CYlpMarkerRenderer extends CYlpHighlightRenderer {
+
+	private final String padBefore;
+	private final String padAfter;
+
+	public CYlpMarkerRenderer() {
+		this.padBefore = CYlpHighlightEngine.DEFAULT_PAD_BEFORE;
+		this.padAfter = CYlpHighlightEngine.DEFAULT_PAD_AFTER;
+	}
+
+	/**
+	 * @param padBefore: appended before every keyword group
+	 * @param padAfter: appended after every keyword group
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpMarkerRenderer(String padBefore, String padAfter) throws CYlpNullArgumentException {
+
+		if (padBefore == null || padAfter == null) {
+			throw new CYlpNullArgumentException(
+					"Either padBefore or padAfter is null ");
+		}
+		this.padBefore = padBefore;
+		this.padAfter = padAfter;
+	}
+
+	public String getPadBefore() {
+		return padBefore;
+	}
+
+	public String getPadAfter() {
+		return padAfter;
+	}
+
+	@Override
+	protected void appendText(Appendable out, CharSequence text, int start, int end) throws IOException {
+		out.append(text, start, end);
+	}
+
+	@Override
+	protected void appendHighlight(Appendable out, CharSequence text, int start, int end) throws IOException {
+		out.append(padBefore).append(text, start, end).append(padAfter);
+	}
+}
@@ -0,0 +1,292 @@
+package com.yelp.search.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.document.CYlpTokenStream;
+import com.yelp.search.document.CYlpTokenizedDocument;
+import com.yelp.search.match.CYlpKeywordAutomaton;
+import com.yelp.search.match.CYlpKeywordOccurrences;
+import com.yelp.search.match.CYlpTermDictionary;
+
+/**
+ * Positional index of one document: its word boundaries and, for each distinct case-folded word (term),
+ * the sorted positions (word indexes) where it occurs. Blank words are not indexed. The document text is
+ * not kept, it is passed to the methods that need it.
+ *
+ * With the index the keyword occurrences, word boundaries and term IDs of the document are read instead
+ * of scanning its text. Instances are immutable and can be shared between threads.
+ *
+ */
+public final class CYlpDocumentIndex {
+
+	private final int documentLength;
+
+	//word boundaries, same as CYlpTokenizedDocument of the text
+	private final int[] boundaries;
+
+	//sorted case-folded terms and the positions of each term
+	private final String[] terms;
+	private final int[][] termPositions;
+
+	private CYlpDocumentIndex(int documentLength, int[] boundaries, String[] terms, int[][] termPositions) {
+		this.documentLength = documentLength;
+		this.boundaries = boundaries;
+		this.terms = terms;
+		this.termPositions = termPositions;
+	}
+
+	/**
+	 * Indexes the document passed as argument
+	 * @param doc
+	 * @throws CYlpNullArgumentException
+	 * @return index of the document
+	 */
+	public static CYlpDocumentIndex indexDocument(String doc) throws CYlpNullArgumentException {
+
+		if (doc == null) {
+			throw new CYlpNullArgumentException(
+					"document to index is null ");
+		}
+
+		CYlpTokenizedDocument tokenizedDoc = new CYlpTokenizedDocument(doc);
+		int wordCount = tokenizedDoc.getWordCount();
+
+		Map<String, List<Integer>> positionTable = new TreeMap<String, List<Integer>>();
+		int[] wordBoundaries = new int[wordCount + 1];
+		for (int i = 0; i < wordCount; i++) {
+			int wordStart = tokenizedDoc.getWordStart(i);
+			int wordEnd = tokenizedDoc.getWordEnd(i);
+			wordBoundaries[i] = wordStart;
+			wordBoundaries[i + 1] = wordEnd;
+			if (CYlpTokenStream.isBlank(doc, wordStart, wordEnd)) {
+				continue;
+			}
+			String term = CYlpKeywordAutomaton.foldCase(doc.substring(wordStart, wordEnd));
+			List<Integer> positions = positionTable.get(term);
+			if (positions == null) {
+				positions = new ArrayList<Integer>();
+				positionTable.put(term, positions);
+			}
+			positions.add(i);
+		}
+
+		String[] terms = new String[positionTable.size()];
+		int[][] termPositions = new int[terms.length][];
+		int termIndex = 0;
+		for (Map.Entry<String, List<Integer>> entry : positionTable.entrySet()) {
+			terms[termIndex] = entry.getKey();
+			List<Integer> positions = entry.getValue();
+			termPositions[termIndex] = new int[positions.size()];
+			for (int i = 0; i < positions.size(); i++) {
+				termPositions[termIndex][i] = positions.get(i);
+			}
+			termIndex++;
+		}
+		return new CYlpDocumentIndex(doc.length(), wordBoundaries, terms, termPositions);
+	}
+
+	public int getDocumentLength() {
+		return documentLength;
+	}
+
+	public int getWordCount() {
+		return boundaries.length - 1;
+	}
+
+	public int getTermCount() {
+		return terms.length;
+	}
+
+	public String getTerm(int termIndex) {
+		return terms[termIndex];
+	}
+
+	/**
+	 * @param term case-folded term
+	 * @return index of the term, -1 when the term does not occur in the document
+	 */
+	public int getTermIndex(String term) {
+		int termIndex = Arrays.binarySearch(terms, term);
+		return termIndex >= 0 ? termIndex : -1;
+	}
+
+	/**
+	 * @param termIndex
+	 * @return sorted positions (word indexes) of the term, a copy
+	 */
+	public int[] getPositions(int termIndex) {
+		return termPositions[termIndex].clone();
+	}
+
+	/**
+	 * Returns the tokenized document from the indexed word boundaries, the text is not walked again
+	 * @param doc: text of the indexed document
+	 * @throws CYlpNullArgumentException
+	 * @return tokenized document
+	 */
+	public CYlpTokenizedDocument getTokenizedDocument(CharSequence doc) throws CYlpNullArgumentException {
+
+		checkDocument(doc);
+		return new CYlpTokenizedDocument(doc, boundaries);
+	}
+
+	/**
+	 * Returns the token stream of the document for a query dictionary, term IDs are set from the positions
+	 * of the terms so the words are not looked up one by one
+	 * @param tokenizedDoc: tokenized document returned by getTokenizedDocument()
+	 * @param termDictionary
+	 * @throws CYlpNullArgumentException
+	 * @return token stream of the document
+	 */
+	public CYlpTokenStream getTokenStream(CYlpTokenizedDocument tokenizedDoc, CYlpTermDictionary termDictionary)
+			throws CYlpNullArgumentException {
+
+		if (tokenizedDoc == null || termDictionary == null) {
+			throw new CYlpNullArgumentException(
+					"Either tokenized document or term dictionary is null ");
+		}
+		checkDocument(tokenizedDoc.getText());
+
+		//words that are not indexed are blank
+		int[] termIds = new int[getWordCount()];
+		Arrays.fill(termIds, CYlpTokenStream.BLANK);
+		for (int termIndex = 0; termIndex < terms.length; termIndex++) {
+			int termId = termDictionary.getTermId(terms[termIndex]);
+			for (int position : termPositions[termIndex]) {
+				termIds[position] = termId;
+			}
+		}
+		return new CYlpTokenStream(tokenizedDoc, termDictionary, termIds);
+	}
+
+	/**
+	 * Returns all occurrences of the keywords of the automaton, same as
+	 * CYlpKeywordAutomaton.findOccurrences() on the document text. A keyword occurrence is found inside the
+	 * indexed terms that contain the keyword, which works for keywords made of ASCII letters and digits
+	 * since the word boundaries never split them. Other keywords can span words, for them null is returned
+	 * and the caller should scan the text
+	 * @param keywordAutomaton
+	 * @throws CYlpNullArgumentException
+	 * @return keyword occurrences, null when a keyword can not be found from the index
+	 */
+	public CYlpKeywordOccurrences findOccurrences(CYlpKeywordAutomaton keywordAutomaton)
+			throws CYlpNullArgumentException {
+
+		if (keywordAutomaton == null) {
+			throw new CYlpNullArgumentException(
+					"keyword automaton is null ");
+		}
+
+		int keywordCount = keywordAutomaton.getKeywordCount();
+		String[] foldedKeywords = new String[keywordCount];
+		for (int keywordId = 0; keywordId < keywordCount; keywordId++) {
+			foldedKeywords[keywordId] = CYlpKeywordAutomaton.foldCase(keywordAutomaton.getKeyword(keywordId));
+			if (!isIndexable(foldedKeywords[keywordId])) {
+				return null;
+			}
+		}
+
+		//each hit is packed as (start << 32 | keywordId) so that sorting orders by start then id, like the automaton
+		long[] packedHits = new long[16];
+		int hitCount = 0;
+		for (int termIndex = 0; termIndex < terms.length; termIndex++) {
+			String term = terms[termIndex];
+			for (int keywordId = 0; keywordId < keywordCount; keywordId++) {
+				String foldedKeyword = foldedKeywords[keywordId];
+				if (foldedKeyword.isEmpty()) {
+					continue;
+				}
+				for (int offset = term.indexOf(foldedKeyword); offset >= 0; offset = term.indexOf(foldedKeyword,
+						offset + 1)) {
+					for (int position : termPositions[termIndex]) {
+						if (hitCount == packedHits.length) {
+							packedHits = Arrays.copyOf(packedHits, hitCount * 2);
+						}
+						packedHits[hitCount++] = ((long) (boundaries[position] + offset) << 32) | keywordId;
+					}
+				}
+			}
+		}
+		Arrays.sort(packedHits, 0, hitCount);
+
+		int[] starts = new int[hitCount];
+		int[] keywordIds = new int[hitCount];
+		for (int i = 0; i < hitCount; i++) {
+			starts[i] = (int) (packedHits[i] >>> 32);
+			keywordIds[i] = (int) packedHits[i];
+		}
+		return new CYlpKeywordOccurrences(keywordAutomaton, starts, keywordIds);
+	}
+
+	/**
+	 * Writes the index as: document length, word boundaries, number of terms and for each term its UTF-8
+	 * bytes and positions. Boundaries and positions are delta-encoded varints
+	 * @param out
+	 */
+	public void writeTo(ByteArrayOutputStream out) {
+
+		CYlpVarInt.writeVarInt(out, documentLength);
+		CYlpVarInt.writeDeltas(out, boundaries);
+		CYlpVarInt.writeVarInt(out, terms.length);
+		for (int termIndex = 0; termIndex < terms.length; termIndex++) {
+			byte[] termBytes = terms[termIndex].getBytes(StandardCharsets.UTF_8);
+			CYlpVarInt.writeVarInt(out, termBytes.length);
+			out.write(termBytes, 0, termBytes.length);
+			CYlpVarInt.writeDeltas(out, termPositions[termIndex]);
+		}
+	}
+
+	/**
+	 * Reads an index written by writeTo()
+	 * @param in
+	 * @return index of the document
+	 */
+	public static CYlpDocumentIndex readFrom(ByteBuffer in) {
+
+		int documentLength = CYlpVarInt.readVarInt(in);
+		int[] boundaries = CYlpVarInt.readDeltas(in);
+		String[] terms = new String[CYlpVarInt.readVarInt(in)];
+		int[][] termPositions = new int[terms.length][];
+		for (int termIndex = 0; termIndex < terms.length; termIndex++) {
+			byte[] termBytes = new byte[CYlpVarInt.readVarInt(in)];
+			in.get(termBytes);
+			terms[termIndex] = new String(termBytes, StandardCharsets.UTF_8);
+			termPositions[termIndex] = CYlpVarInt.readDeltas(in);
+		}
+		return new CYlpDocumentIndex(documentLength, boundaries, terms, termPositions);
+	}
+
+	/**
+	 * keywords of ASCII letters and digits are never split by word boundaries
+	 */
+	private static boolean isIndexable(String foldedKeyword) {
+
+		for (int i = 0; i < foldedKeyword.length(); i++) {
+			char c = foldedKeyword.charAt(i);
+			if (!((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void checkDocument(CharSequence doc) throws CYlpNullArgumentException {
+
+		if (doc == null) {
+			throw new CYlpNullArgumentException(
+					"document is null ");
+		}
+		if (doc.length() != documentLength) {
+			throw new IllegalArgumentException("document of length " + doc.length()
+					+ " does not match the index of a document of length " + documentLength);
+		}
+	}
+}
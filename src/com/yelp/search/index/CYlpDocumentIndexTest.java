@@ -0,0 +1,84 @@
+package com.yelp.search.index;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.highlight.CYlpHighlightEngine;
+import com.yelp.search.match.CYlpKeywordAutomaton;
+import com.yelp.search.match.CYlpKeywordOccurrences;
+
+/**
+ * unit test class that tests CYlpDocumentIndex and the index shards
+ *
+ */
+public class CYlpDocumentIndexTest {
+
+	private static final String[] REVIEWS = { "Little star's deep dish pizza sure is fantastic",
+			"We tried the deep dish pepperoni pizza and once again it was amazingly good! Pizzas, DEEP dishes.",
+			"that is, a sentence-break iterator returns breaks" };
+
+	/**
+	 * occurrences read from the index should be same as the automaton finds in the text
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testFindOccurrences() throws CYlpNullArgumentException {
+
+		CYlpKeywordAutomaton keywordAutomaton = new CYlpKeywordAutomaton(Arrays.asList("deep", "dish", "pizza", "is", "dish"));
+		for (String review : Arrays.asList(REVIEWS[0], REVIEWS[1], REVIEWS[2], "")) {
+			CYlpKeywordOccurrences expectedOccurrences = keywordAutomaton.findOccurrences(review);
+			CYlpKeywordOccurrences indexOccurrences = CYlpDocumentIndex.indexDocument(review)
+					.findOccurrences(keywordAutomaton);
+
+			assertEquals("Expecting same number of occurrences from index", expectedOccurrences.size(),
+					indexOccurrences.size());
+			for (int i = 0; i < expectedOccurrences.size(); i++) {
+				assertEquals("Expecting same start from index", expectedOccurrences.getStart(i),
+						indexOccurrences.getStart(i));
+				assertEquals("Expecting same keyword from index", expectedOccurrences.getKeywordId(i),
+						indexOccurrences.getKeywordId(i));
+			}
+		}
+
+		// keyword with punctuation can span words, index can not answer
+		CYlpKeywordAutomaton punctuationAutomaton = new CYlpKeywordAutomaton(Arrays.asList("pizzas,"));
+		assertNull("Expecting null for keyword that can span words",
+				CYlpDocumentIndex.indexDocument(REVIEWS[1]).findOccurrences(punctuationAutomaton));
+	}
+
+	/**
+	 * shard written and loaded again should highlight documents same as the text
+	 * @throws CYlpNullArgumentException
+	 * @throws IOException
+	 */
+	@Test
+	public void testShardHighlight() throws CYlpNullArgumentException, IOException {
+
+		CYlpIndexShardWriter shardWriter = new CYlpIndexShardWriter();
+		for (int i = 0; i < REVIEWS.length; i++) {
+			shardWriter.addDocument(100 + i * 3, REVIEWS[i]);
+		}
+		ByteArrayOutputStream shardBytes = new ByteArrayOutputStream();
+		shardWriter.writeTo(shardBytes);
+		CYlpIndexShard indexShard = CYlpIndexShard.load(new ByteArrayInputStream(shardBytes.toByteArray()));
+
+		assertEquals("Expecting all documents in the shard", REVIEWS.length, indexShard.size());
+		assertNull("Expecting no index for other documents", indexShard.getDocumentIndex(101));
+
+		CYlpHighlightEngine highlightEngine = CYlpHighlightEngine.builder().snippetLength(40).build();
+		for (String query : new String[] { "deep dish pizza", "pizza, is", "breaks" }) {
+			for (int i = 0; i < REVIEWS.length; i++) {
+				assertEquals("Expecting same snippet using the index",
+						highlightEngine.getHighlightDoc(REVIEWS[i], query),
+						highlightEngine.getHighlightDoc(REVIEWS[i], indexShard.getDocumentIndex(100 + i * 3), query));
+			}
+		}
+	}
+}
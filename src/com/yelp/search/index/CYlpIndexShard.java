@@ -0,0 +1,117 @@
+package com.yelp.search.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * One shard of the positional index, loaded from a file written by CYlpIndexShardWriter. The shard keeps
+ * the encoded bytes and an offset table, a document index is decoded when it is asked for, so loading a
+ * shard does not decode its documents. Instances are immutable and can be shared between threads.
+ *
+ * Shard format: magic bytes "YHI1", number of documents, then for each document in increasing id order the
+ * id as delta from the previous id, the length of its encoded index and the index itself (see
+ * CYlpDocumentIndex.writeTo()). All numbers are varints.
+ *
+ */
+public final class CYlpIndexShard {
+
+	static final byte[] MAGIC = { 'Y', 'H', 'I', '1' };
+
+	private final byte[] shardBytes;
+
+	//sorted document ids and offset and length of the encoded index of each document
+	private final int[] documentIds;
+	private final int[] indexOffsets;
+	private final int[] indexLengths;
+
+	private CYlpIndexShard(byte[] shardBytes) throws IOException {
+
+		this.shardBytes = shardBytes;
+		ByteBuffer in = ByteBuffer.wrap(shardBytes);
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			in.get(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException("not an index shard");
+			}
+
+			int documentCount = CYlpVarInt.readVarInt(in);
+			documentIds = new int[documentCount];
+			indexOffsets = new int[documentCount];
+			indexLengths = new int[documentCount];
+			int documentId = 0;
+			for (int i = 0; i < documentCount; i++) {
+				documentId += CYlpVarInt.readVarInt(in);
+				documentIds[i] = documentId;
+				indexLengths[i] = CYlpVarInt.readVarInt(in);
+				indexOffsets[i] = in.position();
+				in.position(in.position() + indexLengths[i]);
+			}
+		} catch (RuntimeException corruptEx) {
+			throw new IOException("index shard is corrupt", corruptEx);
+		}
+	}
+
+	/**
+	 * Loads the shard from a file
+	 * @param shardFile
+	 * @throws IOException
+	 * @return shard
+	 */
+	public static CYlpIndexShard load(Path shardFile) throws IOException {
+		return new CYlpIndexShard(Files.readAllBytes(shardFile));
+	}
+
+	/**
+	 * Loads the shard from a stream, the stream is read to the end but not closed
+	 * @param in
+	 * @throws IOException
+	 * @return shard
+	 */
+	public static CYlpIndexShard load(InputStream in) throws IOException {
+
+		ByteArrayOutputStream shardBytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+			shardBytes.write(buffer, 0, read);
+		}
+		return new CYlpIndexShard(shardBytes.toByteArray());
+	}
+
+	/**
+	 * @return number of documents in the shard
+	 */
+	public int size() {
+		return documentIds.length;
+	}
+
+	/**
+	 * @return sorted ids of the documents in the shard
+	 */
+	public int[] getDocumentIds() {
+		return documentIds.clone();
+	}
+
+	public boolean containsDocument(int documentId) {
+		return Arrays.binarySearch(documentIds, documentId) >= 0;
+	}
+
+	/**
+	 * Decodes the index of a document
+	 * @param documentId
+	 * @return index of the document, null when the document is not in this shard
+	 */
+	public CYlpDocumentIndex getDocumentIndex(int documentId) {
+
+		int i = Arrays.binarySearch(documentIds, documentId);
+		if (i < 0) {
+			return null;
+		}
+		return CYlpDocumentIndex.readFrom(ByteBuffer.wrap(shardBytes, indexOffsets[i], indexLengths[i]).slice());
+	}
+}
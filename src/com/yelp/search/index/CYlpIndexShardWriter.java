@@ -0,0 +1,81 @@
+package com.yelp.search.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Builds one shard of the positional index, documents are indexed when they are added and the shard is
+ * written in the format read by CYlpIndexShard. Not thread safe, use one writer per shard.
+ *
+ */
+public class CYlpIndexShardWriter {
+
+	//encoded index of each document, ordered by id
+	private final Map<Integer, byte[]> encodedIndexTable = new TreeMap<Integer, byte[]>();
+
+	/**
+	 * Indexes the document, a document added again with the same id replaces the previous one
+	 * @param documentId: non negative id of the document
+	 * @param doc
+	 * @throws CYlpNullArgumentException
+	 */
+	public void addDocument(int documentId, String doc) throws CYlpNullArgumentException {
+
+		if (documentId < 0) {
+			throw new IllegalArgumentException("document id should not be negative: " + documentId);
+		}
+
+		ByteArrayOutputStream encodedIndex = new ByteArrayOutputStream();
+		CYlpDocumentIndex.indexDocument(doc).writeTo(encodedIndex);
+		encodedIndexTable.put(documentId, encodedIndex.toByteArray());
+	}
+
+	public int size() {
+		return encodedIndexTable.size();
+	}
+
+	/**
+	 * Writes the shard to the stream, the stream is not closed
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		header.write(CYlpIndexShard.MAGIC, 0, CYlpIndexShard.MAGIC.length);
+		CYlpVarInt.writeVarInt(header, encodedIndexTable.size());
+		header.writeTo(out);
+
+		int previousId = 0;
+		for (Map.Entry<Integer, byte[]> entry : encodedIndexTable.entrySet()) {
+			ByteArrayOutputStream documentHeader = new ByteArrayOutputStream();
+			CYlpVarInt.writeVarInt(documentHeader, entry.getKey() - previousId);
+			CYlpVarInt.writeVarInt(documentHeader, entry.getValue().length);
+			documentHeader.writeTo(out);
+			out.write(entry.getValue());
+			previousId = entry.getKey();
+		}
+	}
+
+	/**
+	 * Writes the shard to a file, replacing it when it exists
+	 * @param shardFile
+	 * @throws IOException
+	 */
+	public void writeTo(Path shardFile) throws IOException {
+
+		OutputStream out = Files.newOutputStream(shardFile);
+		try {
+			writeTo(out);
+		} finally {
+			out.close();
+		}
+	}
+}
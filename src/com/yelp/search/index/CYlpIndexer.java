@@ -0,0 +1,98 @@
+package com.yelp.search.index;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Offline indexer that splits a corpus in to shards of shardSize documents and writes one shard file per
+ * shard. Document ids are the positions of the documents in the corpus, the shard of a document is
+ * id / shardSize, so a server can load only the shards it serves.
+ *
+ * 	java com.yelp.search.index.CYlpIndexer reviews.txt index-dir 10000
+ *
+ * indexes a file with one review per line.
+ *
+ */
+public class CYlpIndexer {
+
+	private final int shardSize;
+
+	public CYlpIndexer(int shardSize) {
+		if (shardSize <= 0) {
+			throw new IllegalArgumentException("shard size should be greater than 0 ");
+		}
+		this.shardSize = shardSize;
+	}
+
+	public int getShardSize() {
+		return shardSize;
+	}
+
+	/**
+	 * @param documentId
+	 * @return number of the shard that holds the document
+	 */
+	public int getShardNumber(int documentId) {
+		return documentId / shardSize;
+	}
+
+	/**
+	 * @param indexDirectory
+	 * @param shardNumber
+	 * @return file of the shard in the index directory
+	 */
+	public static Path getShardFile(Path indexDirectory, int shardNumber) {
+		return indexDirectory.resolve(String.format("shard-%05d.idx", shardNumber));
+	}
+
+	/**
+	 * Indexes the documents and writes the shard files in the index directory
+	 * @param documents
+	 * @param indexDirectory
+	 * @throws IOException
+	 * @throws CYlpNullArgumentException
+	 * @return shard files that were written
+	 */
+	public List<Path> indexDocuments(List<String> documents, Path indexDirectory)
+			throws IOException, CYlpNullArgumentException {
+
+		if (documents == null || indexDirectory == null) {
+			throw new CYlpNullArgumentException(
+					"Either documents or index directory is null ");
+		}
+
+		Files.createDirectories(indexDirectory);
+		List<Path> shardFiles = new ArrayList<Path>();
+		for (int shardStart = 0; shardStart < documents.size(); shardStart += shardSize) {
+			CYlpIndexShardWriter shardWriter = new CYlpIndexShardWriter();
+			int shardEnd = Math.min(documents.size(), shardStart + shardSize);
+			for (int documentId = shardStart; documentId < shardEnd; documentId++) {
+				shardWriter.addDocument(documentId, documents.get(documentId));
+			}
+			Path shardFile = getShardFile(indexDirectory, getShardNumber(shardStart));
+			shardWriter.writeTo(shardFile);
+			shardFiles.add(shardFile);
+		}
+		return shardFiles;
+	}
+
+	public static void main(String[] args) throws IOException, CYlpNullArgumentException {
+
+		if (args.length < 2) {
+			System.err.println("usage: CYlpIndexer <reviews file, one per line> <index directory> [shard size]");
+			System.exit(1);
+		}
+		int shardSize = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+
+		List<String> documents = Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8);
+		List<Path> shardFiles = new CYlpIndexer(shardSize).indexDocuments(documents, Paths.get(args[1]));
+		System.out.println("indexed " + documents.size() + " documents in " + shardFiles.size() + " shards");
+	}
+}
@@ -0,0 +1,72 @@
+package com.yelp.search.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable length encoding of non negative ints used by the index files: 7 bits per byte, low bits first,
+ * high bit set on every byte but the last. Sorted arrays are written as deltas from the previous value so
+ * most values take one byte.
+ *
+ */
+public final class CYlpVarInt {
+
+	private CYlpVarInt() {
+	}
+
+	public static void writeVarInt(ByteArrayOutputStream out, int value) {
+
+		if (value < 0) {
+			throw new IllegalArgumentException("varint value should not be negative: " + value);
+		}
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	public static int readVarInt(ByteBuffer in) {
+
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalStateException("malformed varint in index");
+	}
+
+	/**
+	 * Writes length of the sorted array and then each value as delta from the previous one
+	 * @param out
+	 * @param sortedValues
+	 */
+	public static void writeDeltas(ByteArrayOutputStream out, int[] sortedValues) {
+
+		writeVarInt(out, sortedValues.length);
+		int previous = 0;
+		for (int value : sortedValues) {
+			writeVarInt(out, value - previous);
+			previous = value;
+		}
+	}
+
+	/**
+	 * Reads an array written by writeDeltas()
+	 * @param in
+	 * @return sorted values
+	 */
+	public static int[] readDeltas(ByteBuffer in) {
+
+		int[] values = new int[readVarInt(in)];
+		int previous = 0;
+		for (int i = 0; i < values.length; i++) {
+			previous += readVarInt(in);
+			values[i] = previous;
+		}
+		return values;
+	}
+}
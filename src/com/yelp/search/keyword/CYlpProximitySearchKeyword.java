@@ -27,6 +27,9 @@ public class CYlpProximitySearchKeyword {
 	//document snippet where max keyword occurence is found - this is most relevant snippet
 	private String documentSnippet;
 	
+	//true when the search ran out of its work budget - snippet is the best one found before it stopped
+	private boolean degraded;
+	
 	
 	//METHODS: To access the data members
 	
@@ -70,6 +73,14 @@ public class CYlpProximitySearchKeyword {
 		return documentSnippet ;
 	}		
 	
+	public void setDegraded(boolean isDegraded){
+		degraded = isDegraded;
+	}
+	
+	public boolean isDegraded(){
+		return degraded ;
+	}		
+	
 
 	/**
 	 * This method updates the atributes of current obj based on what is passed as arguments
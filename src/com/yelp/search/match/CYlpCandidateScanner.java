@@ -0,0 +1,261 @@
+package com.yelp.search.match;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Finds the positions of a document where a keyword of the query may start, so that the keyword automaton
+ * can skip the text between them while it is in its root state. A position is a candidate when its character
+ * and the next one fold to the first two characters of a keyword (see CYlpKeywordAutomaton.foldCase()), or to
+ * the only character of a one character keyword. Looking at two characters keeps candidates rare in review
+ * text, where the first letter of a keyword alone is found every few characters.
+ *
+ * Characters outside ASCII are always treated as matching since a few of them fold to ASCII letters (for
+ * example the Kelvin sign folds to 'k'), and so is a first character at toIndex - 1 since the character after
+ * it is not known. A scanner may report positions that are not candidates (the automaton goes back to its
+ * root state after them) but never skips a candidate.
+ *
+ * Two implementations exist:
+ * - the scalar scanner looks up every character in a table, it is always available
+ * - the vector scanner (CYlpVectorCandidateScanner, compiled from src-vector by the JDK 17 build) compares
+ *   a whole vector of characters and the vector of their next characters with every prefix at once using
+ *   jdk.incubator.vector. It is used only when the JVM adds the jdk.incubator.vector module and the query
+ *   needs at most MAX_VECTOR_COMPARES compares per vector, otherwise the scalar scanner is used.
+ *
+ * The vector scanner can be turned off with -Dyelp.search.vectorScanner=false. Scanners are immutable and
+ * can be shared between threads.
+ *
+ */
+public abstract class CYlpCandidateScanner {
+
+	// system property that turns off the vector scanner when it is "false"
+	public static final String VECTOR_SCANNER_PROPERTY = "yelp.search.vectorScanner";
+
+	// above this number of compares per vector the vector scanner costs more than the table lookups
+	public static final int MAX_VECTOR_COMPARES = 16;
+
+	static final String VECTOR_SCANNER_CLASS = "com.yelp.search.match.CYlpVectorCandidateScanner";
+
+	// number of characters for which candidates are stored in a table
+	static final int ASCII_RANGE = 128;
+
+	// constructor of the vector scanner, null when it can not be used in this JVM
+	private static final Constructor<? extends CYlpCandidateScanner> VECTOR_SCANNER_CONSTRUCTOR =
+			loadVectorScanner();
+
+	/**
+	 * Returns the first position at or after fromIndex that may start a keyword
+	 * @param chars: characters of the document
+	 * @param fromIndex
+	 * @param toIndex: end of the characters to scan (exclusive)
+	 * @return index of the candidate, toIndex when there is none before it
+	 */
+	public abstract int nextCandidate(char[] chars, int fromIndex, int toIndex);
+
+	/**
+	 * @return true when this scanner compares characters with the Vector API
+	 */
+	public abstract boolean isVectorized();
+
+	/**
+	 * Returns the fastest scanner available in this JVM for the keywords
+	 * @param keywordList
+	 * @throws CYlpNullArgumentException
+	 * @return vector scanner when it can be used, scalar scanner otherwise
+	 */
+	public static CYlpCandidateScanner create(List<String> keywordList) throws CYlpNullArgumentException {
+		return create(keywordList, true);
+	}
+
+	/**
+	 * Returns the scanner that looks up every character in a table
+	 * @param keywordList
+	 * @throws CYlpNullArgumentException
+	 * @return scalar scanner
+	 */
+	public static CYlpCandidateScanner createScalar(List<String> keywordList) throws CYlpNullArgumentException {
+		return create(keywordList, false);
+	}
+
+	/**
+	 * @return true when the Vector API can be used in this JVM
+	 */
+	public static boolean isVectorScannerAvailable() {
+		return VECTOR_SCANNER_CONSTRUCTOR != null;
+	}
+
+	static CYlpCandidateScanner create(List<String> keywordList, boolean allowVector)
+			throws CYlpNullArgumentException {
+
+		if (keywordList == null) {
+			throw new CYlpNullArgumentException(
+					"keyword list is null ");
+		}
+
+		boolean[] prefixTable = getPrefixTable(keywordList);
+		if (allowVector && VECTOR_SCANNER_CONSTRUCTOR != null
+				&& getCompareCount(getVectorKeys(prefixTable)) <= MAX_VECTOR_COMPARES) {
+			try {
+				return VECTOR_SCANNER_CONSTRUCTOR.newInstance(prefixTable);
+			} catch (ReflectiveOperationException e) {
+				// the scanner was created once when it was loaded, fall back to the scalar scanner
+			}
+		}
+		return new ScalarScanner(prefixTable);
+	}
+
+	/**
+	 * Returns the table of ASCII character pairs that may start a keyword, the pair (c0, c1) is at index
+	 * c0 * ASCII_RANGE + c1. All pairs starting with c0 are set when c0 folds to a one character keyword or to
+	 * the first character of a keyword whose second character is outside ASCII.
+	 */
+	static boolean[] getPrefixTable(List<String> keywordList) {
+		boolean[] prefixTable = new boolean[ASCII_RANGE * ASCII_RANGE];
+		for (String keyword : keywordList) {
+			if (keyword.isEmpty()) {
+				continue;
+			}
+			char first = CYlpKeywordAutomaton.foldCase(keyword.charAt(0));
+			char second = keyword.length() > 1 ? CYlpKeywordAutomaton.foldCase(keyword.charAt(1)) : 0;
+			for (char c0 = 0; c0 < ASCII_RANGE; c0++) {
+				if (CYlpKeywordAutomaton.foldCase(c0) != first) {
+					continue;
+				}
+				for (char c1 = 0; c1 < ASCII_RANGE; c1++) {
+					if (keyword.length() == 1 || second >= ASCII_RANGE
+							|| CYlpKeywordAutomaton.foldCase(c1) == second) {
+						prefixTable[c0 * ASCII_RANGE + c1] = true;
+					}
+				}
+			}
+		}
+		return prefixTable;
+	}
+
+	/**
+	 * Groups the prefixes the way the vector scanner compares them. Characters are or-ed with 0x20 so upper
+	 * and lower case of a letter give the same key; other characters may share their key with a character
+	 * that does not start a keyword, which only adds positions to check. Each row is a first key followed by
+	 * the keys of the characters that may come after it, a row with only the first key matches any next
+	 * character.
+	 */
+	static short[][] getVectorKeys(boolean[] prefixTable) {
+		boolean[] keyTable = new boolean[ASCII_RANGE * ASCII_RANGE];
+		for (int i = 0; i < prefixTable.length; i++) {
+			if (prefixTable[i]) {
+				keyTable[((i / ASCII_RANGE) | 0x20) * ASCII_RANGE + ((i % ASCII_RANGE) | 0x20)] = true;
+			}
+		}
+
+		List<short[]> rows = new ArrayList<short[]>();
+		for (int k0 = 0x20; k0 < ASCII_RANGE; k0 = (k0 + 1) | 0x20) {
+			int secondKeyCount = 0;
+			for (int k1 = 0x20; k1 < ASCII_RANGE; k1 = (k1 + 1) | 0x20) {
+				if (keyTable[k0 * ASCII_RANGE + k1]) {
+					secondKeyCount++;
+				}
+			}
+			if (secondKeyCount == 0) {
+				continue;
+			}
+			if (secondKeyCount == ASCII_RANGE / 2) {
+				// every next character matches
+				rows.add(new short[] { (short) k0 });
+				continue;
+			}
+			short[] row = new short[secondKeyCount + 1];
+			row[0] = (short) k0;
+			int rowIndex = 1;
+			for (int k1 = 0x20; k1 < ASCII_RANGE; k1 = (k1 + 1) | 0x20) {
+				if (keyTable[k0 * ASCII_RANGE + k1]) {
+					row[rowIndex++] = (short) k1;
+				}
+			}
+			rows.add(row);
+		}
+		return rows.toArray(new short[rows.size()][]);
+	}
+
+	/**
+	 * Returns the number of compares of a vector with the keys
+	 */
+	static int getCompareCount(short[][] vectorKeys) {
+		int compareCount = 0;
+		for (short[] row : vectorKeys) {
+			compareCount += row.length;
+		}
+		return compareCount;
+	}
+
+	/**
+	 * Loads the vector scanner and creates one instance so that a JVM without jdk.incubator.vector (or older
+	 * than the class file) fails here and not while a document is scanned
+	 */
+	@SuppressWarnings("unchecked")
+	private static Constructor<? extends CYlpCandidateScanner> loadVectorScanner() {
+		if ("false".equalsIgnoreCase(System.getProperty(VECTOR_SCANNER_PROPERTY))) {
+			return null;
+		}
+		try {
+			Constructor<? extends CYlpCandidateScanner> constructor =
+					(Constructor<? extends CYlpCandidateScanner>) Class.forName(VECTOR_SCANNER_CLASS)
+							.getDeclaredConstructor(boolean[].class);
+			constructor.newInstance(new boolean[ASCII_RANGE * ASCII_RANGE]).nextCandidate(new char[ASCII_RANGE],
+					0, ASCII_RANGE);
+			return constructor;
+		} catch (ReflectiveOperationException e) {
+			// class was not compiled (JDK older than 17) or the module was not added
+			return null;
+		} catch (LinkageError e) {
+			// jdk.incubator.vector is not resolved in this JVM
+			return null;
+		}
+	}
+
+	/**
+	 * Looks up the first character of every position in a table, and the pair with the next character when
+	 * the first one matches
+	 */
+	static final class ScalarScanner extends CYlpCandidateScanner {
+
+		private final boolean[] firstTable = new boolean[ASCII_RANGE];
+		private final boolean[] prefixTable;
+
+		ScalarScanner(boolean[] prefixTable) {
+			this.prefixTable = prefixTable;
+			for (int i = 0; i < prefixTable.length; i++) {
+				if (prefixTable[i]) {
+					firstTable[i / ASCII_RANGE] = true;
+				}
+			}
+		}
+
+		@Override
+		public int nextCandidate(char[] chars, int fromIndex, int toIndex) {
+			for (int i = fromIndex; i < toIndex; i++) {
+				char c = chars[i];
+				if (c >= ASCII_RANGE) {
+					return i;
+				}
+				if (firstTable[c]) {
+					if (i + 1 == toIndex) {
+						return i;
+					}
+					char next = chars[i + 1];
+					if (next >= ASCII_RANGE || prefixTable[c * ASCII_RANGE + next]) {
+						return i;
+					}
+				}
+			}
+			return toIndex;
+		}
+
+		@Override
+		public boolean isVectorized() {
+			return false;
+		}
+	}
+}
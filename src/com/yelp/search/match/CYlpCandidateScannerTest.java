@@ -0,0 +1,137 @@
+package com.yelp.search.match;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * unit test class that tests CYlpCandidateScanner and that the keyword automaton finds the same occurrences
+ * with the scalar scanner and with the scanner available in this JVM (the vector scanner when the tests run
+ * with --add-modules jdk.incubator.vector)
+ *
+ */
+public class CYlpCandidateScannerTest {
+
+	private static final String[] WORDS = { "deep", "Dish", "PIZZA", "the", "was", "c++", "(bar", "caf\u00E9",
+			"\u212Aale", "great", "a", "pizzas", "Deep-dish" };
+
+	/**
+	 * Tests that the scalar scanner stops where the character and the next one fold to the start of a keyword,
+	 * at every character outside ASCII and at a first character at the end
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testNextCandidate() throws CYlpNullArgumentException {
+
+		final char[] docChars = "Top PIzza, p deep, d\u00E9j\u00E0 vu".toCharArray();
+		List<String> keywordList = Arrays.asList("pizza", "De", "v");
+		CYlpCandidateScanner scalarScanner = CYlpCandidateScanner.createScalar(keywordList);
+
+		assertEquals("Expecting upper case PI", 4, scalarScanner.nextCandidate(docChars, 0, docChars.length));
+		assertEquals("Expecting lower case de", 13, scalarScanner.nextCandidate(docChars, 5, docChars.length));
+		assertEquals("Expecting character outside ASCII after d", 19,
+				scalarScanner.nextCandidate(docChars, 14, docChars.length));
+		assertEquals("Expecting character outside ASCII", 22,
+				scalarScanner.nextCandidate(docChars, 21, docChars.length));
+		assertEquals("Expecting one character keyword", 24,
+				scalarScanner.nextCandidate(docChars, 23, docChars.length));
+		assertEquals("Expecting first character at the end", 13, scalarScanner.nextCandidate(docChars, 12, 14));
+		assertEquals("Expecting toIndex when there is no candidate", 13,
+				scalarScanner.nextCandidate(docChars, 5, 13));
+		assertFalse("Expecting scalar scanner", scalarScanner.isVectorized());
+
+		// the scanner available in this JVM never skips a candidate of the scalar scanner
+		CYlpCandidateScanner scanner = CYlpCandidateScanner.create(keywordList);
+		assertEquals("Expecting vector scanner when it is available",
+				CYlpCandidateScanner.isVectorScannerAvailable(), scanner.isVectorized());
+		char[] longDocChars = generateDocument(new Random(7), 500).toCharArray();
+		for (int fromIndex = 0; fromIndex <= longDocChars.length; fromIndex++) {
+			int candidate = scanner.nextCandidate(longDocChars, fromIndex, longDocChars.length);
+			assertTrue("Expecting no candidate to be skipped from " + fromIndex, candidate >= fromIndex
+					&& candidate <= scalarScanner.nextCandidate(longDocChars, fromIndex, longDocChars.length));
+		}
+	}
+
+	/**
+	 * Tests that the occurrences are the same with both scanners on documents longer than a chunk, so some
+	 * keywords cross the end of a chunk
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testSameOccurrencesWithBothScanners() throws CYlpNullArgumentException {
+
+		Random random = new Random(42);
+		List<List<String>> queries = Arrays.asList(Arrays.asList("deep dish", "pizza", "dish"),
+				Arrays.asList("c++", "(bar", "caf\u00C9"), Arrays.asList("kale", "a", "the", "was", "great",
+						"deep", "pizza", "bar", "cafe", "dish"));
+		for (List<String> keywordList : queries) {
+			CYlpKeywordAutomaton scalarAutomaton = new CYlpKeywordAutomaton(keywordList, false);
+			CYlpKeywordAutomaton automaton = new CYlpKeywordAutomaton(keywordList);
+			assertFalse("Expecting scalar scanner", scalarAutomaton.getCandidateScanner().isVectorized());
+
+			for (int docLength : new int[] { 0, 1, 100, CYlpKeywordAutomaton.CHUNK_SIZE * 3 + 17 }) {
+				String docString = generateDocument(random, docLength);
+				CYlpKeywordOccurrences expected = scalarAutomaton.findOccurrences(docString);
+				CYlpKeywordOccurrences actual = automaton.findOccurrences(new StringBuilder(docString));
+				assertEquals("Expecting same number of occurrences", expected.size(), actual.size());
+				for (int i = 0; i < expected.size(); i++) {
+					assertEquals("Expecting same start", expected.getStart(i), actual.getStart(i));
+					assertEquals("Expecting same keyword", expected.getKeywordId(i), actual.getKeywordId(i));
+				}
+				for (String keyword : keywordList) {
+					assertEquals("Expecting every occurrence of " + keyword, countIgnoringCase(docString, keyword),
+							countKeyword(expected, keyword));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidFirstCharacters() {
+
+		try {
+			CYlpCandidateScanner.create(null);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
+	private static String generateDocument(Random random, int docLength) {
+		StringBuilder docBuilder = new StringBuilder(docLength + 16);
+		while (docBuilder.length() < docLength) {
+			docBuilder.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(10) == 0 ? ". " : " ");
+		}
+		docBuilder.setLength(docLength);
+		return docBuilder.toString();
+	}
+
+	// counts occurrences that may overlap, the way the automaton reports them
+	private static int countIgnoringCase(String docString, String keyword) {
+		String foldedDoc = CYlpKeywordAutomaton.foldCase(docString);
+		String foldedKeyword = CYlpKeywordAutomaton.foldCase(keyword);
+		int count = 0;
+		for (int index = foldedDoc.indexOf(foldedKeyword); index >= 0;
+				index = foldedDoc.indexOf(foldedKeyword, index + 1)) {
+			count++;
+		}
+		return count;
+	}
+
+	private static int countKeyword(CYlpKeywordOccurrences occurrences, String keyword) {
+		int count = 0;
+		for (int i = 0; i < occurrences.size(); i++) {
+			if (occurrences.getKeyword(i).equals(keyword)) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
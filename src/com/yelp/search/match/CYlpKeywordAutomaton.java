@@ -0,0 +1,407 @@
+package com.yelp.search.match;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Case-insensitive Aho-Corasick automaton over the keywords of one search query. The automaton is built
+ * once per query and finds every occurrence of every keyword in a single pass over the document, instead
+ * of compiling and running one regex per keyword combination.
+ *
+ * Characters are folded with foldCase() both when keywords are inserted and when the document is scanned.
+ * For characters below 128 the transitions are precomputed into a table (failure links already resolved),
+ * other characters walk the failure links using a per node map.
+ *
+ * While the automaton is in its root state the document is skipped up to the next character that may start a
+ * keyword with a CYlpCandidateScanner, which compares many characters at once when the Vector API is
+ * available. The document is copied in chunks of CHUNK_SIZE characters for the scanner.
+ *
+ */
+public class CYlpKeywordAutomaton {
+
+	//number of characters for which transitions are stored in a table
+	private static final int ASCII_RANGE = 128;
+
+	//number of document characters copied at a time for the candidate scanner
+	static final int CHUNK_SIZE = 4096;
+
+	//keywords in the order they were passed in, the keyword id is the index in this list. The automaton is
+	//not modified after it is built so it can be shared by threads highlighting with the same query
+	private final List<String> keywords;
+
+	//length of each keyword indexed by keyword id
+	private final int[] keywordLengths;
+
+	//keywords that are equal ignoring case share the same distinct id, indexed by keyword id
+	private final int[] distinctKeywordIds;
+
+	//number of keywords that are different ignoring case
+	private final int distinctKeywordCount;
+
+	//goto table for ascii characters, asciiNext[state][c] is the next state
+	private int[][] asciiNext;
+
+	//goto for non ascii characters, null when the state has no such transition
+	private List<Map<Character, Integer>> otherNext;
+
+	//failure link of each state
+	private int[] failure;
+
+	//ids of keywords that end in each state (including outputs inherited through failure links)
+	private int[][] output;
+
+	//finds the next character that may start a keyword while in the root state
+	private final CYlpCandidateScanner candidateScanner;
+
+	/**
+	 * Builds the automaton for the keywords passed as argument, empty keywords are ignored since they can
+	 * not be highlighted
+	 * @param keywordList
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpKeywordAutomaton(List<String> keywordList) throws CYlpNullArgumentException {
+		this(keywordList, true);
+	}
+
+	/**
+	 * Builds the automaton, with allowVectorScanner false the candidate scanner is always the scalar one
+	 * @param keywordList
+	 * @param allowVectorScanner
+	 * @throws CYlpNullArgumentException
+	 */
+	CYlpKeywordAutomaton(List<String> keywordList, boolean allowVectorScanner) throws CYlpNullArgumentException {
+
+		if (keywordList == null) {
+			throw new CYlpNullArgumentException(
+					"keyword list is null ");
+		}
+
+		keywords = Collections.unmodifiableList(new ArrayList<String>(keywordList));
+		keywordLengths = new int[keywords.size()];
+		distinctKeywordIds = new int[keywords.size()];
+		Map<String, Integer> distinctKeywordTable = new HashMap<String, Integer>();
+		for (int i = 0; i < keywords.size(); i++) {
+			keywordLengths[i] = keywords.get(i).length();
+			String foldedKeyword = foldCase(keywords.get(i));
+			Integer distinctId = distinctKeywordTable.get(foldedKeyword);
+			if (distinctId == null) {
+				distinctId = distinctKeywordTable.size();
+				distinctKeywordTable.put(foldedKeyword, distinctId);
+			}
+			distinctKeywordIds[i] = distinctId;
+		}
+		distinctKeywordCount = distinctKeywordTable.size();
+
+		buildTrie();
+		buildFailureLinks();
+		candidateScanner = CYlpCandidateScanner.create(keywords, allowVectorScanner);
+	}
+
+	/**
+	 * Folds a character so that upper and lower case letters compare equal
+	 * @param c
+	 * @return folded character
+	 */
+	public static char foldCase(char c) {
+		//fast path for ascii without branches: c - 'A' and 'Z' - c are both positive only for an upper case
+		//letter, so the sign bit of their or is 0 and the lower case bit 0x20 is set
+		if (c < ASCII_RANGE) {
+			int upperCaseBit = (((c - 'A') | ('Z' - c)) >>> 31) ^ 1;
+			return (char) (c | (upperCaseBit << 5));
+		}
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * Folds all characters of the string using foldCase(char)
+	 * @param text
+	 * @return folded string
+	 */
+	public static String foldCase(String text) {
+		char[] folded = new char[text.length()];
+		for (int i = 0; i < folded.length; i++) {
+			folded[i] = foldCase(text.charAt(i));
+		}
+		return new String(folded);
+	}
+
+	public List<String> getKeywords() {
+		return keywords;
+	}
+
+	public int getKeywordCount() {
+		return keywords.size();
+	}
+
+	public String getKeyword(int keywordId) {
+		return keywords.get(keywordId);
+	}
+
+	public int getKeywordLength(int keywordId) {
+		return keywordLengths[keywordId];
+	}
+
+	public int getDistinctKeywordId(int keywordId) {
+		return distinctKeywordIds[keywordId];
+	}
+
+	public int getDistinctKeywordCount() {
+		return distinctKeywordCount;
+	}
+
+	public CYlpCandidateScanner getCandidateScanner() {
+		return candidateScanner;
+	}
+
+	/**
+	 * Scans the document once and returns every (possibly overlapping) keyword occurrence, ordered by start
+	 * index and then by keyword id
+	 * @param documentToSearch
+	 * @throws CYlpNullArgumentException
+	 * @return occurrences of all keywords in the document
+	 */
+	public CYlpKeywordOccurrences findOccurrences(CharSequence documentToSearch) throws CYlpNullArgumentException {
+
+		if (documentToSearch == null) {
+			throw new CYlpNullArgumentException(
+					"documentToSearch is null ");
+		}
+
+		//each hit is packed as (start << 32 | keywordId) so that sorting the array orders by start then id
+		long[] packedHits = new long[16];
+		int hitCount = 0;
+
+		int state = 0;
+		int docLength = documentToSearch.length();
+		char[] chunk = new char[Math.min(CHUNK_SIZE, docLength)];
+		for (int chunkStart = 0; chunkStart < docLength; chunkStart += CHUNK_SIZE) {
+			int chunkLength = Math.min(CHUNK_SIZE, docLength - chunkStart);
+			copyChars(documentToSearch, chunkStart, chunkLength, chunk);
+			int j = 0;
+			while (j < chunkLength) {
+				if (state == 0) {
+					//characters that can not start a keyword keep the automaton in the root state
+					j = candidateScanner.nextCandidate(chunk, j, chunkLength);
+					if (j == chunkLength) {
+						break;
+					}
+				}
+				state = nextState(state, foldCase(chunk[j]));
+				int[] keywordIds = output[state];
+				for (int k = 0; k < keywordIds.length; k++) {
+					int keywordId = keywordIds[k];
+					int start = chunkStart + j - keywordLengths[keywordId] + 1;
+					if (hitCount == packedHits.length) {
+						packedHits = Arrays.copyOf(packedHits, hitCount * 2);
+					}
+					packedHits[hitCount++] = ((long) start << 32) | keywordId;
+				}
+				j++;
+			}
+		}
+
+		//hits are reported by end index, sort them by start index
+		Arrays.sort(packedHits, 0, hitCount);
+
+		int[] starts = new int[hitCount];
+		int[] keywordIds = new int[hitCount];
+		for (int i = 0; i < hitCount; i++) {
+			starts[i] = (int) (packedHits[i] >>> 32);
+			keywordIds[i] = (int) packedHits[i];
+		}
+
+		return new CYlpKeywordOccurrences(this, starts, keywordIds);
+	}
+
+	/**
+	 * Copies length characters of the text starting at start in to the chunk, strings and builders are copied
+	 * with getChars()
+	 */
+	private static void copyChars(CharSequence text, int start, int length, char[] chunk) {
+		if (text instanceof String) {
+			((String) text).getChars(start, start + length, chunk, 0);
+		} else if (text instanceof StringBuilder) {
+			((StringBuilder) text).getChars(start, start + length, chunk, 0);
+		} else {
+			for (int i = 0; i < length; i++) {
+				chunk[i] = text.charAt(start + i);
+			}
+		}
+	}
+
+	/**
+	 * Returns next state of the automaton for the folded character
+	 * @param state
+	 * @param c
+	 * @return next state
+	 */
+	private int nextState(int state, char c) {
+		if (c < ASCII_RANGE) {
+			return asciiNext[state][c];
+		}
+		//follow failure links until there is a transition or we reach the root
+		while (true) {
+			Map<Character, Integer> transitions = otherNext.get(state);
+			if (transitions != null) {
+				Integer next = transitions.get(c);
+				if (next != null) {
+					return next;
+				}
+			}
+			if (state == 0) {
+				return 0;
+			}
+			state = failure[state];
+		}
+	}
+
+	/**
+	 * STEP1: insert all keywords in to the trie, state 0 is the root
+	 */
+	private void buildTrie() {
+
+		List<int[]> asciiStates = new ArrayList<int[]>();
+		List<List<Integer>> outputs = new ArrayList<List<Integer>>();
+		otherNext = new ArrayList<Map<Character, Integer>>();
+
+		//root state
+		asciiStates.add(newAsciiRow());
+		outputs.add(new ArrayList<Integer>());
+		otherNext.add(null);
+
+		for (int keywordId = 0; keywordId < keywords.size(); keywordId++) {
+			String keyword = keywords.get(keywordId);
+			if (keyword.length() == 0) {
+				//empty keywords can not be matched
+				continue;
+			}
+
+			int state = 0;
+			for (int i = 0; i < keyword.length(); i++) {
+				char c = foldCase(keyword.charAt(i));
+				int next = transition(asciiStates, state, c);
+				if (next == -1) {
+					//create new state
+					next = asciiStates.size();
+					asciiStates.add(newAsciiRow());
+					outputs.add(new ArrayList<Integer>());
+					otherNext.add(null);
+					if (c < ASCII_RANGE) {
+						asciiStates.get(state)[c] = next;
+					} else {
+						if (otherNext.get(state) == null) {
+							otherNext.set(state, new HashMap<Character, Integer>());
+						}
+						otherNext.get(state).put(c, next);
+					}
+				}
+				state = next;
+			}
+			outputs.get(state).add(keywordId);
+		}
+
+		asciiNext = asciiStates.toArray(new int[asciiStates.size()][]);
+		output = new int[outputs.size()][];
+		for (int i = 0; i < outputs.size(); i++) {
+			output[i] = toIntArray(outputs.get(i));
+		}
+	}
+
+	/**
+	 * STEP2: compute failure links in breadth first order, merge outputs of failure states and fill
+	 * the missing ascii transitions so that scanning ascii text never follows failure links
+	 */
+	private void buildFailureLinks() {
+
+		int stateCount = asciiNext.length;
+		failure = new int[stateCount];
+		int[] queue = new int[stateCount];
+		int head = 0;
+		int tail = 0;
+
+		//children of root fail to root, missing transitions of root loop back to root
+		for (int c = 0; c < ASCII_RANGE; c++) {
+			int next = asciiNext[0][c];
+			if (next == -1) {
+				asciiNext[0][c] = 0;
+			} else {
+				failure[next] = 0;
+				queue[tail++] = next;
+			}
+		}
+		if (otherNext.get(0) != null) {
+			for (int next : otherNext.get(0).values()) {
+				failure[next] = 0;
+				queue[tail++] = next;
+			}
+		}
+
+		while (head < tail) {
+			int state = queue[head++];
+
+			//ascii children
+			for (int c = 0; c < ASCII_RANGE; c++) {
+				int next = asciiNext[state][c];
+				if (next == -1) {
+					//resolve transition through failure link
+					asciiNext[state][c] = asciiNext[failure[state]][c];
+				} else {
+					failure[next] = asciiNext[failure[state]][c];
+					output[next] = mergeOutputs(output[next], output[failure[next]]);
+					queue[tail++] = next;
+				}
+			}
+
+			//non ascii children
+			Map<Character, Integer> transitions = otherNext.get(state);
+			if (transitions != null) {
+				for (Map.Entry<Character, Integer> entry : transitions.entrySet()) {
+					int next = entry.getValue();
+					failure[next] = nextState(failure[state], entry.getKey());
+					output[next] = mergeOutputs(output[next], output[failure[next]]);
+					queue[tail++] = next;
+				}
+			}
+		}
+	}
+
+	private int transition(List<int[]> asciiStates, int state, char c) {
+		if (c < ASCII_RANGE) {
+			return asciiStates.get(state)[c];
+		}
+		Map<Character, Integer> transitions = otherNext.get(state);
+		if (transitions == null || !transitions.containsKey(c)) {
+			return -1;
+		}
+		return transitions.get(c);
+	}
+
+	private static int[] newAsciiRow() {
+		int[] row = new int[ASCII_RANGE];
+		Arrays.fill(row, -1);
+		return row;
+	}
+
+	private static int[] mergeOutputs(int[] own, int[] inherited) {
+		if (inherited.length == 0) {
+			return own;
+		}
+		int[] merged = Arrays.copyOf(own, own.length + inherited.length);
+		System.arraycopy(inherited, 0, merged, own.length, inherited.length);
+		return merged;
+	}
+
+	private static int[] toIntArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+}
@@ -0,0 +1,68 @@
+package com.yelp.search.match;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * unit test class that tests the methods of CYlpKeywordAutomaton
+ *
+ */
+public class CYlpKeywordAutomatonTest {
+
+	/**
+	 * Tests that all occurences of all keywords are found in one scan, including overlapping ones and
+	 * occurences that differ in case. Occurences should be ordered by start index
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testFindOccurrences() throws CYlpNullArgumentException {
+
+		CYlpKeywordAutomaton keywordAutomaton = new CYlpKeywordAutomaton(
+				Arrays.asList("deep", "dish", "pizza", "pizzas", "ee"));
+
+		final String docString = "Deep DISH pizzas";
+		CYlpKeywordOccurrences occurrences = keywordAutomaton.findOccurrences(docString);
+
+		// deep at 0, ee at 1, dish at 5, pizza and pizzas at 10
+		int[] expectedStarts = { 0, 1, 5, 10, 10 };
+		String[] expectedKeywords = { "deep", "ee", "dish", "pizza", "pizzas" };
+
+		assertEquals("Expecting all occurences to be found", expectedStarts.length, occurrences.size());
+		for (int i = 0; i < occurrences.size(); i++) {
+			assertEquals("Expecting start index to match", expectedStarts[i], occurrences.getStart(i));
+			assertEquals("Expecting keyword to match", expectedKeywords[i], occurrences.getKeyword(i));
+		}
+		assertEquals("Expecting end index of pizzas", 16, occurrences.getEnd(4));
+	}
+
+	/**
+	 * Tests that keywords with characters outside ascii are matched ignoring case
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testFindOccurrencesNonAscii() throws CYlpNullArgumentException {
+
+		CYlpKeywordAutomaton keywordAutomaton = new CYlpKeywordAutomaton(
+				Arrays.asList("cr\u00e8me", "br\u00fbl\u00e9e"));
+
+		CYlpKeywordOccurrences occurrences = keywordAutomaton.findOccurrences("CR\u00c8ME BR\u00dbL\u00c9E, la cr\u00e8me");
+
+		assertEquals("Expecting three occurences", 3, occurrences.size());
+		assertEquals(0, occurrences.getStart(0));
+		assertEquals(6, occurrences.getStart(1));
+		assertEquals(17, occurrences.getStart(2));
+	}
+
+	/**
+	 * NULL check on keyword list expecting CYlpNullArgumentException
+	 */
+	@Test(expected = CYlpNullArgumentException.class)
+	public void testNullKeywordList() throws CYlpNullArgumentException {
+		new CYlpKeywordAutomaton(null);
+	}
+}
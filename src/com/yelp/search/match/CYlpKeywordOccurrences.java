@@ -0,0 +1,140 @@
+package com.yelp.search.match;
+
+import java.util.Arrays;
+
+/**
+ * Holds all keyword occurrences found by CYlpKeywordAutomaton in a document. Occurrences are stored as
+ * two parallel primitive arrays (start index and keyword id) ordered by start index and then keyword id.
+ * Occurrences of analyzed keywords (see CYlpCompiledQuery.findOccurrences()) are words whose length is not
+ * the length of the keyword, their end index is stored in a third array
+ *
+ */
+public class CYlpKeywordOccurrences {
+
+	//automaton that produced these occurrences, used to resolve keyword text and length
+	private final CYlpKeywordAutomaton automaton;
+
+	//start index of each occurrence in the document
+	private final int[] starts;
+
+	//keyword id of each occurrence
+	private final int[] keywordIds;
+
+	//end index of each occurrence, null when it is the start plus the length of the keyword
+	private final int[] ends;
+
+	//start and end index of the occurrences a regex alternating all keywords would match when scanning the
+	//document from the beginning: leftmost occurrence first, on same start the keyword that comes first in
+	//the query, and no overlap with the previous match. Both arrays are increasing
+	private final int[] matchStarts;
+	private final int[] matchEnds;
+
+	public CYlpKeywordOccurrences(CYlpKeywordAutomaton automaton, int[] starts, int[] keywordIds) {
+		this(automaton, starts, null, keywordIds);
+	}
+
+	/**
+	 * Occurrences whose end index is passed as argument instead of computed from the keyword length
+	 * @param automaton
+	 * @param starts
+	 * @param ends: end index of each occurrence, null to use the keyword length
+	 * @param keywordIds
+	 */
+	public CYlpKeywordOccurrences(CYlpKeywordAutomaton automaton, int[] starts, int[] ends, int[] keywordIds) {
+		this.automaton = automaton;
+		this.starts = starts;
+		this.ends = ends;
+		this.keywordIds = keywordIds;
+
+		int[] nonOverlappingStarts = new int[starts.length];
+		int[] nonOverlappingEnds = new int[starts.length];
+		int matchCount = 0;
+		int lastEnd = 0;
+		for (int i = 0; i < starts.length; i++) {
+			//occurrences are ordered by start and keyword id, so first occurrence at a start is the one to match
+			if (starts[i] >= lastEnd && (i == 0 || starts[i] != starts[i - 1])) {
+				lastEnd = getEnd(i);
+				nonOverlappingStarts[matchCount] = starts[i];
+				nonOverlappingEnds[matchCount] = lastEnd;
+				matchCount++;
+			}
+		}
+		matchStarts = Arrays.copyOf(nonOverlappingStarts, matchCount);
+		matchEnds = Arrays.copyOf(nonOverlappingEnds, matchCount);
+	}
+
+	public CYlpKeywordAutomaton getAutomaton() {
+		return automaton;
+	}
+
+	public int size() {
+		return starts.length;
+	}
+
+	public boolean isEmpty() {
+		return starts.length == 0;
+	}
+
+	public int getStart(int occurrence) {
+		return starts[occurrence];
+	}
+
+	public int getEnd(int occurrence) {
+		if (ends != null) {
+			return ends[occurrence];
+		}
+		return starts[occurrence] + automaton.getKeywordLength(keywordIds[occurrence]);
+	}
+
+	public int getKeywordId(int occurrence) {
+		return keywordIds[occurrence];
+	}
+
+	public String getKeyword(int occurrence) {
+		return automaton.getKeyword(keywordIds[occurrence]);
+	}
+
+	/**
+	 * Returns number of keyword matches that lie completely between startIndex and endIndex, counted like
+	 * getCountOfAllKeywords() would count them with the regex of all keywords. Uses two binary searches so
+	 * no sub string of the document is needed
+	 * @param startIndex
+	 * @param endIndex
+	 * @return count of keyword matches within the indexes
+	 */
+	public int countMatchesWithin(int startIndex, int endIndex) {
+		//matches ending at or before endIndex minus matches starting before startIndex
+		int count = upperBound(matchEnds, endIndex) - lowerBound(matchStarts, startIndex);
+		return count > 0 ? count : 0;
+	}
+
+	/**
+	 * Returns index of first occurrence which starts at or after the index passed as argument
+	 * (size() if there is no such occurrence)
+	 * @param index
+	 * @return index of first occurrence starting at or after index
+	 */
+	public int firstOccurrenceAtOrAfter(int index) {
+		return lowerBound(starts, index);
+	}
+
+	//index of first element that is not less than value
+	private static int lowerBound(int[] sortedValues, int value) {
+		int low = 0;
+		int high = sortedValues.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sortedValues[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	//index of first element that is greater than value
+	private static int upperBound(int[] sortedValues, int value) {
+		return lowerBound(sortedValues, value + 1);
+	}
+}
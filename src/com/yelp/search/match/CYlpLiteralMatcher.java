@@ -0,0 +1,156 @@
+package com.yelp.search.match;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Case-insensitive matcher of one keyword taken as plain text, it replaces Pattern.compile("(?i)" + keyword)
+ * so that keywords like "c++" or "(bar" are matched as they are written instead of being parsed as regex.
+ * Matches are found the way Matcher.find() finds them: left to right, a match starts after the end of the
+ * previous match.
+ *
+ * The keyword is folded once with CYlpKeywordAutomaton.foldCase() and the text is folded while it is
+ * scanned, so matching is consistent with the keyword automaton: ASCII characters are folded with bit
+ * operations and other characters with the Unicode case mappings of Character. The text is scanned with
+ * Boyer-Moore-Horspool, the shift of a folded character is read from a table indexed by its low 7 bits
+ * (characters sharing a slot get the smallest shift).
+ *
+ * Instances are immutable and can be shared between threads.
+ *
+ */
+public final class CYlpLiteralMatcher {
+
+	//number of slots of the shift table, a folded character uses the slot of its low 7 bits
+	private static final int SHIFT_TABLE_SIZE = 128;
+
+	private final String keyword;
+
+	//folded characters of the keyword
+	private final char[] foldedKeyword;
+
+	//number of characters the keyword can be moved when its last character is aligned with a text character
+	private final int[] shiftTable = new int[SHIFT_TABLE_SIZE];
+
+	/**
+	 * Builds the matcher of the keyword passed as argument
+	 * @param keyword: text to find, at least one character
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpLiteralMatcher(String keyword) throws CYlpNullArgumentException {
+
+		if (keyword == null) {
+			throw new CYlpNullArgumentException(
+					"keyword is null ");
+		}
+		if (keyword.isEmpty()) {
+			throw new IllegalArgumentException("keyword should not be empty ");
+		}
+
+		this.keyword = keyword;
+		foldedKeyword = CYlpKeywordAutomaton.foldCase(keyword).toCharArray();
+
+		int lastIndex = foldedKeyword.length - 1;
+		for (int i = 0; i < SHIFT_TABLE_SIZE; i++) {
+			shiftTable[i] = foldedKeyword.length;
+		}
+		for (int i = 0; i < lastIndex; i++) {
+			shiftTable[foldedKeyword[i] & (SHIFT_TABLE_SIZE - 1)] = lastIndex - i;
+		}
+	}
+
+	public String getKeyword() {
+		return keyword;
+	}
+
+	/**
+	 * Returns the index of the first match starting at or after fromIndex
+	 * @param text
+	 * @param fromIndex
+	 * @throws CYlpNullArgumentException
+	 * @return start index of the match, -1 when the keyword does not occur
+	 */
+	public int indexOf(CharSequence text, int fromIndex) throws CYlpNullArgumentException {
+
+		if (text == null) {
+			throw new CYlpNullArgumentException(
+					"text is null ");
+		}
+
+		return find(text, Math.max(0, fromIndex));
+	}
+
+	/**
+	 * Returns start indexes of all matches, a match starts after the end of the previous one
+	 * @param text
+	 * @throws CYlpNullArgumentException
+	 * @return start indexes in increasing order
+	 */
+	public List<Integer> findAll(CharSequence text) throws CYlpNullArgumentException {
+
+		if (text == null) {
+			throw new CYlpNullArgumentException(
+					"text is null ");
+		}
+
+		List<Integer> startIndexes = new ArrayList<Integer>();
+		for (int startIndex = find(text, 0); startIndex >= 0;
+				startIndex = find(text, startIndex + foldedKeyword.length)) {
+			startIndexes.add(startIndex);
+		}
+		return startIndexes;
+	}
+
+	/**
+	 * Counts the matches found by findAll() without creating the list
+	 * @param text
+	 * @throws CYlpNullArgumentException
+	 * @return number of matches
+	 */
+	public int count(CharSequence text) throws CYlpNullArgumentException {
+
+		if (text == null) {
+			throw new CYlpNullArgumentException(
+					"text is null ");
+		}
+
+		int count = 0;
+		for (int startIndex = find(text, 0); startIndex >= 0;
+				startIndex = find(text, startIndex + foldedKeyword.length)) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Horspool scan: the keyword is compared right to left, on a mismatch it is moved by the shift of the text
+	 * character aligned with its last character
+	 */
+	private int find(CharSequence text, int fromIndex) {
+
+		int lastIndex = foldedKeyword.length - 1;
+		int lastStart = text.length() - foldedKeyword.length;
+		int startIndex = fromIndex;
+		while (startIndex <= lastStart) {
+			char lastChar = CYlpKeywordAutomaton.foldCase(text.charAt(startIndex + lastIndex));
+			if (lastChar == foldedKeyword[lastIndex] && matchesAt(text, startIndex, lastIndex)) {
+				return startIndex;
+			}
+			startIndex += shiftTable[lastChar & (SHIFT_TABLE_SIZE - 1)];
+		}
+		return -1;
+	}
+
+	/**
+	 * Compares the first length characters of the keyword with the text at startIndex
+	 */
+	private boolean matchesAt(CharSequence text, int startIndex, int length) {
+		for (int i = length - 1; i >= 0; i--) {
+			if (CYlpKeywordAutomaton.foldCase(text.charAt(startIndex + i)) != foldedKeyword[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,100 @@
+package com.yelp.search.match;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * unit test class that tests CYlpLiteralMatcher, keywords with regex meta characters and matches that
+ * differ in case
+ *
+ */
+public class CYlpLiteralMatcherTest {
+
+	/**
+	 * Tests that keywords are matched as plain text ignoring case, keywords like "c++ (bar" are not valid
+	 * regex
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testFindAll() throws CYlpNullArgumentException {
+
+		final String docString = "I code C++ (BAR and c++ (bar all day, c+++ (bar) too";
+		CYlpLiteralMatcher literalMatcher = new CYlpLiteralMatcher("c++ (bar");
+
+		assertEquals("Expecting every match ignoring case", Arrays.asList(7, 20),
+				literalMatcher.findAll(docString));
+		assertEquals("Expecting count of matches", 2, literalMatcher.count(docString));
+		assertEquals("Expecting first match after index", 20, literalMatcher.indexOf(docString, 8));
+		assertEquals("Expecting no match", -1, new CYlpLiteralMatcher("*great*").indexOf(docString, 0));
+
+		// a match starts after the end of the previous match, same as Matcher.find()
+		assertEquals("Expecting matches not to overlap", Arrays.asList(0, 2), new CYlpLiteralMatcher("aa")
+				.findAll("aaaaa"));
+		assertEquals("Expecting no match in shorter text", 0, literalMatcher.count("c++"));
+	}
+
+	/**
+	 * Tests that matches are the same as those of a case insensitive regex of the quoted keyword on review
+	 * text, and that characters outside ASCII are folded too
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testSameMatchesAsRegex() throws CYlpNullArgumentException {
+
+		final String docString = "The pizza was cold but the dish was good, deep down I still love their deep dish "
+				+ "Pizza. DEEP DISH PIZZA is the best, deep-dish pizzas are ok. Dish the pizza";
+		for (String keyword : Arrays.asList("pizza", "deep dish", "DISH PIZZA", "the", "a", ".", "ok. Dish")) {
+			List<Integer> regexStartIndexes = new ArrayList<Integer>();
+			Matcher matcher = Pattern.compile("(?i)" + Pattern.quote(keyword)).matcher(docString);
+			while (matcher.find()) {
+				regexStartIndexes.add(matcher.start());
+			}
+			assertEquals("Expecting same matches as regex for " + keyword, regexStartIndexes,
+					new CYlpLiteralMatcher(keyword).findAll(docString));
+		}
+
+		assertEquals("Expecting accented letters to match ignoring case", Arrays.asList(3),
+				new CYlpLiteralMatcher("caf\u00E9").findAll("Le CAF\u00C9 du coin"));
+	}
+
+	/**
+	 * Tests that foldCase() folds upper case ASCII letters only, and other characters with Character
+	 */
+	@Test
+	public void testFoldCase() {
+
+		for (char c = 0; c < 128; c++) {
+			char expected = (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+			assertEquals("Expecting ASCII fold of " + (int) c, expected, CYlpKeywordAutomaton.foldCase(c));
+		}
+		assertEquals("Expecting Unicode fold", '\u00E9', CYlpKeywordAutomaton.foldCase('\u00C9'));
+	}
+
+	@Test
+	public void testInvalidKeyword() throws CYlpNullArgumentException {
+
+		try {
+			new CYlpLiteralMatcher(null);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+		try {
+			new CYlpLiteralMatcher("");
+			fail("Should not get here, expecting it to throw exception");
+		} catch (IllegalArgumentException illegalArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package com.yelp.search.match;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.analysis.CYlpAnalyzer;
+import com.yelp.search.analysis.CYlpTermBuffer;
+
+/**
+ * Dictionary that interns case-folded keywords as int IDs, so words of a document can be compared to the
+ * keywords as ints. Keywords that are equal after CYlpKeywordAutomaton.foldCase() get the same ID, IDs are
+ * given in order of first occurrence starting at 0.
+ *
+ * Lookups hash and compare the characters of the word in place (open addressing), so looking up a word of
+ * a document does not create a sub string. Instances are immutable and can be shared between threads.
+ *
+ * A dictionary built with a CYlpAnalyzer keeps the analyzed keywords and analyzes every word before looking
+ * it up, so "Pizzas" and "pizza" get the same ID. Words are analyzed in to the buffer of the calling thread
+ * and the analyzer caches analyzed words, so lookups still do not create objects for repeated words.
+ *
+ */
+public final class CYlpTermDictionary {
+
+	//ID of a word that is not in the dictionary
+	public static final int NO_TERM = -1;
+
+	//folded terms in ID order
+	private final List<String> terms;
+
+	//open addressing hash table of term IDs, NO_TERM for an empty slot
+	private final int[] termTable;
+	private final int tableMask;
+
+	//analyzer of keywords and looked up words, null when words are only case folded
+	private final CYlpAnalyzer analyzer;
+
+	/**
+	 * Builds the dictionary for the keywords passed as argument, empty keywords are ignored
+	 * @param keywordList
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpTermDictionary(List<String> keywordList) throws CYlpNullArgumentException {
+
+		if (keywordList == null || keywordList.contains(null)) {
+			throw new CYlpNullArgumentException(
+					"Either keyword list or one of the keywords is null ");
+		}
+
+		analyzer = null;
+
+		//table is kept at most half full
+		int tableSize = Integer.highestOneBit(Math.max(4, keywordList.size() * 2 - 1)) << 1;
+		termTable = new int[tableSize];
+		tableMask = tableSize - 1;
+		Arrays.fill(termTable, NO_TERM);
+
+		List<String> foldedTerms = new ArrayList<String>();
+		for (String keyword : keywordList) {
+			if (keyword.isEmpty() || getTermId(keyword, foldedTerms) != NO_TERM) {
+				continue;
+			}
+			String foldedKeyword = CYlpKeywordAutomaton.foldCase(keyword);
+			int slot = hash(foldedKeyword, 0, foldedKeyword.length()) & tableMask;
+			while (termTable[slot] != NO_TERM) {
+				slot = (slot + 1) & tableMask;
+			}
+			termTable[slot] = foldedTerms.size();
+			foldedTerms.add(foldedKeyword);
+		}
+		terms = Collections.unmodifiableList(foldedTerms);
+	}
+
+	/**
+	 * Builds the dictionary for the keywords passed as argument after analyzing them, keywords that are
+	 * empty after analysis are ignored and words looked up are analyzed the same way
+	 * @param keywordList
+	 * @param analyzer
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpTermDictionary(List<String> keywordList, CYlpAnalyzer analyzer) throws CYlpNullArgumentException {
+
+		this(analyzeKeywords(keywordList, analyzer), analyzer);
+	}
+
+	private CYlpTermDictionary(CYlpTermDictionary foldedDictionary, CYlpAnalyzer analyzer) {
+
+		terms = foldedDictionary.terms;
+		termTable = foldedDictionary.termTable;
+		tableMask = foldedDictionary.tableMask;
+		this.analyzer = analyzer;
+	}
+
+	/**
+	 * Dictionary of the analyzed keywords, it is only used to build the dictionary with the analyzer
+	 */
+	private static CYlpTermDictionary analyzeKeywords(List<String> keywordList, CYlpAnalyzer analyzer)
+			throws CYlpNullArgumentException {
+
+		if (keywordList == null || keywordList.contains(null) || analyzer == null) {
+			throw new CYlpNullArgumentException(
+					"Either keyword list or one of the keywords or analyzer is null ");
+		}
+
+		List<String> analyzedKeywords = new ArrayList<String>(keywordList.size());
+		for (String keyword : keywordList) {
+			analyzedKeywords.add(analyzer.analyze(keyword));
+		}
+		return new CYlpTermDictionary(analyzedKeywords);
+	}
+
+	/**
+	 * @return analyzer of the words, null when words are only case folded
+	 */
+	public CYlpAnalyzer getAnalyzer() {
+		return analyzer;
+	}
+
+	/**
+	 * @return number of distinct terms
+	 */
+	public int size() {
+		return terms.size();
+	}
+
+	/**
+	 * @param termId
+	 * @return case-folded term with the ID
+	 */
+	public String getTerm(int termId) {
+		return terms.get(termId);
+	}
+
+	public List<String> getTerms() {
+		return terms;
+	}
+
+	/**
+	 * Returns ID of the word, ignoring case (after analyzing the word when the dictionary has an analyzer)
+	 * @param word
+	 * @return term ID or NO_TERM when the word is not a keyword
+	 */
+	public int getTermId(CharSequence word) {
+		return getTermId(word, 0, word.length());
+	}
+
+	/**
+	 * Returns ID of the word between startIndex (inclusive) and endIndex (exclusive) of text, ignoring case
+	 * (after analyzing the word when the dictionary has an analyzer)
+	 * @param text
+	 * @param startIndex
+	 * @param endIndex
+	 * @return term ID or NO_TERM when the word is not a keyword
+	 */
+	public int getTermId(CharSequence text, int startIndex, int endIndex) {
+
+		if (startIndex >= endIndex) {
+			return NO_TERM;
+		}
+		if (analyzer != null) {
+			CYlpTermBuffer analyzedWord = analyzer.analyze(text, startIndex, endIndex);
+			return getFoldedTermId(analyzedWord, 0, analyzedWord.length());
+		}
+		return getFoldedTermId(text, startIndex, endIndex);
+	}
+
+	private int getFoldedTermId(CharSequence text, int startIndex, int endIndex) {
+
+		if (startIndex >= endIndex) {
+			return NO_TERM;
+		}
+
+		int slot = hash(text, startIndex, endIndex) & tableMask;
+		for (int termId = termTable[slot]; termId != NO_TERM; termId = termTable[slot]) {
+			if (equalsFolded(terms.get(termId), text, startIndex, endIndex)) {
+				return termId;
+			}
+			slot = (slot + 1) & tableMask;
+		}
+		return NO_TERM;
+	}
+
+	/**
+	 * lookup used while the table is being built, terms is not set yet
+	 */
+	private int getTermId(String keyword, List<String> foldedTerms) {
+
+		int slot = hash(keyword, 0, keyword.length()) & tableMask;
+		for (int termId = termTable[slot]; termId != NO_TERM; termId = termTable[slot]) {
+			if (equalsFolded(foldedTerms.get(termId), keyword, 0, keyword.length())) {
+				return termId;
+			}
+			slot = (slot + 1) & tableMask;
+		}
+		return NO_TERM;
+	}
+
+	private static int hash(CharSequence text, int startIndex, int endIndex) {
+
+		int hash = 0;
+		for (int i = startIndex; i < endIndex; i++) {
+			hash = 31 * hash + CYlpKeywordAutomaton.foldCase(text.charAt(i));
+		}
+		//spread high bits to the low bits used by the mask
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean equalsFolded(String foldedTerm, CharSequence text, int startIndex, int endIndex) {
+
+		if (foldedTerm.length() != endIndex - startIndex) {
+			return false;
+		}
+		for (int i = startIndex; i < endIndex; i++) {
+			if (foldedTerm.charAt(i - startIndex) != CYlpKeywordAutomaton.foldCase(text.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
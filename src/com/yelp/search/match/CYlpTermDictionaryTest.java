@@ -0,0 +1,65 @@
+package com.yelp.search.match;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.document.CYlpTokenStream;
+import com.yelp.search.document.CYlpTokenizedDocument;
+
+/**
+ * unit test class that tests CYlpTermDictionary and the token stream built with it
+ *
+ */
+public class CYlpTermDictionaryTest {
+
+	@Test
+	public void testGetTermId() throws CYlpNullArgumentException {
+
+		CYlpTermDictionary termDictionary = new CYlpTermDictionary(Arrays.asList("deep", "Dish", "pizza", "DEEP", ""));
+
+		assertEquals("Expecting case variants to share one ID", 3, termDictionary.size());
+		assertEquals("Expecting ID in order of first occurrence", 1, termDictionary.getTermId("DISH"));
+		assertEquals("Expecting folded term", "dish", termDictionary.getTerm(1));
+		assertEquals("Expecting word inside text to be found", 2,
+				termDictionary.getTermId("Little star's pizza", 14, 19));
+		assertEquals("Expecting NO_TERM for other words", CYlpTermDictionary.NO_TERM,
+				termDictionary.getTermId("pizzas"));
+		assertEquals("Expecting NO_TERM for empty word", CYlpTermDictionary.NO_TERM,
+				termDictionary.getTermId(""));
+	}
+
+	@Test
+	public void testTokenStream() throws CYlpNullArgumentException {
+
+		CYlpTermDictionary termDictionary = new CYlpTermDictionary(Arrays.asList("deep", "dish", "pizza"));
+		CYlpTokenStream tokenStream = new CYlpTokenStream(new CYlpTokenizedDocument("Deep dish, pizzas"),
+				termDictionary);
+
+		// words are: Deep, " ", dish, ",", " ", pizzas
+		assertEquals("Expecting one term ID per word", 6, tokenStream.size());
+		assertEquals("Expecting term ID of keyword", 0, tokenStream.getTermId(0));
+		assertEquals("Expecting blank word", CYlpTokenStream.BLANK, tokenStream.getTermId(1));
+		assertEquals("Expecting NO_TERM for punctuation", CYlpTokenStream.NO_TERM, tokenStream.getTermId(3));
+		assertEquals("Expecting NO_TERM for longer word", CYlpTokenStream.NO_TERM, tokenStream.getTermId(5));
+
+		// section that cuts pizzas looks up the cut word again
+		assertArrayEquals("Expecting term IDs of the section",
+				new int[] { 1, CYlpTokenStream.NO_TERM, CYlpTokenStream.BLANK, 2 }, tokenStream.getTermIds(5, 16));
+	}
+
+	@Test
+	public void testNullKeywordList() {
+
+		try {
+			new CYlpTermDictionary(null);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package com.yelp.search.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.yelp.enums.EylpHighlightStage;
+import com.yelp.search.highlight.CYlpHighlightListener;
+import com.yelp.search.highlight.CYlpHighlightTrace;
+
+/**
+ * CYlpHighlightListener that aggregates the traces of all calls in CYlpLongHistogram, one per stage timing
+ * and one per size of the trace. Recording a trace does not lock and does not create objects, so one
+ * aggregator can be shared by all engines and threads:
+ *
+ * 	CYlpHighlightStatsAggregator highlightStats = new CYlpHighlightStatsAggregator();
+ * 	CYlpHighlightEngine engine = CYlpHighlightEngine.builder().highlightListener(highlightStats).build();
+ *
+ * scrape() writes the histograms in the Prometheus text format, for example to serve them on a metrics
+ * endpoint, with a counter of the calls whose work budget ran out (see CYlpWorkBudget).
+ *
+ */
+public final class CYlpHighlightStatsAggregator implements CYlpHighlightListener {
+
+	// prefix of the metric names written by scrape()
+	public static final String METRIC_PREFIX = "yelp_highlight_";
+
+	// values() returns a new array on every call
+	private static final EylpHighlightStage[] STAGES = EylpHighlightStage.values();
+
+	private final CYlpLongHistogram[] stageHistograms = new CYlpLongHistogram[STAGES.length];
+	private final CYlpLongHistogram totalHistogram = new CYlpLongHistogram();
+	private final CYlpLongHistogram documentLengthHistogram = new CYlpLongHistogram();
+	private final CYlpLongHistogram keywordCountHistogram = new CYlpLongHistogram();
+	private final CYlpLongHistogram combinationCountHistogram = new CYlpLongHistogram();
+	private final CYlpLongHistogram windowsScoredHistogram = new CYlpLongHistogram();
+	private final LongAdder degradedCount = new LongAdder();
+
+	public CYlpHighlightStatsAggregator() {
+		for (int i = 0; i < stageHistograms.length; i++) {
+			stageHistograms[i] = new CYlpLongHistogram();
+		}
+	}
+
+	public void onHighlight(CYlpHighlightTrace trace) {
+
+		for (EylpHighlightStage stage : STAGES) {
+			stageHistograms[stage.ordinal()].record(trace.getStageNanos(stage));
+		}
+		totalHistogram.record(trace.getTotalNanos());
+		documentLengthHistogram.record(trace.getDocumentLength());
+		keywordCountHistogram.record(trace.getKeywordCount());
+		combinationCountHistogram.record(trace.getCombinationCount());
+		windowsScoredHistogram.record(trace.getWindowsScored());
+		if (trace.isDegraded()) {
+			degradedCount.increment();
+		}
+	}
+
+	/**
+	 * @param stage
+	 * @return nanoseconds spent in the stage per call
+	 */
+	public CYlpLongHistogram getStageHistogram(EylpHighlightStage stage) {
+		return stageHistograms[stage.ordinal()];
+	}
+
+	/**
+	 * @return nanoseconds spent in all stages per call
+	 */
+	public CYlpLongHistogram getTotalHistogram() {
+		return totalHistogram;
+	}
+
+	public CYlpLongHistogram getDocumentLengthHistogram() {
+		return documentLengthHistogram;
+	}
+
+	public CYlpLongHistogram getKeywordCountHistogram() {
+		return keywordCountHistogram;
+	}
+
+	public CYlpLongHistogram getCombinationCountHistogram() {
+		return combinationCountHistogram;
+	}
+
+	public CYlpLongHistogram getWindowsScoredHistogram() {
+		return windowsScoredHistogram;
+	}
+
+	/**
+	 * @return number of traces whose snippet was degraded because the work budget ran out
+	 */
+	public long getDegradedCount() {
+		return degradedCount.sum();
+	}
+
+	/**
+	 * @return number of traces recorded
+	 */
+	public long getCount() {
+		return totalHistogram.getCount();
+	}
+
+	/**
+	 * Sets all histograms and the degraded count to 0
+	 */
+	public void reset() {
+		for (CYlpLongHistogram stageHistogram : stageHistograms) {
+			stageHistogram.reset();
+		}
+		totalHistogram.reset();
+		documentLengthHistogram.reset();
+		keywordCountHistogram.reset();
+		combinationCountHistogram.reset();
+		windowsScoredHistogram.reset();
+		degradedCount.reset();
+	}
+
+	/**
+	 * @return histograms in the Prometheus text format
+	 */
+	public String scrape() {
+
+		StringBuilder metrics = new StringBuilder(4096);
+		try {
+			scrape(metrics);
+		} catch (IOException ioEx) {
+			//a StringBuilder does not throw
+			throw new UncheckedIOException(ioEx);
+		}
+		return metrics.toString();
+	}
+
+	/**
+	 * Writes the histograms in the Prometheus text format, stage timings are one histogram with a stage
+	 * label. Empty buckets above the greatest value are left out
+	 * @param out
+	 * @throws IOException
+	 */
+	public void scrape(Appendable out) throws IOException {
+
+		String stageMetric = METRIC_PREFIX + "stage_nanos";
+		writeType(out, stageMetric);
+		for (EylpHighlightStage stage : STAGES) {
+			writeHistogram(out, stageMetric, "stage=\"" + stage + "\"", stageHistograms[stage.ordinal()]);
+		}
+		writeHistogram(out, METRIC_PREFIX + "total_nanos", totalHistogram);
+		writeHistogram(out, METRIC_PREFIX + "document_length", documentLengthHistogram);
+		writeHistogram(out, METRIC_PREFIX + "keyword_count", keywordCountHistogram);
+		writeHistogram(out, METRIC_PREFIX + "combination_count", combinationCountHistogram);
+		writeHistogram(out, METRIC_PREFIX + "windows_scored", windowsScoredHistogram);
+
+		String degradedMetric = METRIC_PREFIX + "degraded_total";
+		out.append("# TYPE ").append(degradedMetric).append(" counter\n");
+		out.append(degradedMetric).append(' ').append(Long.toString(degradedCount.sum())).append('\n');
+	}
+
+	private static void writeType(Appendable out, String metric) throws IOException {
+		out.append("# TYPE ").append(metric).append(" histogram\n");
+	}
+
+	private static void writeHistogram(Appendable out, String metric, CYlpLongHistogram histogram)
+			throws IOException {
+		writeType(out, metric);
+		writeHistogram(out, metric, null, histogram);
+	}
+
+	private static void writeHistogram(Appendable out, String metric, String label, CYlpLongHistogram histogram)
+			throws IOException {
+
+		String labelPrefix = label == null ? "" : label + ",";
+		int lastBucket = CYlpLongHistogram.getBucketIndex(histogram.getMax());
+		long cumulativeCount = 0;
+		for (int i = 0; i <= lastBucket; i++) {
+			cumulativeCount += histogram.getBucketCount(i);
+			out.append(metric).append("_bucket{").append(labelPrefix).append("le=\"")
+					.append(Long.toString(CYlpLongHistogram.getBucketUpperBound(i))).append("\"} ")
+					.append(Long.toString(cumulativeCount)).append('\n');
+		}
+		String labels = label == null ? "" : "{" + label + "}";
+		out.append(metric).append("_bucket{").append(labelPrefix).append("le=\"+Inf\"} ")
+				.append(Long.toString(histogram.getCount())).append('\n');
+		out.append(metric).append("_sum").append(labels).append(' ').append(Long.toString(histogram.getSum()))
+				.append('\n');
+		out.append(metric).append("_count").append(labels).append(' ').append(Long.toString(histogram.getCount()))
+				.append('\n');
+	}
+}
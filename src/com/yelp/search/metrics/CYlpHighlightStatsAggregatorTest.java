@@ -0,0 +1,76 @@
+package com.yelp.search.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.yelp.enums.EylpHighlightStage;
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.highlight.CYlpHighlightEngine;
+
+/**
+ * unit test class that tests CYlpLongHistogram and CYlpHighlightStatsAggregator listening to an engine
+ *
+ */
+public class CYlpHighlightStatsAggregatorTest {
+
+	@Test
+	public void testLongHistogram() {
+
+		CYlpLongHistogram histogram = new CYlpLongHistogram();
+		assertEquals("Expecting 0 percentile of empty histogram", 0, histogram.getValueAtPercentile(50));
+
+		for (long value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+		histogram.record(-5);
+		assertEquals("Expecting count of all values", 101, histogram.getCount());
+		assertEquals("Expecting sum of all values", 5050, histogram.getSum());
+		assertEquals("Expecting greatest value", 100, histogram.getMax());
+		assertEquals("Expecting negative value in first bucket", 1, histogram.getBucketCount(0));
+		assertEquals("Expecting 64 to 100 in bucket 7", 37, histogram.getBucketCount(7));
+		assertEquals("Expecting upper bound of the bucket of the median", 63, histogram.getValueAtPercentile(50));
+		assertEquals("Expecting greatest value as 100th percentile", 100, histogram.getValueAtPercentile(100));
+
+		histogram.reset();
+		assertEquals("Expecting no value after reset", 0, histogram.getCount());
+	}
+
+	/**
+	 * Tests that the aggregator gets one trace per highlighted document with the sizes of the document and
+	 * the query, and that scrape() writes every histogram
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testAggregateHighlightTraces() throws CYlpNullArgumentException {
+
+		CYlpHighlightStatsAggregator highlightStats = new CYlpHighlightStatsAggregator();
+		CYlpHighlightEngine engine = CYlpHighlightEngine.builder().snippetLength(40)
+				.highlightListener(highlightStats).build();
+		String review = "We tried the deep dish pepperoni pizza and once again it was amazingly good!";
+
+		for (int i = 0; i < 10; i++) {
+			engine.getHighlightDoc(review, "deep dish pizza");
+		}
+		assertEquals("Expecting one trace per document", 10, highlightStats.getCount());
+		assertEquals("Expecting length of the document", review.length(),
+				highlightStats.getDocumentLengthHistogram().getMax());
+		assertEquals("Expecting three keywords", 3, highlightStats.getKeywordCountHistogram().getMax());
+		assertTrue("Expecting combinations found in the document",
+				highlightStats.getCombinationCountHistogram().getMax() > 0);
+		assertTrue("Expecting scan windows scored", highlightStats.getWindowsScoredHistogram().getMax() > 0);
+		assertEquals("Expecting every stage to be recorded", 10,
+				highlightStats.getStageHistogram(EylpHighlightStage.PROXIMITY_SEARCH).getCount());
+
+		String metrics = highlightStats.scrape();
+		assertTrue("Expecting stage label",
+				metrics.contains("yelp_highlight_stage_nanos_count{stage=\"PADDING\"} 10\n"));
+		assertTrue("Expecting document length histogram",
+				metrics.contains("yelp_highlight_document_length_bucket{le=\"+Inf\"} 10\n"));
+		assertEquals("Expecting no degraded trace without a budget", 0, highlightStats.getDegradedCount());
+		assertTrue("Expecting degraded counter", metrics.contains("yelp_highlight_degraded_total 0\n"));
+
+		highlightStats.reset();
+		assertEquals("Expecting no trace after reset", 0, highlightStats.getCount());
+	}
+}
@@ -0,0 +1,136 @@
+package com.yelp.search.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non negative long values with one bucket per power of two: bucket 0 counts 0,
+ * bucket i counts values from 2^(i-1) to 2^i - 1. Counters are LongAdders, so threads recording at the same
+ * time do not contend on one counter, and a value costs a few adds however many values were recorded.
+ *
+ * Reads are not atomic with respect to records, a snapshot taken while values are recorded may miss the
+ * values being recorded but each counter is exact once recording stops.
+ *
+ */
+public final class CYlpLongHistogram {
+
+	// bucket 0 for 0 and one bucket per bit of a positive long
+	public static final int BUCKET_COUNT = 64;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public CYlpLongHistogram() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records the value, negative values are recorded as 0
+	 * @param value
+	 */
+	public void record(long value) {
+
+		long recordedValue = Math.max(0, value);
+		buckets[getBucketIndex(recordedValue)].increment();
+		sum.add(recordedValue);
+		max.accumulate(recordedValue);
+	}
+
+	/**
+	 * @param value
+	 * @return index of the bucket of the value
+	 */
+	public static int getBucketIndex(long value) {
+		return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+	}
+
+	/**
+	 * @param bucketIndex
+	 * @return greatest value counted by the bucket
+	 */
+	public static long getBucketUpperBound(int bucketIndex) {
+		return bucketIndex >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucketIndex) - 1;
+	}
+
+	/**
+	 * @param bucketIndex
+	 * @return number of values recorded in the bucket
+	 */
+	public long getBucketCount(int bucketIndex) {
+		return buckets[bucketIndex].sum();
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * @return greatest value recorded, 0 when no value was recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return sum divided by count, 0 when no value was recorded
+	 */
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : (double) getSum() / count;
+	}
+
+	/**
+	 * Returns an upper bound of the value at the percentile: the upper bound of the bucket holding it, or the
+	 * greatest value recorded when it is smaller, so the result is at most twice the exact percentile
+	 * @param percentile: from 0 to 100
+	 * @return value at the percentile, 0 when no value was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile should be between 0 and 100, was " + percentile);
+		}
+
+		long[] bucketCounts = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			bucketCounts[i] = buckets[i].sum();
+			count += bucketCounts[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long countSoFar = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			countSoFar += bucketCounts[i];
+			if (countSoFar >= rank) {
+				return Math.min(getBucketUpperBound(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Sets all counters to 0, values recorded while it resets may be partly kept
+	 */
+	public void reset() {
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+		sum.reset();
+		max.reset();
+	}
+}
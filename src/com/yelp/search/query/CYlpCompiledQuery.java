@@ -0,0 +1,243 @@
+package com.yelp.search.query;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.analysis.CYlpAnalyzer;
+import com.yelp.search.document.CYlpTokenStream;
+import com.yelp.search.match.CYlpKeywordAutomaton;
+import com.yelp.search.match.CYlpKeywordOccurrences;
+import com.yelp.search.match.CYlpTermDictionary;
+import com.yelp.search.util.CYlpDelimiterTokenizer;
+import com.yelp.search.util.CYlpSearchUtil;
+import com.yelp.search.util.CYlpStopwordSet;
+
+/**
+ * Immutable form of a search query with everything that only depends on the query prepared once: the
+ * keyword list (after removing non qualitative terms), the keyword automaton used to find keyword
+ * occurrences (it takes the place of the keyword combination table), the term dictionary used to pad
+ * keywords and the regex that matches keywords.
+ *
+ * A query compiled with a CYlpAnalyzer keeps the analyzed keywords, for example "Pizzas" becomes "pizza", and
+ * matches whole words of the document that analyze to a keyword (see findOccurrences()) instead of keywords
+ * found anywhere in the text.
+ *
+ * The same instance can be used to highlight any number of documents, from any number of threads. Use
+ * CYlpCompiledQueryCache to reuse compiled queries across calls.
+ *
+ */
+public class CYlpCompiledQuery {
+
+	//query after normalization, see normalizeQuery()
+	private final String query;
+
+	//qualitative keywords of the query
+	private final List<String> keywordList;
+
+	//automaton that finds all occurrences of the keywords in one pass
+	private final CYlpKeywordAutomaton keywordAutomaton;
+
+	//keywords interned as term IDs, words of a snippet are padded when their term ID is found
+	private final CYlpTermDictionary termDictionary;
+
+	//regex that matches one or more keywords (ignoring case) and its compiled form
+	private final String regexToMatchOneOrMoreKeywords;
+	private final Pattern keywordMatchPattern;
+
+	//analyzer of keywords and words of the documents, null when keywords are matched as they are
+	private final CYlpAnalyzer analyzer;
+
+	//keyword ids of each term ID of the term dictionary, only used with an analyzer
+	private final int[][] termKeywordIds;
+
+	/**
+	 * Compiles the query passed as argument
+	 * @param searchString
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpCompiledQuery(String searchString) throws CYlpNullArgumentException {
+		this(searchString, CYlpStopwordSet.getDefault());
+	}
+
+	/**
+	 * Compiles the query passed as argument, the non qualitative terms passed as argument are removed from
+	 * it instead of the default ones, for example the stopwords of the language of the query
+	 * @param searchString
+	 * @param nonQualitativeTerms
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpCompiledQuery(String searchString, CYlpStopwordSet nonQualitativeTerms)
+			throws CYlpNullArgumentException {
+
+		if (searchString == null || nonQualitativeTerms == null) {
+			throw new CYlpNullArgumentException(
+					"Either search string or nonQualitativeTerms is null ");
+		}
+
+		CYlpSearchUtil searchUtil = new CYlpSearchUtil(nonQualitativeTerms, CYlpDelimiterTokenizer.getDefault());
+
+		query = normalizeQuery(searchString);
+		keywordAutomaton = new CYlpKeywordAutomaton(searchUtil.removeNonQualitativeTermsInSearch(query));
+		keywordList = keywordAutomaton.getKeywords();
+		termDictionary = new CYlpTermDictionary(keywordList);
+		regexToMatchOneOrMoreKeywords = searchUtil.getRegexToMatchOneOrMoreKeywords(query);
+		keywordMatchPattern = Pattern.compile(regexToMatchOneOrMoreKeywords);
+		analyzer = null;
+		termKeywordIds = null;
+	}
+
+	/**
+	 * Compiles the query passed as argument with an analyzer, the keywords are analyzed after removing the
+	 * non qualitative terms and words of the documents are analyzed the same way before they are compared
+	 * @param searchString
+	 * @param nonQualitativeTerms
+	 * @param analyzer
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpCompiledQuery(String searchString, CYlpStopwordSet nonQualitativeTerms, CYlpAnalyzer analyzer)
+			throws CYlpNullArgumentException {
+
+		if (searchString == null || nonQualitativeTerms == null || analyzer == null) {
+			throw new CYlpNullArgumentException(
+					"Either search string or nonQualitativeTerms or analyzer is null ");
+		}
+
+		CYlpSearchUtil searchUtil = new CYlpSearchUtil(nonQualitativeTerms, CYlpDelimiterTokenizer.getDefault(),
+				analyzer);
+
+		query = normalizeQuery(searchString);
+		keywordAutomaton = new CYlpKeywordAutomaton(searchUtil.removeNonQualitativeTermsInSearch(query));
+		keywordList = keywordAutomaton.getKeywords();
+		termDictionary = new CYlpTermDictionary(keywordList, analyzer);
+		regexToMatchOneOrMoreKeywords = searchUtil.getRegexToMatchOneOrMoreKeywords(query);
+		keywordMatchPattern = Pattern.compile(regexToMatchOneOrMoreKeywords);
+		this.analyzer = analyzer;
+
+		//keywords repeated in the query share a term ID, keyword ids of a term are kept in increasing order
+		termKeywordIds = new int[termDictionary.size()][0];
+		for (int keywordId = 0; keywordId < keywordAutomaton.getKeywordCount(); keywordId++) {
+			int termId = termDictionary.getTermId(keywordAutomaton.getKeyword(keywordId));
+			if (termId != CYlpTermDictionary.NO_TERM) {
+				int[] keywordIds = Arrays.copyOf(termKeywordIds[termId], termKeywordIds[termId].length + 1);
+				keywordIds[keywordIds.length - 1] = keywordId;
+				termKeywordIds[termId] = keywordIds;
+			}
+		}
+	}
+
+	/**
+	 * Normalizes query so that queries which highlight the same way are equal: leading and trailing
+	 * blanks are removed and blanks between words are replaced by one space. Case is kept since keywords
+	 * of the query are used as keys of the keyword index table, whose order breaks ties between snippets
+	 * @param searchString
+	 * @throws CYlpNullArgumentException
+	 * @return normalized query
+	 */
+	public static String normalizeQuery(String searchString) throws CYlpNullArgumentException {
+
+		if (searchString == null) {
+			throw new CYlpNullArgumentException(
+					"search string is null ");
+		}
+
+		//this is done for every lookup in the cache so it avoids regex, blanks are the characters matched by \s
+		StringBuilder normalizedQuery = new StringBuilder(searchString.length());
+		boolean pendingSpace = false;
+		for (int i = 0; i < searchString.length(); i++) {
+			char c = searchString.charAt(i);
+			if (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r') {
+				pendingSpace = normalizedQuery.length() > 0;
+				continue;
+			}
+			if (pendingSpace) {
+				normalizedQuery.append(' ');
+				pendingSpace = false;
+			}
+			normalizedQuery.append(c);
+		}
+		return normalizedQuery.toString();
+	}
+
+	public String getQuery() {
+		return query;
+	}
+
+	public List<String> getKeywordList() {
+		return keywordList;
+	}
+
+	public CYlpKeywordAutomaton getKeywordAutomaton() {
+		return keywordAutomaton;
+	}
+
+	public CYlpTermDictionary getTermDictionary() {
+		return termDictionary;
+	}
+
+	public String getRegexToMatchOneOrMoreKeywords() {
+		return regexToMatchOneOrMoreKeywords;
+	}
+
+	public Pattern getKeywordMatchPattern() {
+		return keywordMatchPattern;
+	}
+
+	/**
+	 * @return analyzer of the query, null when the query was compiled without one
+	 */
+	public CYlpAnalyzer getAnalyzer() {
+		return analyzer;
+	}
+
+	/**
+	 * Finds the keyword occurrences of the document of the token stream. Without an analyzer the keyword
+	 * automaton scans the text, so a keyword is also found inside a longer word. With an analyzer the
+	 * occurrences are the words whose term ID is the term ID of a keyword, they start and end at word
+	 * boundaries, and no text is scanned since the term IDs of the words are already in the token stream
+	 * @param tokenStream: words of the document, built with getTermDictionary()
+	 * @throws CYlpNullArgumentException
+	 * @return keyword occurrences ordered by start index and keyword id
+	 */
+	public CYlpKeywordOccurrences findOccurrences(CYlpTokenStream tokenStream) throws CYlpNullArgumentException {
+
+		if (tokenStream == null) {
+			throw new CYlpNullArgumentException(
+					"token stream is null ");
+		}
+
+		if (analyzer == null) {
+			return keywordAutomaton.findOccurrences(tokenStream.getTokenizedDocument().getText());
+		}
+		if (tokenStream.getTermDictionary() != termDictionary) {
+			throw new IllegalArgumentException("token stream was not built with the term dictionary of the query");
+		}
+
+		int occurrenceCount = 0;
+		for (int wordIndex = 0; wordIndex < tokenStream.size(); wordIndex++) {
+			int termId = tokenStream.getTermId(wordIndex);
+			if (termId >= 0) {
+				occurrenceCount += termKeywordIds[termId].length;
+			}
+		}
+
+		int[] starts = new int[occurrenceCount];
+		int[] ends = new int[occurrenceCount];
+		int[] keywordIds = new int[occurrenceCount];
+		int occurrence = 0;
+		for (int wordIndex = 0; wordIndex < tokenStream.size(); wordIndex++) {
+			int termId = tokenStream.getTermId(wordIndex);
+			if (termId < 0) {
+				continue;
+			}
+			for (int keywordId : termKeywordIds[termId]) {
+				starts[occurrence] = tokenStream.getTokenizedDocument().getWordStart(wordIndex);
+				ends[occurrence] = tokenStream.getTokenizedDocument().getWordEnd(wordIndex);
+				keywordIds[occurrence] = keywordId;
+				occurrence++;
+			}
+		}
+		return new CYlpKeywordOccurrences(keywordAutomaton, starts, ends, keywordIds);
+	}
+}
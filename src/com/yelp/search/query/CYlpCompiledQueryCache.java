@@ -0,0 +1,150 @@
+package com.yelp.search.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.analysis.CYlpAnalyzer;
+import com.yelp.search.util.CYlpStopwordSet;
+
+/**
+ * Bounded LRU cache of compiled queries keyed by normalized query string. When the cache is full the
+ * query that was used least recently is removed. Hit and miss counters can be used to size the cache.
+ *
+ * The cache is safe to share between threads; a query is compiled outside the lock, so two threads
+ * missing on the same query at the same time may both compile it (both results are equal).
+ *
+ * A cache created with an analyzer compiles every query with it, see CYlpCompiledQuery.
+ *
+ */
+public class CYlpCompiledQueryCache {
+
+	//default number of compiled queries kept in the cache
+	public static final int DEFAULT_MAX_SIZE = 256;
+
+	private final int maxSize;
+
+	//analyzer of the compiled queries, null when queries are compiled without one
+	private final CYlpAnalyzer analyzer;
+
+	//LinkedHashMap in access order evicts least recently used entry, guarded by this
+	private final LinkedHashMap<String, CYlpCompiledQuery> compiledQueryTable;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	public CYlpCompiledQueryCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public CYlpCompiledQueryCache(int cacheSize) {
+		maxSize = checkCacheSize(cacheSize);
+		analyzer = null;
+		compiledQueryTable = createCompiledQueryTable(maxSize);
+	}
+
+	/**
+	 * Cache of queries compiled with the analyzer passed as argument
+	 * @param cacheSize
+	 * @param analyzer
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpCompiledQueryCache(int cacheSize, CYlpAnalyzer analyzer) throws CYlpNullArgumentException {
+		if (analyzer == null) {
+			throw new CYlpNullArgumentException(
+					"analyzer is null ");
+		}
+		maxSize = checkCacheSize(cacheSize);
+		this.analyzer = analyzer;
+		compiledQueryTable = createCompiledQueryTable(maxSize);
+	}
+
+	private static int checkCacheSize(int cacheSize) {
+		if (cacheSize <= 0) {
+			throw new IllegalArgumentException("cache size should be greater than 0 ");
+		}
+		return cacheSize;
+	}
+
+	private static LinkedHashMap<String, CYlpCompiledQuery> createCompiledQueryTable(final int maxSize) {
+		return new LinkedHashMap<String, CYlpCompiledQuery>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, CYlpCompiledQuery> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the compiled query for the search string, compiling it if it is not in the cache
+	 * @param searchString
+	 * @throws CYlpNullArgumentException
+	 * @return compiled query
+	 */
+	public CYlpCompiledQuery getCompiledQuery(String searchString) throws CYlpNullArgumentException {
+
+		if (searchString == null) {
+			throw new CYlpNullArgumentException(
+					"search string is null ");
+		}
+
+		String normalizedQuery = CYlpCompiledQuery.normalizeQuery(searchString);
+
+		CYlpCompiledQuery compiledQuery;
+		synchronized (this) {
+			compiledQuery = compiledQueryTable.get(normalizedQuery);
+		}
+		if (compiledQuery != null) {
+			hitCount.incrementAndGet();
+			return compiledQuery;
+		}
+
+		missCount.incrementAndGet();
+		compiledQuery = analyzer == null ? new CYlpCompiledQuery(normalizedQuery)
+				: new CYlpCompiledQuery(normalizedQuery, CYlpStopwordSet.getDefault(), analyzer);
+		synchronized (this) {
+			compiledQueryTable.put(normalizedQuery, compiledQuery);
+		}
+		return compiledQuery;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return analyzer of the compiled queries, null when queries are compiled without one
+	 */
+	public CYlpAnalyzer getAnalyzer() {
+		return analyzer;
+	}
+
+	public synchronized int size() {
+		return compiledQueryTable.size();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Returns hits divided by number of lookups, 0 when there was no lookup
+	 * @return hit rate of the cache
+	 */
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long lookups = hits + missCount.get();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Removes all compiled queries, counters are not reset
+	 */
+	public synchronized void clear() {
+		compiledQueryTable.clear();
+	}
+}
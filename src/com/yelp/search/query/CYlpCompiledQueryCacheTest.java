@@ -0,0 +1,73 @@
+package com.yelp.search.query;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * unit test class that tests the methods of CYlpCompiledQueryCache
+ *
+ */
+public class CYlpCompiledQueryCacheTest {
+
+	CYlpCompiledQueryCache testQueryCache;
+
+	@Before
+	public void setUp() {
+		testQueryCache = new CYlpCompiledQueryCache(2);
+	}
+
+	/**
+	 * Tests that a query is compiled once and looked up afterwards, queries that differ only in blanks
+	 * share the same compiled query
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testGetCompiledQuery() throws CYlpNullArgumentException {
+
+		CYlpCompiledQuery compiledQuery = testQueryCache.getCompiledQuery("deep dish pizza");
+		assertEquals("Expecting keywords of compiled query", 3, compiledQuery.getKeywordList().size());
+		assertEquals("Expecting one miss", 1, testQueryCache.getMissCount());
+
+		assertSame("Expecting same compiled query for normalized query", compiledQuery,
+				testQueryCache.getCompiledQuery("  deep   dish\tpizza "));
+		assertEquals("Expecting one hit", 1, testQueryCache.getHitCount());
+		assertEquals("Expecting hit rate of one half", 0.5, testQueryCache.getHitRate(), 0.0);
+	}
+
+	/**
+	 * Tests that least recently used query is evicted when the cache is full
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testEviction() throws CYlpNullArgumentException {
+
+		CYlpCompiledQuery pizzaQuery = testQueryCache.getCompiledQuery("pizza");
+		CYlpCompiledQuery burgerQuery = testQueryCache.getCompiledQuery("burger");
+		// use pizza so that burger is least recently used
+		testQueryCache.getCompiledQuery("pizza");
+		testQueryCache.getCompiledQuery("tacos");
+
+		assertEquals("Expecting cache to be bounded", 2, testQueryCache.size());
+		assertSame("Expecting recently used query to stay", pizzaQuery, testQueryCache.getCompiledQuery("pizza"));
+		assertNotSame("Expecting least recently used query to be evicted", burgerQuery,
+				testQueryCache.getCompiledQuery("burger"));
+	}
+
+	/**
+	 * NULL check on query expecting CYlpNullArgumentException
+	 */
+	@Test(expected = CYlpNullArgumentException.class)
+	public void testNullQuery() throws CYlpNullArgumentException {
+		testQueryCache.getCompiledQuery(null);
+	}
+
+	@After
+	public void tearDown() {
+		testQueryCache = null;
+	}
+}
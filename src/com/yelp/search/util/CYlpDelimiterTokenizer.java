@@ -0,0 +1,67 @@
+package com.yelp.search.util;
+
+import java.util.regex.Pattern;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Breaks a search string in to tokens separated by a delimiter regex. The regex is compiled once when the
+ * tokenizer is created instead of on every String.split() call, tokens are the same as
+ * searchString.split(delimiterRegex). Instances are immutable and can be shared between threads.
+ *
+ */
+public final class CYlpDelimiterTokenizer {
+
+	// regex that matches tokens that are separated by one or more blank
+	public static final String DEFAULT_DELIMITER_REGEX = "\\s+";
+
+	private static final CYlpDelimiterTokenizer DEFAULT = new CYlpDelimiterTokenizer(
+			Pattern.compile(DEFAULT_DELIMITER_REGEX));
+
+	private final Pattern delimiterPattern;
+
+	/**
+	 * Compiles the delimiter regex passed as argument
+	 * @param delimiterRegex
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpDelimiterTokenizer(String delimiterRegex) throws CYlpNullArgumentException {
+
+		if (delimiterRegex == null) {
+			throw new CYlpNullArgumentException(
+					"delimiter regex is null ");
+		}
+
+		delimiterPattern = Pattern.compile(delimiterRegex);
+	}
+
+	private CYlpDelimiterTokenizer(Pattern delimiterPattern) {
+		this.delimiterPattern = delimiterPattern;
+	}
+
+	/**
+	 * @return tokenizer of DEFAULT_DELIMITER_REGEX
+	 */
+	public static CYlpDelimiterTokenizer getDefault() {
+		return DEFAULT;
+	}
+
+	public String getDelimiterRegex() {
+		return delimiterPattern.pattern();
+	}
+
+	/**
+	 * @param searchString
+	 * @throws CYlpNullArgumentException
+	 * @return tokens of searchString, same as searchString.split(getDelimiterRegex())
+	 */
+	public String[] tokenize(CharSequence searchString) throws CYlpNullArgumentException {
+
+		if (searchString == null) {
+			throw new CYlpNullArgumentException(
+					"search string is null ");
+		}
+
+		return delimiterPattern.split(searchString);
+	}
+}
@@ -1,19 +1,33 @@
 package com.yelp.search.util;
 
-import java.text.BreakIterator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.yelp.enums.EylpScanMethod;
 import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.analysis.CYlpAnalyzer;
+import com.yelp.search.document.CYlpTokenStream;
+import com.yelp.search.document.CYlpTokenizedDocument;
+import com.yelp.search.index.CYlpDocumentIndex;
 import com.yelp.search.keyword.CYlpProximitySearchKeyword;
+import com.yelp.search.match.CYlpKeywordAutomaton;
+import com.yelp.search.match.CYlpKeywordOccurrences;
+import com.yelp.search.match.CYlpLiteralMatcher;
+import com.yelp.search.match.CYlpTermDictionary;
+import com.yelp.search.query.CYlpCompiledQuery;
 
 /**
  * Search utility class with utility methods that can be used for various search operations
@@ -22,12 +36,92 @@ import com.yelp.search.keyword.CYlpProximitySearchKeyword;
  */
 public class CYlpSearchUtil {
 
+	//characters that have a meaning in a regex, keywords with one of them are quoted in regexes
+	private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+	//scan methods of proximitySearch() in the order the windows around a start index are scored
+	private static final EylpScanMethod[] SCAN_METHODS = { EylpScanMethod.FORWARDSCAN,
+			EylpScanMethod.MIDSCAN, EylpScanMethod.BACKWARDSCAN };
+
+	//smallest segment of the document scored by one task of the parallel proximitySearch()
+	public static final int MIN_SEGMENT_LENGTH = 8192;
+
+	//scan windows a task of the parallel proximitySearch() scores on average, so the cost of forking a task
+	//is small next to its work
+	private static final int MIN_SEGMENT_WINDOWS = 1024;
+
+	//candidate windows the top-K proximitySearch() keeps for each snippet asked for, the windows of the start
+	//indexes around one keyword group overlap each other so most candidates are not returned
+	private static final int CANDIDATE_WINDOWS_PER_SNIPPET = 32;
+
+	//non qualitative terms removed from search strings and the tokenizer that breaks search strings in to
+	//words, both are immutable and shared by all instances that use the defaults
+	private final CYlpStopwordSet nonQualitativeTerms;
+	private final CYlpDelimiterTokenizer delimiterTokenizer;
+
+	//analyzer applied to the keywords of search strings, null when keywords are used as they are
+	private final CYlpAnalyzer analyzer;
+
+	/**
+	 * Uses the default non qualitative terms (CYlpStopwordSet.DEFAULT_RESOURCE) and splits search strings
+	 * at blanks
+	 */
+	public CYlpSearchUtil() {
+		nonQualitativeTerms = CYlpStopwordSet.getDefault();
+		delimiterTokenizer = CYlpDelimiterTokenizer.getDefault();
+		analyzer = null;
+	}
+
+	/**
+	 * Uses the non qualitative terms and delimiter passed as arguments, for example the stopwords of the
+	 * language of the search string
+	 * @param nonQualitativeTerms
+	 * @param delimiterTokenizer
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpSearchUtil(CYlpStopwordSet nonQualitativeTerms, CYlpDelimiterTokenizer delimiterTokenizer)
+			throws CYlpNullArgumentException {
+
+		if (nonQualitativeTerms == null || delimiterTokenizer == null) {
+			throw new CYlpNullArgumentException(
+					"Either nonQualitativeTerms or delimiterTokenizer is null ");
+		}
+
+		this.nonQualitativeTerms = nonQualitativeTerms;
+		this.delimiterTokenizer = delimiterTokenizer;
+		this.analyzer = null;
+	}
+
+	/**
+	 * Same as CYlpSearchUtil(CYlpStopwordSet, CYlpDelimiterTokenizer) but the keywords returned by
+	 * removeNonQualitativeTermsInSearch() are analyzed, for example "Pizzas" becomes "pizza" with
+	 * CYlpAnalyzer.getStandard(). Non qualitative terms are removed before the words are analyzed
+	 * @param nonQualitativeTerms
+	 * @param delimiterTokenizer
+	 * @param analyzer
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpSearchUtil(CYlpStopwordSet nonQualitativeTerms, CYlpDelimiterTokenizer delimiterTokenizer,
+			CYlpAnalyzer analyzer) throws CYlpNullArgumentException {
+
+		if (nonQualitativeTerms == null || delimiterTokenizer == null || analyzer == null) {
+			throw new CYlpNullArgumentException(
+					"Either nonQualitativeTerms or delimiterTokenizer or analyzer is null ");
+		}
+
+		this.nonQualitativeTerms = nonQualitativeTerms;
+		this.delimiterTokenizer = delimiterTokenizer;
+		this.analyzer = analyzer;
+	}
+
 	/**
 	 * Method removes all non qualitative words(: words that do not add value)
 	 * from search string and returns a list of keywords that can be used to
 	 * search As a first step it breaks the search string into words, by using
-	 * delimiter as " " Then constructs a list with words not contained in list
-	 * returned by getNonQualitativeTerms()
+	 * the delimiter tokenizer Then constructs a list with words not contained in
+	 * the set of non qualitative terms, each word is one hash lookup. When the
+	 * util has an analyzer the words are analyzed, words that are empty after
+	 * analysis are skipped
  	 * @throws CYlpNullArgumentException
 	 * @param searchString
 	 * @return list of keywords that are qualitative(add value to search)
@@ -39,19 +133,22 @@ public class CYlpSearchUtil {
 					"search string is null ");
 		}    	
     			
-		List<String> finalSearchWords = new ArrayList<String>();
-		String delimiterRegex = getDelimiterRegex();
-		String[] searchWords = searchString.split(delimiterRegex);
-		List<String> nonQualitativeTerms = new ArrayList<String>();
-		nonQualitativeTerms = getNonQualitativeTerms();
+		String[] searchWords = delimiterTokenizer.tokenize(searchString);
+		List<String> finalSearchWords = new ArrayList<String>(searchWords.length);
 		for (int i = 0; i < searchWords.length; i++) {
-			// we always expect the nonQualitativeTerms to be maintained in
-			// UPPERCASE
-			if (nonQualitativeTerms.contains(searchWords[i].toUpperCase())) {
+			// the set compares the UPPERCASED word
+			if (nonQualitativeTerms.contains(searchWords[i])) {
 				// skip
 				continue;
 			}
-			finalSearchWords.add(searchWords[i]);
+			if (analyzer == null) {
+				finalSearchWords.add(searchWords[i]);
+				continue;
+			}
+			String analyzedWord = analyzer.analyze(searchWords[i]);
+			if (!analyzedWord.isEmpty()) {
+				finalSearchWords.add(analyzedWord);
+			}
 		}
 
 		return finalSearchWords;
@@ -63,34 +160,29 @@ public class CYlpSearchUtil {
 	 * @return regex that will be used to break search string into tokens
 	 */
 	public String getDelimiterRegex() {
-
-		// we can read the regex of delimiter from a text file, for now we can
-		// hardcode it
-		// todo: read delimiter from file to make it code independent
-		// regex that matches tokens that are separated by one or more blank
-		String delimiter = "\\s+";
-		return delimiter;
-
+		return delimiterTokenizer.getDelimiterRegex();
 	}
 
 	/**
 	 * Method that returns list of words that are non qualitative : which do not
-	 * add any value to search This method can be made code independent by
-	 * reading the word list from a text file instead of hardcoding As a
-	 * CONVENTION: the words are always UPPERCASED
+	 * add any value to search, they are loaded once from a list file, see
+	 * CYlpStopwordSet. As a CONVENTION: the words are always UPPERCASED
 	 * 
-	 * @return
+	 * @return list of non qualitative terms, the list can not be modified
 	 */
 	public List<String> getNonQualitativeTerms() {
-		List<String> nonQualitativeTerms = new ArrayList<String>();
-		//todo: read the non-qualitative terms from file instead of hardcoding
-		nonQualitativeTerms.add("IS");
-		nonQualitativeTerms.add("THIS");
-		nonQualitativeTerms.add("AND");
-		nonQualitativeTerms.add("A");
+		return nonQualitativeTerms.getStopwords();
+	}
 
+	public CYlpStopwordSet getNonQualitativeTermSet() {
 		return nonQualitativeTerms;
+	}
 
+	/**
+	 * @return analyzer of the keywords, null when keywords are not analyzed
+	 */
+	public CYlpAnalyzer getAnalyzer() {
+		return analyzer;
 	}
 
 	/**
@@ -222,27 +314,9 @@ public class CYlpSearchUtil {
 			// iterate over list of string combinations and check if there is
 			// match in search string
 			for (String keyword : currentKeywordList) {
-				// use regex to find for match
-				// define regex which starting with (?i) to enable
-				// case-insensitive matching
-
-				String regex = "(?i)" + keyword;
-				List<Integer> currKeywordStartIndexes = new ArrayList<Integer>();
-
-				//
-				// Obtain the required matcher
-				//
-				Pattern pattern = Pattern.compile(regex);
-				Matcher matcher = pattern.matcher(documentToSearch);
-
-				//
-				// Find every match and store start index in a array
-				//
-				while (matcher.find()) {
-					// if we find a match then add it to currKeywordStartIndexes List
-					currKeywordStartIndexes.add(matcher.start());
-
-				}
+				// keyword is matched as plain text ignoring case, a keyword like "c++" is not a regex
+				// find every match (not overlapping) and store start index in a array
+				List<Integer> currKeywordStartIndexes = new CYlpLiteralMatcher(keyword).findAll(documentToSearch);
 				// add it to map if we found atleast one match for keyword
 				if (!currKeywordStartIndexes.isEmpty()) {
 					KeywordIndexTable.put(keyword, currKeywordStartIndexes);
@@ -256,312 +330,1076 @@ public class CYlpSearchUtil {
 	}
 
 	/**
-	 * This method uses three scan method in the proximity of the keyword
-	 * occurences(highest length keyword matches), the scan length is fixed at
-	 * MAX_LENGTH that can be passed as argument. We start the scan at the
-	 * keyword occurence(index stored in map) and count all the occurences of
-	 * any keyword. The information of sub string (document snippet) with
-	 * maximum occurences is kept track using instance of
-	 * CYlpProximitySearchKeyword
-	 * 
-	 * @param docToSearch:
-	 *            document that needs to be searched
-	 * @param KeywordIndexTable :
-	 *            table with keywords and list of start indexes
-	 * @param MAX_LENGTH
-	 *            max snippet length
-	 * @throws CYlpNullArgumentException            
-	 * @return instance of CYlpProximitySearchKeyword which contains the
-	 *         document snippet with max occurences of keywords in proximity
+	 * Same as getFirstMatchingKeyword(String, Map) but uses an Aho-Corasick automaton built once for the
+	 * query, so the document is scanned once no matter how many keyword combinations there are.
+	 *
+	 * A keyword combination (for example "deep dish") occurs at an index when its keywords occur one after
+	 * another separated by a single space, so the combinations are derived from the chains of keyword
+	 * occurrences instead of being generated up front
+	 * @param documentToSearch
+	 * @param keywordAutomaton
+	 * @throws CYlpNullArgumentException
+	 * @return map with keyword as key and list with start index of keyword in the search string
 	 */
-	public CYlpProximitySearchKeyword proximitySearch(String docToSearch,
-			String searchString, Map<String, List> KeywordIndexTable,
-			int MAX_LENGTH) throws CYlpNullArgumentException {
+	public Map<String, List> getFirstMatchingKeyword(CharSequence documentToSearch,
+			CYlpKeywordAutomaton keywordAutomaton) throws CYlpNullArgumentException {
 
-		
-		if (docToSearch == null || searchString == null ||  KeywordIndexTable == null) {
+		if (documentToSearch == null || keywordAutomaton == null) {
 			throw new CYlpNullArgumentException(
-					"Either search string or docToSearch or  KeywordIndexTable is null ");
+					"Either documentToSearch or keyword automaton is null ");
 		}
-		
-		
-		// instance of CYlpProximitySearchKeyword will be used to keep track of
-		// document snippet with maximum occurences - which is most relevant
-		// string
 
-		CYlpProximitySearchKeyword currentProximityKeyWord = new CYlpProximitySearchKeyword();
-		
-		//special case where there are no matching keywords, then get substring of docToSearch between
-		//0 and MAX_LENGTH
-		if(KeywordIndexTable.isEmpty()){
-			
-			//no matching keywords return text of length MAX_LENGTH
-			String docToSet = getSubDocumentForEachStrategy(
-					EylpScanMethod.BACKWARDSCAN, 0, MAX_LENGTH,
-					docToSearch);
-			currentProximityKeyWord.setDocumentSnippet(docToSet);
-			currentProximityKeyWord.setNumberOfAllKeywordsOccurences(0);
-			currentProximityKeyWord.setScanMethodForMaxOccurances(EylpScanMethod.BACKWARDSCAN);
-			return currentProximityKeyWord;
-		}
-		
-		
+		return getFirstMatchingKeyword(documentToSearch,
+				keywordAutomaton.findOccurrences(documentToSearch));
+	}
 
-		// regex to match one or more keywords
-		String regexToMatchOneOrMoreKeywords = getRegexToMatchOneOrMoreKeywords(searchString);
-		Set<String> keySet = KeywordIndexTable.keySet();
-		//
-		// for each keyword in the keyset
-		//
-		for (String currentkeyword : keySet) {
+	/**
+	 * Same as getFirstMatchingKeyword(String, CYlpKeywordAutomaton) for a document that was indexed, the
+	 * keyword occurrences are read from the positions in the index instead of scanning the text
+	 * @param documentToSearch
+	 * @param documentIndex
+	 * @param keywordAutomaton
+	 * @throws CYlpNullArgumentException
+	 * @return map with keyword as key and list with start index of keyword in the search string
+	 */
+	public Map<String, List> getFirstMatchingKeyword(CharSequence documentToSearch,
+			CYlpDocumentIndex documentIndex, CYlpKeywordAutomaton keywordAutomaton) throws CYlpNullArgumentException {
 
-			//
-			// get start indexes for this keyword
-			//
-			List<Integer> currentStartIndexList = (List) KeywordIndexTable
-					.get(currentkeyword);
+		return getFirstMatchingKeyword(documentToSearch,
+				getKeywordOccurrences(documentToSearch, documentIndex, keywordAutomaton));
+	}
 
-			//
-			// for each startindexes use three scanning methods to determine
-			// document snippet
-			// with maximum number of keyword matches
-			//
+	/**
+	 * Returns occurrences of the keywords in an indexed document. They are read from the index when every
+	 * keyword can be found from the indexed terms, otherwise the text is scanned with the automaton
+	 * @param documentToSearch
+	 * @param documentIndex
+	 * @param keywordAutomaton
+	 * @throws CYlpNullArgumentException
+	 * @return occurrences of all keywords in the document
+	 */
+	public CYlpKeywordOccurrences getKeywordOccurrences(CharSequence documentToSearch,
+			CYlpDocumentIndex documentIndex, CYlpKeywordAutomaton keywordAutomaton) throws CYlpNullArgumentException {
 
-			//
-			// for each scan strategy we set startIndex and endIndex, get the
-			// document section within those bounds
-			// we then look for matches for any keywords within those section
-			//
-			int startIndex = 0;
-			int endIndex = 0;
-			int currCountOfAllKeywords = 0;
+		if (documentToSearch == null || documentIndex == null || keywordAutomaton == null) {
+			throw new CYlpNullArgumentException(
+					"Either documentToSearch or document index or keyword automaton is null ");
+		}
+		if (documentToSearch.length() != documentIndex.getDocumentLength()) {
+			throw new IllegalArgumentException("document does not match the document index");
+		}
 
-			for (int currentIndex : currentStartIndexList) {
+		CYlpKeywordOccurrences occurrences = documentIndex.findOccurrences(keywordAutomaton);
+		return occurrences != null ? occurrences : keywordAutomaton.findOccurrences(documentToSearch);
+	}
 
-				// STRATEGY 1: Use FORWARDSCAN
+	/**
+	 * Builds the map of longest matching keyword combinations from occurrences already found in the document
+	 * @param documentToSearch
+	 * @param occurrences
+	 * @throws CYlpNullArgumentException
+	 * @return map with keyword as key and list with start index of keyword in the search string
+	 */
+	public Map<String, List> getFirstMatchingKeyword(CharSequence documentToSearch,
+			CYlpKeywordOccurrences occurrences) throws CYlpNullArgumentException {
 
-				// get sub document within the bounds to do proximity search for
-				// FORWARDSCAN
-				String subDocument = getSubDocumentForEachStrategy(
-						EylpScanMethod.FORWARDSCAN, currentIndex, MAX_LENGTH,
-						docToSearch);
-				// get total count of all keyword occurences for FORWARDSCAN
-				currCountOfAllKeywords = getCountOfAllKeywords(subDocument,
-						regexToMatchOneOrMoreKeywords);
+		if (documentToSearch == null || occurrences == null) {
+			throw new CYlpNullArgumentException(
+					"Either documentToSearch or keyword occurrences is null ");
+		}
 
-				// check if count of all keywords for current strategy is
-				// greater then max count so far
-				currentProximityKeyWord.updateProximityKeywordIfRequired(
-						currCountOfAllKeywords, currentkeyword, startIndex,
-						subDocument, EylpScanMethod.FORWARDSCAN);
+		return buildFirstMatchingKeywordTable(documentToSearch, occurrences, null);
+	}
 
-				//
-				// STRATEGY 2: Use MIDSCAN
-				//
+	/**
+	 * Same as getFirstMatchingKeyword(CharSequence, CYlpKeywordOccurrences) but stops enumerating keyword
+	 * combinations when the budget runs out. Repeated keywords can be combined in a number of ways that grows
+	 * exponentially with the length of the query, so the budget keeps adversarial queries bounded. When it
+	 * runs out the table has the combinations enumerated so far (at least one) and the budget is degraded
+	 * @param documentToSearch
+	 * @param occurrences
+	 * @param budget
+	 * @throws CYlpNullArgumentException
+	 * @return map with keyword as key and list with start index of keyword in the search string
+	 */
+	public Map<String, List> getFirstMatchingKeyword(CharSequence documentToSearch,
+			CYlpKeywordOccurrences occurrences, CYlpWorkBudget budget) throws CYlpNullArgumentException {
 
-				// get sub document within the bounds to do proximity search for
-				// MIDSCAN
-				subDocument = getSubDocumentForEachStrategy(
-						EylpScanMethod.MIDSCAN, currentIndex, MAX_LENGTH,
-						docToSearch);
-				// get total count of all keyword occurences for MIDSCAN
-				currCountOfAllKeywords = getCountOfAllKeywords(subDocument,
-						regexToMatchOneOrMoreKeywords);
-				// check if count of all keywords for current strategy is
-				// greater then max count so far
-				currentProximityKeyWord.updateProximityKeywordIfRequired(
-						currCountOfAllKeywords, currentkeyword, startIndex,
-						subDocument, EylpScanMethod.MIDSCAN);
+		if (documentToSearch == null || occurrences == null || budget == null) {
+			throw new CYlpNullArgumentException(
+					"Either documentToSearch or keyword occurrences or budget is null ");
+		}
 
-				//
-				// STRATEGY 3: Use BACKWARDSCAN
-				//
+		return buildFirstMatchingKeywordTable(documentToSearch, occurrences, budget);
+	}
+
+	/**
+	 * Builds the keyword index table of getFirstMatchingKeyword(), budget is null when the work is not limited
+	 */
+	private Map<String, List> buildFirstMatchingKeywordTable(CharSequence documentToSearch,
+			CYlpKeywordOccurrences occurrences, CYlpWorkBudget budget) {
 
-				// get sub document within the bounds to do proximity search for
-				// BACKWARDSCAN
-				subDocument = getSubDocumentForEachStrategy(
-						EylpScanMethod.BACKWARDSCAN, currentIndex, MAX_LENGTH,
-						docToSearch);
-				// get total count of all keyword occurences for BACKWARDSCAN
-				currCountOfAllKeywords = getCountOfAllKeywords(subDocument,
-						regexToMatchOneOrMoreKeywords);
-				// check if count of all keywords for current strategy is
-				// greater then max count so far
-				currentProximityKeyWord.updateProximityKeywordIfRequired(
-						currCountOfAllKeywords, currentkeyword, startIndex,
-						subDocument, EylpScanMethod.BACKWARDSCAN);
+		Map<String, List> KeywordIndexTable = new HashMap<String, List>();
+		int numberOfOccurrences = occurrences.size();
+		if (numberOfOccurrences == 0) {
+			return KeywordIndexTable;
+		}
+
+		//STEP1: chainLength[i] is the number of keywords in the longest combination starting with occurrence i
+		//computed right to left since a chain only continues with occurrences that start later
+		int[] chainLength = new int[numberOfOccurrences];
+		int longestChain = 0;
+		for (int i = numberOfOccurrences - 1; i >= 0; i--) {
+			chainLength[i] = 1;
+			int next = getFirstChainSuccessor(documentToSearch, occurrences, i);
+			int successorStart = occurrences.getEnd(i) + 1;
+			for (; next < numberOfOccurrences && occurrences.getStart(next) == successorStart; next++) {
+				if (isChainSuccessor(occurrences, i, next)) {
+					chainLength[i] = Math.max(chainLength[i], chainLength[next] + 1);
+				}
+			}
+			longestChain = Math.max(longestChain, chainLength[i]);
+		}
 
+		//STEP2: collect every combination of the longest length with its start indexes, and the keyword ids
+		//that make up each combination
+		Map<String, List<Integer>> candidateTable = new HashMap<String, List<Integer>>();
+		final Map<String, int[]> candidateKeywordIds = new HashMap<String, int[]>();
+		int[] chainKeywordIds = new int[longestChain];
+		for (int i = 0; i < numberOfOccurrences; i++) {
+			if (chainLength[i] == longestChain && !collectChains(documentToSearch, occurrences, chainLength, i,
+					occurrences.getStart(i), new StringBuilder(), chainKeywordIds, 0,
+					candidateTable, candidateKeywordIds, budget)) {
+				budget.setDegraded();
+				break;
 			}
+		}
 
+		//combinations are put in the map in the order getCombinations() generates them, so iterating over the
+		//map (and breaking ties in proximitySearch()) gives the same result as the combination table
+		List<String> combinations = new ArrayList<String>(candidateTable.keySet());
+		Collections.sort(combinations, new Comparator<String>() {
+			public int compare(String first, String second) {
+				return compareCombinationOrder(candidateKeywordIds.get(first), candidateKeywordIds.get(second));
+			}
+		});
+
+		//STEP3: like regex matching, an occurrence can not overlap the previous occurrence of same combination
+		for (String combination : combinations) {
+			int combinationLength = combination.length();
+			int lastEnd = -1;
+			List<Integer> currKeywordStartIndexes = new ArrayList<Integer>();
+			for (int startIndex : candidateTable.get(combination)) {
+				if (startIndex >= lastEnd) {
+					currKeywordStartIndexes.add(startIndex);
+					lastEnd = startIndex + combinationLength;
+				}
+			}
+			KeywordIndexTable.put(combination, currKeywordStartIndexes);
 		}
 
-		return currentProximityKeyWord;
+		return KeywordIndexTable;
 	}
 
 	/**
-	 * This method returns sub strings based on scan method 
-	 * For example: for midscan we return string(currIndex-Max/2,,currIndex +Max/2) 
-	 * @param scanMethod
-	 * @param currentIndex
+	 * Alternative to getFirstMatchingKeyword() that does not enumerate keyword combinations. A window of at
+	 * most MAX_LENGTH characters slides over the keyword occurrences (two pointers, each occurrence enters and
+	 * leaves the window once) and counts how many distinct keywords it covers. Windows covering most distinct
+	 * keywords are shrunk from the left until they are minimal and their start indexes are returned.
+	 *
+	 * The returned map has the same shape as the one of getFirstMatchingKeyword() so it can be passed on to
+	 * proximitySearch(): key is the covered keywords (in query order) and value is list of window start indexes
+	 * @param documentToSearch
+	 * @param occurrences
 	 * @param MAX_LENGTH
-	 * @param docToSearch
-	 * @throws CYlpNullArgumentException 
-	 * @return text(string) that is part of document according to scanMethod passed as arg
+	 * @throws CYlpNullArgumentException
+	 * @return map with covered keywords as key and list with start index of windows covering them
 	 */
-	public String getSubDocumentForEachStrategy(EylpScanMethod scanMethod,
-			int currentIndex, int MAX_LENGTH, String docToSearch)throws CYlpNullArgumentException  {
-		
-		
-		if (scanMethod == null || docToSearch == null ) {
+	public Map<String, List> getKeywordCoverageWindows(CharSequence documentToSearch,
+			CYlpKeywordOccurrences occurrences, int MAX_LENGTH) throws CYlpNullArgumentException {
+
+		if (documentToSearch == null || occurrences == null) {
 			throw new CYlpNullArgumentException(
-					"Either scanMethodor or docToSearch is null ");
+					"Either documentToSearch or keyword occurrences is null ");
 		}
-		
-		int startIndex = 0;
-		int endIndex = 0;
 
-		if (scanMethod.equals(EylpScanMethod.FORWARDSCAN)) {
+		Map<String, List> KeywordIndexTable = new HashMap<String, List>();
+		int numberOfOccurrences = occurrences.size();
+		if (numberOfOccurrences == 0) {
+			return KeywordIndexTable;
+		}
 
-			if (currentIndex - MAX_LENGTH < 0) {
-				// set start index to 0 and adjust end index to span MAX_LENGTH
-				startIndex = 0;
-				endIndex = (docToSearch.length() > MAX_LENGTH) ? MAX_LENGTH
-						: docToSearch.length();
-			} else {
-				startIndex = currentIndex - MAX_LENGTH;
-				endIndex = currentIndex;
+		CYlpKeywordAutomaton keywordAutomaton = occurrences.getAutomaton();
+
+		//number of occurrences of each distinct keyword inside the window
+		int[] countInWindow = new int[keywordAutomaton.getDistinctKeywordCount()];
+		int distinctInWindow = 0;
+		int bestDistinct = 0;
+
+		//start index of the windows covering bestDistinct keywords, and first occurrence of each of them
+		List<Integer> bestWindowStarts = new ArrayList<Integer>();
+		List<Integer> bestWindowFirstOccurrences = new ArrayList<Integer>();
+		List<Integer> bestWindowLastOccurrences = new ArrayList<Integer>();
+
+		int left = 0;
+		for (int right = 0; right < numberOfOccurrences; right++) {
+
+			//add occurrence to the window
+			int distinctId = keywordAutomaton.getDistinctKeywordId(occurrences.getKeywordId(right));
+			if (countInWindow[distinctId]++ == 0) {
+				distinctInWindow++;
 			}
-		} else if (scanMethod.equals(EylpScanMethod.MIDSCAN)) {
-			if (currentIndex - MAX_LENGTH / 2 < 0) {
-				// set start index to 0 and adjust end index to span MAX_LENGTH
-				startIndex = 0;
-				endIndex = (docToSearch.length() > MAX_LENGTH) ? MAX_LENGTH
-						: docToSearch.length();
-			} else {
-				startIndex = currentIndex - MAX_LENGTH / 2;
-				endIndex = currentIndex + MAX_LENGTH / 2;
-				endIndex = (docToSearch.length() > currentIndex + MAX_LENGTH
-						/ 2) ? currentIndex + MAX_LENGTH / 2 : docToSearch
-						.length();
+
+			//window can not be longer than MAX_LENGTH
+			while (occurrences.getEnd(right) - occurrences.getStart(left) > MAX_LENGTH && left < right) {
+				distinctId = keywordAutomaton.getDistinctKeywordId(occurrences.getKeywordId(left++));
+				if (--countInWindow[distinctId] == 0) {
+					distinctInWindow--;
+				}
 			}
 
-		} else if (scanMethod.equals(EylpScanMethod.BACKWARDSCAN)) {
-			if (currentIndex + MAX_LENGTH < docToSearch.length()) {
+			//shrink the window while the left most keyword also occurs later in the window
+			while (left < right
+					&& countInWindow[keywordAutomaton.getDistinctKeywordId(occurrences.getKeywordId(left))] > 1) {
+				countInWindow[keywordAutomaton.getDistinctKeywordId(occurrences.getKeywordId(left++))]--;
+			}
 
-				startIndex = currentIndex;
-				endIndex = currentIndex + MAX_LENGTH;
-			} else {
-				// set start index to curr and adjust end index to string length
-				startIndex = currentIndex;
-				endIndex = docToSearch.length();
+			if (distinctInWindow > bestDistinct) {
+				bestDistinct = distinctInWindow;
+				bestWindowStarts.clear();
+				bestWindowFirstOccurrences.clear();
+				bestWindowLastOccurrences.clear();
+			}
+			if (distinctInWindow == bestDistinct) {
+				int windowStart = occurrences.getStart(left);
+				int lastRecorded = bestWindowStarts.size() - 1;
+				if (lastRecorded >= 0 && bestWindowStarts.get(lastRecorded) == windowStart) {
+					//same window start, keep the shorter window that was recorded first
+					continue;
+				}
+				bestWindowStarts.add(windowStart);
+				bestWindowFirstOccurrences.add(left);
+				bestWindowLastOccurrences.add(right);
 			}
 		}
 
-		return getRoundedOffDocSubString(docToSearch, startIndex, endIndex);
+		//STEP2: label each window with the keywords it covers, in the order of the query
+		boolean[] covered = new boolean[keywordAutomaton.getDistinctKeywordCount()];
+		for (int i = 0; i < bestWindowStarts.size(); i++) {
+			Arrays.fill(covered, false);
+			for (int occurrence = bestWindowFirstOccurrences.get(i); occurrence <= bestWindowLastOccurrences.get(i); occurrence++) {
+				covered[keywordAutomaton.getDistinctKeywordId(occurrences.getKeywordId(occurrence))] = true;
+			}
+			StringBuilder coveredKeywords = new StringBuilder();
+			for (int keywordId = 0; keywordId < keywordAutomaton.getKeywordCount(); keywordId++) {
+				int distinctId = keywordAutomaton.getDistinctKeywordId(keywordId);
+				if (covered[distinctId]) {
+					if (coveredKeywords.length() > 0) {
+						coveredKeywords.append(' ');
+					}
+					coveredKeywords.append(keywordAutomaton.getKeyword(keywordId));
+					//repeated keywords are listed once
+					covered[distinctId] = false;
+				}
+			}
+
+			String keyword = coveredKeywords.toString();
+			List<Integer> windowStarts = KeywordIndexTable.get(keyword);
+			if (windowStarts == null) {
+				windowStarts = new ArrayList<Integer>();
+				KeywordIndexTable.put(keyword, windowStarts);
+			}
+			windowStarts.add(bestWindowStarts.get(i));
+		}
 
+		return KeywordIndexTable;
 	}
 
 	/**
-	 * Returns the string rounded to nearest word boundaries Example: The blue
-	 * fox jumped over brown frog, if startindex and endindex is 3 and 14 -> "e
-	 * blue fox j" Then Output from this function will be The blue fox jumped
-	 * 
-	 * @param docToSearch
-	 * @param startIndex
-	 * @param endIndex
-	 * @throws CYlpNullArgumentException 
-	 * @return string with text that rounded off to nearest word
+	 * Returns index of the first occurrence that can follow the occurrence passed as argument in a keyword
+	 * combination, or occurrences.size() if the occurrence is not followed by a single space
 	 */
-	public String getRoundedOffDocSubString(String docToSearch, int startIndex,
-			int endIndex) throws CYlpNullArgumentException {
-
-		if (docToSearch == null) {
-			throw new CYlpNullArgumentException(
-					"docToSearch string is null ");
-		}		
-		//we can thrown one more exception for startindex < endIndex
-		int newStartIndex = startIndex;
-		int newEndIndex = endIndex;
-
-		// give me substring that starts and ends with words not characters
-		// using BreakIterator
-		BreakIterator bIterator = BreakIterator.getWordInstance();
-		bIterator.setText(docToSearch);
-		
-		startIndex = startIndex < docToSearch.length()? startIndex:docToSearch.length()-1;
-		endIndex = endIndex < docToSearch.length()? endIndex:docToSearch.length()-1;	
-
-		// check if the preceding word boundary is not the first word boundary
-		if (bIterator.preceding(startIndex) != BreakIterator.DONE) 
-		{   
-			newStartIndex = bIterator.preceding(startIndex);
-		} // check if following word boundary is not the last word boundary
-		if (bIterator.following(endIndex) != BreakIterator.DONE) {
-			newEndIndex = bIterator.following(endIndex);
+	private int getFirstChainSuccessor(CharSequence documentToSearch,
+			CYlpKeywordOccurrences occurrences, int occurrence) {
+		int end = occurrences.getEnd(occurrence);
+		if (end >= documentToSearch.length() || documentToSearch.charAt(end) != ' ') {
+			return occurrences.size();
 		}
-
-		return docToSearch.substring(newStartIndex, newEndIndex);
+		return occurrences.firstOccurrenceAtOrAfter(end + 1);
 	}
 
 	/**
-	 * This method returns count of all keywords(using regexToUse) in docTOSearch
-	 * @param docToSearch
-	 * @param regexToUse
-	 * @throws CYlpNullArgumentException 
-	 * @return count of keywords in docToSearch
+	 * Checks if occurrence next is the next keyword of a combination that has occurrence as previous keyword,
+	 * keywords of a combination keep the order of the query so the keyword id has to increase
 	 */
-	public int getCountOfAllKeywords(String docToSearch, String regexToUse) throws CYlpNullArgumentException{
+	private boolean isChainSuccessor(CYlpKeywordOccurrences occurrences,
+			int occurrence, int next) {
+		return occurrences.getStart(next) == occurrences.getEnd(occurrence) + 1
+				&& occurrences.getKeywordId(next) > occurrences.getKeywordId(occurrence);
+	}
 
-		if (regexToUse == null || docToSearch == null ) {
-			throw new CYlpNullArgumentException(
-					"Either regexToUse or docToSearch is null ");
+	/**
+	 * Adds all combinations of length chainLength[occurrence] that start with the occurrence to the table
+	 * @return false when the budget ran out before all of them were added, the first one is always added
+	 */
+	private boolean collectChains(CharSequence documentToSearch,
+			CYlpKeywordOccurrences occurrences, int[] chainLength,
+			int occurrence, int combinationStart, StringBuilder combination,
+			int[] chainKeywordIds, int depth, Map<String, List<Integer>> candidateTable,
+			Map<String, int[]> candidateKeywordIds, CYlpWorkBudget budget) {
+
+		int lengthBefore = combination.length();
+		if (lengthBefore > 0) {
+			combination.append(' ');
 		}
-		
-		// counter to maintain the number of keyword occurances
-		int countOfAllKeywords = 0;
-
-		//
-		// Obtain the required matcher
-		//
-		Pattern pattern = Pattern.compile(regexToUse);
-		Matcher matcher = pattern.matcher(docToSearch);
-
-		//
-		// Find every match and store start index in a array
-		//
-		while (matcher.find()) {
-			// if we find a match then add it to currKeywordStartIndexes
-			// List
-			countOfAllKeywords++;
+		combination.append(occurrences.getKeyword(occurrence));
+		chainKeywordIds[depth] = occurrences.getKeywordId(occurrence);
 
+		if (chainLength[occurrence] == 1) {
+			if (budget != null && !budget.tryEnumerateCombination(candidateTable.isEmpty())) {
+				combination.setLength(lengthBefore);
+				return false;
+			}
+			String keyword = combination.toString();
+			List<Integer> startIndexes = candidateTable.get(keyword);
+			if (startIndexes == null) {
+				startIndexes = new ArrayList<Integer>();
+				candidateTable.put(keyword, startIndexes);
+				candidateKeywordIds.put(keyword, chainKeywordIds.clone());
+			} else if (compareCombinationOrder(chainKeywordIds, candidateKeywordIds.get(keyword)) < 0) {
+				//repeated keywords give same combination from different keyword ids, keep the first generated
+				candidateKeywordIds.put(keyword, chainKeywordIds.clone());
+			}
+			if (startIndexes.isEmpty() || startIndexes.get(startIndexes.size() - 1) != combinationStart) {
+				startIndexes.add(combinationStart);
+			}
+		} else {
+			int next = getFirstChainSuccessor(documentToSearch, occurrences, occurrence);
+			int successorStart = occurrences.getEnd(occurrence) + 1;
+			for (; next < occurrences.size() && occurrences.getStart(next) == successorStart; next++) {
+				if (isChainSuccessor(occurrences, occurrence, next)
+						&& chainLength[next] == chainLength[occurrence] - 1) {
+					if (!collectChains(documentToSearch, occurrences, chainLength, next,
+							combinationStart, combination, chainKeywordIds, depth + 1,
+							candidateTable, candidateKeywordIds, budget)) {
+						combination.setLength(lengthBefore);
+						return false;
+					}
+				}
+			}
 		}
 
-		return countOfAllKeywords;
-
+		combination.setLength(lengthBefore);
+		return true;
 	}
 
 	/**
-	 * method constructs regular expression that matches keywords(ignoring case)
-	 * @param searchString
-	 * @throws CYlpNullArgumentException 
-	 * @return regular expression that matches keywords(ignoring case)
+	 * Compares two combinations of same length (increasing keyword ids) in the order getCombinations()
+	 * generates them: by the bit mask of keyword ids, that is by the highest keyword id that differs
 	 */
-	public String getRegexToMatchOneOrMoreKeywords(String searchString) throws CYlpNullArgumentException {
-		
-		if (searchString == null) {
-			throw new CYlpNullArgumentException(
-					"Search string is null ");
-		}		
-		
-
+	static int compareCombinationOrder(int[] firstKeywordIds, int[] secondKeywordIds) {
+		for (int i = firstKeywordIds.length - 1; i >= 0; i--) {
+			if (firstKeywordIds[i] != secondKeywordIds[i]) {
+				return firstKeywordIds[i] < secondKeywordIds[i] ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * This method uses three scan method in the proximity of the keyword
+	 * occurences(highest length keyword matches), the scan length is fixed at
+	 * MAX_LENGTH that can be passed as argument. We start the scan at the
+	 * keyword occurence(index stored in map) and count all the occurences of
+	 * any keyword. The information of sub string (document snippet) with
+	 * maximum occurences is kept track using instance of
+	 * CYlpProximitySearchKeyword
+	 * 
+	 * @param docToSearch:
+	 *            document that needs to be searched
+	 * @param KeywordIndexTable :
+	 *            table with keywords and list of start indexes
+	 * @param MAX_LENGTH
+	 *            max snippet length
+	 * @throws CYlpNullArgumentException            
+	 * @return instance of CYlpProximitySearchKeyword which contains the
+	 *         document snippet with max occurences of keywords in proximity
+	 */
+	public CYlpProximitySearchKeyword proximitySearch(String docToSearch,
+			String searchString, Map<String, List> KeywordIndexTable,
+			int MAX_LENGTH) throws CYlpNullArgumentException {
+
+		
+		if (docToSearch == null || searchString == null ||  KeywordIndexTable == null) {
+			throw new CYlpNullArgumentException(
+					"Either search string or docToSearch or  KeywordIndexTable is null ");
+		}
+
+		// keyword occurences are found once for the document, every scan window is scored from them
+		CYlpKeywordAutomaton keywordAutomaton = new CYlpKeywordAutomaton(
+				removeNonQualitativeTermsInSearch(searchString));
+		return proximitySearch(new CYlpTokenizedDocument(docToSearch),
+				keywordAutomaton.findOccurrences(docToSearch), KeywordIndexTable, MAX_LENGTH);
+	}
+
+	/**
+	 * Same as proximitySearch(String, String, Map, int) but uses keyword occurrences that were already found
+	 * in the document. The bounds of each scan window are computed and rounded off to word boundaries without
+	 * creating sub strings, and keywords in the window are counted from the occurrences with two binary
+	 * searches. Only the window with maximum count is turned in to a String
+	 * 
+	 * @param docToSearch
+	 * @param occurrences
+	 * @param KeywordIndexTable
+	 * @param MAX_LENGTH
+	 * @throws CYlpNullArgumentException
+	 * @return instance of CYlpProximitySearchKeyword which contains the
+	 *         document snippet with max occurences of keywords in proximity
+	 */
+	public CYlpProximitySearchKeyword proximitySearch(CharSequence docToSearch,
+			CYlpKeywordOccurrences occurrences, Map<String, List> KeywordIndexTable,
+			int MAX_LENGTH) throws CYlpNullArgumentException {
+
+		if (docToSearch == null) {
+			throw new CYlpNullArgumentException(
+					"Either occurrences or docToSearch or  KeywordIndexTable is null ");
+		}
+
+		return proximitySearch(new CYlpTokenizedDocument(docToSearch), occurrences, KeywordIndexTable,
+				MAX_LENGTH);
+	}
+
+	/**
+	 * Same as proximitySearch(String, CYlpKeywordOccurrences, Map, int) for a document that was already
+	 * tokenized, scan windows are rounded off to word boundaries with binary searches over its boundaries
+	 * 
+	 * @param tokenizedDoc
+	 * @param occurrences
+	 * @param KeywordIndexTable
+	 * @param MAX_LENGTH
+	 * @throws CYlpNullArgumentException
+	 * @return instance of CYlpProximitySearchKeyword which contains the
+	 *         document snippet with max occurences of keywords in proximity
+	 */
+	public CYlpProximitySearchKeyword proximitySearch(CYlpTokenizedDocument tokenizedDoc,
+			CYlpKeywordOccurrences occurrences, Map<String, List> KeywordIndexTable,
+			int MAX_LENGTH) throws CYlpNullArgumentException {
+
+		List<CYlpProximitySearchKeyword> bestProximityKeywords = proximitySearch(tokenizedDoc, occurrences,
+				KeywordIndexTable, MAX_LENGTH, 1);
+		return bestProximityKeywords.isEmpty() ? new CYlpProximitySearchKeyword() : bestProximityKeywords.get(0);
+	}
+
+	/**
+	 * Same as proximitySearch(CYlpTokenizedDocument, CYlpKeywordOccurrences, Map, int) but stops scoring scan
+	 * windows when the budget runs out and returns the best window scored so far, flagged as degraded. The
+	 * result is also flagged when the budget ran out while the keyword index table was built
+	 * 
+	 * @param tokenizedDoc
+	 * @param occurrences
+	 * @param KeywordIndexTable
+	 * @param MAX_LENGTH
+	 * @param budget
+	 * @throws CYlpNullArgumentException
+	 * @return instance of CYlpProximitySearchKeyword which contains the
+	 *         document snippet with max occurences of keywords in proximity
+	 */
+	public CYlpProximitySearchKeyword proximitySearch(CYlpTokenizedDocument tokenizedDoc,
+			CYlpKeywordOccurrences occurrences, Map<String, List> KeywordIndexTable,
+			int MAX_LENGTH, CYlpWorkBudget budget) throws CYlpNullArgumentException {
+
+		List<CYlpProximitySearchKeyword> bestProximityKeywords = proximitySearch(tokenizedDoc, occurrences,
+				KeywordIndexTable, MAX_LENGTH, 1, budget);
+		return bestProximityKeywords.isEmpty() ? new CYlpProximitySearchKeyword() : bestProximityKeywords.get(0);
+	}
+
+	/**
+	 * Same as proximitySearch(CYlpTokenizedDocument, CYlpKeywordOccurrences, Map, int) but scores the scan
+	 * windows of a long document in parallel on the fork-join pool passed as argument. The document is split
+	 * in to segments of at least MIN_SEGMENT_LENGTH (and MAX_LENGTH) characters, long enough for about a
+	 * thousand scan windows each, and each segment scores the windows around the start indexes that lie in
+	 * it. Those windows reach up to MAX_LENGTH characters in to the neighbouring segments, so segments overlap
+	 * and a window across a segment border is scored like in the sequential search.
+	 *
+	 * Every window keeps its position in the sequential scan order, the best window of each segment is the
+	 * first one with the maximum keyword count and the segments are merged by keyword count and then by scan
+	 * order. So the window returned is the one the sequential search returns, whatever the number of threads.
+	 * Documents shorter than two segments, tables with too few start indexes to fill two segments and tables
+	 * whose start indexes are not increasing are searched on the calling thread
+	 *
+	 * @param tokenizedDoc
+	 * @param occurrences
+	 * @param KeywordIndexTable
+	 * @param MAX_LENGTH
+	 * @param pool: fork-join pool that scores the segments
+	 * @throws CYlpNullArgumentException
+	 * @return instance of CYlpProximitySearchKeyword which contains the
+	 *         document snippet with max occurences of keywords in proximity
+	 */
+	public CYlpProximitySearchKeyword proximitySearch(CYlpTokenizedDocument tokenizedDoc,
+			CYlpKeywordOccurrences occurrences, Map<String, List> KeywordIndexTable,
+			int MAX_LENGTH, ForkJoinPool pool) throws CYlpNullArgumentException {
+
+		if (tokenizedDoc == null || occurrences == null ||  KeywordIndexTable == null || pool == null) {
+			throw new CYlpNullArgumentException(
+					"Either occurrences or docToSearch or  KeywordIndexTable or pool is null ");
+		}
+
+		return searchProximitySegments(tokenizedDoc, occurrences, KeywordIndexTable, MAX_LENGTH, pool, null);
+	}
+
+	/**
+	 * Same as proximitySearch(CYlpTokenizedDocument, CYlpKeywordOccurrences, Map, int, ForkJoinPool) but
+	 * counts the scan windows scored in the budget, for example an unlimited budget that counts the work of
+	 * a traced call. A budget that limits the work is applied in scan order, so the document is then searched
+	 * on the calling thread like proximitySearch(CYlpTokenizedDocument, CYlpKeywordOccurrences, Map, int,
+	 * CYlpWorkBudget)
+	 *
+	 * @param tokenizedDoc
+	 * @param occurrences
+	 * @param KeywordIndexTable
+	 * @param MAX_LENGTH
+	 * @param pool: fork-join pool that scores the segments
+	 * @param budget
+	 * @throws CYlpNullArgumentException
+	 * @return instance of CYlpProximitySearchKeyword which contains the
+	 *         document snippet with max occurences of keywords in proximity
+	 */
+	public CYlpProximitySearchKeyword proximitySearch(CYlpTokenizedDocument tokenizedDoc,
+			CYlpKeywordOccurrences occurrences, Map<String, List> KeywordIndexTable,
+			int MAX_LENGTH, ForkJoinPool pool, CYlpWorkBudget budget) throws CYlpNullArgumentException {
+
+		if (tokenizedDoc == null || occurrences == null ||  KeywordIndexTable == null || pool == null
+				|| budget == null) {
+			throw new CYlpNullArgumentException(
+					"Either occurrences or docToSearch or  KeywordIndexTable or pool or budget is null ");
+		}
+
+		if (!budget.isUnlimited()) {
+			return proximitySearch(tokenizedDoc, occurrences, KeywordIndexTable, MAX_LENGTH, budget);
+		}
+		return searchProximitySegments(tokenizedDoc, occurrences, KeywordIndexTable, MAX_LENGTH, pool, budget);
+	}
+
+	/**
+	 * Scores the scan windows of the parallel proximitySearch(), budget is null or unlimited and counts the
+	 * windows scored
+	 */
+	private CYlpProximitySearchKeyword searchProximitySegments(CYlpTokenizedDocument tokenizedDoc,
+			CYlpKeywordOccurrences occurrences, Map<String, List> KeywordIndexTable,
+			int MAX_LENGTH, ForkJoinPool pool, CYlpWorkBudget budget) throws CYlpNullArgumentException {
+
+		int minSegmentLength = Math.max(MAX_LENGTH, MIN_SEGMENT_LENGTH);
+		long windowCount = 0;
+		for (List currentStartIndexList : KeywordIndexTable.values()) {
+			windowCount += (long) currentStartIndexList.size() * SCAN_METHODS.length;
+		}
+		if (tokenizedDoc.length() < 2 * minSegmentLength || windowCount < 2 * MIN_SEGMENT_WINDOWS) {
+			return searchProximityWindow(tokenizedDoc, occurrences, KeywordIndexTable, MAX_LENGTH, budget);
+		}
+
+		//start indexes of each keyword in the iteration order of the table, with the scan order of the
+		//first window scored around them by the sequential search
+		String[] keywords = new String[KeywordIndexTable.size()];
+		int[][] startIndexes = new int[keywords.length][];
+		int[] firstScanOrders = new int[keywords.length];
+		int scanOrder = 0;
+		int firstStartIndex = Integer.MAX_VALUE;
+		int lastStartIndex = Integer.MIN_VALUE;
+		int keywordIndex = 0;
+		for (Map.Entry<String, List> keywordEntry : KeywordIndexTable.entrySet()) {
+			List<Integer> currentStartIndexList = keywordEntry.getValue();
+			int[] currentStartIndexes = new int[currentStartIndexList.size()];
+			int i = 0;
+			for (int currentIndex : currentStartIndexList) {
+				//segments find their start indexes with a binary search
+				if (i > 0 && currentIndex <= currentStartIndexes[i - 1]) {
+					return searchProximityWindow(tokenizedDoc, occurrences, KeywordIndexTable, MAX_LENGTH, budget);
+				}
+				currentStartIndexes[i++] = currentIndex;
+			}
+			if (currentStartIndexes.length > 0) {
+				firstStartIndex = Math.min(firstStartIndex, currentStartIndexes[0]);
+				lastStartIndex = Math.max(lastStartIndex, currentStartIndexes[currentStartIndexes.length - 1]);
+			}
+			keywords[keywordIndex] = keywordEntry.getKey();
+			startIndexes[keywordIndex] = currentStartIndexes;
+			firstScanOrders[keywordIndex] = scanOrder;
+			scanOrder += currentStartIndexes.length * SCAN_METHODS.length;
+			keywordIndex++;
+		}
+
+		//segments long enough for MIN_SEGMENT_WINDOWS windows when the start indexes are spread evenly
+		long startIndexRange = (long) lastStartIndex - firstStartIndex + 1;
+		int segmentLength = (int) Math.max(minSegmentLength, startIndexRange * MIN_SEGMENT_WINDOWS / windowCount);
+		CYlpProximitySegmentTask documentTask = new CYlpProximitySegmentTask(tokenizedDoc, occurrences, keywords,
+				startIndexes, firstScanOrders, MAX_LENGTH, segmentLength, firstStartIndex, lastStartIndex + 1);
+		CYlpProximityWindow bestWindow = pool.invoke(documentTask);
+		if (budget != null) {
+			budget.addWindowsScored(documentTask.windowsScored);
+		}
+
+		CYlpProximitySearchKeyword bestProximityKeyword = new CYlpProximitySearchKeyword();
+		if (bestWindow != null) {
+			bestProximityKeyword.updateProximityKeywordIfRequired(bestWindow.countOfAllKeywords,
+					bestWindow.keyword, bestWindow.startIndex,
+					tokenizedDoc.getText().subSequence(bestWindow.startIndex, bestWindow.endIndex).toString(),
+					bestWindow.scanMethod);
+		}
+		return bestProximityKeyword;
+	}
+
+	/**
+	 * Scores the scan windows of the document on the calling thread, budget is null when the work is not
+	 * limited or counted
+	 */
+	private CYlpProximitySearchKeyword searchProximityWindow(CYlpTokenizedDocument tokenizedDoc,
+			CYlpKeywordOccurrences occurrences, Map<String, List> KeywordIndexTable,
+			int MAX_LENGTH, CYlpWorkBudget budget) throws CYlpNullArgumentException {
+
+		List<CYlpProximitySearchKeyword> bestProximityKeywords = searchProximityWindows(tokenizedDoc, occurrences,
+				KeywordIndexTable, MAX_LENGTH, 1, budget);
+		return bestProximityKeywords.isEmpty() ? new CYlpProximitySearchKeyword() : bestProximityKeywords.get(0);
+	}
+
+	/**
+	 * Same as proximitySearch(CYlpTokenizedDocument, CYlpKeywordOccurrences, Map, int) but keeps the
+	 * maxSnippets best windows that do not overlap, instead of only the first best one. The best
+	 * maxSnippets * CANDIDATE_WINDOWS_PER_SNIPPET scan windows are kept in a priority queue while the scan
+	 * windows are counted, whether they overlap or not, so asking for a few more snippets costs a few
+	 * comparisons per scan window and no extra pass over the document.
+	 * 
+	 * After the scan the candidates are taken best first and a candidate is returned when it does not
+	 * overlap a window returned before it. Ties keep the window that was scanned first, same as
+	 * updateProximityKeywordIfRequired(), so the first window returned is the window returned by
+	 * proximitySearch(CYlpTokenizedDocument, CYlpKeywordOccurrences, Map, int)
+	 * 
+	 * @param tokenizedDoc
+	 * @param occurrences
+	 * @param KeywordIndexTable
+	 * @param MAX_LENGTH
+	 * @param maxSnippets: maximum number of windows to return
+	 * @throws CYlpNullArgumentException
+	 * @return windows that do not overlap, most keyword occurences first
+	 */
+	public List<CYlpProximitySearchKeyword> proximitySearch(CYlpTokenizedDocument tokenizedDoc,
+			CYlpKeywordOccurrences occurrences, Map<String, List> KeywordIndexTable,
+			int MAX_LENGTH, int maxSnippets) throws CYlpNullArgumentException {
+
+		if (tokenizedDoc == null || occurrences == null ||  KeywordIndexTable == null) {
+			throw new CYlpNullArgumentException(
+					"Either occurrences or docToSearch or  KeywordIndexTable is null ");
+		}
+		if (maxSnippets < 1) {
+			throw new IllegalArgumentException("maxSnippets should be at least 1");
+		}
+
+		return searchProximityWindows(tokenizedDoc, occurrences, KeywordIndexTable, MAX_LENGTH, maxSnippets, null);
+	}
+
+	/**
+	 * Same as proximitySearch(CYlpTokenizedDocument, CYlpKeywordOccurrences, Map, int, int) but stops scoring
+	 * scan windows when the budget runs out. The windows of the first start index are always scored, after
+	 * that the best windows scored so far are returned flagged as degraded. When none of them has a keyword
+	 * occurence the beginning of the document is returned, flagged as degraded too
+	 * 
+	 * @param tokenizedDoc
+	 * @param occurrences
+	 * @param KeywordIndexTable
+	 * @param MAX_LENGTH
+	 * @param maxSnippets: maximum number of windows to return
+	 * @param budget
+	 * @throws CYlpNullArgumentException
+	 * @return windows that do not overlap, most keyword occurences first
+	 */
+	public List<CYlpProximitySearchKeyword> proximitySearch(CYlpTokenizedDocument tokenizedDoc,
+			CYlpKeywordOccurrences occurrences, Map<String, List> KeywordIndexTable,
+			int MAX_LENGTH, int maxSnippets, CYlpWorkBudget budget) throws CYlpNullArgumentException {
+
+		if (tokenizedDoc == null || occurrences == null ||  KeywordIndexTable == null || budget == null) {
+			throw new CYlpNullArgumentException(
+					"Either occurrences or docToSearch or  KeywordIndexTable or budget is null ");
+		}
+		if (maxSnippets < 1) {
+			throw new IllegalArgumentException("maxSnippets should be at least 1");
+		}
+
+		return searchProximityWindows(tokenizedDoc, occurrences, KeywordIndexTable, MAX_LENGTH, maxSnippets, budget);
+	}
+
+	/**
+	 * Scores the scan windows of proximitySearch(), budget is null when the work is not limited
+	 */
+	private List<CYlpProximitySearchKeyword> searchProximityWindows(CYlpTokenizedDocument tokenizedDoc,
+			CYlpKeywordOccurrences occurrences, Map<String, List> KeywordIndexTable,
+			int MAX_LENGTH, int maxSnippets, CYlpWorkBudget budget) throws CYlpNullArgumentException {
+
+		CharSequence docToSearch = tokenizedDoc.getText();
+		int docLength = docToSearch.length();
+		
+		List<CYlpProximitySearchKeyword> bestProximityKeywords = new ArrayList<CYlpProximitySearchKeyword>();
+		
+		//special case where there are no matching keywords, then get substring of docToSearch between
+		//0 and MAX_LENGTH
+		if(KeywordIndexTable.isEmpty()){
+			bestProximityKeywords.add(getLeadingProximityKeyword(tokenizedDoc, MAX_LENGTH));
+			return bestProximityKeywords;
+		}
+
+		//best candidate windows so far with the worst one at the head, they are not evicted for overlapping
+		//each other so a window overlapping a better one can still be returned when that one is not
+		int maxCandidates = (int) Math.min(Integer.MAX_VALUE - 1, (long) maxSnippets * CANDIDATE_WINDOWS_PER_SNIPPET);
+		PriorityQueue<CYlpProximityWindow> candidateWindows = new PriorityQueue<CYlpProximityWindow>(
+				CYlpProximityWindow.WORST_FIRST);
+		int scanOrder = 0;
+
+		//set when the budget runs out, the windows scored so far are returned
+		boolean budgetExhausted = false;
+
+		Set<String> keySet = KeywordIndexTable.keySet();
+		//
+		// for each keyword in the keyset
+		//
+		for (String currentkeyword : keySet) {
+
+			if (budgetExhausted) {
+				break;
+			}
+
+			//
+			// get start indexes for this keyword
+			//
+			List<Integer> currentStartIndexList = KeywordIndexTable.get(currentkeyword);
+
+			for (int currentIndex : currentStartIndexList) {
+
+				if (budgetExhausted) {
+					break;
+				}
+
+				//
+				// for each start index use three scanning methods (in the order FORWARDSCAN, MIDSCAN,
+				// BACKWARDSCAN) and count keyword occurrences inside the rounded off window
+				//
+				for (EylpScanMethod scanMethod : SCAN_METHODS) {
+
+					//windows of the first start index are always scored so that there is a result
+					if (budget != null && !budget.tryScoreWindow(scanOrder < SCAN_METHODS.length)) {
+						budgetExhausted = true;
+						break;
+					}
+
+					int startIndex = getRoundedOffStartIndex(tokenizedDoc,
+							getScanStartIndex(scanMethod, currentIndex, MAX_LENGTH, docLength));
+					int endIndex = getRoundedOffEndIndex(tokenizedDoc,
+							getScanEndIndex(scanMethod, currentIndex, MAX_LENGTH, docLength));
+
+					int currCountOfAllKeywords = occurrences.countMatchesWithin(startIndex, endIndex);
+					scanOrder++;
+
+					// same rule as updateProximityKeywordIfRequired(): only a greater count replaces a window
+					if (currCountOfAllKeywords == 0 || (candidateWindows.size() == maxCandidates
+							&& currCountOfAllKeywords <= candidateWindows.peek().countOfAllKeywords)) {
+						continue;
+					}
+
+					candidateWindows.add(new CYlpProximityWindow(currCountOfAllKeywords, currentkeyword,
+							scanMethod, startIndex, endIndex, scanOrder));
+					if (candidateWindows.size() > maxCandidates) {
+						candidateWindows.poll();
+					}
+				}
+			}
+		}
+
+		//the queue returns the worst window first, so the candidates are taken from the end of the array
+		CYlpProximityWindow[] sortedWindows = new CYlpProximityWindow[candidateWindows.size()];
+		for (int i = sortedWindows.length - 1; i >= 0; i--) {
+			sortedWindows[i] = candidateWindows.poll();
+		}
+		List<CYlpProximityWindow> bestWindows = new ArrayList<CYlpProximityWindow>(maxSnippets);
+		for (int i = 0; i < sortedWindows.length && bestWindows.size() < maxSnippets; i++) {
+			if (!isOverlappingWindow(bestWindows, sortedWindows[i])) {
+				bestWindows.add(sortedWindows[i]);
+			}
+		}
+
+		for (CYlpProximityWindow bestWindow : bestWindows) {
+			CYlpProximitySearchKeyword proximityKeyword = new CYlpProximitySearchKeyword();
+			proximityKeyword.updateProximityKeywordIfRequired(
+					bestWindow.countOfAllKeywords, bestWindow.keyword, bestWindow.startIndex,
+					docToSearch.subSequence(bestWindow.startIndex, bestWindow.endIndex).toString(),
+					bestWindow.scanMethod);
+			bestProximityKeywords.add(proximityKeyword);
+		}
+
+		if (budgetExhausted) {
+			budget.setDegraded();
+			if (bestProximityKeywords.isEmpty()) {
+				bestProximityKeywords.add(getLeadingProximityKeyword(tokenizedDoc, MAX_LENGTH));
+			}
+		}
+		if (budget != null && budget.isDegraded()) {
+			for (CYlpProximitySearchKeyword bestProximityKeyword : bestProximityKeywords) {
+				bestProximityKeyword.setDegraded(true);
+			}
+		}
+
+		return bestProximityKeywords;
+	}
+
+	/**
+	 * Returns text of length MAX_LENGTH from the beginning of the document, the snippet when no keyword matches
+	 */
+	private CYlpProximitySearchKeyword getLeadingProximityKeyword(CYlpTokenizedDocument tokenizedDoc,
+			int MAX_LENGTH) throws CYlpNullArgumentException {
+
+		int docLength = tokenizedDoc.getText().length();
+
+		// instance of CYlpProximitySearchKeyword will be used to keep track of
+		// document snippet with maximum occurences - which is most relevant
+		// string
+		CYlpProximitySearchKeyword currentProximityKeyWord = new CYlpProximitySearchKeyword();
+
+		//no matching keywords return text of length MAX_LENGTH
+		String docToSet = getRoundedOffDocSubString(tokenizedDoc,
+				getScanStartIndex(EylpScanMethod.BACKWARDSCAN, 0, MAX_LENGTH, docLength),
+				getScanEndIndex(EylpScanMethod.BACKWARDSCAN, 0, MAX_LENGTH, docLength));
+		currentProximityKeyWord.setDocumentSnippet(docToSet);
+		currentProximityKeyWord.setNumberOfAllKeywordsOccurences(0);
+		currentProximityKeyWord.setScanMethodForMaxOccurances(EylpScanMethod.BACKWARDSCAN);
+		return currentProximityKeyWord;
+	}
+
+	/**
+	 * Returns true when the window overlaps one of the windows already returned
+	 */
+	private boolean isOverlappingWindow(List<CYlpProximityWindow> bestWindows, CYlpProximityWindow window) {
+
+		for (CYlpProximityWindow bestWindow : bestWindows) {
+			if (bestWindow.startIndex < window.endIndex && window.startIndex < bestWindow.endIndex) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This method returns sub strings based on scan method 
+	 * For example: for midscan we return string(currIndex-Max/2,,currIndex +Max/2) 
+	 * @param scanMethod
+	 * @param currentIndex
+	 * @param MAX_LENGTH
+	 * @param docToSearch
+	 * @throws CYlpNullArgumentException 
+	 * @return text(string) that is part of document according to scanMethod passed as arg
+	 */
+	public String getSubDocumentForEachStrategy(EylpScanMethod scanMethod,
+			int currentIndex, int MAX_LENGTH, String docToSearch)throws CYlpNullArgumentException  {
+		
+		
+		if (scanMethod == null || docToSearch == null ) {
+			throw new CYlpNullArgumentException(
+					"Either scanMethodor or docToSearch is null ");
+		}
+		
+		int startIndex = getScanStartIndex(scanMethod, currentIndex, MAX_LENGTH, docToSearch.length());
+		int endIndex = getScanEndIndex(scanMethod, currentIndex, MAX_LENGTH, docToSearch.length());
+
+		return getRoundedOffDocSubString(docToSearch, startIndex, endIndex);
+
+	}
+
+	/**
+	 * Returns start index of the section to scan for the scan method (before rounding off to word boundaries)
+	 * @param scanMethod
+	 * @param currentIndex
+	 * @param MAX_LENGTH
+	 * @param docLength
+	 * @return start index of the section to scan
+	 */
+	public int getScanStartIndex(EylpScanMethod scanMethod, int currentIndex,
+			int MAX_LENGTH, int docLength) {
+
+		if (scanMethod == EylpScanMethod.FORWARDSCAN) {
+			// set start index to 0 when the section would start before the document
+			return (currentIndex - MAX_LENGTH < 0) ? 0 : currentIndex - MAX_LENGTH;
+		} else if (scanMethod == EylpScanMethod.MIDSCAN) {
+			return (currentIndex - MAX_LENGTH / 2 < 0) ? 0 : currentIndex - MAX_LENGTH / 2;
+		} else if (scanMethod == EylpScanMethod.BACKWARDSCAN) {
+			return currentIndex;
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns end index of the section to scan for the scan method (before rounding off to word boundaries)
+	 * @param scanMethod
+	 * @param currentIndex
+	 * @param MAX_LENGTH
+	 * @param docLength
+	 * @return end index of the section to scan
+	 */
+	public int getScanEndIndex(EylpScanMethod scanMethod, int currentIndex,
+			int MAX_LENGTH, int docLength) {
+
+		if (scanMethod == EylpScanMethod.FORWARDSCAN) {
+			if (currentIndex - MAX_LENGTH < 0) {
+				// start index was set to 0, adjust end index to span MAX_LENGTH
+				return (docLength > MAX_LENGTH) ? MAX_LENGTH : docLength;
+			}
+			return currentIndex;
+		} else if (scanMethod == EylpScanMethod.MIDSCAN) {
+			if (currentIndex - MAX_LENGTH / 2 < 0) {
+				// start index was set to 0, adjust end index to span MAX_LENGTH
+				return (docLength > MAX_LENGTH) ? MAX_LENGTH : docLength;
+			}
+			return (docLength > currentIndex + MAX_LENGTH / 2) ? currentIndex + MAX_LENGTH / 2 : docLength;
+		} else if (scanMethod == EylpScanMethod.BACKWARDSCAN) {
+			// set end index to string length when the section would go past the document
+			return (currentIndex + MAX_LENGTH < docLength) ? currentIndex + MAX_LENGTH : docLength;
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the string rounded to nearest word boundaries Example: The blue
+	 * fox jumped over brown frog, if startindex and endindex is 3 and 14 -> "e
+	 * blue fox j" Then Output from this function will be The blue fox jumped
+	 * 
+	 * @param docToSearch
+	 * @param startIndex
+	 * @param endIndex
+	 * @throws CYlpNullArgumentException 
+	 * @return string with text that rounded off to nearest word
+	 */
+	public String getRoundedOffDocSubString(String docToSearch, int startIndex,
+			int endIndex) throws CYlpNullArgumentException {
+
+		if (docToSearch == null) {
+			throw new CYlpNullArgumentException(
+					"docToSearch string is null ");
+		}		
+		//we can thrown one more exception for startindex < endIndex
+
+		// give me substring that starts and ends with words not characters
+		return getRoundedOffDocSubString(new CYlpTokenizedDocument(docToSearch), startIndex, endIndex);
+	}
+
+	/**
+	 * Same as getRoundedOffDocSubString(String, int, int) for a document that was already tokenized
+	 * @param tokenizedDoc
+	 * @param startIndex
+	 * @param endIndex
+	 * @throws CYlpNullArgumentException
+	 * @return string with text that rounded off to nearest word
+	 */
+	public String getRoundedOffDocSubString(CYlpTokenizedDocument tokenizedDoc, int startIndex,
+			int endIndex) throws CYlpNullArgumentException {
+
+		if (tokenizedDoc == null) {
+			throw new CYlpNullArgumentException(
+					"docToSearch string is null ");
+		}
+
+		int newStartIndex = getRoundedOffStartIndex(tokenizedDoc, startIndex);
+		int newEndIndex = getRoundedOffEndIndex(tokenizedDoc, endIndex);
+
+		return tokenizedDoc.getText().subSequence(newStartIndex, newEndIndex).toString();
+	}
+
+	/**
+	 * Returns the word boundary preceding startIndex
+	 * @param tokenizedDoc
+	 * @param startIndex
+	 * @return start index rounded off to word boundary
+	 */
+	private int getRoundedOffStartIndex(CYlpTokenizedDocument tokenizedDoc, int startIndex) {
+
+		int docLength = tokenizedDoc.length();
+		int indexToRound = startIndex < docLength ? startIndex : docLength - 1;
+
+		// check if the preceding word boundary is not the first word boundary
+		int precedingBoundary = tokenizedDoc.preceding(indexToRound);
+		return precedingBoundary != CYlpTokenizedDocument.DONE ? precedingBoundary : startIndex;
+	}
+
+	/**
+	 * Returns the word boundary following endIndex
+	 * @param tokenizedDoc
+	 * @param endIndex
+	 * @return end index rounded off to word boundary
+	 */
+	private int getRoundedOffEndIndex(CYlpTokenizedDocument tokenizedDoc, int endIndex) {
+
+		int docLength = tokenizedDoc.length();
+		int indexToRound = endIndex < docLength ? endIndex : docLength - 1;
+
+		// check if following word boundary is not the last word boundary
+		int followingBoundary = tokenizedDoc.following(indexToRound);
+		return followingBoundary != CYlpTokenizedDocument.DONE ? followingBoundary : endIndex;
+	}
+
+	/**
+	 * This method returns count of all keywords(using regexToUse) in docTOSearch
+	 * @param docToSearch
+	 * @param regexToUse
+	 * @throws CYlpNullArgumentException 
+	 * @return count of keywords in docToSearch
+	 */
+	public int getCountOfAllKeywords(String docToSearch, String regexToUse) throws CYlpNullArgumentException{
+
+		if (regexToUse == null || docToSearch == null ) {
+			throw new CYlpNullArgumentException(
+					"Either regexToUse or docToSearch is null ");
+		}
+		
+		// counter to maintain the number of keyword occurances
+		int countOfAllKeywords = 0;
+
+		//
+		// Obtain the required matcher
+		//
+		Pattern pattern = Pattern.compile(regexToUse);
+		Matcher matcher = pattern.matcher(docToSearch);
+
+		//
+		// Find every match and store start index in a array
+		//
+		while (matcher.find()) {
+			// if we find a match then add it to currKeywordStartIndexes
+			// List
+			countOfAllKeywords++;
+
+		}
+
+		return countOfAllKeywords;
+
+	}
+
+	/**
+	 * method constructs regular expression that matches keywords(ignoring case)
+	 * @param searchString
+	 * @throws CYlpNullArgumentException 
+	 * @return regular expression that matches keywords(ignoring case)
+	 */
+	public String getRegexToMatchOneOrMoreKeywords(String searchString) throws CYlpNullArgumentException {
+		
+		if (searchString == null) {
+			throw new CYlpNullArgumentException(
+					"Search string is null ");
+		}		
+		
+
 		List<String> keywordList = removeNonQualitativeTermsInSearch(searchString);
 		String regexToMatchOneOrMoreKeywords = new String();
 
-		// construct regex expression that matches one or more keywords
+		// construct regex expression that matches one or more keywords, keywords with regex meta characters
+		// are quoted so they match as plain text
 		for (String keyword : keywordList) {
 
 			regexToMatchOneOrMoreKeywords = regexToMatchOneOrMoreKeywords
-					+ "(?i)" + keyword + "|";
+					+ "(?i)" + quoteKeyword(keyword) + "|";
 		}
 
 		// remove the additional | from the regex
@@ -577,6 +1415,19 @@ public class CYlpSearchUtil {
 
 	}
 
+	/**
+	 * Quotes a keyword that has regex meta characters with Pattern.quote(), other keywords are returned as
+	 * they are
+	 */
+	private static String quoteKeyword(String keyword) {
+		for (int i = 0; i < keyword.length(); i++) {
+			if (REGEX_META_CHARACTERS.indexOf(keyword.charAt(i)) >= 0) {
+				return Pattern.quote(keyword);
+			}
+		}
+		return keyword;
+	}
+
 	/**
 	 * The algorithm first splits searchString to get list of words, then it iterates
 	 * over the words in docSnippetToUpdate, for each word in docSnippetToUpdate
@@ -607,70 +1458,334 @@ public class CYlpSearchUtil {
 					"Either docSnippetToUpdate or searchString or padBefore or padAfter is null ");
 		}		
 
-		int lengthOfDocSnippet = docSnippetToUpdate.length();
-		
-		//highlightedDocSnippet is the string we return
-		String highlightedDocSnippet = new String(docSnippetToUpdate);
+		// dictionary of keywords, words of the snippet are matched by their term IDs
+		List<String> keywordList = removeNonQualitativeTermsInSearch(searchString);
+		CYlpTermDictionary termDictionary = analyzer == null ? new CYlpTermDictionary(keywordList)
+				: new CYlpTermDictionary(keywordList, analyzer);
+		CYlpTokenStream snippetTokenStream = new CYlpTokenStream(new CYlpTokenizedDocument(docSnippetToUpdate),
+				termDictionary);
+		//analyzed keywords are single words, their groups are found from the term IDs
+		if (analyzer != null) {
+			return getThePaddedSnippet(snippetTokenStream, 0, docSnippetToUpdate.length(), padBefore, padAfter);
+		}
+		return getThePaddedSnippet(snippetTokenStream, new CYlpKeywordAutomaton(keywordList).findOccurrences(
+				docSnippetToUpdate), 0, docSnippetToUpdate.length(), padBefore, padAfter);
+	}
 
-		//iterator to parse words in the text 
-		BreakIterator bIterator = BreakIterator.getWordInstance();
-		bIterator.setText(docSnippetToUpdate);
-		
-		//keywordStartIndexTable holds the start indexes of largest keyword group and value as keyword group
-		Map<Integer,String> keywordStartIndexTable = new HashMap<Integer,String>();		
+	/**
+	 * Same as getThePaddedSnippet(String, String, String, String) but uses the term dictionary of a query
+	 * that was already compiled, so the query is not tokenized again for every snippet
+	 * @param docSnippetToUpdate
+	 * @param compiledQuery
+	 * @param padBefore
+	 * @param padAfter
+	 * @throws CYlpNullArgumentException
+	 * @return highlighted most relevant document snippet
+	 */
+	public String getThePaddedSnippet(String docSnippetToUpdate,
+			CYlpCompiledQuery compiledQuery, String padBefore, String padAfter) throws CYlpNullArgumentException {
 
-		// regex to match one or more keywords
-		String regexToMatchOneOrMoreKeywords = getRegexToMatchOneOrMoreKeywords(searchString);
-		Pattern keyWordMatchpattern = Pattern.compile(regexToMatchOneOrMoreKeywords);
-		Matcher keyWordmatcher;
-		
-		//regex to match delimiters - used to match delimiters and skip them during the iteration of words
-		String delimiterRegex = getDelimiterRegex();
-		Pattern spaceMatchpattern = Pattern.compile(delimiterRegex);
-		Matcher spaceMatcher;
+		if (docSnippetToUpdate == null || compiledQuery == null || padBefore == null || padAfter == null) {
+			throw new CYlpNullArgumentException(
+					"Either docSnippetToUpdate or compiledQuery or padBefore or padAfter is null ");
+		}
+
+		CYlpTokenStream snippetTokenStream = new CYlpTokenStream(new CYlpTokenizedDocument(docSnippetToUpdate),
+				compiledQuery.getTermDictionary());
+		return getThePaddedSnippet(snippetTokenStream, compiledQuery.findOccurrences(snippetTokenStream), 0,
+				docSnippetToUpdate.length(), padBefore, padAfter);
+	}
+
+	/**
+	 * Same as getThePaddedSnippet(String, CYlpCompiledQuery, String, String) for the snippet between
+	 * snippetStartIndex and snippetEndIndex of a document that was already turned in to a token stream, the
+	 * words of the snippet and their term IDs are taken from the token stream
+	 * @param tokenStream
+	 * @param snippetStartIndex
+	 * @param snippetEndIndex
+	 * @param padBefore
+	 * @param padAfter
+	 * @throws CYlpNullArgumentException
+	 * @return highlighted most relevant document snippet
+	 */
+	public String getThePaddedSnippet(CYlpTokenStream tokenStream, int snippetStartIndex,
+			int snippetEndIndex, String padBefore, String padAfter) throws CYlpNullArgumentException {
+
+		if (tokenStream == null || padBefore == null || padAfter == null) {
+			throw new CYlpNullArgumentException(
+					"Either tokenStream or padBefore or padAfter is null ");
+		}
+
+		//room for the snippet and a few padded keyword groups
+		int capacity = Math.max(0, snippetEndIndex - snippetStartIndex) + 4 * (padBefore.length() + padAfter.length());
+		return appendThePaddedSnippet(tokenStream, snippetStartIndex, snippetEndIndex, padBefore, padAfter,
+				new StringBuilder(capacity)).toString();
+	}
+
+	/**
+	 * Same as getThePaddedSnippet(CYlpTokenStream, int, int, String, String) but appends the highlighted
+	 * snippet to highlightedDocSnippet, a caller that reuses the builder (setLength(0)) renders snippets
+	 * without allocating
+	 * @param tokenStream
+	 * @param snippetStartIndex
+	 * @param snippetEndIndex
+	 * @param padBefore
+	 * @param padAfter
+	 * @param highlightedDocSnippet: builder the snippet is appended to
+	 * @throws CYlpNullArgumentException
+	 * @return highlightedDocSnippet
+	 */
+	public StringBuilder appendThePaddedSnippet(CYlpTokenStream tokenStream, int snippetStartIndex,
+			int snippetEndIndex, String padBefore, String padAfter, StringBuilder highlightedDocSnippet)
+			throws CYlpNullArgumentException {
+
+		try {
+			appendThePaddedSnippet(tokenStream, snippetStartIndex, snippetEndIndex, padBefore, padAfter,
+					(Appendable) highlightedDocSnippet);
+		} catch (IOException ioEx) {
+			//StringBuilder never throws IOException
+			throw new UncheckedIOException(ioEx);
+		}
+		return highlightedDocSnippet;
+	}
+
+	/**
+	 * Same as appendThePaddedSnippet(CYlpTokenStream, int, int, String, String, StringBuilder) for any
+	 * Appendable, for example the Writer of a response.
+	 * 
+	 * The snippet is rendered in one forward pass over the word boundaries of the document: keyword groups
+	 * are found in increasing order, so the text before a group, the pads and the group are appended as soon
+	 * as the group ends. Only offsets are kept, there are no sub strings, maps or sorting
+	 * @param tokenStream
+	 * @param snippetStartIndex
+	 * @param snippetEndIndex
+	 * @param padBefore
+	 * @param padAfter
+	 * @param highlightedDocSnippet: appendable the snippet is appended to
+	 * @throws CYlpNullArgumentException
+	 * @throws IOException when appending fails
+	 * @return highlightedDocSnippet
+	 */
+	public Appendable appendThePaddedSnippet(CYlpTokenStream tokenStream, int snippetStartIndex,
+			int snippetEndIndex, String padBefore, String padAfter, Appendable highlightedDocSnippet)
+			throws CYlpNullArgumentException, IOException {
+
+		if (tokenStream == null || padBefore == null || padAfter == null || highlightedDocSnippet == null) {
+			throw new CYlpNullArgumentException(
+					"Either tokenStream or padBefore or padAfter or highlightedDocSnippet is null ");
+		}
+
+		CharSequence text = tokenStream.getTokenizedDocument().getText();
+		CYlpPaddingHandler paddingHandler = new CYlpPaddingHandler(highlightedDocSnippet, text, snippetStartIndex,
+				padBefore, padAfter);
+		forEachHighlightGroup(tokenStream, snippetStartIndex, snippetEndIndex, paddingHandler);
+
+		return highlightedDocSnippet.append(text, paddingHandler.appendedIndex, snippetEndIndex);
+	}
+
+	/**
+	 * Returns the keyword groups that getThePaddedSnippet(CYlpTokenStream, int, int, String, String) pads, as
+	 * offsets in the document: the group i starts at spans[2 * i] and ends at spans[2 * i + 1]. Renderers
+	 * of other formats (for example HTML) use the spans instead of parsing the pads out of the snippet.
+	 * Groups are found from the term IDs of whole words, so a keyword that covers several words such as
+	 * "c++" is not found, see getHighlightSpans(CYlpTokenStream, CYlpKeywordOccurrences, int, int)
+	 * @param tokenStream
+	 * @param snippetStartIndex
+	 * @param snippetEndIndex
+	 * @throws CYlpNullArgumentException
+	 * @return start and end of every keyword group of the snippet, in increasing order
+	 */
+	public int[] getHighlightSpans(CYlpTokenStream tokenStream, int snippetStartIndex, int snippetEndIndex)
+			throws CYlpNullArgumentException {
+
+		if (tokenStream == null) {
+			throw new CYlpNullArgumentException(
+					"tokenStream is null ");
+		}
+
+		CYlpSpanCollector spanCollector = new CYlpSpanCollector();
+		try {
+			forEachHighlightGroup(tokenStream, snippetStartIndex, snippetEndIndex, spanCollector);
+		} catch (IOException ioEx) {
+			//the span collector never throws IOException
+			throw new UncheckedIOException(ioEx);
+		}
+		return Arrays.copyOf(spanCollector.spans, spanCollector.spanLength);
+	}
+
+	/**
+	 * Same as getHighlightSpans(CYlpTokenStream, int, int) but also highlights the occurrences of keywords
+	 * that cover several words, for example "c++" (the words "c", "+" and "+") or "(bar)". Such keywords
+	 * have no term ID so the walk over the words does not find them. An occurrence is highlighted when it
+	 * starts and ends on word boundaries inside the snippet, a keyword found inside a longer word is not.
+	 * Groups that overlap, touch or are separated by one blank word are joined, same as the keywords of a
+	 * group found by the walk over the words
+	 * @param tokenStream
+	 * @param occurrences: keyword occurrences of the document of the token stream
+	 * @param snippetStartIndex
+	 * @param snippetEndIndex
+	 * @throws CYlpNullArgumentException
+	 * @return start and end of every keyword group of the snippet, in increasing order
+	 */
+	public int[] getHighlightSpans(CYlpTokenStream tokenStream, CYlpKeywordOccurrences occurrences,
+			int snippetStartIndex, int snippetEndIndex) throws CYlpNullArgumentException {
+
+		if (tokenStream == null || occurrences == null) {
+			throw new CYlpNullArgumentException(
+					"Either tokenStream or occurrences is null ");
+		}
+
+		int[] termSpans = getHighlightSpans(tokenStream, snippetStartIndex, snippetEndIndex);
+
+		//occurrences that cover several whole words, in increasing start order
+		CYlpTokenizedDocument tokenizedDoc = tokenStream.getTokenizedDocument();
+		CYlpSpanCollector occurrenceCollector = new CYlpSpanCollector();
+		for (int occurrence = occurrences.firstOccurrenceAtOrAfter(snippetStartIndex); occurrence < occurrences
+				.size() && occurrences.getStart(occurrence) < snippetEndIndex; occurrence++) {
+			int occurrenceStart = occurrences.getStart(occurrence);
+			int occurrenceEnd = occurrences.getEnd(occurrence);
+			if (occurrenceEnd > snippetEndIndex || occurrenceEnd <= occurrenceStart) {
+				continue;
+			}
+			int firstWord = tokenizedDoc.getWordIndex(occurrenceStart);
+			int lastWord = tokenizedDoc.getWordIndex(occurrenceEnd - 1);
+			if (firstWord != lastWord && tokenizedDoc.getWordStart(firstWord) == occurrenceStart
+					&& tokenizedDoc.getWordEnd(lastWord) == occurrenceEnd) {
+				occurrenceCollector.onGroup(occurrenceStart, occurrenceEnd);
+			}
+		}
+		if (occurrenceCollector.spanLength == 0) {
+			return termSpans;
+		}
+
+		//merge the two lists of groups, both are ordered by start
+		CYlpSpanCollector mergedCollector = new CYlpSpanCollector();
+		int termIndex = 0;
+		int occurrenceIndex = 0;
+		int[] occurrenceSpans = occurrenceCollector.spans;
+		while (termIndex < termSpans.length || occurrenceIndex < occurrenceCollector.spanLength) {
+			int spanStart;
+			int spanEnd;
+			if (occurrenceIndex == occurrenceCollector.spanLength
+					|| (termIndex < termSpans.length && termSpans[termIndex] <= occurrenceSpans[occurrenceIndex])) {
+				spanStart = termSpans[termIndex];
+				spanEnd = termSpans[termIndex + 1];
+				termIndex += 2;
+			} else {
+				spanStart = occurrenceSpans[occurrenceIndex];
+				spanEnd = occurrenceSpans[occurrenceIndex + 1];
+				occurrenceIndex += 2;
+			}
+			int lastEnd = mergedCollector.spanLength - 1;
+			if (lastEnd > 0 && (spanStart <= mergedCollector.spans[lastEnd]
+					|| isBlankWord(tokenStream, mergedCollector.spans[lastEnd], spanStart))) {
+				mergedCollector.spans[lastEnd] = Math.max(mergedCollector.spans[lastEnd], spanEnd);
+			} else {
+				mergedCollector.onGroup(spanStart, spanEnd);
+			}
+		}
+		return Arrays.copyOf(mergedCollector.spans, mergedCollector.spanLength);
+	}
+
+	/**
+	 * Same as getThePaddedSnippet(CYlpTokenStream, int, int, String, String) with the keyword groups of
+	 * getHighlightSpans(CYlpTokenStream, CYlpKeywordOccurrences, int, int), so keywords that cover several
+	 * words are padded too
+	 * @param tokenStream
+	 * @param occurrences: keyword occurrences of the document of the token stream
+	 * @param snippetStartIndex
+	 * @param snippetEndIndex
+	 * @param padBefore
+	 * @param padAfter
+	 * @throws CYlpNullArgumentException
+	 * @return highlighted most relevant document snippet
+	 */
+	public String getThePaddedSnippet(CYlpTokenStream tokenStream, CYlpKeywordOccurrences occurrences,
+			int snippetStartIndex, int snippetEndIndex, String padBefore, String padAfter)
+			throws CYlpNullArgumentException {
+
+		if (padBefore == null || padAfter == null) {
+			throw new CYlpNullArgumentException(
+					"Either padBefore or padAfter is null ");
+		}
+
+		int[] spans = getHighlightSpans(tokenStream, occurrences, snippetStartIndex, snippetEndIndex);
+		CharSequence text = tokenStream.getTokenizedDocument().getText();
+		StringBuilder highlightedDocSnippet = new StringBuilder(snippetEndIndex - snippetStartIndex
+				+ spans.length / 2 * (padBefore.length() + padAfter.length()));
+		int appendedIndex = snippetStartIndex;
+		for (int i = 0; i < spans.length; i += 2) {
+			highlightedDocSnippet.append(text, appendedIndex, spans[i]).append(padBefore)
+					.append(text, spans[i], spans[i + 1]).append(padAfter);
+			appendedIndex = spans[i + 1];
+		}
+		return highlightedDocSnippet.append(text, appendedIndex, snippetEndIndex).toString();
+	}
+
+	/**
+	 * Returns true when the text from startIndex to endIndex is one word made of blanks
+	 */
+	private static boolean isBlankWord(CYlpTokenStream tokenStream, int startIndex, int endIndex) {
+
+		CYlpTokenizedDocument tokenizedDoc = tokenStream.getTokenizedDocument();
+		int wordIndex = tokenizedDoc.getWordIndex(startIndex);
+		return tokenizedDoc.getWordStart(wordIndex) == startIndex && tokenizedDoc.getWordEnd(wordIndex) == endIndex
+				&& tokenStream.getTermId(wordIndex) == CYlpTokenStream.BLANK;
+	}
+
+	/**
+	 * Finds the keyword groups of the snippet in one forward pass over the word boundaries of the document
+	 * and passes each one to the handler as soon as it ends, in increasing order
+	 */
+	private static void forEachHighlightGroup(CYlpTokenStream tokenStream, int snippetStartIndex,
+			int snippetEndIndex, CYlpHighlightGroupHandler groupHandler) throws IOException {
+
+		CYlpTokenizedDocument tokenizedDoc = tokenStream.getTokenizedDocument();
+		CharSequence text = tokenizedDoc.getText();
+		if (snippetStartIndex < 0 || snippetEndIndex > text.length() || snippetStartIndex > snippetEndIndex) {
+			throw new IndexOutOfBoundsException("snippet " + snippetStartIndex + " to " + snippetEndIndex
+					+ " is outside the text of length " + text.length());
+		}
+		CYlpTermDictionary termDictionary = tokenStream.getTermDictionary();
 
-		//initialize indexes
-		int currIndex = 0;		
+		//initialize indexes, they are offsets in the document
+		int currIndex = snippetStartIndex;
 		int highlightStartIndex = 0;
 		int highlightEndIndex = 0;
-				
+
 		//initialize flags
 		boolean readytoUpdate = false;
 		boolean sequenceCheckOn = false;
 
-		//STEP1: construct the map with keys as start indexes of largest keyword group and value as keyword group
-		while (currIndex != BreakIterator.DONE) {
-			//BreakIterator.DONE is returned by  next(), following(int) when either the first or last text boundary has been reached
-			// check if it is ready to put in the map
-			if (readytoUpdate) {				
-				//insert in map with startIndex as key and complete keyword group as value  
-				String keywordGroup = docSnippetToUpdate.substring(highlightStartIndex,highlightEndIndex);				
-				keywordStartIndexTable.put(highlightStartIndex,keywordGroup);
+		//the walk keeps the steps of the earlier map and replace implementation: it skips the word after
+		//every word that is not blank and drops a keyword group still open when the snippet ends on a blank
+		while (currIndex != CYlpTokenizedDocument.DONE) {
+			// check if the keyword group is ready to be padded
+			if (readytoUpdate) {
+				groupHandler.onGroup(highlightStartIndex, highlightEndIndex);
 				readytoUpdate = false;
 			}
-			
+
 			//find the end of word boundary
-			if(currIndex >=  docSnippetToUpdate.length()){
+			if (currIndex >= snippetEndIndex) {
 				break;
 			}
-			
-			int endWordBoundary = bIterator.following(currIndex) > 0 ? bIterator.following(currIndex):docSnippetToUpdate.length()-1;			
-			String currentWord = docSnippetToUpdate.substring(currIndex,endWordBoundary);			
-			
+
+			int endWordBoundary = Math.min(tokenizedDoc.following(currIndex), snippetEndIndex);
+
+			//term ID of current word, a word cut by the snippet or by the walk is looked up in the dictionary
+			int wordIndex = tokenizedDoc.getWordIndex(currIndex);
+			int currentTermId = tokenizedDoc.getWordStart(wordIndex) == currIndex
+					&& tokenizedDoc.getWordEnd(wordIndex) == endWordBoundary ? tokenStream.getTermId(wordIndex)
+					: CYlpTokenStream.getTermId(termDictionary, text, currIndex, endWordBoundary);
+
 			//check if current word is space
-			spaceMatcher = spaceMatchpattern.matcher(currentWord);
-			if(spaceMatcher.matches()){				
-				//update currIndex
-				currIndex = currIndex+currentWord.length() ;
-				//skip
+			if (currentTermId == CYlpTokenStream.BLANK) {
+				currIndex = endWordBoundary;
 				continue;
 			}
 
-			//it is not a space let the keyword comparision begin...
-			
-			keyWordmatcher = keyWordMatchpattern.matcher(currentWord);		
-			if (keyWordmatcher.matches()) {
-
+			if (currentTermId != CYlpTokenStream.NO_TERM) {
 				// only store start index of first match in a sequence
 				if (!sequenceCheckOn) {
 					highlightStartIndex = currIndex;
@@ -684,56 +1799,210 @@ public class CYlpSearchUtil {
 					sequenceCheckOn = false;
 					readytoUpdate = true;
 				}
+			}
 
-			}	
-			
-			int indexToSet = bIterator.next();
-			currIndex = indexToSet == lengthOfDocSnippet ? lengthOfDocSnippet -1 :indexToSet ;
-			
-			//special case to handle pre-mature exit
-			if(currIndex == -1){
-				if (sequenceCheckOn) {				
-					//insert in map with startIndex as key and complete keyword group as value  
-					highlightEndIndex = docSnippetToUpdate.length();
-					String keywordGroup = docSnippetToUpdate.substring(highlightStartIndex,highlightEndIndex);				
-					keywordStartIndexTable.put(highlightStartIndex,keywordGroup);
-					readytoUpdate = false;
+			//move to the boundary after end of the word
+			if (endWordBoundary == snippetEndIndex) {
+				//special case to handle pre-mature exit
+				if (sequenceCheckOn) {
+					groupHandler.onGroup(highlightStartIndex, snippetEndIndex);
 				}
-				
+				currIndex = CYlpTokenizedDocument.DONE;
+			} else {
+				int indexToSet = Math.min(tokenizedDoc.following(endWordBoundary), snippetEndIndex);
+				currIndex = indexToSet == snippetEndIndex ? snippetEndIndex - 1 : indexToSet;
 			}
-			
 		}
+	}
 
-		//STEP2: now parse the map and replace the keyword groups
-		Set<Integer> keySet = keywordStartIndexTable.keySet();
-		
-		// sort - this is required to establish order, for adj index as we update
-		ArrayList<Integer> indexList = new ArrayList<Integer>(keySet);	
-		Collections.sort(indexList);
-		
-		int lengthOfEachPaddingGroup = padBefore.length() + padAfter.length(); 
-		int countOfPaddingGroupsAdded = 0;
-		
-		for (int currentIndex : indexList) {
-
-			String currKeywordGroup = keywordStartIndexTable.get(currentIndex);
-			String keywordGroupWithPadding = padBefore+currKeywordGroup+padAfter;
-			
-			//since we are adding padding we need to adj indexes
-			int indexAdj = countOfPaddingGroupsAdded*lengthOfEachPaddingGroup;
-			int currHightlightIndex = currentIndex >0 ? currentIndex+indexAdj:0;
-			int endIndex = currHightlightIndex+currKeywordGroup.length();
-			
-			//we split the doc into 2 pars: docBeforeKeyword, docAfterKeyword. We insert our padded keyword group inbetween
-			highlightedDocSnippet = highlightedDocSnippet.substring(0, currHightlightIndex)
-									+keywordGroupWithPadding+ highlightedDocSnippet.substring(endIndex,highlightedDocSnippet.length());
-									
-			countOfPaddingGroupsAdded++;
-			
+	/**
+	 * Receives the keyword groups found by forEachHighlightGroup()
+	 */
+	private interface CYlpHighlightGroupHandler {
+
+		void onGroup(int highlightStartIndex, int highlightEndIndex) throws IOException;
+	}
+
+	/**
+	 * Appends the text before each keyword group followed by the padded group
+	 */
+	private static final class CYlpPaddingHandler implements CYlpHighlightGroupHandler {
+
+		private final Appendable highlightedDocSnippet;
+		private final CharSequence text;
+		private final String padBefore;
+		private final String padAfter;
+
+		//end of the text already appended
+		private int appendedIndex;
+
+		CYlpPaddingHandler(Appendable highlightedDocSnippet, CharSequence text, int snippetStartIndex,
+				String padBefore, String padAfter) {
+			this.highlightedDocSnippet = highlightedDocSnippet;
+			this.text = text;
+			this.appendedIndex = snippetStartIndex;
+			this.padBefore = padBefore;
+			this.padAfter = padAfter;
 		}
-		
-		return highlightedDocSnippet;
 
+		public void onGroup(int highlightStartIndex, int highlightEndIndex) throws IOException {
+			highlightedDocSnippet.append(text, appendedIndex, highlightStartIndex).append(padBefore)
+					.append(text, highlightStartIndex, highlightEndIndex).append(padAfter);
+			appendedIndex = highlightEndIndex;
+		}
+	}
+
+	/**
+	 * Keeps the start and end of each keyword group
+	 */
+	private static final class CYlpSpanCollector implements CYlpHighlightGroupHandler {
+
+		private int[] spans = new int[8];
+		private int spanLength;
+
+		public void onGroup(int highlightStartIndex, int highlightEndIndex) {
+			if (spanLength == spans.length) {
+				spans = Arrays.copyOf(spans, spanLength * 2);
+			}
+			spans[spanLength++] = highlightStartIndex;
+			spans[spanLength++] = highlightEndIndex;
+		}
+	}
+
+
+	/**
+	 * Scan window kept by proximitySearch(CYlpTokenizedDocument, CYlpKeywordOccurrences, Map, int, int)
+	 */
+	private static final class CYlpProximityWindow {
+
+		//fewer keyword occurences first, then the window scanned last
+		private static final Comparator<CYlpProximityWindow> WORST_FIRST = new Comparator<CYlpProximityWindow>() {
+			public int compare(CYlpProximityWindow first, CYlpProximityWindow second) {
+				if (first.countOfAllKeywords != second.countOfAllKeywords) {
+					return first.countOfAllKeywords < second.countOfAllKeywords ? -1 : 1;
+				}
+				return first.scanOrder > second.scanOrder ? -1 : first.scanOrder < second.scanOrder ? 1 : 0;
+			}
+		};
+
+		private final int countOfAllKeywords;
+		private final String keyword;
+		private final EylpScanMethod scanMethod;
+		private final int startIndex;
+		private final int endIndex;
+		private final int scanOrder;
+
+		private CYlpProximityWindow(int countOfAllKeywords, String keyword, EylpScanMethod scanMethod,
+				int startIndex, int endIndex, int scanOrder) {
+			this.countOfAllKeywords = countOfAllKeywords;
+			this.keyword = keyword;
+			this.scanMethod = scanMethod;
+			this.startIndex = startIndex;
+			this.endIndex = endIndex;
+			this.scanOrder = scanOrder;
+		}
+
+		/**
+		 * Returns the window the sequential proximitySearch() keeps of the two: more keyword occurences, or
+		 * the one scanned first. Either window can be null when its segment has no keyword occurence
+		 */
+		private static CYlpProximityWindow getBetterWindow(CYlpProximityWindow first, CYlpProximityWindow second) {
+			if (first == null || second == null) {
+				return first == null ? second : first;
+			}
+			return WORST_FIRST.compare(first, second) < 0 ? second : first;
+		}
+	}
+
+	/**
+	 * Fork-join task of the parallel proximitySearch() that scores the windows around the start indexes from
+	 * segmentStart (inclusive) to segmentEnd (exclusive). The range is split in two until it is at most
+	 * segmentLength characters long, the tables and the document are only read so segments share them
+	 */
+	private final class CYlpProximitySegmentTask extends RecursiveTask<CYlpProximityWindow> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final CYlpTokenizedDocument tokenizedDoc;
+		private final CYlpKeywordOccurrences occurrences;
+		private final String[] keywords;
+		private final int[][] startIndexes;
+		private final int[] firstScanOrders;
+		private final int maxLength;
+		private final int segmentLength;
+		private final int segmentStart;
+		private final int segmentEnd;
+
+		//windows scored by the task and its sub tasks, read after the task is joined
+		private int windowsScored;
+
+		private CYlpProximitySegmentTask(CYlpTokenizedDocument tokenizedDoc, CYlpKeywordOccurrences occurrences,
+				String[] keywords, int[][] startIndexes, int[] firstScanOrders, int maxLength, int segmentLength,
+				int segmentStart, int segmentEnd) {
+			this.tokenizedDoc = tokenizedDoc;
+			this.occurrences = occurrences;
+			this.keywords = keywords;
+			this.startIndexes = startIndexes;
+			this.firstScanOrders = firstScanOrders;
+			this.maxLength = maxLength;
+			this.segmentLength = segmentLength;
+			this.segmentStart = segmentStart;
+			this.segmentEnd = segmentEnd;
+		}
+
+		@Override
+		protected CYlpProximityWindow compute() {
+
+			if (segmentEnd - segmentStart <= segmentLength) {
+				return searchSegment();
+			}
+
+			int segmentMid = (segmentStart + segmentEnd) >>> 1;
+			CYlpProximitySegmentTask secondHalf = new CYlpProximitySegmentTask(tokenizedDoc, occurrences, keywords,
+					startIndexes, firstScanOrders, maxLength, segmentLength, segmentMid, segmentEnd);
+			secondHalf.fork();
+			CYlpProximitySegmentTask firstHalf = new CYlpProximitySegmentTask(tokenizedDoc, occurrences, keywords,
+					startIndexes, firstScanOrders, maxLength, segmentLength, segmentStart, segmentMid);
+			CYlpProximityWindow firstBestWindow = firstHalf.compute();
+			CYlpProximityWindow secondBestWindow = secondHalf.join();
+			windowsScored = firstHalf.windowsScored + secondHalf.windowsScored;
+			return CYlpProximityWindow.getBetterWindow(firstBestWindow, secondBestWindow);
+		}
+
+		/**
+		 * Scores the windows of the segment in scan order, so the first window with the maximum count is kept
+		 */
+		private CYlpProximityWindow searchSegment() {
+
+			int docLength = tokenizedDoc.length();
+			CYlpProximityWindow bestWindow = null;
+			for (int keywordIndex = 0; keywordIndex < keywords.length; keywordIndex++) {
+				int[] currentStartIndexes = startIndexes[keywordIndex];
+				int first = Arrays.binarySearch(currentStartIndexes, segmentStart);
+				for (int i = first < 0 ? -first - 1 : first; i < currentStartIndexes.length
+						&& currentStartIndexes[i] < segmentEnd; i++) {
+					int currentIndex = currentStartIndexes[i];
+					for (int method = 0; method < SCAN_METHODS.length; method++) {
+						EylpScanMethod scanMethod = SCAN_METHODS[method];
+						int startIndex = getRoundedOffStartIndex(tokenizedDoc,
+								getScanStartIndex(scanMethod, currentIndex, maxLength, docLength));
+						int endIndex = getRoundedOffEndIndex(tokenizedDoc,
+								getScanEndIndex(scanMethod, currentIndex, maxLength, docLength));
+
+						int currCountOfAllKeywords = occurrences.countMatchesWithin(startIndex, endIndex);
+						windowsScored++;
+						if (currCountOfAllKeywords > 0 && (bestWindow == null
+								|| currCountOfAllKeywords > bestWindow.countOfAllKeywords)) {
+							//same scan order as the sequential search, which counts from 1
+							bestWindow = new CYlpProximityWindow(currCountOfAllKeywords, keywords[keywordIndex],
+									scanMethod, startIndex, endIndex,
+									firstScanOrders[keywordIndex] + i * SCAN_METHODS.length + method + 1);
+						}
+					}
+				}
+			}
+			return bestWindow;
+		}
 	}
 
 }
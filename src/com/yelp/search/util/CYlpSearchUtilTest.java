@@ -2,12 +2,15 @@ package com.yelp.search.util;
 
 import static org.junit.Assert.*;
 
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.After;
 import org.junit.Before;
@@ -15,7 +18,12 @@ import org.junit.Test;
 
 import com.yelp.enums.EylpScanMethod;
 import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.document.CYlpTokenStream;
+import com.yelp.search.document.CYlpTokenizedDocument;
 import com.yelp.search.keyword.CYlpProximitySearchKeyword;
+import com.yelp.search.match.CYlpKeywordAutomaton;
+import com.yelp.search.match.CYlpKeywordOccurrences;
+import com.yelp.search.query.CYlpCompiledQuery;
 
 public class CYlpSearchUtilTest {
 
@@ -51,6 +59,26 @@ public class CYlpSearchUtilTest {
 
 	}
 
+	/**
+	 * Tests removeNonQualitativeTermsInSearch() with the English stopword list and a delimiter that
+	 * also splits at commas
+	 * @throws Exception
+	 */
+	@Test
+	public void testRemoveNonQualitativeTermsWithStopwordSet() throws Exception {
+
+		CYlpSearchUtil englishSearchUtil = new CYlpSearchUtil(CYlpStopwordSet.fromResource("stopwords/en.txt"),
+				new CYlpDelimiterTokenizer("[\\s,]+"));
+		assertEquals("Expecting English stopwords to be removed", Arrays.asList("best", "deep", "dish", "pizza"),
+				englishSearchUtil.removeNonQualitativeTermsInSearch("The best deep dish, with pizza"));
+		assertEquals("Expecting delimiter regex of the tokenizer", "[\\s,]+", englishSearchUtil.getDelimiterRegex());
+
+		// tokens should be same as String.split()
+		String searchString = "  deep\tdish  pizza ";
+		assertArrayEquals("Expecting same tokens as split", searchString.split(testSearchUtil.getDelimiterRegex()),
+				CYlpDelimiterTokenizer.getDefault().tokenize(searchString));
+	}
+
 	@Test
 	/**
 	 * This unit test tests expectedNonQualitativeTerms() which returns list of
@@ -267,6 +295,84 @@ public class CYlpSearchUtilTest {
 				"Expecting start indexes from function to match expected(l=1)",
 				expectedKeywordStartIndexes6, actualStartIndexesFromFunction);
 
+		/***********************************************************************
+		 * Test 4 with keywords that are not valid regex, they are matched as text
+		 **********************************************************************/
+
+		keywordMatchMap = testSearchUtil.getFirstMatchingKeyword("I code C++ (bar) all day",
+				testSearchUtil.getCombinations(Arrays.asList("c++", "(bar")));
+		assertEquals("Expecting combination of both keywords", Arrays.asList(7), keywordMatchMap.get("c++ (bar"));
+
+	}
+
+	/**
+	 * Tests getFirstMatchingKeyword() that uses the keyword automaton, for every document the map
+	 * should be same as the one returned when searching the combination table
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testGetFirstMatchingKeywordWithAutomaton() throws CYlpNullArgumentException {
+
+		List<String> keywordList = Arrays.asList("deep", "dish", "pizza");
+		Map combinationTable = testSearchUtil.getCombinations(keywordList);
+		CYlpKeywordAutomaton keywordAutomaton = new CYlpKeywordAutomaton(keywordList);
+
+		String[] docStrings = {
+				"I like fish. Little star's deep dish pizza sure is fantastic. Dogs are funny. Deep Dish pizza is yummy",
+				"This pizza is great, is it a deep dish one? The rest, as they say, is history. Deep Pizza is also good. "
+						+ "Pizza deep will be ignored but dEEp piZZa would not be",
+				"This pizza is great, is it a deep brand one? Dish is also good. Pizza deep will not be ignored this time",
+				"pizzapizza pizza",
+				"no keywords in here" };
+
+		for (String docString : docStrings) {
+			Map expectedMatchMap = testSearchUtil.getFirstMatchingKeyword(docString, combinationTable);
+			Map<String, List> actualMatchMap = testSearchUtil.getFirstMatchingKeyword(docString, keywordAutomaton);
+			assertEquals("Expecting automaton to find same keyword groups as regex for: " + docString,
+					expectedMatchMap, actualMatchMap);
+		}
+
+		// repeated keyword, combination of the keyword with itself
+		keywordList = Arrays.asList("pizza", "pizza");
+		combinationTable = testSearchUtil.getCombinations(keywordList);
+		keywordAutomaton = new CYlpKeywordAutomaton(keywordList);
+		String docString = "pizza pizza pizza pizza";
+		assertEquals("Expecting repeated keywords to be matched as combination",
+				testSearchUtil.getFirstMatchingKeyword(docString, combinationTable),
+				testSearchUtil.getFirstMatchingKeyword(docString, keywordAutomaton));
+	}
+
+	/**
+	 * Tests getKeywordCoverageWindows(), the windows returned should cover the most distinct keywords
+	 * possible within MAX_LENGTH and be labelled with the covered keywords in query order
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testGetKeywordCoverageWindows() throws CYlpNullArgumentException {
+
+		final String docString = "I like fish. Little star's deep dish pizza sure is fantastic."
+				+ " Dogs are funny. Deep Dish pizza is yummy";
+		CYlpKeywordAutomaton keywordAutomaton = new CYlpKeywordAutomaton(Arrays.asList("deep", "dish", "pizza"));
+		CYlpKeywordOccurrences occurrences = keywordAutomaton.findOccurrences(docString);
+
+		// with 100 characters every window covers all three keywords, one window per keyword occurence
+		Map<String, List> coverageMap = testSearchUtil.getKeywordCoverageWindows(docString, occurrences, 100);
+		assertEquals("Expecting only one entry in map ", 1, coverageMap.size());
+		assertArrayEquals("Expecting start indexes of minimal windows covering all keywords",
+				new Integer[] { 27, 32, 37, 78 }, coverageMap.get("deep dish pizza").toArray());
+
+		// with 10 characters a window covers only two keywords
+		coverageMap = testSearchUtil.getKeywordCoverageWindows(docString, occurrences, 10);
+		assertEquals("Expecting two entries in map ", 2, coverageMap.size());
+		assertArrayEquals("Expecting start indexes of windows covering deep dish",
+				new Integer[] { 27, 78 }, coverageMap.get("deep dish").toArray());
+		assertArrayEquals("Expecting start indexes of windows covering dish pizza",
+				new Integer[] { 32, 83 }, coverageMap.get("dish pizza").toArray());
+
+		// no occurences
+		occurrences = keywordAutomaton.findOccurrences("no keywords in here");
+		assertTrue("Expecting empty map when there are no occurences",
+				testSearchUtil.getKeywordCoverageWindows("no keywords in here", occurrences, 100).isEmpty());
 	}
 
 	/**
@@ -286,6 +392,12 @@ public class CYlpSearchUtilTest {
 		assertEquals("Expected the regex expression to match ", expectedOutput,
 				actualOutputReturnedByFunc);
 
+		// keywords with regex meta characters are quoted, the regex matches them as plain text
+		String quotedRegex = testSearchUtil.getRegexToMatchOneOrMoreKeywords("c++ (bar *great*");
+		assertEquals("Expecting quoted keywords", "(?i)\\Qc++\\E|(?i)\\Q(bar\\E|(?i)\\Q*great*\\E", quotedRegex);
+		assertEquals("Expecting keywords to match as text", 3,
+				testSearchUtil.getCountOfAllKeywords("I code C++ (BAR, it is *great*", quotedRegex));
+
 	}
 
 	/**
@@ -357,6 +469,260 @@ public class CYlpSearchUtilTest {
 
 	}
 
+	/**
+	 * tests proximitySearch() that scores the scan windows from keyword occurrences found once in the
+	 * document, expecting the window with maximum keyword count and its start index in the document
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testProximitySearchWithOccurrences() throws CYlpNullArgumentException {
+
+		final String docToSearch = "I like fish. Little star's deep dish pizza sure is fantastic."
+				+ " Dogs are funny. Deep Dish pizza is yummy. Pizzas are full of nutrition,esp deep dish pizzas are good. They can be"
+				+ "made using deep dish too. I have a flat dish. Can we order pizza tonight?";
+
+		Map<String, List> KeywordIndexTable = new HashMap<String, List>();
+		KeywordIndexTable.put("deep dish pizza", Arrays.asList(27, 78, 137));
+
+		CYlpKeywordAutomaton keywordAutomaton = new CYlpKeywordAutomaton(Arrays.asList("Deep", "Dish", "Pizza"));
+		CYlpProximitySearchKeyword outputProximitySearchKeyword = testSearchUtil.proximitySearch(docToSearch,
+				keywordAutomaton.findOccurrences(docToSearch), KeywordIndexTable, 100);
+
+		assertEquals("Expecting max keyword count", 7,
+				outputProximitySearchKeyword.getNumberOfAllKeywordsOccurences());
+		assertEquals("Expecting scan method of best snippet", EylpScanMethod.BACKWARDSCAN,
+				outputProximitySearchKeyword.getScanMethodForMaxOccurances());
+		assertEquals("Expecting start index of best snippet", 26,
+				outputProximitySearchKeyword.getStartIndexWithMaxKeywordOccurences());
+		assertEquals("Expecting best snippet",
+				" deep dish pizza sure is fantastic. Dogs are funny. Deep Dish pizza is yummy. Pizzas are full of nutrition",
+				outputProximitySearchKeyword.getDocumentSnippet());
+
+		// should be same as counting keywords in each window with regex
+		assertEquals("Expecting same snippet as proximity search with search string",
+				testSearchUtil.proximitySearch(docToSearch, "Deep Dish Pizza", KeywordIndexTable, 100)
+						.getDocumentSnippet(), outputProximitySearchKeyword.getDocumentSnippet());
+	}
+
+	/**
+	 * Tests the function proximitySearch() that returns the best windows that do not overlap, the window
+	 * around the second occurence overlaps both better windows so only two are returned
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testProximitySearchTopWindows() throws CYlpNullArgumentException {
+
+		final String docToSearch = "I like fish. Little star's deep dish pizza sure is fantastic."
+				+ " Dogs are funny. Deep Dish pizza is yummy. Pizzas are full of nutrition,esp deep dish pizzas are good. They can be"
+				+ "made using deep dish too. I have a flat dish. Can we order pizza tonight?";
+
+		Map<String, List> KeywordIndexTable = new HashMap<String, List>();
+		KeywordIndexTable.put("deep dish pizza", Arrays.asList(27, 78, 137));
+
+		CYlpKeywordAutomaton keywordAutomaton = new CYlpKeywordAutomaton(Arrays.asList("Deep", "Dish", "Pizza"));
+		CYlpKeywordOccurrences occurrences = keywordAutomaton.findOccurrences(docToSearch);
+		CYlpTokenizedDocument tokenizedDoc = new CYlpTokenizedDocument(docToSearch);
+		List<CYlpProximitySearchKeyword> outputProximitySearchKeywords = testSearchUtil.proximitySearch(tokenizedDoc,
+				occurrences, KeywordIndexTable, 60, 3);
+
+		assertEquals("Expecting two windows that do not overlap", 2, outputProximitySearchKeywords.size());
+		assertEquals("Expecting first window to be the best window",
+				testSearchUtil.proximitySearch(tokenizedDoc, occurrences, KeywordIndexTable, 60).getDocumentSnippet(),
+				outputProximitySearchKeywords.get(0).getDocumentSnippet());
+		assertEquals("Expecting second best window", " deep dish pizzas are good. They can bemade using deep dish too",
+				outputProximitySearchKeywords.get(1).getDocumentSnippet());
+		assertEquals("Expecting start index of second best window", 136,
+				outputProximitySearchKeywords.get(1).getStartIndexWithMaxKeywordOccurences());
+
+		// asking for one window is same as proximity search
+		assertEquals("Expecting only the best window", outputProximitySearchKeywords.get(0).getDocumentSnippet(),
+				testSearchUtil.proximitySearch(tokenizedDoc, occurrences, KeywordIndexTable, 60, 1).get(0)
+						.getDocumentSnippet());
+	}
+
+	/**
+	 * Tests top windows when the best window overlaps two windows that do not overlap each other and were
+	 * scored before it, the windows those two windows shadowed should still be returned
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testProximitySearchTopWindowsOverlapping() throws CYlpNullArgumentException {
+
+		// windows of the first and the last group are scored before the best window, which has the last two
+		// groups and overlaps them
+		final String docToSearch = "Deep dish pizza was good. We came back for deep dish pizza, more pizza and deep dish "
+				+ "pizza again";
+
+		Map<String, List> KeywordIndexTable = new HashMap<String, List>();
+		KeywordIndexTable.put("deep dish pizza", Arrays.asList(0, 5, 10, 43, 48, 53, 65, 75, 80, 85));
+
+		CYlpKeywordAutomaton keywordAutomaton = new CYlpKeywordAutomaton(Arrays.asList("Deep", "Dish", "Pizza"));
+		CYlpKeywordOccurrences occurrences = keywordAutomaton.findOccurrences(docToSearch);
+		CYlpTokenizedDocument tokenizedDoc = new CYlpTokenizedDocument(docToSearch);
+		List<CYlpProximitySearchKeyword> outputProximitySearchKeywords = testSearchUtil.proximitySearch(tokenizedDoc,
+				occurrences, KeywordIndexTable, 40, 3);
+
+		assertEquals("Expecting two windows that do not overlap", 2, outputProximitySearchKeywords.size());
+		assertEquals("Expecting best window first", "deep dish pizza, more pizza and deep dish pizza",
+				outputProximitySearchKeywords.get(0).getDocumentSnippet());
+		assertEquals("Expecting keyword count of best window", 7,
+				outputProximitySearchKeywords.get(0).getNumberOfAllKeywordsOccurences());
+		assertEquals("Expecting window before the best window second", "Deep dish pizza was good. We came back for",
+				outputProximitySearchKeywords.get(1).getDocumentSnippet());
+		assertEquals("Expecting keyword count of second window", 3,
+				outputProximitySearchKeywords.get(1).getNumberOfAllKeywordsOccurences());
+	}
+
+	/**
+	 * Tests that the parallel proximitySearch() returns the window of the sequential one for long documents,
+	 * with tables of both selection engines, several snippet lengths and pools, and a document where every
+	 * window has the same keyword count so the scan order decides
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testParallelProximitySearch() throws CYlpNullArgumentException {
+
+		String[] words = { "deep", "dish", "pizza", "was", "good", "and", "the", "crust", "menu", "of", "salad" };
+		Random random = new Random(25);
+		StringBuilder longDoc = new StringBuilder();
+		while (longDoc.length() < 20 * CYlpSearchUtil.MIN_SEGMENT_LENGTH) {
+			longDoc.append(words[random.nextInt(words.length)]).append(random.nextInt(12) == 0 ? ". " : " ");
+		}
+		StringBuilder repeatedDoc = new StringBuilder();
+		while (repeatedDoc.length() < 5 * CYlpSearchUtil.MIN_SEGMENT_LENGTH) {
+			repeatedDoc.append("Their deep dish pizza was good. ");
+		}
+
+		CYlpKeywordAutomaton keywordAutomaton = new CYlpKeywordAutomaton(Arrays.asList("deep", "dish", "pizza"));
+		// one keyword gives a start index for each of its occurences, enough windows for many segments
+		CYlpKeywordAutomaton[] keywordAutomatons = { keywordAutomaton,
+				new CYlpKeywordAutomaton(Arrays.asList("pizza")) };
+		ForkJoinPool[] pools = { new ForkJoinPool(1), new ForkJoinPool(4) };
+		try {
+			for (String docToSearch : new String[] { longDoc.toString(), repeatedDoc.toString() }) {
+				for (CYlpKeywordAutomaton currentAutomaton : keywordAutomatons) {
+					CYlpKeywordOccurrences occurrences = currentAutomaton.findOccurrences(docToSearch);
+					CYlpTokenizedDocument tokenizedDoc = new CYlpTokenizedDocument(docToSearch);
+					for (int maxLength : new int[] { 60, 100, 3 * CYlpSearchUtil.MIN_SEGMENT_LENGTH }) {
+						List<Map<String, List>> KeywordIndexTables = Arrays.asList(
+								testSearchUtil.getFirstMatchingKeyword(docToSearch, occurrences),
+								testSearchUtil.getKeywordCoverageWindows(docToSearch, occurrences, maxLength));
+						for (Map<String, List> KeywordIndexTable : KeywordIndexTables) {
+							CYlpProximitySearchKeyword sequentialKeyword = testSearchUtil.proximitySearch(
+									tokenizedDoc, occurrences, KeywordIndexTable, maxLength);
+							for (ForkJoinPool pool : pools) {
+								CYlpProximitySearchKeyword parallelKeyword = testSearchUtil.proximitySearch(
+										tokenizedDoc, occurrences, KeywordIndexTable, maxLength, pool);
+								assertEquals("Expecting same start index",
+										sequentialKeyword.getStartIndexWithMaxKeywordOccurences(),
+										parallelKeyword.getStartIndexWithMaxKeywordOccurences());
+								assertEquals("Expecting same snippet", sequentialKeyword.getDocumentSnippet(),
+										parallelKeyword.getDocumentSnippet());
+								assertEquals("Expecting same keyword count",
+										sequentialKeyword.getNumberOfAllKeywordsOccurences(),
+										parallelKeyword.getNumberOfAllKeywordsOccurences());
+								assertEquals("Expecting same scan method", sequentialKeyword.getScanMethodForMaxOccurances(),
+										parallelKeyword.getScanMethodForMaxOccurances());
+								assertEquals("Expecting same keyword", sequentialKeyword.getProximitySearchkeyword(),
+										parallelKeyword.getProximitySearchkeyword());
+							}
+						}
+					}
+				}
+			}
+
+			// every window ties, the first one scanned is returned
+			CYlpKeywordOccurrences occurrences = keywordAutomaton.findOccurrences(repeatedDoc);
+			CYlpProximitySearchKeyword parallelKeyword = testSearchUtil.proximitySearch(
+					new CYlpTokenizedDocument(repeatedDoc), occurrences,
+					testSearchUtil.getFirstMatchingKeyword(repeatedDoc, occurrences), 60, pools[1]);
+			assertEquals("Expecting window around the first keyword group", 6,
+					parallelKeyword.getStartIndexWithMaxKeywordOccurences());
+
+			try {
+				testSearchUtil.proximitySearch(new CYlpTokenizedDocument(repeatedDoc), occurrences,
+						new HashMap<String, List>(), 60, (ForkJoinPool) null);
+				fail("Should not get here, expecting it to throw exception");
+			} catch (CYlpNullArgumentException nullArgEx) {
+				// exception means we are ok
+				assertTrue(1 == 1);
+			}
+		} finally {
+			for (ForkJoinPool pool : pools) {
+				pool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Tests that getFirstMatchingKeyword() and proximitySearch() stop when the work budget runs out and flag
+	 * the best result found so far as degraded. A query repeating one keyword 25 times has millions of
+	 * combinations in a run of ten occurences of the keyword
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testSearchWithWorkBudget() throws CYlpNullArgumentException {
+
+		List<String> keywordList = new ArrayList<String>();
+		StringBuilder runOfKeywords = new StringBuilder();
+		for (int i = 0; i < 25; i++) {
+			keywordList.add("pizza");
+		}
+		for (int i = 0; i < 10; i++) {
+			runOfKeywords.append(" pizza");
+		}
+		String docToSearch = "We ordered" + runOfKeywords + " and a salad";
+		CYlpKeywordOccurrences occurrences = new CYlpKeywordAutomaton(keywordList).findOccurrences(docToSearch);
+
+		CYlpWorkBudget budget = new CYlpWorkBudget(CYlpWorkBudget.UNLIMITED_NANOS, 100, CYlpWorkBudget.UNLIMITED);
+		Map<String, List> KeywordIndexTable = testSearchUtil.getFirstMatchingKeyword(docToSearch, occurrences,
+				budget);
+		assertEquals("Expecting enumeration to stop at the limit", 100, budget.getCombinations());
+		assertTrue("Expecting budget to be degraded", budget.isDegraded());
+		assertEquals("Expecting combination found before the limit", Arrays.asList(11),
+				KeywordIndexTable.get(runOfKeywords.substring(1)));
+
+		CYlpProximitySearchKeyword outputProximitySearchKeyword = testSearchUtil.proximitySearch(
+				new CYlpTokenizedDocument(docToSearch), occurrences, KeywordIndexTable, 60, budget);
+		assertTrue("Expecting result to be flagged as degraded", outputProximitySearchKeyword.isDegraded());
+		assertTrue("Expecting snippet with the keywords",
+				outputProximitySearchKeyword.getDocumentSnippet().contains(runOfKeywords.substring(1)));
+
+		// windows of the first start index are always scored, then one more window fits in the budget
+		final String topWindowsDoc = "I like fish. Little star's deep dish pizza sure is fantastic."
+				+ " Dogs are funny. Deep Dish pizza is yummy. Pizzas are full of nutrition,esp deep dish pizzas are good.";
+		KeywordIndexTable = new HashMap<String, List>();
+		KeywordIndexTable.put("deep dish pizza", Arrays.asList(27, 78, 137));
+		occurrences = new CYlpKeywordAutomaton(Arrays.asList("Deep", "Dish", "Pizza")).findOccurrences(topWindowsDoc);
+		CYlpTokenizedDocument tokenizedDoc = new CYlpTokenizedDocument(topWindowsDoc);
+
+		budget = CYlpWorkBudget.ofMaxWindowsScored(0);
+		outputProximitySearchKeyword = testSearchUtil.proximitySearch(tokenizedDoc, occurrences, KeywordIndexTable,
+				60, budget);
+		assertEquals("Expecting windows of the first start index", 3, budget.getWindowsScored());
+		assertTrue("Expecting result to be flagged as degraded", outputProximitySearchKeyword.isDegraded());
+		assertTrue("Expecting window around the first start index",
+				outputProximitySearchKeyword.getDocumentSnippet().contains("deep dish pizza"));
+
+		budget = new CYlpWorkBudget(CYlpWorkBudget.UNLIMITED_NANOS, CYlpWorkBudget.UNLIMITED,
+				CYlpWorkBudget.UNLIMITED);
+		outputProximitySearchKeyword = testSearchUtil.proximitySearch(tokenizedDoc, occurrences, KeywordIndexTable,
+				60, budget);
+		assertFalse("Expecting unlimited budget not to be degraded", outputProximitySearchKeyword.isDegraded());
+		assertEquals("Expecting every window to be scored", 9, budget.getWindowsScored());
+		assertEquals("Expecting same snippet as without budget",
+				testSearchUtil.proximitySearch(tokenizedDoc, occurrences, KeywordIndexTable, 60).getDocumentSnippet(),
+				outputProximitySearchKeyword.getDocumentSnippet());
+
+		try {
+			testSearchUtil.getFirstMatchingKeyword(docToSearch, occurrences, null);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
 	/**
 	 * Tests the function getRoundedOffDocSubString(), sets up a sample string
 	 * which is truncated un-evenly at word boundaries this string is passed to
@@ -411,6 +777,75 @@ public class CYlpSearchUtilTest {
 
 	}
 
+	/**
+	 * Tests the function appendThePaddedSnippet(), which appends the padded snippet of a section of a
+	 * token stream to a builder that already has text
+	 *
+	 * @throws Exception
+	 */
+	/**
+	 * Tests that getHighlightSpans() with the keyword occurrences adds the keywords covering several words,
+	 * a group that touches the group of a word before it is joined with it
+	 * @throws CYlpNullArgumentException
+	 */
+	@Test
+	public void testGetHighlightSpansWithOccurrences() throws CYlpNullArgumentException {
+
+		String docToSearch = "we love c++ and (bar), not abc++";
+		CYlpCompiledQuery compiledQuery = new CYlpCompiledQuery("love c++ (bar)");
+		CYlpTokenStream tokenStream = new CYlpTokenStream(new CYlpTokenizedDocument(docToSearch),
+				compiledQuery.getTermDictionary());
+		CYlpKeywordOccurrences occurrences = compiledQuery.findOccurrences(tokenStream);
+
+		assertArrayEquals("Expecting only the group of the word love", new int[] { 3, 8 },
+				testSearchUtil.getHighlightSpans(tokenStream, 0, docToSearch.length()));
+		assertArrayEquals("Expecting love c++ joined and (bar)", new int[] { 3, 11, 16, 21 },
+				testSearchUtil.getHighlightSpans(tokenStream, occurrences, 0, docToSearch.length()));
+		assertArrayEquals("Expecting no group cut by the snippet", new int[] { 3, 8 },
+				testSearchUtil.getHighlightSpans(tokenStream, occurrences, 0, 10));
+		assertEquals("Expecting padded snippet", "we <b>love c++</b> and <b>(bar)</b>, not abc++",
+				testSearchUtil.getThePaddedSnippet(docToSearch, "love c++ (bar)", "<b>", "</b>"));
+		assertEquals("Expecting keywords separated by blanks joined", "we <b>c++  (bar) love </b>here, <b>c++</b>",
+				testSearchUtil.getThePaddedSnippet("we c++  (bar) love here, c++", "love c++ (bar)", "<b>", "</b>"));
+	}
+
+	@Test
+	public void testAppendThePaddedSnippet() throws Exception{
+
+		final String docString = "Dogs are funny. Deep Dish pizza is yummy. Dish should be deep. ";
+		CYlpCompiledQuery compiledQuery = new CYlpCompiledQuery("deep dish pizza");
+		CYlpTokenStream tokenStream = new CYlpTokenStream(new CYlpTokenizedDocument(docString),
+				compiledQuery.getTermDictionary());
+
+		int snippetStartIndex = docString.indexOf("Deep");
+		int snippetEndIndex = docString.indexOf("be deep");
+		StringBuilder highlightedSnippet = new StringBuilder("...");
+		assertSame("Expecting the builder passed as argument", highlightedSnippet, testSearchUtil
+				.appendThePaddedSnippet(tokenStream, snippetStartIndex, snippetEndIndex, "<b>", "</b>", highlightedSnippet));
+		assertEquals("Expecting the padded snippet after the text of the builder",
+				"...<b>Deep Dish pizza </b>is yummy. <b>Dish </b>should ", highlightedSnippet.toString());
+		assertEquals("Expecting same snippet as getThePaddedSnippet()",
+				testSearchUtil.getThePaddedSnippet(docString.substring(snippetStartIndex, snippetEndIndex),
+						compiledQuery, "<b>", "</b>"),
+				testSearchUtil.getThePaddedSnippet(tokenStream, snippetStartIndex, snippetEndIndex, "<b>", "</b>"));
+
+		StringWriter highlightedSnippetWriter = new StringWriter();
+		testSearchUtil.appendThePaddedSnippet(tokenStream, 0, docString.length(), "<b>", "</b>",
+				(Appendable) highlightedSnippetWriter);
+		assertEquals("Expecting same snippet from a writer",
+				testSearchUtil.getThePaddedSnippet(docString, compiledQuery, "<b>", "</b>"),
+				highlightedSnippetWriter.toString());
+
+		try {
+			testSearchUtil.appendThePaddedSnippet(tokenStream, 0, docString.length(), "<b>", "</b>",
+					(StringBuilder) null);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
 	@After
 	public void tearDown() {
 		testSearchUtil = null;
@@ -0,0 +1,217 @@
+package com.yelp.search.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * Immutable set of non qualitative terms (stopwords), words that do not add value to search and are removed
+ * from the query. Lookups are hash lookups so filtering a query costs O(1) per word however long the list is.
+ *
+ * Lists are text files with one term per line, blank lines and lines starting with # are ignored. As a
+ * CONVENTION terms are kept UPPERCASED, terms of the file are upper cased when they are loaded. Lists that are
+ * bundled with the classes are in the stopwords folder next to this class:
+ *
+ * 	default.txt: the terms removed by CYlpSearchUtil unless another set is passed to it
+ * 	en.txt: common English words
+ *
+ * Lists loaded with fromResource() are loaded once and shared, instances can be shared between threads.
+ *
+ */
+public final class CYlpStopwordSet {
+
+	//resource of the terms used when no other set is given, relative to this class
+	public static final String DEFAULT_RESOURCE = "stopwords/default.txt";
+
+	//sets loaded from resources, by resource name
+	private static final ConcurrentMap<String, CYlpStopwordSet> RESOURCE_SETS = new ConcurrentHashMap<String, CYlpStopwordSet>();
+
+	//terms in the order of the file, and the same terms hashed for lookups
+	private final List<String> stopwordList;
+	private final Set<String> stopwords;
+
+	private CYlpStopwordSet(Collection<String> terms) {
+
+		List<String> termList = new ArrayList<String>(terms.size());
+		Set<String> termSet = new HashSet<String>(terms.size() * 2);
+		for (String term : terms) {
+			String upperCasedTerm = term.trim().toUpperCase(Locale.ROOT);
+			if (!upperCasedTerm.isEmpty() && termSet.add(upperCasedTerm)) {
+				termList.add(upperCasedTerm);
+			}
+		}
+		stopwordList = Collections.unmodifiableList(termList);
+		stopwords = Collections.unmodifiableSet(termSet);
+	}
+
+	/**
+	 * @return set loaded from DEFAULT_RESOURCE
+	 */
+	public static CYlpStopwordSet getDefault() {
+
+		try {
+			return loadResource(DEFAULT_RESOURCE);
+		} catch (IOException ioEx) {
+			//the default list is bundled with the classes
+			throw new UncheckedIOException("default stopword list could not be loaded", ioEx);
+		}
+	}
+
+	/**
+	 * Returns the set of a list bundled with the classes, it is loaded on first use and shared afterwards
+	 * @param resourceName: name relative to this class, for example "stopwords/en.txt", or absolute
+	 *            starting with /
+	 * @throws CYlpNullArgumentException
+	 * @throws IOException when the resource can not be found or read
+	 * @return set of the terms of the resource
+	 */
+	public static CYlpStopwordSet fromResource(String resourceName) throws CYlpNullArgumentException, IOException {
+
+		if (resourceName == null) {
+			throw new CYlpNullArgumentException(
+					"stopword resource name is null ");
+		}
+
+		return loadResource(resourceName);
+	}
+
+	/**
+	 * Loads the resource unless it was already loaded
+	 */
+	private static CYlpStopwordSet loadResource(String resourceName) throws IOException {
+
+		CYlpStopwordSet stopwordSet = RESOURCE_SETS.get(resourceName);
+		if (stopwordSet != null) {
+			return stopwordSet;
+		}
+
+		InputStream resourceStream = CYlpStopwordSet.class.getResourceAsStream(resourceName);
+		if (resourceStream == null) {
+			throw new IOException("stopword resource " + resourceName + " not found");
+		}
+		try (Reader resourceReader = new InputStreamReader(resourceStream, StandardCharsets.UTF_8)) {
+			stopwordSet = read(resourceReader);
+		}
+		CYlpStopwordSet loadedSet = RESOURCE_SETS.putIfAbsent(resourceName, stopwordSet);
+		return loadedSet != null ? loadedSet : stopwordSet;
+	}
+
+	/**
+	 * Loads the list of a UTF-8 text file, the file is read every time this is called
+	 * @param stopwordFile
+	 * @throws CYlpNullArgumentException
+	 * @throws IOException
+	 * @return set of the terms of the file
+	 */
+	public static CYlpStopwordSet fromFile(Path stopwordFile) throws CYlpNullArgumentException, IOException {
+
+		if (stopwordFile == null) {
+			throw new CYlpNullArgumentException(
+					"stopword file is null ");
+		}
+
+		try (Reader fileReader = Files.newBufferedReader(stopwordFile, StandardCharsets.UTF_8)) {
+			return read(fileReader);
+		}
+	}
+
+	/**
+	 * Loads the list read from the reader, the reader is not closed
+	 * @param stopwordReader
+	 * @throws CYlpNullArgumentException
+	 * @throws IOException
+	 * @return set of the terms read
+	 */
+	public static CYlpStopwordSet fromReader(Reader stopwordReader) throws CYlpNullArgumentException, IOException {
+
+		if (stopwordReader == null) {
+			throw new CYlpNullArgumentException(
+					"stopword reader is null ");
+		}
+
+		return read(stopwordReader);
+	}
+
+	/**
+	 * @param terms
+	 * @throws CYlpNullArgumentException
+	 * @return set of the terms passed as argument
+	 */
+	public static CYlpStopwordSet of(Collection<String> terms) throws CYlpNullArgumentException {
+
+		if (terms == null || terms.contains(null)) {
+			throw new CYlpNullArgumentException(
+					"Either terms or one of the terms is null ");
+		}
+
+		return new CYlpStopwordSet(terms);
+	}
+
+	/**
+	 * Returns the terms of this set followed by the terms of other, for example to remove the stopwords of
+	 * two languages
+	 * @param other
+	 * @throws CYlpNullArgumentException
+	 * @return union of the sets
+	 */
+	public CYlpStopwordSet union(CYlpStopwordSet other) throws CYlpNullArgumentException {
+
+		if (other == null) {
+			throw new CYlpNullArgumentException(
+					"stopword set is null ");
+		}
+
+		List<String> terms = new ArrayList<String>(stopwordList);
+		terms.addAll(other.stopwordList);
+		return new CYlpStopwordSet(terms);
+	}
+
+	/**
+	 * @param word
+	 * @return true when word is a non qualitative term, ignoring case
+	 */
+	public boolean contains(String word) {
+		return word != null && stopwords.contains(word.toUpperCase(Locale.ROOT));
+	}
+
+	/**
+	 * @return UPPERCASED terms in the order they were loaded, the list can not be modified
+	 */
+	public List<String> getStopwords() {
+		return stopwordList;
+	}
+
+	public int size() {
+		return stopwordList.size();
+	}
+
+	private static CYlpStopwordSet read(Reader stopwordReader) throws IOException {
+
+		List<String> terms = new ArrayList<String>();
+		BufferedReader lineReader = new BufferedReader(stopwordReader);
+		for (String line = lineReader.readLine(); line != null; line = lineReader.readLine()) {
+			// skip comments
+			if (!line.trim().startsWith("#")) {
+				terms.add(line);
+			}
+		}
+		return new CYlpStopwordSet(terms);
+	}
+}
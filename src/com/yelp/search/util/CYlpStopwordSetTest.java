@@ -0,0 +1,69 @@
+package com.yelp.search.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.yelp.exception.CYlpNullArgumentException;
+
+/**
+ * unit test class that tests CYlpStopwordSet, lists bundled with the classes and lists read from a reader
+ *
+ */
+public class CYlpStopwordSetTest {
+
+	@Test
+	public void testDefaultSet() {
+
+		CYlpStopwordSet defaultSet = CYlpStopwordSet.getDefault();
+		assertEquals("Expecting default terms in the order of the file", Arrays.asList("IS", "THIS", "AND", "A"),
+				defaultSet.getStopwords());
+		assertTrue("Expecting lookup to ignore case", defaultSet.contains("This"));
+		assertFalse("Expecting keyword not to be a stopword", defaultSet.contains("pizza"));
+		assertFalse("Expecting null not to be a stopword", defaultSet.contains(null));
+		assertSame("Expecting default set to be loaded once", defaultSet, CYlpStopwordSet.getDefault());
+	}
+
+	@Test
+	public void testFromResource() throws CYlpNullArgumentException, IOException {
+
+		CYlpStopwordSet englishSet = CYlpStopwordSet.fromResource("stopwords/en.txt");
+		assertTrue("Expecting English list with more than a hundred terms", englishSet.size() > 100);
+		assertTrue("Expecting common word to be a stopword", englishSet.contains("the"));
+		assertTrue("Expecting word with apostrophe to be a stopword", englishSet.contains("Don't"));
+		assertFalse("Expecting keyword not to be a stopword", englishSet.contains("dish"));
+		assertSame("Expecting resource to be loaded once", englishSet, CYlpStopwordSet.fromResource("stopwords/en.txt"));
+
+		try {
+			CYlpStopwordSet.fromResource("stopwords/missing.txt");
+			fail("Should not get here, expecting it to throw exception");
+		} catch (IOException ioEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
+	@Test
+	public void testFromReader() throws CYlpNullArgumentException, IOException {
+
+		CYlpStopwordSet stopwordSet = CYlpStopwordSet.fromReader(new StringReader(
+				"# comment line\nthe\n\n  of \nThe\n"));
+		assertEquals("Expecting upper cased terms without comments, blanks and duplicates",
+				Arrays.asList("THE", "OF"), stopwordSet.getStopwords());
+
+		CYlpStopwordSet unionSet = stopwordSet.union(CYlpStopwordSet.of(Arrays.asList("le", "of")));
+		assertEquals("Expecting terms of both sets", Arrays.asList("THE", "OF", "LE"), unionSet.getStopwords());
+
+		try {
+			CYlpStopwordSet.fromReader(null);
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+}
@@ -0,0 +1,797 @@
+package com.yelp.search.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.yelp.enums.EylpScanMethod;
+import com.yelp.enums.EylpSelectionEngine;
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.document.CYlpTokenStream;
+import com.yelp.search.document.CYlpTokenizedDocument;
+import com.yelp.search.match.CYlpKeywordAutomaton;
+import com.yelp.search.match.CYlpKeywordOccurrences;
+import com.yelp.search.query.CYlpCompiledQuery;
+
+/**
+ * Streaming form of the highlight pipeline for documents that are too large to be held as one String,
+ * like scraped menu dumps or aggregated review exports. The document is read from a Reader in chunks and
+ * only the text that a snippet can still be built from is kept: everything from MAX_LENGTH characters
+ * (rounded off to the word boundary) before the earliest keyword occurrence that was not scored yet. Memory
+ * depends on the snippet length and the chunk size, not on the document length.
+ *
+ * The snippet is the same one the in-memory path (getFirstMatchingKeyword() or getKeywordCoverageWindows(),
+ * then proximitySearch() and getThePaddedSnippet()) selects for the whole document:
+ * - word boundaries are found by tokenizing again from the last boundary that can not move, a boundary is
+ *   only used once BOUNDARY_LOOKAHEAD more characters were read
+ * - keyword occurrences, and the non overlapping matches that are counted in a window, are found in one
+ *   pass like CYlpKeywordAutomaton and CYlpKeywordOccurrences do
+ * - keyword combinations (or coverage windows) are selected as their occurrences are read, when a longer
+ *   combination (or a window covering more keywords) is found the candidates found so far are dropped
+ * - a candidate is scored with the three scan methods once the text after its windows was read, only the
+ *   best window of each combination is kept and ties are broken in the order of the in-memory table
+ *
+ * An instance is not thread safe, create one per document (like CYlpSearchUtil).
+ *
+ */
+public class CYlpStreamingSearch {
+
+	//characters read from the reader at a time
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+	//word boundaries closer than this to the end of the text read so far may still move when more text is read
+	private static final int BOUNDARY_LOOKAHEAD = 256;
+
+	//scan methods in the order proximitySearch() tries them
+	private static final EylpScanMethod[] SCAN_METHODS = { EylpScanMethod.FORWARDSCAN,
+			EylpScanMethod.MIDSCAN, EylpScanMethod.BACKWARDSCAN };
+
+	private final CYlpCompiledQuery compiledQuery;
+	private final CYlpKeywordAutomaton keywordAutomaton;
+	private final EylpSelectionEngine selectionEngine;
+	private final int MAX_LENGTH;
+	private final int chunkSize;
+
+	//longest keyword, and longest text a combination of keywords can span
+	private final int maxKeywordLength;
+	private final int maxCombinationLength;
+
+	//text kept from the document, buffer[0] is the character at bufferStart in the document
+	private char[] buffer;
+	private int bufferLength;
+	private long bufferStart;
+	private boolean endOfDocument;
+
+	//word boundaries that can not move any more, the first is the boundary text is kept from
+	private CYlpPositionList boundaries;
+
+	//keyword occurrences ordered by start and keyword id, occurrences starting before occurrencesScannedTo are found
+	private CYlpPositionList occurrenceStarts;
+	private int[] occurrenceKeywordIds;
+	private int[] occurrenceChainLengths;
+	private long occurrencesScannedTo;
+
+	//non overlapping keyword matches counted in a window, see CYlpKeywordOccurrences.countMatchesWithin()
+	private CYlpPositionList matchStarts;
+	private CYlpPositionList matchEnds;
+	private long lastMatchEnd;
+	private long lastOccurrenceStart;
+
+	//LONGEST_COMBINATION: next occurrence whose chains were not collected and length of longest combination
+	private int nextChainOccurrence;
+	private int longestChain;
+
+	//KEYWORD_COVERAGE: first occurrence of the sliding window, keywords in the window and best coverage
+	private int windowLeft;
+	private int[] countInWindow;
+	private int distinctInWindow;
+	private int bestDistinct;
+	private long lastWindowStart;
+
+	//candidate combinations (or covered keywords) in the order they were first found, and their start
+	//indexes that were not scored yet
+	private Map<String, CYlpCandidate> candidateTable;
+	private ArrayDeque<CYlpCandidateStart> pendingStarts;
+
+	//snippet returned when no keyword occurs: the first MAX_LENGTH characters rounded off
+	private String defaultSnippet;
+	private int[] defaultSnippetBoundaries;
+
+	/**
+	 * @param compiledQuery
+	 * @param selectionEngine
+	 * @param MAX_LENGTH: max snippet length
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpStreamingSearch(CYlpCompiledQuery compiledQuery, EylpSelectionEngine selectionEngine,
+			int MAX_LENGTH) throws CYlpNullArgumentException {
+		this(compiledQuery, selectionEngine, MAX_LENGTH, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param compiledQuery
+	 * @param selectionEngine
+	 * @param MAX_LENGTH: max snippet length
+	 * @param chunkSize: number of characters read at a time
+	 * @throws CYlpNullArgumentException
+	 */
+	public CYlpStreamingSearch(CYlpCompiledQuery compiledQuery, EylpSelectionEngine selectionEngine,
+			int MAX_LENGTH, int chunkSize) throws CYlpNullArgumentException {
+
+		if (compiledQuery == null || selectionEngine == null) {
+			throw new CYlpNullArgumentException(
+					"Either compiled query or selection engine is null ");
+		}
+		if (MAX_LENGTH <= 0 || chunkSize <= 0) {
+			throw new IllegalArgumentException("snippet length and chunk size should be greater than 0 ");
+		}
+
+		this.compiledQuery = compiledQuery;
+		this.keywordAutomaton = compiledQuery.getKeywordAutomaton();
+		this.selectionEngine = selectionEngine;
+		this.MAX_LENGTH = MAX_LENGTH;
+		this.chunkSize = chunkSize;
+
+		int longestKeyword = 1;
+		int combinationLength = 0;
+		for (int keywordId = 0; keywordId < keywordAutomaton.getKeywordCount(); keywordId++) {
+			longestKeyword = Math.max(longestKeyword, keywordAutomaton.getKeywordLength(keywordId));
+			combinationLength += keywordAutomaton.getKeywordLength(keywordId) + 1;
+		}
+		maxKeywordLength = longestKeyword;
+		maxCombinationLength = combinationLength;
+	}
+
+	/**
+	 * Reads the document to the end (the reader is not closed) and returns the most relevant snippet with
+	 * the keywords padded, same as getThePaddedSnippet() of the snippet proximitySearch() selects in the
+	 * whole document
+	 * @param documentReader
+	 * @param padBefore
+	 * @param padAfter
+	 * @throws IOException
+	 * @throws CYlpNullArgumentException
+	 * @return highlighted most relevant document snippet
+	 */
+	public String getThePaddedSnippet(Reader documentReader, String padBefore, String padAfter)
+			throws IOException, CYlpNullArgumentException {
+
+		if (documentReader == null || padBefore == null || padAfter == null) {
+			throw new CYlpNullArgumentException(
+					"Either documentReader or padBefore or padAfter is null ");
+		}
+
+		reset();
+		while (!endOfDocument) {
+			readChunk(documentReader);
+			findBoundaries();
+			findOccurrences();
+			if (selectionEngine == EylpSelectionEngine.KEYWORD_COVERAGE) {
+				selectCoverageWindows();
+			} else {
+				selectLongestCombinations();
+			}
+			scoreCandidates();
+			dropText();
+		}
+
+		if (bufferStart + bufferLength == 0) {
+			//same as the in-memory path, there is no word boundary to round off to
+			throw new IllegalArgumentException("document is empty");
+		}
+
+		//the candidate with max occurences, ties go to the candidate iterated first in the table of the
+		//in-memory path
+		CYlpCandidate bestCandidate = null;
+		for (CYlpCandidate candidate : getCandidatesInTableOrder()) {
+			if (candidate.bestCount > (bestCandidate != null ? bestCandidate.bestCount : 0)) {
+				bestCandidate = candidate;
+			}
+		}
+
+		String snippet = bestCandidate != null ? bestCandidate.snippet : defaultSnippet;
+		int[] snippetBoundaries = bestCandidate != null ? bestCandidate.snippetBoundaries : defaultSnippetBoundaries;
+		CYlpTokenStream snippetTokenStream = new CYlpTokenStream(new CYlpTokenizedDocument(snippet,
+				snippetBoundaries), compiledQuery.getTermDictionary());
+		return new CYlpSearchUtil().getThePaddedSnippet(snippetTokenStream,
+				compiledQuery.findOccurrences(snippetTokenStream), 0, snippet.length(), padBefore, padAfter);
+	}
+
+	/**
+	 * @return number of characters the buffer can hold, it grows with the text kept and not with the document
+	 */
+	int getBufferCapacity() {
+		return buffer.length;
+	}
+
+	private void reset() {
+		buffer = new char[Math.max(2 * chunkSize, 4 * MAX_LENGTH)];
+		bufferLength = 0;
+		bufferStart = 0;
+		endOfDocument = false;
+		boundaries = new CYlpPositionList();
+		boundaries.add(0);
+		occurrenceStarts = new CYlpPositionList();
+		occurrenceKeywordIds = new int[16];
+		occurrenceChainLengths = new int[16];
+		occurrencesScannedTo = 0;
+		matchStarts = new CYlpPositionList();
+		matchEnds = new CYlpPositionList();
+		lastMatchEnd = 0;
+		lastOccurrenceStart = -1;
+		nextChainOccurrence = 0;
+		longestChain = 0;
+		windowLeft = 0;
+		countInWindow = new int[keywordAutomaton.getDistinctKeywordCount()];
+		distinctInWindow = 0;
+		bestDistinct = 0;
+		lastWindowStart = -1;
+		candidateTable = new LinkedHashMap<String, CYlpCandidate>();
+		pendingStarts = new ArrayDeque<CYlpCandidateStart>();
+		defaultSnippet = null;
+		defaultSnippetBoundaries = null;
+	}
+
+	/**
+	 * STEP1: appends the next chunk of the document to the buffer
+	 */
+	private void readChunk(Reader documentReader) throws IOException {
+
+		if (bufferLength + chunkSize > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, bufferLength + chunkSize));
+		}
+		int charsRead = documentReader.read(buffer, bufferLength, chunkSize);
+		if (charsRead < 0) {
+			endOfDocument = true;
+		} else {
+			bufferLength += charsRead;
+		}
+	}
+
+	/**
+	 * STEP2: tokenizes the text after the last word boundary that can not move. A word iterator started at a
+	 * boundary finds the same following boundaries as when it walks the whole document
+	 */
+	private void findBoundaries() throws CYlpNullArgumentException {
+
+		long sectionStart = boundaries.last();
+		long bufferEnd = bufferStart + bufferLength;
+		long trustedEnd = endOfDocument ? bufferEnd : bufferEnd - BOUNDARY_LOOKAHEAD;
+		if (trustedEnd <= sectionStart) {
+			return;
+		}
+
+		CYlpTokenizedDocument section = new CYlpTokenizedDocument(getText(sectionStart, bufferEnd));
+		for (int wordIndex = 0; wordIndex < section.getWordCount(); wordIndex++) {
+			long boundary = sectionStart + section.getWordEnd(wordIndex);
+			if (boundary > trustedEnd) {
+				break;
+			}
+			boundaries.add(boundary);
+		}
+	}
+
+	/**
+	 * STEP3: finds keyword occurrences that start after the text scanned so far and can not be cut off by the
+	 * end of the buffer, and the keyword matches a regex of all keywords would count
+	 */
+	private void findOccurrences() throws CYlpNullArgumentException {
+
+		long bufferEnd = bufferStart + bufferLength;
+		long scanEnd = endOfDocument ? bufferEnd : bufferEnd - maxKeywordLength + 1;
+		if (scanEnd <= occurrencesScannedTo) {
+			return;
+		}
+
+		CYlpKeywordOccurrences occurrences = keywordAutomaton.findOccurrences(getText(occurrencesScannedTo,
+				bufferEnd));
+		for (int i = 0; i < occurrences.size(); i++) {
+			long start = occurrencesScannedTo + occurrences.getStart(i);
+			if (start >= scanEnd) {
+				break;
+			}
+			addOccurrence(start, occurrences.getKeywordId(i));
+
+			//same rule as CYlpKeywordOccurrences: first occurrence at a start that does not overlap previous match
+			if (start >= lastMatchEnd && start != lastOccurrenceStart) {
+				lastMatchEnd = start + keywordAutomaton.getKeywordLength(occurrences.getKeywordId(i));
+				matchStarts.add(start);
+				matchEnds.add(lastMatchEnd);
+			}
+			lastOccurrenceStart = start;
+		}
+		occurrencesScannedTo = scanEnd;
+	}
+
+	/**
+	 * STEP4 (LONGEST_COMBINATION): collects the longest combinations starting at occurrences whose chains can
+	 * not be continued by text that was not read yet, see getFirstMatchingKeyword()
+	 */
+	private void selectLongestCombinations() {
+
+		int[] chainKeywordIds = new int[Math.max(1, keywordAutomaton.getKeywordCount())];
+		for (; nextChainOccurrence < occurrenceStarts.size(); nextChainOccurrence++) {
+			int occurrence = nextChainOccurrence;
+			if (!endOfDocument && occurrenceStarts.get(occurrence) + maxCombinationLength >= occurrencesScannedTo) {
+				break;
+			}
+
+			int chainLength = getChainLength(occurrence);
+			if (chainLength > longestChain) {
+				//combinations found so far are shorter, start over
+				longestChain = chainLength;
+				candidateTable.clear();
+				pendingStarts.clear();
+			}
+			if (chainLength == longestChain) {
+				collectChains(occurrence, occurrenceStarts.get(occurrence), new StringBuilder(), chainKeywordIds, 0);
+			}
+		}
+	}
+
+	/**
+	 * Returns number of keywords in the longest combination starting with the occurrence, computed once
+	 */
+	private int getChainLength(int occurrence) {
+
+		if (occurrenceChainLengths[occurrence] == 0) {
+			int chainLength = 1;
+			long successorStart = getOccurrenceEnd(occurrence) + 1;
+			for (int next = getFirstChainSuccessor(occurrence); next < occurrenceStarts.size()
+					&& occurrenceStarts.get(next) == successorStart; next++) {
+				if (occurrenceKeywordIds[next] > occurrenceKeywordIds[occurrence]) {
+					chainLength = Math.max(chainLength, getChainLength(next) + 1);
+				}
+			}
+			occurrenceChainLengths[occurrence] = chainLength;
+		}
+		return occurrenceChainLengths[occurrence];
+	}
+
+	/**
+	 * Same as CYlpSearchUtil.getFirstChainSuccessor(): index of the first occurrence that can follow the
+	 * occurrence in a combination, or number of occurrences if it is not followed by a single space
+	 */
+	private int getFirstChainSuccessor(int occurrence) {
+
+		long end = getOccurrenceEnd(occurrence);
+		if (end >= bufferStart + bufferLength || buffer[(int) (end - bufferStart)] != ' ') {
+			return occurrenceStarts.size();
+		}
+		return occurrenceStarts.lowerBound(end + 1);
+	}
+
+	/**
+	 * Same as CYlpSearchUtil.collectChains(): walks every combination of length longestChain starting with
+	 * the occurrence, each one becomes a candidate start
+	 */
+	private void collectChains(int occurrence, long combinationStart, StringBuilder combination,
+			int[] chainKeywordIds, int depth) {
+
+		int lengthBefore = combination.length();
+		if (lengthBefore > 0) {
+			combination.append(' ');
+		}
+		int keywordId = occurrenceKeywordIds[occurrence];
+		combination.append(keywordAutomaton.getKeyword(keywordId));
+		chainKeywordIds[depth] = keywordId;
+
+		if (occurrenceChainLengths[occurrence] == 1) {
+			addCombinationStart(combination.toString(), Arrays.copyOf(chainKeywordIds, depth + 1),
+					combinationStart);
+		} else {
+			long successorStart = getOccurrenceEnd(occurrence) + 1;
+			for (int next = getFirstChainSuccessor(occurrence); next < occurrenceStarts.size()
+					&& occurrenceStarts.get(next) == successorStart; next++) {
+				if (occurrenceKeywordIds[next] > keywordId
+						&& occurrenceChainLengths[next] == occurrenceChainLengths[occurrence] - 1) {
+					collectChains(next, combinationStart, combination, chainKeywordIds, depth + 1);
+				}
+			}
+		}
+
+		combination.setLength(lengthBefore);
+	}
+
+	/**
+	 * Adds a start of the combination, like getFirstMatchingKeyword() a start is skipped when it repeats the
+	 * last start or overlaps the last start kept for the combination
+	 */
+	private void addCombinationStart(String keyword, int[] keywordIds, long combinationStart) {
+
+		CYlpCandidate candidate = candidateTable.get(keyword);
+		if (candidate == null) {
+			candidate = new CYlpCandidate(keyword, keywordIds);
+			candidateTable.put(keyword, candidate);
+		} else if (CYlpSearchUtil.compareCombinationOrder(keywordIds, candidate.keywordIds) < 0) {
+			//repeated keywords give same combination from different keyword ids, keep the first generated
+			candidate.keywordIds = keywordIds;
+		}
+
+		if (candidate.lastStart == combinationStart) {
+			return;
+		}
+		candidate.lastStart = combinationStart;
+		if (combinationStart >= candidate.lastEnd) {
+			candidate.lastEnd = combinationStart + keyword.length();
+			pendingStarts.add(new CYlpCandidateStart(candidate, combinationStart));
+		}
+	}
+
+	/**
+	 * STEP4 (KEYWORD_COVERAGE): slides the window over the new occurrences, see getKeywordCoverageWindows()
+	 */
+	private void selectCoverageWindows() {
+
+		for (int right = nextChainOccurrence; right < occurrenceStarts.size(); right++) {
+
+			//add occurrence to the window
+			if (countInWindow[getDistinctKeywordId(right)]++ == 0) {
+				distinctInWindow++;
+			}
+
+			//window can not be longer than MAX_LENGTH
+			while (getOccurrenceEnd(right) - occurrenceStarts.get(windowLeft) > MAX_LENGTH && windowLeft < right) {
+				if (--countInWindow[getDistinctKeywordId(windowLeft++)] == 0) {
+					distinctInWindow--;
+				}
+			}
+
+			//shrink the window while the left most keyword also occurs later in the window
+			while (windowLeft < right && countInWindow[getDistinctKeywordId(windowLeft)] > 1) {
+				countInWindow[getDistinctKeywordId(windowLeft++)]--;
+			}
+
+			if (distinctInWindow > bestDistinct) {
+				bestDistinct = distinctInWindow;
+				candidateTable.clear();
+				pendingStarts.clear();
+				lastWindowStart = -1;
+			}
+			if (distinctInWindow == bestDistinct) {
+				long windowStart = occurrenceStarts.get(windowLeft);
+				if (windowStart == lastWindowStart) {
+					//same window start, keep the shorter window that was recorded first
+					continue;
+				}
+				lastWindowStart = windowStart;
+
+				String keyword = getCoveredKeywords(windowLeft, right);
+				CYlpCandidate candidate = candidateTable.get(keyword);
+				if (candidate == null) {
+					candidate = new CYlpCandidate(keyword, null);
+					candidateTable.put(keyword, candidate);
+				}
+				pendingStarts.add(new CYlpCandidateStart(candidate, windowStart));
+			}
+		}
+		nextChainOccurrence = occurrenceStarts.size();
+	}
+
+	/**
+	 * Returns keywords covered by the occurrences from first to last, in the order of the query
+	 */
+	private String getCoveredKeywords(int firstOccurrence, int lastOccurrence) {
+
+		boolean[] covered = new boolean[keywordAutomaton.getDistinctKeywordCount()];
+		for (int occurrence = firstOccurrence; occurrence <= lastOccurrence; occurrence++) {
+			covered[getDistinctKeywordId(occurrence)] = true;
+		}
+		StringBuilder coveredKeywords = new StringBuilder();
+		for (int keywordId = 0; keywordId < keywordAutomaton.getKeywordCount(); keywordId++) {
+			int distinctId = keywordAutomaton.getDistinctKeywordId(keywordId);
+			if (covered[distinctId]) {
+				if (coveredKeywords.length() > 0) {
+					coveredKeywords.append(' ');
+				}
+				coveredKeywords.append(keywordAutomaton.getKeyword(keywordId));
+				//repeated keywords are listed once
+				covered[distinctId] = false;
+			}
+		}
+		return coveredKeywords.toString();
+	}
+
+	/**
+	 * STEP5: scores the candidate starts whose windows are complete, see proximitySearch(). The snippet of the
+	 * best window of each candidate is copied since the text may be dropped before the end of the document
+	 */
+	private void scoreCandidates() {
+
+		if (defaultSnippet == null && isWindowComplete(0)) {
+			long snippetEnd = getRoundedOffEndIndex(getScanEndIndex(EylpScanMethod.BACKWARDSCAN, 0));
+			defaultSnippet = getSnippet(0, snippetEnd);
+			defaultSnippetBoundaries = getSnippetBoundaries(0, snippetEnd);
+		}
+
+		while (!pendingStarts.isEmpty() && isWindowComplete(pendingStarts.peek().startIndex)) {
+			CYlpCandidateStart candidateStart = pendingStarts.poll();
+			CYlpCandidate candidate = candidateStart.candidate;
+
+			for (EylpScanMethod scanMethod : SCAN_METHODS) {
+				long startIndex = getRoundedOffStartIndex(getScanStartIndex(scanMethod, candidateStart.startIndex));
+				long endIndex = getRoundedOffEndIndex(getScanEndIndex(scanMethod, candidateStart.startIndex));
+				int countOfAllKeywords = countMatchesWithin(startIndex, endIndex);
+
+				//only a greater count replaces the best window of the candidate
+				if (countOfAllKeywords > candidate.bestCount) {
+					candidate.bestCount = countOfAllKeywords;
+					candidate.snippet = getSnippet(startIndex, endIndex);
+					candidate.snippetBoundaries = getSnippetBoundaries(startIndex, endIndex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if the windows around the start index can be rounded off and counted: the boundary following the
+	 * farthest window end can not move and matches before it are found
+	 */
+	private boolean isWindowComplete(long startIndex) {
+
+		if (endOfDocument) {
+			return true;
+		}
+		int followingIndex = boundaries.lowerBound(startIndex + MAX_LENGTH + 1);
+		return followingIndex < boundaries.size() && boundaries.get(followingIndex) <= occurrencesScannedTo;
+	}
+
+	/**
+	 * STEP6: drops the text, boundaries, occurrences and matches no window can start in any more. A window
+	 * starts at most MAX_LENGTH before the earliest start that is not scored yet, rounded off to a boundary
+	 */
+	private void dropText() {
+
+		if (defaultSnippet == null || endOfDocument) {
+			return;
+		}
+
+		int firstNeededOccurrence = selectionEngine == EylpSelectionEngine.KEYWORD_COVERAGE ? windowLeft
+				: nextChainOccurrence;
+		long earliestStart = occurrencesScannedTo;
+		if (firstNeededOccurrence < occurrenceStarts.size()) {
+			earliestStart = Math.min(earliestStart, occurrenceStarts.get(firstNeededOccurrence));
+		}
+		if (!pendingStarts.isEmpty()) {
+			earliestStart = Math.min(earliestStart, pendingStarts.peek().startIndex);
+		}
+		long earliestWindowStart = earliestStart - MAX_LENGTH;
+		long keepFrom = earliestWindowStart <= 0 ? 0 : boundaries.get(boundaries.lowerBound(earliestWindowStart) - 1);
+		if (keepFrom <= bufferStart) {
+			return;
+		}
+
+		int charsToDrop = (int) (keepFrom - bufferStart);
+		System.arraycopy(buffer, charsToDrop, buffer, 0, bufferLength - charsToDrop);
+		bufferLength -= charsToDrop;
+		bufferStart = keepFrom;
+
+		boundaries.removeFirst(boundaries.lowerBound(keepFrom));
+		int matchesToDrop = matchStarts.lowerBound(keepFrom);
+		matchStarts.removeFirst(matchesToDrop);
+		matchEnds.removeFirst(matchesToDrop);
+
+		int occurrencesToDrop = Math.min(firstNeededOccurrence, occurrenceStarts.size());
+		occurrenceStarts.removeFirst(occurrencesToDrop);
+		int remainingOccurrences = occurrenceStarts.size();
+		System.arraycopy(occurrenceKeywordIds, occurrencesToDrop, occurrenceKeywordIds, 0, remainingOccurrences);
+		System.arraycopy(occurrenceChainLengths, occurrencesToDrop, occurrenceChainLengths, 0, remainingOccurrences);
+		nextChainOccurrence -= occurrencesToDrop;
+		windowLeft -= Math.min(windowLeft, occurrencesToDrop);
+	}
+
+	/**
+	 * Returns the candidates in the order the in-memory path iterates its keyword index table: a HashMap
+	 * filled with combinations in the order getCombinations() generates them (or covered keywords in the order
+	 * they were found)
+	 */
+	private List<CYlpCandidate> getCandidatesInTableOrder() {
+
+		List<CYlpCandidate> candidates = new ArrayList<CYlpCandidate>(candidateTable.values());
+		if (selectionEngine != EylpSelectionEngine.KEYWORD_COVERAGE) {
+			Collections.sort(candidates, new Comparator<CYlpCandidate>() {
+				public int compare(CYlpCandidate first, CYlpCandidate second) {
+					return CYlpSearchUtil.compareCombinationOrder(first.keywordIds, second.keywordIds);
+				}
+			});
+		}
+
+		Map<String, CYlpCandidate> keywordIndexTable = new HashMap<String, CYlpCandidate>();
+		for (CYlpCandidate candidate : candidates) {
+			keywordIndexTable.put(candidate.keyword, candidate);
+		}
+		return new ArrayList<CYlpCandidate>(keywordIndexTable.values());
+	}
+
+	/**
+	 * Same as CYlpSearchUtil.getScanStartIndex()
+	 */
+	private long getScanStartIndex(EylpScanMethod scanMethod, long currentIndex) {
+
+		if (scanMethod == EylpScanMethod.FORWARDSCAN) {
+			return Math.max(0, currentIndex - MAX_LENGTH);
+		} else if (scanMethod == EylpScanMethod.MIDSCAN) {
+			return Math.max(0, currentIndex - MAX_LENGTH / 2);
+		}
+		return currentIndex;
+	}
+
+	/**
+	 * Same as CYlpSearchUtil.getScanEndIndex(), the document length is not known before the end of the
+	 * document but a window is only built when the document is longer than its end
+	 */
+	private long getScanEndIndex(EylpScanMethod scanMethod, long currentIndex) {
+
+		long docLength = endOfDocument ? bufferStart + bufferLength : Long.MAX_VALUE;
+		if (scanMethod == EylpScanMethod.FORWARDSCAN) {
+			return currentIndex - MAX_LENGTH < 0 ? Math.min(MAX_LENGTH, docLength) : currentIndex;
+		} else if (scanMethod == EylpScanMethod.MIDSCAN) {
+			if (currentIndex - MAX_LENGTH / 2 < 0) {
+				return Math.min(MAX_LENGTH, docLength);
+			}
+			return Math.min(currentIndex + MAX_LENGTH / 2, docLength);
+		}
+		return Math.min(currentIndex + MAX_LENGTH, docLength);
+	}
+
+	/**
+	 * Same as CYlpSearchUtil.getRoundedOffStartIndex(): the boundary before startIndex
+	 */
+	private long getRoundedOffStartIndex(long startIndex) {
+		return startIndex == 0 ? 0 : boundaries.get(boundaries.lowerBound(startIndex) - 1);
+	}
+
+	/**
+	 * Same as CYlpSearchUtil.getRoundedOffEndIndex(): the boundary after endIndex
+	 */
+	private long getRoundedOffEndIndex(long endIndex) {
+
+		long docLength = endOfDocument ? bufferStart + bufferLength : Long.MAX_VALUE;
+		long indexToRound = endIndex < docLength ? endIndex : docLength - 1;
+		return boundaries.get(boundaries.lowerBound(indexToRound + 1));
+	}
+
+	/**
+	 * Same as CYlpKeywordOccurrences.countMatchesWithin()
+	 */
+	private int countMatchesWithin(long startIndex, long endIndex) {
+		int count = matchEnds.lowerBound(endIndex + 1) - matchStarts.lowerBound(startIndex);
+		return count > 0 ? count : 0;
+	}
+
+	private String getSnippet(long startIndex, long endIndex) {
+		return new String(buffer, (int) (startIndex - bufferStart), (int) (endIndex - startIndex));
+	}
+
+	/**
+	 * Returns boundaries of the snippet relative to its start, the snippet starts and ends at a boundary
+	 */
+	private int[] getSnippetBoundaries(long startIndex, long endIndex) {
+
+		int first = boundaries.lowerBound(startIndex);
+		int last = boundaries.lowerBound(endIndex);
+		int[] snippetBoundaries = new int[last - first + 1];
+		for (int i = first; i <= last; i++) {
+			snippetBoundaries[i - first] = (int) (boundaries.get(i) - startIndex);
+		}
+		return snippetBoundaries;
+	}
+
+	private CharSequence getText(long startIndex, long endIndex) {
+		return CharBuffer.wrap(buffer, (int) (startIndex - bufferStart), (int) (endIndex - startIndex));
+	}
+
+	private void addOccurrence(long start, int keywordId) {
+
+		int occurrence = occurrenceStarts.size();
+		if (occurrence == occurrenceKeywordIds.length) {
+			occurrenceKeywordIds = Arrays.copyOf(occurrenceKeywordIds, occurrence * 2);
+			occurrenceChainLengths = Arrays.copyOf(occurrenceChainLengths, occurrence * 2);
+		}
+		occurrenceStarts.add(start);
+		occurrenceKeywordIds[occurrence] = keywordId;
+		occurrenceChainLengths[occurrence] = 0;
+	}
+
+	private long getOccurrenceEnd(int occurrence) {
+		return occurrenceStarts.get(occurrence) + keywordAutomaton.getKeywordLength(occurrenceKeywordIds[occurrence]);
+	}
+
+	private int getDistinctKeywordId(int occurrence) {
+		return keywordAutomaton.getDistinctKeywordId(occurrenceKeywordIds[occurrence]);
+	}
+
+	/**
+	 * A combination of keywords (or covered keywords) and its best window scored so far
+	 */
+	private static final class CYlpCandidate {
+
+		private final String keyword;
+		private int[] keywordIds;
+
+		//last start found and end of the last start kept, to skip repeated and overlapping starts
+		private long lastStart = -1;
+		private long lastEnd = -1;
+
+		private int bestCount;
+		private String snippet;
+		private int[] snippetBoundaries;
+
+		private CYlpCandidate(String keyword, int[] keywordIds) {
+			this.keyword = keyword;
+			this.keywordIds = keywordIds;
+		}
+	}
+
+	/**
+	 * Start index of a candidate waiting for the text after its windows
+	 */
+	private static final class CYlpCandidateStart {
+
+		private final CYlpCandidate candidate;
+		private final long startIndex;
+
+		private CYlpCandidateStart(CYlpCandidate candidate, long startIndex) {
+			this.candidate = candidate;
+			this.startIndex = startIndex;
+		}
+	}
+
+	/**
+	 * Growable list of increasing positions in the document, positions at the front are removed once they
+	 * are not needed
+	 */
+	private static final class CYlpPositionList {
+
+		private long[] positions = new long[16];
+		private int size;
+
+		void add(long position) {
+			if (size == positions.length) {
+				positions = Arrays.copyOf(positions, size * 2);
+			}
+			positions[size++] = position;
+		}
+
+		long get(int index) {
+			return positions[index];
+		}
+
+		long last() {
+			return positions[size - 1];
+		}
+
+		int size() {
+			return size;
+		}
+
+		void removeFirst(int count) {
+			System.arraycopy(positions, count, positions, 0, size - count);
+			size -= count;
+		}
+
+		//index of first position that is not less than value
+		int lowerBound(long value) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (positions[mid] < value) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+	}
+}
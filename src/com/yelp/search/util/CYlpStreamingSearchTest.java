@@ -0,0 +1,138 @@
+package com.yelp.search.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yelp.enums.EylpSelectionEngine;
+import com.yelp.exception.CYlpNullArgumentException;
+import com.yelp.search.highlight.CYlpHighlightEngine;
+import com.yelp.search.query.CYlpCompiledQuery;
+
+/**
+ * unit test class that tests CYlpStreamingSearch, snippets of documents read in chunks should be same as
+ * the snippets of the in-memory path
+ *
+ */
+public class CYlpStreamingSearchTest {
+
+	private static final String[] WORDS = { "deep", "dish", "pizza", "Pizza", "the", "was", "good", "it's",
+			"a", "b", "deep-dish", "pizzas", "caf\u00e9", "3.14", "dish,", "good!", "\n", "deepdish" };
+	private static final String[] QUERIES = { "deep dish pizza", "pizza", "dish was good", "a b a",
+			"deep deep dish", "pizza dish deep", "it's pizza", "zzz" };
+	private static final int[] CHUNK_SIZES = { 1, 7, 64, CYlpStreamingSearch.DEFAULT_CHUNK_SIZE };
+
+	/**
+	 * Compares streaming and in-memory snippets of random documents, for both selection engines and chunk
+	 * sizes that cut words, keywords and windows
+	 * @throws Exception
+	 */
+	@Test
+	public void testSameSnippetAsInMemory() throws Exception {
+
+		Random random = new Random(13);
+		for (int i = 0; i < 400; i++) {
+			String documentToScan = getRandomDocument(random, 1 + random.nextInt(i % 2 == 0 ? 20 : 400));
+			CYlpCompiledQuery compiledQuery = new CYlpCompiledQuery(QUERIES[random.nextInt(QUERIES.length)]);
+			EylpSelectionEngine selectionEngine = EylpSelectionEngine.values()[i % 2];
+			int snippetLength = 10 + random.nextInt(120);
+			int chunkSize = CHUNK_SIZES[random.nextInt(CHUNK_SIZES.length)];
+
+			CYlpHighlightEngine highlightEngine = CYlpHighlightEngine.builder().snippetLength(snippetLength)
+					.selectionEngine(selectionEngine).build();
+			CYlpStreamingSearch streamingSearch = new CYlpStreamingSearch(compiledQuery, selectionEngine,
+					snippetLength, chunkSize);
+			assertEquals("Expecting same snippet as in-memory for " + documentToScan,
+					highlightEngine.getHighlightDoc(documentToScan, compiledQuery),
+					streamingSearch.getThePaddedSnippet(new StringReader(documentToScan),
+							highlightEngine.getPadBefore(), highlightEngine.getPadAfter()));
+		}
+	}
+
+	/**
+	 * Highlights a document of several million characters that is never held in memory, the buffer should
+	 * not grow with the document
+	 * @throws Exception
+	 */
+	@Test
+	public void testLargeDocument() throws Exception {
+
+		CYlpCompiledQuery compiledQuery = new CYlpCompiledQuery("deep dish pizza");
+		CYlpStreamingSearch streamingSearch = new CYlpStreamingSearch(compiledQuery,
+				EylpSelectionEngine.LONGEST_COMBINATION, 100, 4096);
+
+		String snippet = streamingSearch.getThePaddedSnippet(new CYlpRepeatingReader(
+				"The pizza was cold but the dish was good. ", 100000, "We loved the deep dish pizza here. "),
+				"<b>", "</b>");
+		//same snippet as the in-memory path: the window before the only "deep dish pizza" has most matches
+		assertEquals("Expecting window of the longest combination at the end of the document",
+				"good. The <b>pizza </b>was cold but the <b>dish </b>was good. The <b>pizza </b>was cold but "
+						+ "the <b>dish </b>was good. We loved the <b>deep</b>", snippet);
+		assertTrue("Expecting buffer to hold a few chunks", streamingSearch.getBufferCapacity() <= 4 * 4096);
+	}
+
+	@Test
+	public void testNullArguments() throws CYlpNullArgumentException, IOException {
+
+		CYlpStreamingSearch streamingSearch = new CYlpStreamingSearch(new CYlpCompiledQuery("pizza"),
+				EylpSelectionEngine.LONGEST_COMBINATION, 100);
+		try {
+			streamingSearch.getThePaddedSnippet(null, "<b>", "</b>");
+			fail("Should not get here, expecting it to throw exception");
+		} catch (CYlpNullArgumentException nullArgEx) {
+			// exception means we are ok
+			assertTrue(1 == 1);
+		}
+	}
+
+	private static String getRandomDocument(Random random, int wordCount) {
+
+		StringBuilder document = new StringBuilder();
+		for (int i = 0; i < wordCount; i++) {
+			document.append(WORDS[random.nextInt(WORDS.length)]);
+			int separator = random.nextInt(10);
+			document.append(separator < 7 ? " " : separator == 7 ? ". " : separator == 8 ? "" : ", ");
+		}
+		return document.toString();
+	}
+
+	/**
+	 * Reader of a text repeated many times followed by a last sentence, generated as it is read
+	 */
+	private static final class CYlpRepeatingReader extends Reader {
+
+		private final String text;
+		private final String lastSentence;
+		private long remaining;
+		private int offset;
+
+		private CYlpRepeatingReader(String text, int repeatCount, String lastSentence) {
+			this.text = text;
+			this.lastSentence = lastSentence;
+			this.remaining = (long) text.length() * repeatCount + lastSentence.length();
+		}
+
+		@Override
+		public int read(char[] chars, int off, int len) {
+			if (remaining == 0) {
+				return -1;
+			}
+			int count = (int) Math.min(len, remaining);
+			for (int i = 0; i < count; i++) {
+				chars[off + i] = remaining > lastSentence.length() ? text.charAt(offset++ % text.length())
+						: lastSentence.charAt(lastSentence.length() - (int) remaining);
+				remaining--;
+			}
+			return count;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package com.yelp.search.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the work of one highlighting call so that adversarial queries (for example a pasted query that
+ * repeats the same word 25 times) can not stall the thread. The budget has a deadline, a maximum number of
+ * keyword combinations enumerated by getFirstMatchingKeyword() and a maximum number of scan windows scored by
+ * proximitySearch(), any of them can be UNLIMITED.
+ *
+ * When the budget runs out the search stops and returns the best result found so far, flagged as degraded
+ * (see CYlpProximitySearchKeyword.isDegraded()). Some work is always done so there is a result: the first
+ * keyword combination is enumerated and the scan windows of its first start index are scored.
+ *
+ * A budget also counts the work done, an unlimited budget (see unlimited()) never runs out and only counts it,
+ * for example for the trace of a call.
+ *
+ * A budget is used by one call on one thread, it is not thread safe. The deadline is checked with
+ * System.nanoTime() every CLOCK_CHECK_INTERVAL steps of work, so it can be overrun by that many steps.
+ *
+ */
+public final class CYlpWorkBudget {
+
+	// value of a limit that is not set
+	public static final long UNLIMITED_NANOS = Long.MAX_VALUE;
+	public static final int UNLIMITED = Integer.MAX_VALUE;
+
+	// steps of work between two reads of the clock
+	static final int CLOCK_CHECK_INTERVAL = 16;
+
+	private final boolean hasDeadline;
+	private final long deadlineNanoTime;
+	private final int maxCombinations;
+	private final int maxWindowsScored;
+
+	private int combinations;
+	private int windowsScored;
+	private int clockCheckCountdown;
+	private boolean exhausted;
+	private boolean degraded;
+
+	/**
+	 * Budget that starts now
+	 * @param timeoutNanos: nanoseconds the call may take, UNLIMITED_NANOS for no deadline
+	 * @param maxCombinations: keyword combinations that may be enumerated, UNLIMITED for no limit
+	 * @param maxWindowsScored: scan windows that may be scored, UNLIMITED for no limit
+	 */
+	public CYlpWorkBudget(long timeoutNanos, int maxCombinations, int maxWindowsScored) {
+		if (timeoutNanos < 0 || maxCombinations < 0 || maxWindowsScored < 0) {
+			throw new IllegalArgumentException("budget limits should not be negative ");
+		}
+		this.hasDeadline = timeoutNanos != UNLIMITED_NANOS;
+		this.deadlineNanoTime = hasDeadline ? System.nanoTime() + timeoutNanos : 0L;
+		this.maxCombinations = maxCombinations;
+		this.maxWindowsScored = maxWindowsScored;
+	}
+
+	/**
+	 * @param timeout
+	 * @param unit
+	 * @return budget with only a deadline, timeout after now
+	 */
+	public static CYlpWorkBudget ofTimeout(long timeout, TimeUnit unit) {
+		return new CYlpWorkBudget(unit.toNanos(timeout), UNLIMITED, UNLIMITED);
+	}
+
+	/**
+	 * @param maxWindowsScored
+	 * @return budget with only a maximum number of scan windows scored
+	 */
+	public static CYlpWorkBudget ofMaxWindowsScored(int maxWindowsScored) {
+		return new CYlpWorkBudget(UNLIMITED_NANOS, UNLIMITED, maxWindowsScored);
+	}
+
+	/**
+	 * @return budget without limits, it never runs out and only counts the work done
+	 */
+	public static CYlpWorkBudget unlimited() {
+		return new CYlpWorkBudget(UNLIMITED_NANOS, UNLIMITED, UNLIMITED);
+	}
+
+	/**
+	 * Counts one keyword combination enumerated
+	 * @param required: true for a combination that is enumerated even when the budget ran out
+	 * @return false when the budget ran out and the combination should not be enumerated
+	 */
+	boolean tryEnumerateCombination(boolean required) {
+		if (!isExhausted(combinations >= maxCombinations) || required) {
+			combinations++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Counts one scan window scored
+	 * @param required: true for a window that is scored even when the budget ran out
+	 * @return false when the budget ran out and the window should not be scored
+	 */
+	boolean tryScoreWindow(boolean required) {
+		if (!isExhausted(windowsScored >= maxWindowsScored) || required) {
+			windowsScored++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Counts scan windows scored by the segments of the parallel proximitySearch(), it is only given an
+	 * unlimited budget
+	 * @param count
+	 */
+	void addWindowsScored(int count) {
+		windowsScored += count;
+	}
+
+	/**
+	 * @return true when the budget has no limit, so it never runs out
+	 */
+	boolean isUnlimited() {
+		return !hasDeadline && maxCombinations == UNLIMITED && maxWindowsScored == UNLIMITED;
+	}
+
+	private boolean isExhausted(boolean atLimit) {
+		if (exhausted || atLimit) {
+			return exhausted = true;
+		}
+		if (hasDeadline && --clockCheckCountdown < 0) {
+			clockCheckCountdown = CLOCK_CHECK_INTERVAL - 1;
+			exhausted = System.nanoTime() - deadlineNanoTime >= 0;
+		}
+		return exhausted;
+	}
+
+	/**
+	 * Records that the search was stopped before it was complete
+	 */
+	void setDegraded() {
+		degraded = true;
+	}
+
+	/**
+	 * @return true when the budget ran out, checking the deadline now
+	 */
+	public boolean isExhausted() {
+		if (!exhausted && hasDeadline) {
+			exhausted = System.nanoTime() - deadlineNanoTime >= 0;
+		}
+		return exhausted;
+	}
+
+	/**
+	 * @return true when a search was stopped because the budget ran out, so its result may not be the best
+	 */
+	public boolean isDegraded() {
+		return degraded;
+	}
+
+	/**
+	 * @return nanoseconds left before the deadline (negative after it), UNLIMITED_NANOS without a deadline
+	 */
+	public long getRemainingNanos() {
+		return hasDeadline ? deadlineNanoTime - System.nanoTime() : UNLIMITED_NANOS;
+	}
+
+	public int getMaxCombinations() {
+		return maxCombinations;
+	}
+
+	public int getMaxWindowsScored() {
+		return maxWindowsScored;
+	}
+
+	/**
+	 * @return keyword combinations enumerated so far
+	 */
+	public int getCombinations() {
+		return combinations;
+	}
+
+	/**
+	 * @return scan windows scored so far
+	 */
+	public int getWindowsScored() {
+		return windowsScored;
+	}
+}